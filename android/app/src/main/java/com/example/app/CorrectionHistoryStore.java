@@ -0,0 +1,109 @@
+package com.example.app;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import com.example.app.core.CorrectionHistory;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Every correction the API returned, in a {@link CorrectionHistory} in the app's files, so a
+ * result cleared from the screen can be found and inserted again without another request. All
+ * history work runs on one background thread, compaction included, so recording never waits
+ * on the caller's thread; search results are delivered on the main thread.
+ */
+public class CorrectionHistoryStore {
+    private static final String TAG = "CorrectionHistoryStore";
+    static final int SEARCH_LIMIT = 50;
+
+    public interface EntriesCallback {
+        void onEntries(List<CorrectionHistory.Entry> entries);
+    }
+
+    private final File file;
+    private final Executor callbackExecutor;
+    private final Executor executor;
+    private CorrectionHistory history;
+
+    public CorrectionHistoryStore(File file) {
+        this(file, new Handler(Looper.getMainLooper())::post, Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "correction-history");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    CorrectionHistoryStore(File file, Executor callbackExecutor, Executor executor) {
+        this.file = file;
+        this.callbackExecutor = callbackExecutor;
+        this.executor = executor;
+    }
+
+    public void record(String input, String output, String model, long latencyMillis) {
+        long timeMillis = System.currentTimeMillis();
+        executor.execute(() -> {
+            try {
+                CorrectionHistory history = history();
+                history.add(input, output, model, latencyMillis, timeMillis);
+                // Queued behind the write, so the next write is not held up by it
+                if (history.needsCompaction()) {
+                    executor.execute(this::compact);
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot record correction", e);
+            }
+        });
+    }
+
+    // Newest first; an empty query lists the most recent corrections
+    public void search(String query, EntriesCallback callback) {
+        executor.execute(() -> {
+            List<CorrectionHistory.Entry> entries;
+            try {
+                entries = history().search(query, SEARCH_LIMIT);
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot search history", e);
+                entries = Collections.emptyList();
+            }
+            List<CorrectionHistory.Entry> found = entries;
+            callbackExecutor.execute(() -> callback.onEntries(found));
+        });
+    }
+
+    public void remove(long id) {
+        executor.execute(() -> {
+            try {
+                history().remove(id);
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot update history", e);
+            }
+        });
+    }
+
+    private void compact() {
+        try {
+            CorrectionHistory history = history();
+            if (history.needsCompaction()) {
+                long startNanos = System.nanoTime();
+                history.compact();
+                Log.d(TAG, "Compacted history to " + history.size() + " entries in "
+                        + (System.nanoTime() - startNanos) / 1_000_000 + "ms");
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot compact history", e);
+        }
+    }
+
+    // Opened on first use, off the main thread
+    private synchronized CorrectionHistory history() throws IOException {
+        if (history == null) {
+            history = new CorrectionHistory(file);
+        }
+        return history;
+    }
+}
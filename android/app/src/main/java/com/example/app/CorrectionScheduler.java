@@ -0,0 +1,329 @@
+package com.example.app;
+
+import android.util.Log;
+import com.example.app.core.CallTimings;
+import com.example.app.core.ChatCompletionClient;
+import com.example.app.core.CorrectionMetrics;
+import com.example.app.core.MetricsListener;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import okhttp3.Call;
+
+/**
+ * Runs correction requests on a bounded worker pool. Identical concurrent requests share one
+ * execution, and each caller gets a {@link RequestHandle} that detaches it (and cancels the HTTP
+ * calls once nobody is left waiting), or lets go of it while the request runs on to fill the cache.
+ * Callbacks go through the callback executor and are dropped for callers that have cancelled.
+ */
+class CorrectionScheduler {
+    private static final String TAG = "CorrectionScheduler";
+
+    interface Work {
+        // Runs on a worker thread; returns null only when the request was cancelled
+        String run(InFlight inFlight);
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final Executor callbackExecutor;
+    private final MetricsListener metrics;
+    private final Object lock = new Object();
+    private final Map<String, InFlight> inFlightByKey = new HashMap<>();
+    private final AtomicLong deduplicated = new AtomicLong();
+
+    CorrectionScheduler(int maxWorkers, int maxQueued, Executor callbackExecutor, MetricsListener metrics) {
+        this.callbackExecutor = callbackExecutor;
+        this.metrics = metrics;
+        this.executor = new ThreadPoolExecutor(maxWorkers, maxWorkers, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(maxQueued), runnable -> {
+                    Thread thread = new Thread(runnable, "correction-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    // receivedNanos is the System.nanoTime() at which the request reached the app
+    RequestHandle submit(String key, TextCorrectionService.CorrectionCallback callback, long receivedNanos,
+                         Work work) {
+        synchronized (lock) {
+            InFlight existing = inFlightByKey.get(key);
+            if (existing != null) {
+                deduplicated.incrementAndGet();
+                metrics.onCacheOutcome(CorrectionMetrics.CacheOutcome.DEDUPLICATED);
+                Log.d(TAG, "Joining in-flight request");
+                return existing.subscribe(callback);
+            }
+
+            InFlight inFlight = new InFlight(key, receivedNanos);
+            RequestHandle handle = inFlight.subscribe(callback);
+            inFlightByKey.put(key, inFlight);
+            long submittedNanos = System.nanoTime();
+            try {
+                inFlight.future = executor.submit(() -> execute(inFlight, work, submittedNanos));
+            } catch (RejectedExecutionException e) {
+                inFlightByKey.remove(key);
+                Log.w(TAG, "Worker queue full, rejecting request");
+                callbackExecutor.execute(() -> {
+                    if (!handle.isCancelled()) {
+                        callback.onError("Zbyt wiele żądań, spróbuj ponownie");
+                    }
+                });
+            }
+            return handle;
+        }
+    }
+
+    long getDeduplicatedCount() {
+        return deduplicated.get();
+    }
+
+    private void execute(InFlight inFlight, Work work, long submittedNanos) {
+        metrics.onLatency(CorrectionMetrics.Phase.QUEUE_WAIT, System.nanoTime() - submittedNanos);
+        String result = null;
+        String error = null;
+        try {
+            if (!inFlight.cancelled) {
+                result = work.run(inFlight);
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Correction failed", e);
+            error = "Nieoczekiwany błąd: " + e.getMessage();
+        }
+
+        if (error == null && inFlight.isDetached()) {
+            // Whoever took the request over finishes it
+            return;
+        }
+        finish(inFlight, result, error);
+    }
+
+    // Delivers the outcome to every caller still waiting; nothing is delivered when both are null
+    private void finish(InFlight inFlight, String result, String error) {
+        List<RequestHandle> subscribers;
+        synchronized (lock) {
+            if (inFlight.done) {
+                return;
+            }
+            if (inFlightByKey.get(inFlight.key) == inFlight) {
+                inFlightByKey.remove(inFlight.key);
+            }
+            inFlight.done = true;
+            subscribers = new ArrayList<>(inFlight.subscribers);
+        }
+        if (result == null && error == null) {
+            return;
+        }
+        for (RequestHandle handle : subscribers) {
+            callbackExecutor.execute(() -> {
+                TextCorrectionService.CorrectionCallback callback = handle.activeCallback();
+                if (callback == null) {
+                    return;
+                }
+                if (result != null) {
+                    callback.onSuccess(result);
+                } else {
+                    callback.onError(error);
+                }
+            });
+        }
+    }
+
+    // One execution of a request, shared by every caller that asked for the same key meanwhile
+    final class InFlight implements ChatCompletionClient.CallObserver {
+        private final String key;
+        private final long receivedNanos;
+        private final List<RequestHandle> subscribers = new ArrayList<>();
+        private final Set<Call> calls = new HashSet<>();
+        private final StringBuilder streamed = new StringBuilder();
+        private Future<?> future;
+        private Runnable onCancel;
+        private boolean done;
+        private boolean dispatched;
+        private volatile boolean detached;
+        private volatile boolean cancelled;
+
+        private InFlight(String key, long receivedNanos) {
+            this.key = key;
+            this.receivedNanos = receivedNanos;
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        // When the first caller's text reached the app, in System.nanoTime()
+        long getReceivedNanos() {
+            return receivedNanos;
+        }
+
+        boolean isDetached() {
+            return detached;
+        }
+
+        // Lets the worker return while something else finishes the request with complete(); cancelling
+        // the request then runs onCancel instead of interrupting the worker
+        void detach(Runnable onCancel) {
+            boolean alreadyCancelled;
+            synchronized (lock) {
+                detached = true;
+                this.onCancel = onCancel;
+                alreadyCancelled = cancelled;
+            }
+            if (alreadyCancelled) {
+                onCancel.run();
+            }
+        }
+
+        // Finishes a detached request; a null result delivers nothing, as for a cancelled request
+        void complete(String result) {
+            finish(this, result, null);
+        }
+
+        // Records the dispatch latency when the first call carrying the request starts
+        void onSent() {
+            synchronized (lock) {
+                if (dispatched) {
+                    return;
+                }
+                dispatched = true;
+            }
+            long nanos = System.nanoTime() - receivedNanos;
+            metrics.onLatency(CorrectionMetrics.Phase.DISPATCH, nanos);
+            Log.d(TAG, "Request sent " + TimeUnit.NANOSECONDS.toMicros(nanos) + " us after it was received");
+        }
+
+        // Registers an HTTP call so cancelling the request also cancels it
+        @Override
+        public void onCallStarted(Call call) {
+            synchronized (lock) {
+                if (cancelled) {
+                    call.cancel();
+                } else {
+                    calls.add(call);
+                }
+            }
+            onSent();
+        }
+
+        @Override
+        public void onCallFinished(Call call, CallTimings timings) {
+            synchronized (lock) {
+                calls.remove(call);
+            }
+            Log.d(TAG, "Call timings: " + timings);
+        }
+
+        void publishPartial(String delta) {
+            List<RequestHandle> targets;
+            synchronized (lock) {
+                streamed.append(delta);
+                targets = new ArrayList<>(subscribers);
+            }
+            for (RequestHandle handle : targets) {
+                callbackExecutor.execute(() -> {
+                    TextCorrectionService.CorrectionCallback callback = handle.activeCallback();
+                    if (callback != null) {
+                        callback.onPartial(delta);
+                    }
+                });
+            }
+        }
+
+        // Called with the lock held
+        private RequestHandle subscribe(TextCorrectionService.CorrectionCallback callback) {
+            RequestHandle handle = new RequestHandle(this, callback);
+            subscribers.add(handle);
+            if (streamed.length() > 0) {
+                // A late joiner first catches up on what has already streamed in
+                String caughtUp = streamed.toString();
+                callbackExecutor.execute(() -> {
+                    if (!handle.isCancelled()) {
+                        callback.onPartial(caughtUp);
+                    }
+                });
+            }
+            return handle;
+        }
+
+        private void unsubscribe(RequestHandle handle) {
+            List<Call> toCancel;
+            Runnable cancelDetached;
+            synchronized (lock) {
+                if (!subscribers.remove(handle) || !subscribers.isEmpty() || done) {
+                    return;
+                }
+                cancelled = true;
+                if (inFlightByKey.get(key) == this) {
+                    inFlightByKey.remove(key);
+                }
+                toCancel = new ArrayList<>(calls);
+                calls.clear();
+                cancelDetached = onCancel;
+            }
+            Log.d(TAG, "Last caller gone, cancelling " + toCancel.size() + " call(s)");
+            for (Call call : toCancel) {
+                call.cancel();
+            }
+            if (cancelDetached != null) {
+                cancelDetached.run();
+            }
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    public static final class RequestHandle {
+        private final InFlight inFlight;
+        // Null once released, so a finished screen is not kept alive by a request that runs on
+        private volatile TextCorrectionService.CorrectionCallback callback;
+        private volatile boolean cancelled;
+
+        private RequestHandle(InFlight inFlight, TextCorrectionService.CorrectionCallback callback) {
+            this.inFlight = inFlight;
+            this.callback = callback;
+        }
+
+        // For results produced synchronously, which have nothing left to cancel
+        static RequestHandle completed() {
+            return new RequestHandle(null, null);
+        }
+
+        // Stops callbacks to this caller; the request itself is cancelled when no caller remains
+        public void cancel() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            if (inFlight != null) {
+                inFlight.unsubscribe(this);
+            }
+        }
+
+        // Stops callbacks to this caller and lets go of its callback, but the request keeps running for
+        // the cache as long as it has this caller
+        public void release() {
+            cancelled = true;
+            callback = null;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        private TextCorrectionService.CorrectionCallback activeCallback() {
+            return cancelled ? null : callback;
+        }
+    }
+}
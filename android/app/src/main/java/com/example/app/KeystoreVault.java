@@ -0,0 +1,127 @@
+package com.example.app;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+import android.util.Base64;
+import com.example.app.core.AesGcmVault;
+import com.example.app.core.KeyVault;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Calendar;
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import javax.security.auth.x500.X500Principal;
+
+/**
+ * Encrypts with an AES key kept in the Android keystore, which never lets its bytes out of the
+ * keystore. Before Android 6 the keystore holds only RSA keys, so there an AES key is generated in
+ * the app, encrypted with an RSA key from the keystore and stored next to what it protects.
+ * The keystore is opened on first use, which the app makes on its startup thread.
+ */
+class KeystoreVault implements KeyVault {
+    private static final String KEYSTORE = "AndroidKeyStore";
+    private static final String ALIAS = "credentials";
+    private static final String WRAPPED_KEY = "credentials_wrapped_key";
+    private static final String RSA_TRANSFORMATION = "RSA/ECB/PKCS1Padding";
+
+    private final Context context;
+    private final SharedPreferences prefs;
+    private AesGcmVault vault;
+
+    KeystoreVault(Context context, SharedPreferences prefs) {
+        this.context = context.getApplicationContext();
+        this.prefs = prefs;
+    }
+
+    @Override
+    public byte[] encrypt(byte[] plaintext) throws GeneralSecurityException {
+        return vault().encrypt(plaintext);
+    }
+
+    @Override
+    public byte[] decrypt(byte[] ciphertext) throws GeneralSecurityException {
+        return vault().decrypt(ciphertext);
+    }
+
+    private synchronized AesGcmVault vault() throws GeneralSecurityException {
+        if (vault == null) {
+            KeyStore keyStore = KeyStore.getInstance(KEYSTORE);
+            try {
+                keyStore.load(null);
+            } catch (IOException e) {
+                throw new GeneralSecurityException("Cannot open the keystore", e);
+            }
+            // A key wrapped before an update to Android 6 stays in use, so what it sealed still opens
+            boolean wrapped = prefs.contains(WRAPPED_KEY);
+            vault = new AesGcmVault(Build.VERSION.SDK_INT >= Build.VERSION_CODES.M && !wrapped
+                    ? keystoreKey(keyStore) : wrappedKey(keyStore));
+        }
+        return vault;
+    }
+
+    @TargetApi(Build.VERSION_CODES.M)
+    private SecretKey keystoreKey(KeyStore keyStore) throws GeneralSecurityException {
+        Key key = keyStore.getKey(ALIAS, null);
+        if (key instanceof SecretKey) {
+            return (SecretKey) key;
+        }
+        KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE);
+        generator.init(new KeyGenParameterSpec.Builder(ALIAS,
+                KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                .setKeySize(256)
+                .build());
+        return generator.generateKey();
+    }
+
+    private SecretKey wrappedKey(KeyStore keyStore) throws GeneralSecurityException {
+        String wrapped = prefs.getString(WRAPPED_KEY, null);
+        if (wrapped != null && keyStore.containsAlias(ALIAS)) {
+            Cipher rsa = Cipher.getInstance(RSA_TRANSFORMATION);
+            rsa.init(Cipher.DECRYPT_MODE, (PrivateKey) keyStore.getKey(ALIAS, null));
+            return new SecretKeySpec(rsa.doFinal(Base64.decode(wrapped, Base64.NO_WRAP)), "AES");
+        }
+        if (!keyStore.containsAlias(ALIAS)) {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA", KEYSTORE);
+            generator.initialize(rsaKeySpec());
+            generator.generateKeyPair();
+        }
+        KeyGenerator generator = KeyGenerator.getInstance("AES");
+        generator.init(256);
+        SecretKey key = generator.generateKey();
+        Cipher rsa = Cipher.getInstance(RSA_TRANSFORMATION);
+        rsa.init(Cipher.ENCRYPT_MODE, keyStore.getCertificate(ALIAS).getPublicKey());
+        prefs.edit().putString(WRAPPED_KEY, Base64.encodeToString(rsa.doFinal(key.getEncoded()), Base64.NO_WRAP))
+                .apply();
+        return key;
+    }
+
+    // The only way to create a keystore key before Android 6, deprecated since; fully qualified
+    // so that the import does not warn either
+    @SuppressWarnings("deprecation")
+    private AlgorithmParameterSpec rsaKeySpec() {
+        Calendar start = Calendar.getInstance();
+        Calendar end = Calendar.getInstance();
+        end.add(Calendar.YEAR, 30);
+        return new android.security.KeyPairGeneratorSpec.Builder(context)
+                .setAlias(ALIAS)
+                .setSubject(new X500Principal("CN=" + ALIAS))
+                .setSerialNumber(BigInteger.ONE)
+                .setStartDate(start.getTime())
+                .setEndDate(end.getTime())
+                .build();
+    }
+}
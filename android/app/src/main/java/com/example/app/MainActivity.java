@@ -5,22 +5,55 @@ import android.content.ClipData;
 import android.content.ClipboardManager;
 import android.content.Context;
 import android.content.Intent;
+import android.graphics.Typeface;
 import android.net.Uri;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.format.DateUtils;
+import android.text.InputType;
+import android.text.SpannableString;
+import android.text.TextWatcher;
+import android.text.Spanned;
+import android.text.style.BackgroundColorSpan;
+import android.util.Log;
 import android.view.View;
+import android.widget.ArrayAdapter;
 import android.widget.Button;
+import android.widget.CheckBox;
 import android.widget.EditText;
 import android.widget.ImageButton;
+import android.widget.LinearLayout;
+import android.widget.ListView;
 import android.widget.ProgressBar;
+import android.widget.ScrollView;
 import android.widget.TextView;
 import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.ContextCompat;
+import com.example.app.core.CorrectionBackend;
+import com.example.app.core.CorrectionDiff;
+import com.example.app.core.CorrectionHistory;
+import com.example.app.core.CorrectionJournal;
+import com.example.app.core.CorrectionMetrics;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class MainActivity extends AppCompatActivity {
+    private static final String TAG = "MainActivity";
+    // Added to a large result the API did not correct in full
+    static final String LOCAL_ONLY_NOTE = "Tekstu nie poprawiło w całości AI — część poprawiono tylko lokalnie.";
     
     private EditText inputText;
     private TextView outputText;
     private Button correctButton;
+    private Button historyButton;
     private Button clearButton;
     private Button copyButton;
     private ImageButton settingsButton;
@@ -28,6 +61,30 @@ public class MainActivity extends AppCompatActivity {
     
     private PreferencesManager preferencesManager;
     private TextCorrectionService correctionService;
+    private OfflineCorrectionQueue offlineQueue;
+    private CorrectionHistoryStore historyStore;
+    private CorrectionScheduler.RequestHandle pendingRequest;
+    private CorrectionScheduler.RequestHandle pendingLocal;
+    // A re-edited text goes to the API only where it changed since this screen's last correction
+    private final TextCorrectionService.IncrementalSession incrementalSession =
+            new TextCorrectionService.IncrementalSession();
+    
+    // Results of requests corrected after the network came back, shown one at a time
+    private final ArrayDeque<CorrectionJournal.Entry> deferredResults = new ArrayDeque<>();
+    private final Set<Long> seenDeferredIds = new HashSet<>();
+    private boolean showingDeferredResult;
+    private final OfflineCorrectionQueue.Listener offlineListener = new OfflineCorrectionQueue.Listener() {
+        @Override
+        public void onQueued(int pendingCount) {
+            Toast.makeText(MainActivity.this, "Brak połączenia — tekst zostanie poprawiony przez AI, gdy sieć wróci",
+                    Toast.LENGTH_LONG).show();
+        }
+        
+        @Override
+        public void onCorrected(CorrectionJournal.Entry entry) {
+            addDeferredResult(entry);
+        }
+    };
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -35,8 +92,10 @@ public class MainActivity extends AppCompatActivity {
         setContentView(R.layout.activity_main);
         
         // Initialize preferences and services
-        preferencesManager = new PreferencesManager(this);
-        correctionService = new TextCorrectionService(preferencesManager);
+        preferencesManager = TextPolisherApplication.from(this).getPreferencesManager();
+        correctionService = TextPolisherApplication.from(this).getCorrectionService();
+        offlineQueue = TextPolisherApplication.from(this).getOfflineQueue();
+        historyStore = TextPolisherApplication.from(this).getHistoryStore();
         
         // Initialize UI components
         initializeViews();
@@ -45,9 +104,42 @@ public class MainActivity extends AppCompatActivity {
         // Handle shared text from other apps
         handleSharedText();
         
-        // Check if API key is configured
-        if (!preferencesManager.hasApiKey()) {
-            showApiKeyDialog();
+        // Check if API key or a local server is configured, once the key is decrypted off the main thread
+        preferencesManager.whenLoaded(this::runOnUiThread, () -> {
+            if (!isFinishing() && !preferencesManager.hasCachedBackend()) {
+                showApiKeyDialog();
+            }
+        });
+    }
+    
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // Until the preferences are read, the application warms up the connections itself
+        TextPolisherApplication.from(this).warmUpConnection();
+        offlineQueue.addListener(offlineListener);
+        offlineQueue.loadCorrected(entries -> {
+            for (CorrectionJournal.Entry entry : entries) {
+                addDeferredResult(entry);
+            }
+        });
+    }
+    
+    @Override
+    protected void onPause() {
+        super.onPause();
+        offlineQueue.removeListener(offlineListener);
+    }
+    
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // Drop callbacks into this activity; the request itself is cancelled if nobody else awaits it
+        if (pendingRequest != null) {
+            pendingRequest.cancel();
+        }
+        if (pendingLocal != null) {
+            pendingLocal.cancel();
         }
     }
     
@@ -55,6 +147,7 @@ public class MainActivity extends AppCompatActivity {
         inputText = findViewById(R.id.inputText);
         outputText = findViewById(R.id.outputText);
         correctButton = findViewById(R.id.correctButton);
+        historyButton = findViewById(R.id.historyButton);
         clearButton = findViewById(R.id.clearButton);
         copyButton = findViewById(R.id.copyButton);
         settingsButton = findViewById(R.id.settingsButton);
@@ -63,9 +156,19 @@ public class MainActivity extends AppCompatActivity {
     
     private void setupClickListeners() {
         correctButton.setOnClickListener(v -> correctText());
+        historyButton.setOnClickListener(v -> showHistoryDialog());
         clearButton.setOnClickListener(v -> clearText());
         copyButton.setOnClickListener(v -> copyToClipboard());
-        settingsButton.setOnClickListener(v -> showApiKeyDialog());
+        settingsButton.setOnClickListener(v -> preferencesManager.whenLoaded(this::runOnUiThread, () -> {
+            if (!isFinishing()) {
+                showApiKeyDialog();
+            }
+        }));
+        // Hidden debug screen
+        settingsButton.setOnLongClickListener(v -> {
+            showMetricsDialog();
+            return true;
+        });
     }
     
     private void handleSharedText() {
@@ -88,23 +191,158 @@ public class MainActivity extends AppCompatActivity {
     }
     
     private void correctText() {
-        String input = inputText.getText().toString().trim();
+        Editable text = inputText.getText();
+        if (correctionService.isLargeInput(text)) {
+            // One snapshot, since the field stays editable; the corrector trims without copying
+            correctLargeText(text.toString());
+            return;
+        }
+        String input = text.toString().trim();
         if (input.isEmpty()) {
             Toast.makeText(this, "Wprowadź tekst do poprawienia", Toast.LENGTH_SHORT).show();
             return;
         }
+        if (preferencesManager.isSpeculativeEnabled()) {
+            correctSpeculatively(input);
+            return;
+        }
         
         showProgress(true);
-        correctionService.correctText(input, new TextCorrectionService.CorrectionCallback() {
+        pendingRequest = correctionService.correctTextStreaming(input, incrementalSession,
+                new TextCorrectionService.CorrectionCallback() {
+                    private boolean receivedPartial;
+            
+                    @Override
+                    public void onPartial(CharSequence delta) {
+                        if (!receivedPartial) {
+                            receivedPartial = true;
+                            outputText.setText("");
+                        }
+                        outputText.append(delta);
+                    }
+            
+                    @Override
+                    public void onSuccess(String correctedText) {
+                        runOnUiThread(() -> {
+                            showProgress(false);
+                            outputText.setText(correctedText);
+                            copyButton.setVisibility(View.VISIBLE);
+                        });
+                    }
+            
+                    @Override
+                    public void onError(String error) {
+                        runOnUiThread(() -> {
+                            showProgress(false);
+                            Toast.makeText(MainActivity.this, "Błąd: " + error, Toast.LENGTH_LONG).show();
+                        });
+                    }
+                });
+    }
+    
+    // The local correction is shown as soon as a worker has it; the API's answer then replaces it, with
+    // what it changed marked. An answer that comes first is shown as it is
+    private void correctSpeculatively(String input) {
+        String[] shown = new String[1];
+        boolean[] answered = new boolean[1];
+        showProgress(true);
+        pendingLocal = correctionService.correctTextLocally(input, new TextCorrectionService.CorrectionCallback() {
             @Override
-            public void onSuccess(String correctedText) {
+            public void onSuccess(String local) {
                 runOnUiThread(() -> {
-                    showProgress(false);
-                    outputText.setText(correctedText);
+                    if (answered[0]) {
+                        return;
+                    }
+                    shown[0] = local;
+                    outputText.setText(local);
                     copyButton.setVisibility(View.VISIBLE);
                 });
             }
             
+            @Override
+            public void onError(String error) {
+                // The API's answer or error follows
+            }
+        });
+        pendingRequest = correctionService.correctText(input, incrementalSession,
+                new TextCorrectionService.CorrectionCallback() {
+                    @Override
+                    public void onSuccess(String correctedText) {
+                        runOnUiThread(() -> {
+                            answered[0] = true;
+                            showProgress(false);
+                            outputText.setText(shown[0] != null
+                                    ? highlightChanges(shown[0], correctedText) : correctedText);
+                            copyButton.setVisibility(View.VISIBLE);
+                        });
+                    }
+            
+                    @Override
+                    public void onError(String error) {
+                        runOnUiThread(() -> {
+                            showProgress(false);
+                            Toast.makeText(MainActivity.this, "Błąd: " + error, Toast.LENGTH_LONG).show();
+                        });
+                    }
+                });
+    }
+    
+    private CharSequence highlightChanges(String shown, String corrected) {
+        SpannableString text = new SpannableString(corrected);
+        int color = ContextCompat.getColor(this, R.color.changed_highlight);
+        for (CorrectionDiff.Span span : CorrectionDiff.changedSpans(shown, corrected)) {
+            text.setSpan(new BackgroundColorSpan(color), span.getStart(), span.getEnd(),
+                    Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
+        return text;
+    }
+    
+    // The result is too large to show, so it goes to a file the user can share; the file is created
+    // and published off the main thread
+    private void correctLargeText(String input) {
+        showProgress(true);
+        SpilledText.newFile(this, new SpilledText.FileCallback() {
+            @Override
+            public void onFile(File output) {
+                if (isFinishing()) {
+                    return;
+                }
+                pendingRequest = correctionService.correctLargeText(input, output, largeTextCallback());
+            }
+            
+            @Override
+            public void onError(IOException e) {
+                Log.e(TAG, "No room for the corrected text", e);
+                showProgress(false);
+                Toast.makeText(MainActivity.this, "Brak miejsca na poprawiony tekst", Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+    
+    private TextCorrectionService.LargeTextCallback largeTextCallback() {
+        return new TextCorrectionService.LargeTextCallback() {
+            @Override
+            public void onSuccess(File corrected, boolean aiCorrected) {
+                SpilledText.publish(MainActivity.this, corrected, new SpilledText.UriCallback() {
+                    @Override
+                    public void onUri(Uri uri, long bytes) {
+                        showProgress(false);
+                        outputText.setText("Poprawiony tekst (" + bytes / 1024
+                                + " KB) jest za długi, by go tu pokazać — zapisz go lub udostępnij."
+                                + (aiCorrected ? "" : " " + LOCAL_ONLY_NOTE));
+                        copyButton.setVisibility(View.GONE);
+                        startActivity(SpilledText.shareIntent(uri));
+                    }
+                    
+                    @Override
+                    public void onError(IOException e) {
+                        Log.e(TAG, "Cannot share the corrected text", e);
+                        showProgress(false);
+                        Toast.makeText(MainActivity.this, "Błąd: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                    }
+                });
+            }
+            
             @Override
             public void onError(String error) {
                 runOnUiThread(() -> {
@@ -112,7 +350,7 @@ public class MainActivity extends AppCompatActivity {
                     Toast.makeText(MainActivity.this, "Błąd: " + error, Toast.LENGTH_LONG).show();
                 });
             }
-        });
+        };
     }
     
     private void clearText() {
@@ -136,6 +374,7 @@ public class MainActivity extends AppCompatActivity {
         correctButton.setEnabled(!show);
     }
     
+    // Only once the preferences are loaded, so the dialog reads them from memory
     private void showApiKeyDialog() {
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setTitle("Ustawienia API");
@@ -143,25 +382,277 @@ public class MainActivity extends AppCompatActivity {
         
         final EditText input = new EditText(this);
         input.setHint("sk-...");
-        input.setText(preferencesManager.getApiKey());
-        builder.setView(input);
+        String savedKey = preferencesManager.getCachedApiKey();
+        input.setText(savedKey != null ? savedKey : "");
+        
+        final CheckBox correctLater = new CheckBox(this);
+        correctLater.setText("Bez sieci: popraw przez AI później");
+        correctLater.setChecked(preferencesManager.isCorrectLaterEnabled());
+        
+        final CheckBox hedging = new CheckBox(this);
+        hedging.setText("Wolna odpowiedź: wyślij zapasowe żądanie");
+        hedging.setChecked(preferencesManager.isHedgingEnabled());
+        
+        final CheckBox batching = new CheckBox(this);
+        batching.setText("Wiele krótkich tekstów naraz: wyślij jednym żądaniem");
+        batching.setChecked(preferencesManager.isBatchingEnabled());
+        
+        final CheckBox speculative = new CheckBox(this);
+        speculative.setText("Szybki wynik: od razu lokalna korekta, AI poprawia ją w tle");
+        speculative.setChecked(preferencesManager.isSpeculativeEnabled());
+        
+        // The first self-hosted server; requests go to whichever backend answers fastest
+        List<CorrectionBackend> customBackends = preferencesManager.getCachedCustomBackends();
+        CorrectionBackend server = customBackends.isEmpty() ? null : customBackends.get(0);
+        TextView serverLabel = new TextView(this);
+        serverLabel.setText("Serwer lokalny zgodny z OpenAI (opcjonalnie)");
+        final EditText serverUrl = new EditText(this);
+        serverUrl.setHint("http://192.168.1.10:8080/v1");
+        serverUrl.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_VARIATION_URI);
+        final EditText serverModel = new EditText(this);
+        serverModel.setHint("Model, np. llama-3.1-8b-instruct");
+        final EditText serverHeaders = new EditText(this);
+        serverHeaders.setHint("Nagłówki, po jednym w linii: Nazwa: wartość");
+        serverHeaders.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_FLAG_MULTI_LINE);
+        final EditText serverConcurrency = new EditText(this);
+        serverConcurrency.setHint("Równoległe żądania (domyślnie "
+                + CorrectionBackend.DEFAULT_MAX_CONCURRENT_REQUESTS + ")");
+        serverConcurrency.setInputType(InputType.TYPE_CLASS_NUMBER);
+        if (server != null) {
+            serverUrl.setText(server.getUrl());
+            serverModel.setText(server.getModel());
+            serverHeaders.setText(formatHeaders(server.getHeaders()));
+            serverConcurrency.setText(String.valueOf(server.getMaxConcurrentRequests()));
+        }
+        
+        LinearLayout content = new LinearLayout(this);
+        content.setOrientation(LinearLayout.VERTICAL);
+        content.addView(input);
+        content.addView(correctLater);
+        content.addView(hedging);
+        content.addView(batching);
+        content.addView(speculative);
+        content.addView(serverLabel);
+        content.addView(serverUrl);
+        content.addView(serverModel);
+        content.addView(serverHeaders);
+        content.addView(serverConcurrency);
+        ScrollView scroll = new ScrollView(this);
+        scroll.addView(content);
+        builder.setView(scroll);
         
         builder.setPositiveButton("Zapisz", (dialog, which) -> {
-            String apiKey = input.getText().toString().trim();
+            preferencesManager.setCorrectLaterEnabled(correctLater.isChecked());
+            preferencesManager.setHedgingEnabled(hedging.isChecked());
+            preferencesManager.setBatchingEnabled(batching.isChecked());
+            preferencesManager.setSpeculativeEnabled(speculative.isChecked());
+            correctionService.setLatencyBudget(preferencesManager.getLatencyBudgetMillis());
+            List<CorrectionBackend> updated = updatedServers(customBackends, serverUrl.getText().toString().trim(),
+                    serverModel.getText().toString().trim(), serverHeaders.getText().toString(),
+                    serverConcurrency.getText().toString().trim());
+            saveSecrets(updated, input.getText().toString().trim());
+        });
+        
+        builder.setNegativeButton("Anuluj", (dialog, which) -> dialog.cancel());
+        
+        if (!preferencesManager.hasCachedBackend()) {
+            builder.setCancelable(false);
+        }
+        
+        builder.show();
+    }
+    
+    // Sealing goes through the keystore, so it runs off the main thread; null backends are left as they are
+    private void saveSecrets(List<CorrectionBackend> backends, String apiKey) {
+        new Thread(() -> {
+            if (backends != null) {
+                preferencesManager.saveCustomBackends(backends);
+            }
             if (!apiKey.isEmpty()) {
                 preferencesManager.saveApiKey(apiKey);
-                Toast.makeText(this, "Klucz API zapisany", Toast.LENGTH_SHORT).show();
-            } else {
-                Toast.makeText(this, "Podaj klucz API", Toast.LENGTH_SHORT).show();
+            }
+            runOnUiThread(() -> {
+                TextPolisherApplication.from(this).warmUpConnection();
+                if (!apiKey.isEmpty()) {
+                    Toast.makeText(this, "Klucz API zapisany", Toast.LENGTH_SHORT).show();
+                } else if (!preferencesManager.hasCachedBackend()) {
+                    Toast.makeText(this, "Podaj klucz API lub adres serwera", Toast.LENGTH_SHORT).show();
+                }
+            });
+        }, "preferences-save").start();
+    }
+    
+    // Replaces the first custom backend, or removes it when the address is cleared; null when the server
+    // settings are invalid, which the user is told
+    private List<CorrectionBackend> updatedServers(List<CorrectionBackend> current, String url, String model,
+                                                   String headers, String concurrency) {
+        List<CorrectionBackend> updated = new ArrayList<>(current);
+        if (!updated.isEmpty()) {
+            updated.remove(0);
+        }
+        if (!url.isEmpty()) {
+            if (model.isEmpty()) {
+                Toast.makeText(this, "Podaj model serwera lokalnego", Toast.LENGTH_SHORT).show();
+                return null;
+            }
+            int maxConcurrent = CorrectionBackend.DEFAULT_MAX_CONCURRENT_REQUESTS;
+            try {
+                maxConcurrent = Math.max(1, Integer.parseInt(concurrency));
+            } catch (NumberFormatException e) {
+                // Keep the default
+            }
+            try {
+                updated.add(0, new CorrectionBackend("Serwer lokalny", url, model, parseHeaders(headers),
+                        maxConcurrent));
+            } catch (IllegalArgumentException e) {
+                Toast.makeText(this, "Nieprawidłowy adres serwera", Toast.LENGTH_SHORT).show();
+                return null;
+            }
+        }
+        return updated;
+    }
+    
+    private static String formatHeaders(Map<String, String> headers) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            sb.append(header.getKey()).append(": ").append(header.getValue()).append('\n');
+        }
+        return sb.toString().trim();
+    }
+    
+    private static Map<String, String> parseHeaders(String text) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (String line : text.split("\n")) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+            }
+        }
+        return headers;
+    }
+    
+    private void showMetricsDialog() {
+        CorrectionMetrics metrics = correctionService.getMetrics();
+        String report = metrics.dump() + "Backends\n" + correctionService.getBackendStatus();
+        Log.i(TAG, "Metrics:\n" + report);
+        
+        TextView text = new TextView(this);
+        text.setTypeface(Typeface.MONOSPACE);
+        text.setTextIsSelectable(true);
+        text.setText(report);
+        int padding = (int) (16 * getResources().getDisplayMetrics().density);
+        text.setPadding(padding, padding, padding, padding);
+        ScrollView scroll = new ScrollView(this);
+        scroll.addView(text);
+        
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Statystyki");
+        builder.setView(scroll);
+        builder.setPositiveButton("Kopiuj", (dialog, which) -> {
+            ClipboardManager clipboard = (ClipboardManager) getSystemService(Context.CLIPBOARD_SERVICE);
+            clipboard.setPrimaryClip(ClipData.newPlainText("Statystyki", report));
+            Toast.makeText(this, "Skopiowano do schowka", Toast.LENGTH_SHORT).show();
+        });
+        builder.setNeutralButton("Wyzeruj", (dialog, which) -> metrics.reset());
+        builder.setNegativeButton("Zamknij", (dialog, which) -> dialog.dismiss());
+        builder.show();
+    }
+    
+    // Earlier corrections, searched as the user types; picking one puts it back without a request
+    private void showHistoryDialog() {
+        EditText query = new EditText(this);
+        query.setHint("Szukaj w poprawionych tekstach");
+        query.setSingleLine(true);
+        List<CorrectionHistory.Entry> shown = new ArrayList<>();
+        ArrayAdapter<String> adapter = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1);
+        ListView list = new ListView(this);
+        list.setAdapter(adapter);
+        CorrectionHistoryStore.EntriesCallback showEntries = entries -> {
+            shown.clear();
+            shown.addAll(entries);
+            adapter.clear();
+            for (CorrectionHistory.Entry entry : entries) {
+                adapter.add(entry.getOutput() + "\n" + DateUtils.getRelativeTimeSpanString(entry.getTimeMillis())
+                        + " · " + entry.getModel() + " · " + entry.getLatencyMillis() + " ms");
+            }
+        };
+        query.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence text, int start, int count, int after) {
+            }
+            
+            @Override
+            public void onTextChanged(CharSequence text, int start, int before, int count) {
+            }
+            
+            @Override
+            public void afterTextChanged(Editable text) {
+                historyStore.search(text.toString(), showEntries);
             }
         });
+        historyStore.search("", showEntries);
         
-        builder.setNegativeButton("Anuluj", (dialog, which) -> dialog.cancel());
+        LinearLayout content = new LinearLayout(this);
+        content.setOrientation(LinearLayout.VERTICAL);
+        int padding = (int) (16 * getResources().getDisplayMetrics().density);
+        content.setPadding(padding, padding / 2, padding, 0);
+        content.addView(query);
+        content.addView(list);
         
-        if (!preferencesManager.hasApiKey()) {
-            builder.setCancelable(false);
+        AlertDialog dialog = new AlertDialog.Builder(this)
+                .setTitle("Historia poprawek")
+                .setView(content)
+                .setNegativeButton("Zamknij", (d, which) -> d.dismiss())
+                .create();
+        list.setOnItemClickListener((parent, view, position, id) -> {
+            CorrectionHistory.Entry entry = shown.get(position);
+            inputText.setText(entry.getInput());
+            outputText.setText(entry.getOutput());
+            copyButton.setVisibility(View.VISIBLE);
+            dialog.dismiss();
+        });
+        list.setOnItemLongClickListener((parent, view, position, id) -> {
+            historyStore.remove(shown.get(position).getId());
+            historyStore.search(query.getText().toString(), showEntries);
+            Toast.makeText(this, "Usunięto z historii", Toast.LENGTH_SHORT).show();
+            return true;
+        });
+        dialog.show();
+    }
+    
+    private void addDeferredResult(CorrectionJournal.Entry entry) {
+        if (seenDeferredIds.add(entry.getId())) {
+            deferredResults.add(entry);
+            showNextDeferredResult();
         }
+    }
+    
+    private void showNextDeferredResult() {
+        if (showingDeferredResult || isFinishing()) {
+            return;
+        }
+        CorrectionJournal.Entry entry = deferredResults.poll();
+        if (entry == null) {
+            return;
+        }
+        showingDeferredResult = true;
         
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Poprawiono po odzyskaniu połączenia");
+        builder.setMessage(entry.getResult());
+        builder.setPositiveButton("Wstaw", (dialog, which) -> {
+            inputText.setText(entry.getText());
+            outputText.setText(entry.getResult());
+            copyButton.setVisibility(View.VISIBLE);
+            offlineQueue.remove(entry.getId());
+        });
+        builder.setNegativeButton("Odrzuć", (dialog, which) -> offlineQueue.remove(entry.getId()));
+        // "Later" keeps it in the journal, so it is offered again next time
+        builder.setNeutralButton("Później", (dialog, which) -> dialog.dismiss());
+        builder.setOnDismissListener(dialog -> {
+            showingDeferredResult = false;
+            showNextDeferredResult();
+        });
         builder.show();
     }
 }
@@ -0,0 +1,208 @@
+package com.example.app;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import com.example.app.core.CorrectionJournal;
+import com.example.app.core.JournalReplayer;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * "Correct later" mode: requests that cannot reach the API are kept in a {@link CorrectionJournal}
+ * in the app's files, so they survive process death, and are replayed when the network comes
+ * back. Journal work runs on a background thread; listeners are called on the main thread.
+ */
+public class OfflineCorrectionQueue {
+    private static final String TAG = "OfflineCorrectionQueue";
+    static final int REPLAY_BATCH_SIZE = 8;
+    static final int REPLAY_CONCURRENCY = 2;
+    static final long RETRY_DELAY_SECONDS = 60;
+
+    public interface Listener {
+        void onQueued(int pendingCount);
+
+        void onCorrected(CorrectionJournal.Entry entry);
+    }
+
+    public interface EntriesCallback {
+        void onEntries(List<CorrectionJournal.Entry> entries);
+    }
+
+    private final File journalFile;
+    private final PreferencesManager preferencesManager;
+    private final Executor callbackExecutor;
+    private final ScheduledThreadPoolExecutor executor;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private CorrectionJournal journal;
+    private JournalReplayer replayer;
+    private volatile JournalReplayer.Corrector corrector;
+    private volatile ConnectivityManager connectivityManager;
+
+    public OfflineCorrectionQueue(File journalFile, PreferencesManager preferencesManager) {
+        this(journalFile, preferencesManager, new Handler(Looper.getMainLooper())::post);
+    }
+
+    OfflineCorrectionQueue(File journalFile, PreferencesManager preferencesManager, Executor callbackExecutor) {
+        this.journalFile = journalFile;
+        this.preferencesManager = preferencesManager;
+        this.callbackExecutor = callbackExecutor;
+        // Two threads so a long replay does not hold up enqueueing or reading results
+        this.executor = new ScheduledThreadPoolExecutor(2, runnable -> {
+            Thread thread = new Thread(runnable, "offline-queue");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Starts replaying whenever the network comes back, including right away if it is up
+    public void start(Context context, JournalReplayer.Corrector corrector) {
+        this.corrector = corrector;
+        connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkRequest request = new NetworkRequest.Builder()
+                .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                .build();
+        connectivityManager.registerNetworkCallback(request, new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                replay();
+            }
+        });
+    }
+
+    void setCorrector(JournalReplayer.Corrector corrector) {
+        this.corrector = corrector;
+    }
+
+    public boolean isEnabled() {
+        return preferencesManager.isCorrectLaterEnabled();
+    }
+
+    public boolean isOnline() {
+        if (connectivityManager == null) {
+            return true;
+        }
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return isConnectedLegacy();
+        }
+        // Validated: the network has reached the internet, not just a captive portal
+        NetworkCapabilities capabilities =
+                connectivityManager.getNetworkCapabilities(connectivityManager.getActiveNetwork());
+        return capabilities != null && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+    }
+
+    // getActiveNetwork() only exists from Android 6
+    @SuppressWarnings("deprecation")
+    private boolean isConnectedLegacy() {
+        android.net.NetworkInfo info = connectivityManager.getActiveNetworkInfo();
+        return info != null && info.isConnected();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public void enqueue(String text) {
+        executor.execute(() -> {
+            int pending;
+            try {
+                CorrectionJournal journal = journal();
+                journal.enqueue(text);
+                pending = journal.pending().size();
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot journal request", e);
+                return;
+            }
+            Log.d(TAG, "Queued for later, pending: " + pending);
+            for (Listener listener : listeners) {
+                callbackExecutor.execute(() -> listener.onQueued(pending));
+            }
+            // Online but failing (e.g. the API is overloaded): no network change will trigger a replay
+            if (isOnline()) {
+                executor.schedule(this::replayNow, RETRY_DELAY_SECONDS, TimeUnit.SECONDS);
+            }
+        });
+    }
+
+    public void replay() {
+        executor.execute(this::replayNow);
+    }
+
+    // Corrected entries not yet shown to the user, oldest first
+    public void loadCorrected(EntriesCallback callback) {
+        executor.execute(() -> {
+            List<CorrectionJournal.Entry> corrected;
+            try {
+                corrected = journal().corrected();
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot read journal", e);
+                corrected = Collections.emptyList();
+            }
+            List<CorrectionJournal.Entry> entries = corrected;
+            callbackExecutor.execute(() -> callback.onEntries(entries));
+        });
+    }
+
+    public void remove(long id) {
+        executor.execute(() -> {
+            try {
+                journal().remove(id);
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot update journal", e);
+            }
+        });
+    }
+
+    private void replayNow() {
+        if (corrector == null) {
+            return;
+        }
+        try {
+            CorrectionJournal journal = journal();
+            if (journal.pending().isEmpty()) {
+                return;
+            }
+            long startNanos = System.nanoTime();
+            int corrected = replayer.replay(corrector, entry -> {
+                for (Listener listener : listeners) {
+                    callbackExecutor.execute(() -> listener.onCorrected(entry));
+                }
+            });
+            int remaining = journal.pending().size();
+            Log.d(TAG, "Replayed " + corrected + " request(s) in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) + "ms, remaining: " + remaining);
+            if (remaining > 0 && isOnline()) {
+                executor.schedule(this::replayNow, RETRY_DELAY_SECONDS, TimeUnit.SECONDS);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Replay failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Opened on first use, off the main thread
+    private synchronized CorrectionJournal journal() throws IOException {
+        if (journal == null) {
+            journal = new CorrectionJournal(journalFile);
+            replayer = new JournalReplayer(journal, REPLAY_BATCH_SIZE, REPLAY_CONCURRENCY);
+        }
+        return journal;
+    }
+}
@@ -2,25 +2,102 @@ package com.example.app;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.util.Log;
+import com.example.app.core.CorrectionBackend;
+import com.example.app.core.CredentialStore;
+import com.example.app.core.KeyVault;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
 
 public class PreferencesManager {
+    private static final String TAG = "PreferencesManager";
     private static final String PREFS_NAME = "TextPolisherPrefs";
+    // Where versions before encryption kept the key as it is
     private static final String API_KEY = "openai_api_key";
+    private static final String SEALED_API_KEY = "openai_api_key_sealed";
+    private static final String CORRECT_LATER = "correct_later";
+    private static final String HEDGING = "hedged_requests";
+    private static final String BATCHING = "batched_requests";
+    private static final String SPECULATIVE = "speculative_correction";
+    private static final String LATENCY_BUDGET_MILLIS = "latency_budget_millis";
+    private static final String LARGE_INPUT_CHARS = "large_input_chars";
+    private static final String CUSTOM_BACKENDS = "custom_backends";
+    // The backends' headers, which carry their tokens, sealed like the API key: one object per backend
+    private static final String SEALED_BACKEND_HEADERS = "custom_backend_headers_sealed";
     
     private SharedPreferences prefs;
+    // Decrypted once and kept in memory, since every request needs it
+    private final CredentialStore apiKeyStore;
+    private final CredentialStore backendHeaderStore;
+    // Parsed once and kept like the API key; null until first read
+    private volatile List<CorrectionBackend> customBackends;
     
     public PreferencesManager(Context context) {
-        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this(context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE), context);
     }
     
-    public void saveApiKey(String apiKey) {
-        SharedPreferences.Editor editor = prefs.edit();
-        editor.putString(API_KEY, apiKey);
-        editor.apply();
+    private PreferencesManager(SharedPreferences prefs, Context context) {
+        this(prefs, new KeystoreVault(context, prefs));
     }
     
+    PreferencesManager(SharedPreferences prefs, KeyVault vault) {
+        this.prefs = prefs;
+        apiKeyStore = new CredentialStore(vault, storage(SEALED_API_KEY));
+        backendHeaderStore = new CredentialStore(vault, storage(SEALED_BACKEND_HEADERS));
+    }
+    
+    private CredentialStore.Storage storage(String name) {
+        return new CredentialStore.Storage() {
+            @Override
+            public String read() {
+                return prefs.getString(name, null);
+            }
+            
+            @Override
+            public void write(String sealed) {
+                SharedPreferences.Editor editor = prefs.edit();
+                if (sealed != null) {
+                    editor.putString(name, sealed);
+                } else {
+                    editor.remove(name);
+                }
+                editor.apply();
+            }
+        };
+    }
+    
+    public synchronized void saveApiKey(String apiKey) {
+        try {
+            apiKeyStore.set(apiKey);
+        } catch (GeneralSecurityException e) {
+            Log.e(TAG, "Cannot encrypt the API key, keeping it only until the app is closed", e);
+        }
+        prefs.edit().remove(API_KEY).apply();
+    }
+    
+    // The first call decrypts the key and may wait for the preferences file and the keystore,
+    // so make it off the main thread; the application does at startup
     public String getApiKey() {
-        return prefs.getString(API_KEY, "");
+        String key = apiKeyStore.peek();
+        if (key != null) {
+            return key;
+        }
+        migratePlaintextApiKey();
+        return apiKeyStore.get();
+    }
+    
+    // The key if it has already been decrypted, otherwise null; never touches the disk or the keystore
+    public String getCachedApiKey() {
+        return apiKeyStore.peek();
     }
     
     public boolean hasApiKey() {
@@ -28,9 +105,233 @@ public class PreferencesManager {
         return apiKey != null && !apiKey.trim().isEmpty();
     }
     
-    public void clearApiKey() {
+    // False also while the key has not been decrypted yet
+    public boolean hasCachedApiKey() {
+        String apiKey = getCachedApiKey();
+        return apiKey != null && !apiKey.trim().isEmpty();
+    }
+    
+    public synchronized void clearApiKey() {
+        apiKeyStore.clear();
+        prefs.edit().remove(API_KEY).apply();
+    }
+    
+    /**
+     * Runs callback once the API key and the backends are in memory: at once if they already are,
+     * otherwise through callbackExecutor after reading them on a thread of its own, so a screen that
+     * opens before the application has finished starting does not decrypt on the main thread.
+     */
+    public void whenLoaded(Executor callbackExecutor, Runnable callback) {
+        if (getCachedApiKey() != null && getCachedCustomBackends() != null) {
+            callback.run();
+            return;
+        }
+        new Thread(() -> {
+            getApiKey();
+            getCustomBackends();
+            callbackExecutor.execute(callback);
+        }, "preferences-load").start();
+    }
+    
+    // Versions before encryption kept the key as it is; it is sealed and the plaintext removed.
+    // When the keystore fails, the plaintext stays for the next start to try again
+    private synchronized void migratePlaintextApiKey() {
+        String plaintext = prefs.getString(API_KEY, null);
+        if (plaintext == null) {
+            return;
+        }
+        try {
+            apiKeyStore.set(plaintext);
+            prefs.edit().remove(API_KEY).apply();
+        } catch (GeneralSecurityException e) {
+            Log.e(TAG, "Cannot encrypt the stored API key, leaving it as it is", e);
+        }
+    }
+    
+    // Queue requests that fail for lack of network and correct them once it is back
+    public boolean isCorrectLaterEnabled() {
+        return prefs.getBoolean(CORRECT_LATER, false);
+    }
+    
+    public void setCorrectLaterEnabled(boolean enabled) {
+        SharedPreferences.Editor editor = prefs.edit();
+        editor.putBoolean(CORRECT_LATER, enabled);
+        editor.apply();
+    }
+    
+    // Send a second request when the first one is slower than usual to start answering
+    public boolean isHedgingEnabled() {
+        return prefs.getBoolean(HEDGING, false);
+    }
+    
+    public void setHedgingEnabled(boolean enabled) {
         SharedPreferences.Editor editor = prefs.edit();
-        editor.remove(API_KEY);
+        editor.putBoolean(HEDGING, enabled);
         editor.apply();
     }
-}
\ No newline at end of file
+    
+    // Correct short texts that arrive together with one request instead of one each
+    public boolean isBatchingEnabled() {
+        return prefs.getBoolean(BATCHING, false);
+    }
+    
+    public void setBatchingEnabled(boolean enabled) {
+        SharedPreferences.Editor editor = prefs.edit();
+        editor.putBoolean(BATCHING, enabled);
+        editor.apply();
+    }
+    
+    // Show the local correction right away and let the API's answer replace it when it comes
+    public boolean isSpeculativeEnabled() {
+        return prefs.getBoolean(SPECULATIVE, false);
+    }
+    
+    public void setSpeculativeEnabled(boolean enabled) {
+        SharedPreferences.Editor editor = prefs.edit();
+        editor.putBoolean(SPECULATIVE, enabled);
+        editor.apply();
+    }
+    
+    // How long the text selection menu waits for the API before settling for the local correction;
+    // 0 while speculative correction is off, so it waits for the API as long as it takes
+    public long getLatencyBudgetMillis() {
+        return isSpeculativeEnabled()
+                ? prefs.getLong(LATENCY_BUDGET_MILLIS, TextCorrectionService.DEFAULT_LATENCY_BUDGET_MILLIS) : 0;
+    }
+    
+    public void setLatencyBudgetMillis(long millis) {
+        SharedPreferences.Editor editor = prefs.edit();
+        editor.putLong(LATENCY_BUDGET_MILLIS, millis);
+        editor.apply();
+    }
+    
+    // Texts longer than this many chars are corrected locally and streamed to a file
+    public int getLargeInputThreshold() {
+        return prefs.getInt(LARGE_INPUT_CHARS, TextCorrectionService.DEFAULT_LARGE_INPUT_CHARS);
+    }
+    
+    public void setLargeInputThreshold(int chars) {
+        SharedPreferences.Editor editor = prefs.edit();
+        editor.putInt(LARGE_INPUT_CHARS, chars);
+        editor.apply();
+    }
+    
+    // Self-hosted OpenAI-compatible servers, used next to OpenAI or instead of it.
+    // The first call may wait for the preferences file and the keystore, like getApiKey
+    public List<CorrectionBackend> getCustomBackends() {
+        List<CorrectionBackend> backends = customBackends;
+        if (backends != null) {
+            return backends;
+        }
+        synchronized (this) {
+            if (customBackends == null) {
+                customBackends = loadBackends();
+            }
+            return customBackends;
+        }
+    }
+    
+    // The backends if they have already been read, otherwise null; never touches the disk
+    public List<CorrectionBackend> getCachedCustomBackends() {
+        return customBackends;
+    }
+    
+    // Headers are sealed apart from the rest; when the keystore fails they last only until the app is closed
+    public synchronized void saveCustomBackends(List<CorrectionBackend> backends) {
+        customBackends = Collections.unmodifiableList(new ArrayList<>(backends));
+        try {
+            backendHeaderStore.set(headersOf(backends).toString());
+        } catch (GeneralSecurityException e) {
+            Log.e(TAG, "Cannot encrypt the backend headers, keeping them only until the app is closed", e);
+        }
+        writeBackends(backends);
+    }
+    
+    // Everything but the headers
+    private void writeBackends(List<CorrectionBackend> backends) {
+        JSONArray array = new JSONArray();
+        try {
+            for (CorrectionBackend backend : backends) {
+                JSONObject object = new JSONObject();
+                object.put("name", backend.getName());
+                object.put("url", backend.getUrl());
+                object.put("model", backend.getModel());
+                object.put("max_concurrent_requests", backend.getMaxConcurrentRequests());
+                array.put(object);
+            }
+        } catch (JSONException e) {
+            throw new IllegalArgumentException("Cannot store backends", e);
+        }
+        SharedPreferences.Editor editor = prefs.edit();
+        editor.putString(CUSTOM_BACKENDS, array.toString());
+        editor.apply();
+    }
+    
+    // Whether corrections can go anywhere but the local fallback
+    public boolean hasBackend() {
+        return hasApiKey() || !getCustomBackends().isEmpty();
+    }
+    
+    // False also while the key or the backends have not been read yet; never touches the disk or the keystore
+    public boolean hasCachedBackend() {
+        List<CorrectionBackend> backends = getCachedCustomBackends();
+        return hasCachedApiKey() || (backends != null && !backends.isEmpty());
+    }
+    
+    // Versions before encryption kept the headers in the backend list as they are; they are sealed
+    // and the list stored again without them. When the keystore fails, the plaintext stays for the
+    // next start to try again
+    private List<CorrectionBackend> loadBackends() {
+        String json = prefs.getString(CUSTOM_BACKENDS, "[]");
+        if (json.contains("\"headers\":")) {
+            List<CorrectionBackend> backends = parseBackends(json, null);
+            try {
+                backendHeaderStore.set(headersOf(backends).toString());
+                writeBackends(backends);
+            } catch (GeneralSecurityException e) {
+                Log.e(TAG, "Cannot encrypt the stored backend headers, leaving them as they are", e);
+            }
+            return backends;
+        }
+        String headers = backendHeaderStore.get();
+        return parseBackends(json, headers.isEmpty() ? "[]" : headers);
+    }
+    
+    private static JSONArray headersOf(List<CorrectionBackend> backends) {
+        JSONArray headers = new JSONArray();
+        for (CorrectionBackend backend : backends) {
+            headers.put(new JSONObject(backend.getHeaders()));
+        }
+        return headers;
+    }
+    
+    // headersJson holds one object per backend, in order; null when the headers are in the list itself
+    private static List<CorrectionBackend> parseBackends(String json, String headersJson) {
+        List<CorrectionBackend> backends = new ArrayList<>();
+        try {
+            JSONArray array = new JSONArray(json);
+            JSONArray sealedHeaders = headersJson != null ? new JSONArray(headersJson) : null;
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject object = array.getJSONObject(i);
+                Map<String, String> headers = new LinkedHashMap<>();
+                // A keystore that can no longer open the headers leaves the backends without them
+                JSONObject headerObject = sealedHeaders != null
+                        ? sealedHeaders.optJSONObject(i) : object.optJSONObject("headers");
+                if (headerObject != null) {
+                    Iterator<String> names = headerObject.keys();
+                    while (names.hasNext()) {
+                        String name = names.next();
+                        headers.put(name, headerObject.getString(name));
+                    }
+                }
+                backends.add(new CorrectionBackend(object.getString("name"), object.getString("url"),
+                        object.getString("model"), headers, object.optInt("max_concurrent_requests",
+                        CorrectionBackend.DEFAULT_MAX_CONCURRENT_REQUESTS)));
+            }
+        } catch (JSONException | IllegalArgumentException e) {
+            Log.e(TAG, "Ignoring unreadable backend settings", e);
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(backends);
+    }
+}
@@ -2,96 +2,223 @@ package com.example.app;
 
 import android.app.Activity;
 import android.content.Intent;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Trace;
 import android.util.Log;
+import android.widget.Toast;
+import java.io.File;
+import java.io.IOException;
 
 public class ProcessTextActivity extends Activity {
 
     private static final String TAG = "ProcessTextActivity";
-    private PreferencesManager preferencesManager;
-    private TextCorrectionService correctionService;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private CorrectionScheduler.RequestHandle pendingRequest;
+    // Made once the latency budget has run out; pendingRequest then only fills the cache
+    private CorrectionScheduler.RequestHandle localRequest;
+    // Set while the API still has time left in the latency budget
+    private Runnable budgetTimeout;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        // Taken first, so the dispatch latency in the metrics covers the whole activity start
+        long receivedNanos = System.nanoTime();
         super.onCreate(savedInstanceState);
+        Trace.beginSection("ProcessTextActivity.dispatch");
+        try {
+            // The request goes out before anything else; the service and its HTTP client are already
+            // set up by the application and the API key is read from memory
+            handleIntent(getIntent(), receivedNanos);
+        } catch (Throwable t) {
+            Log.e(TAG, "Unexpected error in onCreate", t);
+            safeFinishWithOriginal();
+        } finally {
+            Trace.endSection();
+        }
         // Disable transition animations to avoid visual flashes
         overridePendingTransition(0, 0);
-        try {
-            Log.d(TAG, "ProcessTextActivity started");
+    }
 
-            // Initialize preferences and services using the same classes as MainActivity
-            preferencesManager = new PreferencesManager(this);
-            correctionService = new TextCorrectionService(preferencesManager);
+    private void handleIntent(Intent intent, long receivedNanos) {
+        if (intent == null) {
+            Log.e(TAG, "Intent is null");
+            setResult(Activity.RESULT_CANCELED);
+            finish();
+            return;
+        }
 
-            Intent intent = getIntent();
-            if (intent == null) {
-                Log.e(TAG, "Intent is null");
-                setResult(Activity.RESULT_CANCELED);
-                finish();
-                return;
-            }
+        String action = intent.getAction();
+        if (!Intent.ACTION_PROCESS_TEXT.equals(action)) {
+            Log.e(TAG, "Wrong action: " + action);
+            setResult(Activity.RESULT_CANCELED);
+            finish();
+            return;
+        }
 
-            String action = intent.getAction();
-            Log.d(TAG, "Intent action: " + action);
+        CharSequence inputText = intent.getCharSequenceExtra(Intent.EXTRA_PROCESS_TEXT);
+        boolean readonly = intent.getBooleanExtra(Intent.EXTRA_PROCESS_TEXT_READONLY, false);
 
-            if (!Intent.ACTION_PROCESS_TEXT.equals(action)) {
-                Log.e(TAG, "Wrong action: " + action);
-                setResult(Activity.RESULT_CANCELED);
-                finish();
-                return;
-            }
+        // If empty input, just return immediately
+        if (inputText == null || inputText.length() == 0) {
+            Log.w(TAG, "Empty input, returning without changes");
+            deliverResult("");
+            return;
+        }
 
-            CharSequence inputText = intent.getCharSequenceExtra(Intent.EXTRA_PROCESS_TEXT);
-            boolean readonly = intent.getBooleanExtra(Intent.EXTRA_PROCESS_TEXT_READONLY, false);
-            String input = inputText != null ? inputText.toString() : "";
+        // If source is read-only, open our main UI with the text instead of replacing
+        if (readonly) {
+            Log.i(TAG, "Source is read-only; launching MainActivity to display text");
+            Intent viewer = new Intent(this, MainActivity.class);
+            viewer.setAction(Intent.ACTION_PROCESS_TEXT);
+            viewer.putExtra(Intent.EXTRA_PROCESS_TEXT, inputText);
+            viewer.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
+            startActivity(viewer);
+            setResult(Activity.RESULT_CANCELED);
+            finish();
+            return;
+        }
 
-            Log.d(TAG, "Input text length: " + input.length());
-            Log.d(TAG, "Readonly mode: " + readonly);
-            Log.d(TAG, "Has API key: " + preferencesManager.hasApiKey());
+        // Correct the text using the same service as MainActivity
+        TextCorrectionService correctionService = TextPolisherApplication.from(this).getCorrectionService();
+        if (correctionService.isLargeInput(inputText)) {
+            correctLargeText(correctionService, inputText);
+            return;
+        }
+        // No copy for the usual String extra
+        String input = inputText.toString();
+        pendingRequest = correctionService.correctText(input, receivedNanos,
+                new TextCorrectionService.CorrectionCallback() {
+                    @Override
+                    public void onSuccess(String correctedText) {
+                        if (isFinishing()) {
+                            // The local correction went back already; the answer is cached for next time
+                            Log.d(TAG, "API answer arrived after the latency budget");
+                            return;
+                        }
+                        if (stopBudgetTimeout()) {
+                            correctionService.getMetrics().onSpeculation(true);
+                        }
+                        Log.d(TAG, "Text correction successful, output length: " + correctedText.length());
+                        deliverResult(correctedText);
+                    }
 
-            // If empty input, just return immediately
-            if (input.isEmpty()) {
-                Log.w(TAG, "Empty input, returning without changes");
-                deliverResult(input);
-                return;
-            }
+                    @Override
+                    public void onError(String error) {
+                        if (isFinishing()) {
+                            return;
+                        }
+                        stopBudgetTimeout();
+                        Log.w(TAG, "Text correction failed: " + error);
+                        // On error, return the original text
+                        deliverResult(input);
+                    }
+                });
+        Log.d(TAG, "Request dispatched, input length: " + input.length());
 
-            // If source is read-only, open our main UI with the text instead of replacing
-            if (readonly) {
-                Log.i(TAG, "Source is read-only; launching MainActivity to display text");
-                Intent viewer = new Intent(this, MainActivity.class);
-                viewer.setAction(Intent.ACTION_PROCESS_TEXT);
-                viewer.putExtra(Intent.EXTRA_PROCESS_TEXT, input);
-                viewer.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
-                startActivity(viewer);
-                setResult(Activity.RESULT_CANCELED);
-                finish();
-                return;
-            }
+        // Cache hits have already been delivered; without a backend the worker's local correction
+        // usually comes before the budget runs out
+        long budgetMillis = correctionService.getLatencyBudgetMillis();
+        if (budgetMillis > 0 && !isFinishing()) {
+            budgetTimeout = () -> onBudgetExpired(correctionService, input);
+            handler.postDelayed(budgetTimeout, budgetMillis);
+        }
+    }
 
-            // Correct the text using the same service as MainActivity
-            correctionService.correctText(input, new TextCorrectionService.CorrectionCallback() {
-                @Override
-                public void onSuccess(String correctedText) {
-                    Log.d(TAG, "Text correction successful, output length: " + correctedText.length());
+    // The API missed the budget: the local correction goes back as soon as a worker has made it, and the
+    // request is left to finish rather than cancelled, so its answer is in the cache the next time the same
+    // text comes in. Should the answer still beat the local correction, it is the one returned; otherwise
+    // the request lets go of this activity once the local correction is delivered
+    private void onBudgetExpired(TextCorrectionService correctionService, String input) {
+        budgetTimeout = null;
+        correctionService.getMetrics().onSpeculation(false);
+        Log.d(TAG, "Latency budget exceeded, returning the local correction");
+        localRequest = correctionService.correctTextLocally(input, new TextCorrectionService.CorrectionCallback() {
+            @Override
+            public void onSuccess(String correctedText) {
+                if (!isFinishing()) {
+                    pendingRequest.release();
                     deliverResult(correctedText);
                 }
+            }
 
-                @Override
-                public void onError(String error) {
-                    Log.w(TAG, "Text correction failed: " + error);
-                    // On error, return the original text
+            @Override
+            public void onError(String error) {
+                if (!isFinishing()) {
+                    pendingRequest.release();
                     deliverResult(input);
                 }
-            });
+            }
+        });
+    }
 
-        } catch (Throwable t) {
-            Log.e(TAG, "Unexpected error in onCreate", t);
-            safeFinishWithOriginal();
+    // Whether the budget was still running
+    private boolean stopBudgetTimeout() {
+        if (budgetTimeout == null) {
+            return false;
+        }
+        handler.removeCallbacks(budgetTimeout);
+        budgetTimeout = null;
+        return true;
+    }
+
+    // The extra is never copied: it is streamed from the intent straight into the result file, which is
+    // created off the main thread
+    private void correctLargeText(TextCorrectionService correctionService, CharSequence input) {
+        SpilledText.newFile(this, new SpilledText.FileCallback() {
+            @Override
+            public void onFile(File output) {
+                if (isFinishing()) {
+                    return;
+                }
+                pendingRequest = correctionService.correctLargeText(input, output,
+                        new TextCorrectionService.LargeTextCallback() {
+                            @Override
+                            public void onSuccess(File corrected, boolean aiCorrected) {
+                                SpilledText.publish(ProcessTextActivity.this, corrected,
+                                        spilledDelivery(aiCorrected ? "" : " " + MainActivity.LOCAL_ONLY_NOTE));
+                            }
+
+                            @Override
+                            public void onError(String error) {
+                                Log.w(TAG, "Large text correction failed: " + error);
+                                // Leave the original text in place
+                                setResult(Activity.RESULT_CANCELED);
+                                finish();
+                            }
+                        });
+                Log.d(TAG, "Large request dispatched, input length: " + input.length());
+            }
+
+            @Override
+            public void onError(IOException e) {
+                Log.e(TAG, "No room for the corrected text", e);
+                safeFinishWithOriginal();
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        stopBudgetTimeout();
+        // noHistory finishes us as soon as the user leaves; stop the request if it is still running,
+        // unless it runs on past the budget for the cache
+        if (localRequest != null) {
+            localRequest.cancel();
+            pendingRequest.release();
+        } else if (pendingRequest != null) {
+            pendingRequest.cancel();
         }
     }
 
     private void deliverResult(String output) {
+        if (!SpilledText.fitsInExtra(output)) {
+            SpilledText.write(this, output, spilledDelivery(""));
+            return;
+        }
         try {
             Intent result = new Intent();
             result.putExtra(Intent.EXTRA_PROCESS_TEXT, output);
@@ -104,6 +231,34 @@ public class ProcessTextActivity extends Activity {
         }
     }
 
+    // Too large to travel back in the result: the source keeps its text and the corrected one is shared instead
+    // note is appended to the message the user sees
+    private SpilledText.UriCallback spilledDelivery(String note) {
+        return new SpilledText.UriCallback() {
+            @Override
+            public void onUri(Uri corrected, long bytes) {
+                try {
+                    Log.d(TAG, "Result spilled to " + corrected + ", " + bytes + " bytes");
+                    startActivity(SpilledText.shareIntent(corrected));
+                    Toast.makeText(getApplicationContext(),
+                            "Tekst jest za długi, by go podmienić — zapisz lub udostępnij poprawiony plik" + note,
+                            Toast.LENGTH_LONG).show();
+                    setResult(Activity.RESULT_CANCELED);
+                    finish();
+                } catch (Throwable t) {
+                    Log.e(TAG, "Error sharing the spilled result", t);
+                    safeFinishWithOriginal();
+                }
+            }
+
+            @Override
+            public void onError(IOException e) {
+                Log.e(TAG, "Could not spill the result", e);
+                safeFinishWithOriginal();
+            }
+        };
+    }
+
     private void safeFinishWithOriginal() {
         try {
             Intent intent = getIntent();
@@ -0,0 +1,138 @@
+package com.example.app;
+
+import android.content.ClipData;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import androidx.core.content.FileProvider;
+import com.example.app.core.CharBufferPool;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Texts too large for an Intent extra, kept in the cache directory and handed to other apps as
+ * FileProvider URIs. A Binder transaction is limited to about 1 MB for the whole process, and a
+ * String extra takes two bytes per char. The file work runs on a background thread of its own;
+ * callers on the main thread get back only the file or its URI.
+ */
+final class SpilledText {
+    private static final String TAG = "SpilledText";
+    // Leaves room for the rest of the transaction; longer texts are spilled
+    static final int MAX_EXTRA_CHARS = 100 * 1024;
+    // Matches the cache-path in res/xml/file_paths.xml
+    private static final String DIRECTORY = "large-texts";
+    // Long enough for the app the text was shared with to read it
+    private static final long MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final CharBufferPool BUFFERS = new CharBufferPool(CharBufferPool.DEFAULT_BUFFER_CHARS, 1);
+    private static final Executor EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "spilled-text");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Called on the main thread
+    interface FileCallback {
+        void onFile(File file);
+        void onError(IOException e);
+    }
+
+    // Called on the main thread; bytes is the size of the file behind the URI
+    interface UriCallback {
+        void onUri(Uri uri, long bytes);
+        void onError(IOException e);
+    }
+
+    private SpilledText() {
+    }
+
+    static boolean fitsInExtra(CharSequence text) {
+        return text.length() <= MAX_EXTRA_CHARS;
+    }
+
+    // A new file for one text, for a writer that runs off the main thread
+    static void newFile(Context context, FileCallback callback) {
+        Context app = context.getApplicationContext();
+        Handler main = new Handler(Looper.getMainLooper());
+        EXECUTOR.execute(() -> {
+            try {
+                File file = newFile(app);
+                main.post(() -> callback.onFile(file));
+            } catch (IOException e) {
+                main.post(() -> callback.onError(e));
+            }
+        });
+    }
+
+    // Writes the text to a new file; the caller must not change the text until the callback runs
+    static void write(Context context, CharSequence text, UriCallback callback) {
+        Context app = context.getApplicationContext();
+        Handler main = new Handler(Looper.getMainLooper());
+        EXECUTOR.execute(() -> {
+            try {
+                File file = newFile(app);
+                try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+                    BUFFERS.write(text, 0, text.length(), out);
+                }
+                publish(app, file, main, callback);
+            } catch (IOException e) {
+                main.post(() -> callback.onError(e));
+            }
+        });
+    }
+
+    // The URI another app reads a written file through; resolving it touches the disk
+    static void publish(Context context, File file, UriCallback callback) {
+        Context app = context.getApplicationContext();
+        Handler main = new Handler(Looper.getMainLooper());
+        EXECUTOR.execute(() -> publish(app, file, main, callback));
+    }
+
+    private static void publish(Context context, File file, Handler main, UriCallback callback) {
+        try {
+            Uri uri = FileProvider.getUriForFile(context, context.getPackageName() + ".fileprovider", file);
+            long bytes = file.length();
+            main.post(() -> callback.onUri(uri, bytes));
+        } catch (IllegalArgumentException e) {
+            main.post(() -> callback.onError(new IOException("Cannot share " + file.getName(), e)));
+        }
+    }
+
+    // Spilled texts older than a day are deleted on the way
+    private static File newFile(Context context) throws IOException {
+        File directory = new File(context.getCacheDir(), DIRECTORY);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        File[] old = directory.listFiles();
+        long cutoff = System.currentTimeMillis() - MAX_AGE_MILLIS;
+        if (old != null) {
+            for (File file : old) {
+                if (file.lastModified() < cutoff && !file.delete()) {
+                    Log.w(TAG, "Could not delete " + file.getName());
+                }
+            }
+        }
+        return File.createTempFile("corrected-", ".txt", directory);
+    }
+
+    // Lets the user send the text on to any app that takes a text file
+    static Intent shareIntent(Uri uri) {
+        Intent share = new Intent(Intent.ACTION_SEND);
+        share.setType("text/plain");
+        share.putExtra(Intent.EXTRA_STREAM, uri);
+        // The grant follows the ClipData through the chooser to the app picked
+        share.setClipData(ClipData.newRawUri(null, uri));
+        share.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        return Intent.createChooser(share, "Poprawiony tekst");
+    }
+}
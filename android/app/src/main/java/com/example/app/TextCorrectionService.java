@@ -1,186 +1,603 @@
 package com.example.app;
 
-import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
-import okhttp3.*;
-import org.json.JSONArray;
-import org.json.JSONObject;
+import com.example.app.CorrectionScheduler.RequestHandle;
+import com.example.app.core.BackendRouter;
+import com.example.app.core.CharBufferPool;
+import com.example.app.core.ChatCompletionClient;
+import com.example.app.core.ChunkedCorrectionPipeline;
+import com.example.app.core.CircuitBreaker;
+import com.example.app.core.CompletionStreamReader;
+import com.example.app.core.CorrectionBackend;
+import com.example.app.core.CorrectionBatcher;
+import com.example.app.core.CorrectionCache;
+import com.example.app.core.CorrectionMetrics;
+import com.example.app.core.CorrectionPrompt;
+import com.example.app.core.IncrementalCorrection;
+import com.example.app.core.LocalCorrector;
+import com.example.app.core.OfflineCorrector;
+import com.example.app.core.ResilientCompletionClient;
+import com.example.app.core.RetryPolicy;
+import com.example.app.core.TextChunker;
+import com.example.app.core.TokenEstimator;
+import com.example.app.core.TruncatedResponseException;
+import okhttp3.OkHttpClient;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TextCorrectionService {
     private static final String TAG = "TextCorrectionService";
-    private static final String API_URL = "https://api.openai.com/v1/chat/completions";
+    static final int MAX_CHUNK_TOKENS = 600;
+    static final int MAX_PARALLEL_CHUNKS = 4;
+    // Each attempt already retries inside the resilient client
+    static final int MAX_CHUNK_ATTEMPTS = 1;
+    static final int MAX_API_ATTEMPTS = 3;
+    static final long RETRY_BASE_DELAY_MILLIS = 500;
+    // Also the longest Retry-After we wait out; beyond it the local fallback is the better answer
+    static final long RETRY_MAX_DELAY_MILLIS = 8_000;
+    static final int BREAKER_FAILURE_THRESHOLD = 5;
+    static final long BREAKER_OPEN_MILLIS = 30_000;
+    static final int MAX_CONCURRENT_REQUESTS = 4;
+    static final int MAX_QUEUED_REQUESTS = 16;
+    static final int INCREMENTAL_CONTEXT_SENTENCES = 1;
+    // Only texts this short are batched, and a batch holds at most MAX_BATCH_TOKENS so its reply fits MAX_TOKENS
+    static final int MAX_BATCH_ITEM_TOKENS = 150;
+    static final int MAX_BATCH_TOKENS = 800;
+    static final int MAX_BATCH_SIZE = 8;
+    static final long BATCH_WINDOW_MILLIS = 20;
+    // Longer texts are corrected a window at a time and streamed to a file, never held whole more than once
+    static final int DEFAULT_LARGE_INPUT_CHARS = 256 * 1024;
+    // How much of a large text is split into chunks and sent at a time; bounds the copies in memory
+    static final int LARGE_INPUT_WINDOW_CHARS = 64 * 1024;
+    // Enough for a short text from a warm connection; slower answers still land in the cache for next time
+    static final long DEFAULT_LATENCY_BUDGET_MILLIS = 1_500;
     
-    private final OkHttpClient client;
     private final PreferencesManager preferencesManager;
+    private final CorrectionCache cache;
+    private final String openAiUrl;
+    private final BackendRouter router;
+    private final ResilientCompletionClient completionClient;
+    private final OfflineCorrectionQueue offlineQueue;
+    private final CorrectionHistoryStore history;
+    private final CorrectionMetrics metrics = new CorrectionMetrics();
+    private final CorrectionScheduler scheduler;
+    private final CorrectionBatcher batcher;
+    private final ChunkedCorrectionPipeline chunkedPipeline =
+            new ChunkedCorrectionPipeline(MAX_PARALLEL_CHUNKS, MAX_CHUNK_ATTEMPTS);
+    private final CharBufferPool bufferPool =
+            new CharBufferPool(CharBufferPool.DEFAULT_BUFFER_CHARS, MAX_CONCURRENT_REQUESTS);
+    private volatile int largeInputThreshold = DEFAULT_LARGE_INPUT_CHARS;
+    private volatile long latencyBudgetMillis;
+    private volatile OfflineCorrector offlineCorrector = OfflineCorrector.BASIC;
+    
+    /**
+     * One caller's last text corrected by the API and its result, so the same caller's re-edited text
+     * can be corrected incrementally. Each screen keeps its own, so corrections made elsewhere in the
+     * meantime cannot take its base away.
+     */
+    public static final class IncrementalSession {
+        private volatile LastCorrection last;
+    }
+    
+    private static final class LastCorrection {
+        final String input;
+        final String output;
+        
+        LastCorrection(String input, String output) {
+            this.input = input;
+            this.output = output;
+        }
+    }
     
     public interface CorrectionCallback {
         void onSuccess(String correctedText);
         void onError(String error);
+        
+        // Called on the main thread with each chunk of text as it streams in
+        default void onPartial(CharSequence delta) {
+        }
     }
     
-    public TextCorrectionService(PreferencesManager preferencesManager) {
+    public interface LargeTextCallback {
+        // The corrected text, in UTF-8; aiCorrected is false when some or all of it was corrected only locally
+        void onSuccess(File corrected, boolean aiCorrected);
+        void onError(String error);
+    }
+    
+    public TextCorrectionService(PreferencesManager preferencesManager, OkHttpClient client, CorrectionCache cache,
+                                 OfflineCorrectionQueue offlineQueue, CorrectionHistoryStore history) {
+        this(preferencesManager, client, cache, offlineQueue, history, ChatCompletionClient.API_URL,
+                new Handler(Looper.getMainLooper())::post);
+    }
+    
+    TextCorrectionService(PreferencesManager preferencesManager, OkHttpClient client, CorrectionCache cache,
+                          OfflineCorrectionQueue offlineQueue, CorrectionHistoryStore history, String openAiUrl,
+                          Executor callbackExecutor) {
         this.preferencesManager = preferencesManager;
-        this.client = new OkHttpClient.Builder()
-                .connectTimeout(10, TimeUnit.SECONDS)
-                .writeTimeout(10, TimeUnit.SECONDS)
-                .readTimeout(30, TimeUnit.SECONDS)
-                .build();
+        this.cache = cache;
+        this.offlineQueue = offlineQueue;
+        this.history = history;
+        this.openAiUrl = openAiUrl;
+        // Backends come from the settings at request time; routing state survives as long as they do not change
+        this.router = new BackendRouter(client, new ArrayList<>(), BREAKER_FAILURE_THRESHOLD, BREAKER_OPEN_MILLIS,
+                metrics);
+        this.completionClient = new ResilientCompletionClient(router,
+                new RetryPolicy(MAX_API_ATTEMPTS, RETRY_BASE_DELAY_MILLIS, RETRY_MAX_DELAY_MILLIS),
+                new CircuitBreaker(BREAKER_FAILURE_THRESHOLD, BREAKER_OPEN_MILLIS), metrics);
+        this.scheduler = new CorrectionScheduler(MAX_CONCURRENT_REQUESTS, MAX_QUEUED_REQUESTS, callbackExecutor,
+                metrics);
+        this.batcher = new CorrectionBatcher(MAX_BATCH_SIZE, BATCH_WINDOW_MILLIS, MAX_BATCH_TOKENS,
+                MAX_CONCURRENT_REQUESTS,
+                (input, observer) -> completionClient.complete(input, null, observer,
+                        preferencesManager.isHedgingEnabled()),
+                metrics);
+    }
+    
+    // Latency, traffic, error and cache figures since process start; add a listener to export them
+    public CorrectionMetrics getMetrics() {
+        return metrics;
+    }
+    
+    // Round-trip estimate, breaker state and load of each backend, for the debug screen
+    public String getBackendStatus() {
+        return router.toString();
     }
     
-    public void correctText(String inputText, CorrectionCallback callback) {
+    // Texts longer than this many chars go through correctLargeText
+    public void setLargeInputThreshold(int chars) {
+        largeInputThreshold = chars;
+    }
+    
+    public boolean isLargeInput(CharSequence inputText) {
+        return inputText.length() > largeInputThreshold;
+    }
+    
+    // How long a caller that has the local correction to fall back on waits for the API; 0 waits for the API
+    public void setLatencyBudget(long millis) {
+        latencyBudgetMillis = millis;
+    }
+    
+    public long getLatencyBudgetMillis() {
+        return latencyBudgetMillis;
+    }
+    
+    // Replaces the basic normalization once the dictionaries are mapped
+    public void setOfflineCorrector(OfflineCorrector corrector) {
+        offlineCorrector = corrector;
+    }
+    
+    // Corrects a text too large to hold more than once, streamed into output: by the API one window of
+    // chunks at a time, or without a backend locally through a pooled buffer. The caller must not change
+    // the text until the callback runs
+    public RequestHandle correctLargeText(CharSequence inputText, File output, LargeTextCallback callback) {
+        AtomicBoolean aiCorrected = new AtomicBoolean();
+        CorrectionCallback delivery = new CorrectionCallback() {
+            @Override
+            public void onSuccess(String path) {
+                callback.onSuccess(new File(path), aiCorrected.get());
+            }
+            
+            @Override
+            public void onError(String error) {
+                callback.onError(error);
+            }
+        };
+        return scheduler.submit("large:" + output.getAbsolutePath(), delivery, System.nanoTime(), inFlight -> {
+            List<CorrectionBackend> backends = loadBackends();
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8)) {
+                if (backends.isEmpty()) {
+                    long written = LocalCorrector.correct(inputText, out, bufferPool);
+                    Log.d(TAG, "Large text corrected locally, " + written + " chars written to " + output.getName());
+                } else {
+                    aiCorrected.set(correctLargeWithApi(backends, inputText, out, inFlight));
+                }
+                return output.getAbsolutePath();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                output.delete();
+                return null;
+            } catch (IOException e) {
+                output.delete();
+                if (inFlight.isCancelled()) {
+                    return null;
+                }
+                // Reported to the callback as an unexpected error
+                throw new IllegalStateException("Nie udało się zapisać poprawionego tekstu", e);
+            }
+        });
+    }
+    
+    // Each window is cut at a line or word boundary, copied once and corrected chunk by chunk in parallel,
+    // then written out before the next is read. Whether the API corrected every chunk
+    private boolean correctLargeWithApi(List<CorrectionBackend> backends, CharSequence input, Writer out,
+                                        CorrectionScheduler.InFlight inFlight)
+            throws IOException, InterruptedException {
+        router.setBackends(backends);
+        boolean hedge = preferencesManager.isHedgingEnabled();
+        AtomicInteger localChunks = new AtomicInteger();
+        // Surrounding whitespace is dropped, as from every other result
+        int start = 0;
+        int end = input.length();
+        while (start < end && Character.isWhitespace(input.charAt(start))) start++;
+        while (end > start && Character.isWhitespace(input.charAt(end - 1))) end--;
+        int windows = 0;
+        while (start < end) {
+            if (inFlight.isCancelled()) {
+                throw new InterruptedException("Cancelled");
+            }
+            int windowEnd = windowEnd(input, start, end);
+            TextChunker.Split split = TextChunker.split(input.subSequence(start, windowEnd).toString(),
+                    MAX_CHUNK_TOKENS);
+            out.write(chunkedPipeline.correct(split,
+                    chunk -> completeChunk(chunk, inFlight, hedge),
+                    chunk -> {
+                        localChunks.incrementAndGet();
+                        metrics.onFallback(CorrectionMetrics.Cause.CHUNK);
+                        return correctTextLocally(chunk);
+                    },
+                    null));
+            start = windowEnd;
+            windows++;
+        }
+        Log.d(TAG, "Large text corrected in " + windows + " windows, " + localChunks.get() + " chunks locally");
+        return localChunks.get() == 0;
+    }
+    
+    // The end of the window from start: after the last line break in its second half, or else the last
+    // whitespace, together with the whitespace that follows so the next window starts on a word
+    private static int windowEnd(CharSequence input, int start, int end) {
+        int limit = start + LARGE_INPUT_WINDOW_CHARS;
+        if (limit >= end) {
+            return end;
+        }
+        int cut = -1;
+        for (int i = limit - 1; i > start + LARGE_INPUT_WINDOW_CHARS / 2 && cut < 0; i--) {
+            if (input.charAt(i) == '\n') {
+                cut = i;
+            }
+        }
+        for (int i = limit - 1; i > start && cut < 0; i--) {
+            if (Character.isWhitespace(input.charAt(i))) {
+                cut = i;
+            }
+        }
+        if (cut < 0) {
+            // One "word" longer than the window; cut it without splitting a surrogate pair
+            return Character.isHighSurrogate(input.charAt(limit - 1)) ? limit - 1 : limit;
+        }
+        while (cut < end && Character.isWhitespace(input.charAt(cut))) cut++;
+        return cut;
+    }
+    
+    public RequestHandle correctText(String inputText, CorrectionCallback callback) {
+        return correctText(inputText, System.nanoTime(), false, null, callback);
+    }
+    
+    // receivedNanos is the System.nanoTime() at which the text reached the app, for the dispatch latency
+    public RequestHandle correctText(String inputText, long receivedNanos, CorrectionCallback callback) {
+        return correctText(inputText, receivedNanos, false, null, callback);
+    }
+    
+    // Sends only what changed since the session's last correction when that is worth it
+    public RequestHandle correctText(String inputText, IncrementalSession session, CorrectionCallback callback) {
+        return correctText(inputText, System.nanoTime(), false, session, callback);
+    }
+    
+    // Streams the correction, delivering text to onPartial before the final onSuccess
+    public RequestHandle correctTextStreaming(String inputText, IncrementalSession session,
+                                              CorrectionCallback callback) {
+        return correctText(inputText, System.nanoTime(), true, session, callback);
+    }
+    
+    // session is null for callers that correct unrelated texts
+    private RequestHandle correctText(String inputText, long receivedNanos, boolean stream,
+                                      IncrementalSession session, CorrectionCallback callback) {
         if (inputText == null || inputText.trim().isEmpty()) {
             callback.onError("Tekst nie może być pusty");
-            return;
+            return RequestHandle.completed();
         }
         
-        String apiKey = preferencesManager.getApiKey();
-        if (apiKey == null || apiKey.trim().isEmpty() || "YOUR_OPENAI_API_KEY_HERE".equals(apiKey)) {
-            Log.w(TAG, "API key not configured, using local fallback");
-            String localResult = correctTextLocally(inputText);
-            callback.onSuccess(localResult);
-            return;
+        // Null while the preferences are still loading after a cold start; the worker then waits for them.
+        // Without any backend the worker corrects locally
+        List<CorrectionBackend> backends = cachedBackends();
+        
+        // Identical requests are answered from memory without touching the network. Before the
+        // settings load the memory cache is still empty, so only the worker looks it up
+        String cacheKey = backends != null ? cacheKey(backends, inputText) : null;
+        String cached = cacheKey != null ? cache.getFromMemory(cacheKey) : null;
+        if (cached != null) {
+            Log.d(TAG, "Cache hit, output length: " + cached.length());
+            metrics.onCacheOutcome(CorrectionMetrics.CacheOutcome.MEMORY_HIT);
+            remember(session, inputText, cached);
+            callback.onSuccess(cached);
+            return RequestHandle.completed();
         }
         
-        // Use OpenAI API
-        new OpenAITask(apiKey, callback, inputText).execute(inputText);
+        // Use the API; identical requests already running are joined instead of repeated
+        String requestKey = (stream ? "stream:" : "plain:")
+                + (cacheKey != null ? cacheKey : cacheKey(Collections.emptyList(), inputText));
+        return scheduler.submit(requestKey, callback, receivedNanos, inFlight -> {
+            List<CorrectionBackend> resolved = backends != null ? backends : loadBackends();
+            if (resolved.isEmpty()) {
+                return correctWithoutBackend(inputText);
+            }
+            return correctWithApi(resolved, inputText, cacheKey(resolved, inputText), stream, session, inFlight);
+        });
     }
     
-    private String correctTextLocally(String input) {
-        if (input == null) return "";
-        String s = input;
-        
-        // Normalize whitespace
-        s = s.replaceAll("\r\n", "\n");
-        s = s.replaceAll("\t", " ");
-        s = s.replaceAll("\\s+", " ").trim();
-        
-        // Fix spaces before punctuation
-        s = s.replaceAll(" \\.", ".");
-        s = s.replaceAll(" ,", ",");
-        s = s.replaceAll(" ;", ";");
-        s = s.replaceAll(" !", "!");
-        s = s.replaceAll(" \\?", "?");
-        
-        // Capitalize first letter
-        if (!s.isEmpty()) {
-            char first = s.charAt(0);
-            char upper = Character.toUpperCase(first);
-            if (first != upper) {
-                s = upper + (s.length() > 1 ? s.substring(1) : "");
+    private String correctWithoutBackend(String inputText) {
+        Log.w(TAG, "API key not configured, using local fallback");
+        metrics.onFallback(CorrectionMetrics.Cause.NO_API_KEY);
+        return correctTextLocally(inputText);
+    }
+    
+    // Corrects a journaled request during the offline queue's replay; an IOException leaves it queued
+    String correctDeferred(String input) throws IOException, InterruptedException {
+        List<CorrectionBackend> backends = loadBackends();
+        if (backends.isEmpty()) {
+            throw new IOException("API key not configured");
+        }
+        router.setBackends(backends);
+        String result;
+        long startNanos = System.nanoTime();
+        try {
+            result = requestCorrection(input, null, ChatCompletionClient.CallObserver.NONE);
+        } catch (ChatCompletionClient.ApiException e) {
+            if (e.isRetryable()) {
+                throw e;
             }
+            // The API will never accept this one; settle for the local correction instead of retrying forever
+            Log.w(TAG, "Deferred request rejected: " + e.getMessage() + ", using fallback");
+            metrics.onFallback(CorrectionMetrics.Cause.HTTP);
+            return correctTextLocally(input);
         }
-        
-        // Ensure ending punctuation
-        if (!s.isEmpty() && !s.matches(".*[\\.!\\?]$")) {
-            s = s + ".";
+        cache.put(cacheKey(backends, input), result);
+        // Timed from the replay, since the time spent queued says nothing about the backend
+        history.record(input, result, models(backends), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        return result;
+    }
+    
+    // Self-hosted servers first, so they are measured before OpenAI when nothing is known yet
+    private List<CorrectionBackend> backends(String apiKey, List<CorrectionBackend> customBackends) {
+        List<CorrectionBackend> backends = new ArrayList<>(customBackends);
+        if (isUsableApiKey(apiKey)) {
+            backends.add(CorrectionBackend.openAi(openAiUrl, apiKey));
         }
-        
-        return s;
+        return backends;
+    }
+    
+    // Null until the preferences have been read
+    private List<CorrectionBackend> cachedBackends() {
+        String apiKey = preferencesManager.getCachedApiKey();
+        List<CorrectionBackend> customBackends = preferencesManager.getCachedCustomBackends();
+        return apiKey != null && customBackends != null ? backends(apiKey, customBackends) : null;
+    }
+    
+    // May wait for the preferences file, so only on a worker
+    private List<CorrectionBackend> loadBackends() {
+        return backends(preferencesManager.getApiKey(), preferencesManager.getCustomBackends());
+    }
+    
+    private static boolean isUsableApiKey(String apiKey) {
+        return apiKey != null && !apiKey.trim().isEmpty() && !"YOUR_OPENAI_API_KEY_HERE".equals(apiKey);
+    }
+    
+    // Any of the backends may answer, so the key covers all of their models
+    private static String cacheKey(List<CorrectionBackend> backends, String input) {
+        return CorrectionCache.key(models(backends),
+                CorrectionPrompt.forInput(input).getText(), ChatCompletionClient.TEMPERATURE, input);
+    }
+    
+    private static String models(List<CorrectionBackend> backends) {
+        StringBuilder models = new StringBuilder();
+        for (CorrectionBackend backend : backends) {
+            if (models.length() > 0) {
+                models.append(',');
+            }
+            models.append(backend.getModel());
+        }
+        return models.toString();
     }
     
-    private class OpenAITask extends AsyncTask<String, Void, String> {
-        private final String apiKey;
-        private final CorrectionCallback callback;
-        private final String inputText;
-        private String errorMessage;
+    // Looks every word up in the dictionaries, which takes a long text tens of milliseconds:
+    // call it on a worker, or through the overload that runs it on one
+    public String correctTextLocally(String input) {
+        return offlineCorrector.correct(input);
+    }
+    
+    // The local correction made on a scheduler worker and delivered through the callback executor
+    public RequestHandle correctTextLocally(String inputText, CorrectionCallback callback) {
+        String requestKey = "local:" + cacheKey(Collections.emptyList(), inputText);
+        return scheduler.submit(requestKey, callback, System.nanoTime(), inFlight -> correctTextLocally(inputText));
+    }
+    
+    // Runs on a scheduler worker: disk cache, then the API (chunked for long input), then the local fallback
+    private String correctWithApi(List<CorrectionBackend> backends, String input, String cacheKey, boolean stream,
+                                  IncrementalSession session, CorrectionScheduler.InFlight inFlight) {
+        String cached = cache.getFromDisk(cacheKey);
+        if (cached != null) {
+            metrics.onCacheOutcome(CorrectionMetrics.CacheOutcome.DISK_HIT);
+            remember(session, input, cached);
+            return cached;
+        }
+        metrics.onCacheOutcome(CorrectionMetrics.CacheOutcome.MISS);
+        router.setBackends(backends);
+        
+        if (isCorrectLaterEnabled() && !offlineQueue.isOnline()) {
+            Log.d(TAG, "Offline, queueing for later");
+            metrics.onFallback(CorrectionMetrics.Cause.OFFLINE);
+            offlineQueue.enqueue(input);
+            return correctTextLocally(input);
+        }
         
-        public OpenAITask(String apiKey, CorrectionCallback callback, String inputText) {
-            this.apiKey = apiKey;
-            this.callback = callback;
-            this.inputText = inputText;
+        IncrementalCorrection plan = planIncremental(session, input);
+        if (plan == null && !stream && isBatchable(input)) {
+            // The worker is free again as soon as the text is queued; the batch finishes the request
+            correctInBatch(backends, input, cacheKey, session, inFlight);
+            return null;
         }
         
-        @Override
-        protected String doInBackground(String... params) {
-            String input = params[0];
+        CompletionStreamReader.DeltaListener listener = stream ? inFlight::publishPartial : null;
+        IOException failure;
+        try {
+            String result = plan != null
+                    ? correctIncrementally(plan, inFlight)
+                    : requestCorrection(input, listener, inFlight);
+            return onCorrected(backends, input, cacheKey, result, session, inFlight);
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = new IOException("Interrupted", e);
+        }
+        return onFailed(input, failure, inFlight);
+    }
+    
+    private boolean isBatchable(String input) {
+        return preferencesManager.isBatchingEnabled() && TokenEstimator.estimate(input) <= MAX_BATCH_ITEM_TOKENS;
+    }
+    
+    private void correctInBatch(List<CorrectionBackend> backends, String input, String cacheKey,
+                                IncrementalSession session, CorrectionScheduler.InFlight inFlight) {
+        CorrectionBatcher.Item item = batcher.submit(input, new CorrectionBatcher.ItemCallback() {
+            @Override
+            public void onResult(String corrected) {
+                inFlight.complete(onCorrected(backends, input, cacheKey, corrected, session, inFlight));
+            }
             
-            try {
-                JSONObject requestBody = new JSONObject();
-                requestBody.put("model", "gpt-4o-mini");
-                requestBody.put("max_tokens", 2000);
-                requestBody.put("temperature", 0.3);
-                
-                JSONArray messages = new JSONArray();
-                JSONObject systemMessage = new JSONObject();
-                systemMessage.put("role", "system");
-                String systemContent =
-                        "You are a proofreader and will correct my typos in the text. You will only return the corrected text, nothing else.\n" +
-                        "Task and objective:\n" +
-                        "* Correcting typos, spelling, punctuation, and grammatical errors in the text provided by the user.\n" +
-                        "* Return only the corrected version of the text, without any additional comments, explanations, or questions.\n" +
-                        "Behavior and rules:\n" +
-                        "1) Receiving the text:\n" +
-                        "a) Wait for the text from the user that needs proofreading.\n" +
-                        "b) Do not initiate a conversation or ask questions.\n" +
-                        "2) Correction and return:\n" +
-                        "a) Carefully correct the text for typos, spelling, grammar, and punctuation.\n" +
-                        "b) Return the entire text after correction.\n" +
-                        "c) Make sure that the reply contains only the corrected text. Do not add any \"Please,\" \"Here is the corrected text,\" or similar phrases.\n" +
-                        "3) Tone and style:\n" +
-                        "a) Be neutral and impersonal.\n" +
-                        "b) Your \"personality\" is to be a quiet but effective tool for proofreading text.\n" +
-                        "Text to be corrected:";
-                systemMessage.put("content", systemContent);
-                
-                JSONObject userMessage = new JSONObject();
-                userMessage.put("role", "user");
-                userMessage.put("content", input);
-                
-                messages.put(systemMessage);
-                messages.put(userMessage);
-                requestBody.put("messages", messages);
-                
-                RequestBody body = RequestBody.create(
-                        requestBody.toString(),
-                        MediaType.get("application/json; charset=utf-8")
-                );
-                
-                Request request = new Request.Builder()
-                        .url(API_URL)
-                        .post(body)
-                        .addHeader("Authorization", "Bearer " + apiKey)
-                        .addHeader("Content-Type", "application/json")
-                        .build();
-                
-                Response response = client.newCall(request).execute();
-                
-                if (!response.isSuccessful()) {
-                    errorMessage = "API error: " + response.code();
-                    return null;
-                }
-                
-                String responseBody = response.body().string();
-                JSONObject jsonResponse = new JSONObject(responseBody);
-                
-                JSONArray choices = jsonResponse.getJSONArray("choices");
-                if (choices.length() > 0) {
-                    JSONObject choice = choices.getJSONObject(0);
-                    JSONObject message = choice.getJSONObject("message");
-                    return message.getString("content").trim();
-                }
-                
-                errorMessage = "No response from API";
-                return null;
-                
-            } catch (Exception e) {
-                Log.e(TAG, "OpenAI API call failed", e);
-                errorMessage = "Network error: " + e.getMessage();
-                return null;
+            @Override
+            public void onFailure(IOException failure) {
+                inFlight.complete(onFailed(input, failure, inFlight));
+            }
+            
+            @Override
+            public void onSent() {
+                inFlight.onSent();
             }
+        });
+        inFlight.detach(item::cancel);
+    }
+    
+    private String onCorrected(List<CorrectionBackend> backends, String input, String cacheKey, String result,
+                               IncrementalSession session, CorrectionScheduler.InFlight inFlight) {
+        Log.d(TAG, "OpenAI success, output length: " + result.length());
+        cache.put(cacheKey, result);
+        history.record(input, result, models(backends),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inFlight.getReceivedNanos()));
+        remember(session, input, result);
+        return result;
+    }
+    
+    // The local correction, or null when the request was cancelled and nobody wants one
+    private String onFailed(String input, IOException failure, CorrectionScheduler.InFlight inFlight) {
+        if (inFlight.isCancelled()) {
+            Log.d(TAG, "Request cancelled");
+            return null;
         }
-        
-        @Override
-        protected void onPostExecute(String result) {
-            if (result != null) {
-                Log.d(TAG, "OpenAI success, output length: " + result.length());
-                callback.onSuccess(result);
-            } else {
-                Log.w(TAG, "OpenAI failed: " + errorMessage + ", using fallback");
-                String localResult = correctTextLocally(inputText);
-                callback.onSuccess(localResult);
+        Log.w(TAG, "OpenAI failed: " + failure.getMessage() + ", using fallback");
+        metrics.onFallback(CorrectionMetrics.causeOf(failure));
+        if (isCorrectLaterEnabled() && isWorthRetrying(failure)) {
+            offlineQueue.enqueue(input);
+        }
+        return correctTextLocally(input);
+    }
+    
+    private static void remember(IncrementalSession session, String input, String output) {
+        if (session != null) {
+            session.last = new LastCorrection(input, output);
+        }
+    }
+    
+    private IncrementalCorrection planIncremental(IncrementalSession session, String input) {
+        LastCorrection last = session != null ? session.last : null;
+        if (last == null) {
+            return null;
+        }
+        IncrementalCorrection plan = IncrementalCorrection.plan(last.input, last.output, input,
+                INCREMENTAL_CONTEXT_SENTENCES);
+        if (plan != null) {
+            Log.d(TAG, "Incremental correction, sending " + plan.getRequestedLength() + " of " + input.length() + " chars");
+        }
+        return plan;
+    }
+    
+    // Corrects only the changed regions and splices them into the previous result
+    private String correctIncrementally(IncrementalCorrection plan, CorrectionScheduler.InFlight inFlight)
+            throws IOException, InterruptedException {
+        List<String> corrections = new ArrayList<>();
+        for (String request : plan.getRequests()) {
+            corrections.add(requestCorrection(request, null, inFlight));
+        }
+        return plan.splice(corrections);
+    }
+    
+    // Long documents are corrected chunk by chunk in parallel
+    private String requestCorrection(String input, CompletionStreamReader.DeltaListener listener,
+                                     ChatCompletionClient.CallObserver observer)
+            throws IOException, InterruptedException {
+        boolean hedge = preferencesManager.isHedgingEnabled();
+        TextChunker.Split split = TextChunker.split(input, MAX_CHUNK_TOKENS);
+        if (split.size() > 1) {
+            return correctChunks(split, listener, observer, hedge);
+        }
+        try {
+            return completionClient.complete(input, listener, observer, hedge);
+        } catch (TruncatedResponseException e) {
+            // The estimate fell short for this text; its halves get a reply budget each. A stream has
+            // already shown part of the reply, so it falls back instead
+            TextChunker.Split halves = TextChunker.split(input, Math.max(1, TokenEstimator.estimate(input) / 2));
+            if (listener != null || halves.size() < 2) {
+                throw e;
             }
+            Log.w(TAG, e.getMessage() + ", correcting the text in " + halves.size() + " parts");
+            return correctChunks(halves, null, observer, hedge);
+        }
+    }
+    
+    private String correctChunks(TextChunker.Split split, CompletionStreamReader.DeltaListener listener,
+                                 ChatCompletionClient.CallObserver observer, boolean hedge)
+            throws InterruptedException {
+        Log.d(TAG, "Correcting " + split.size() + " chunks in parallel");
+        return chunkedPipeline.correct(split,
+                chunk -> completeChunk(chunk, observer, hedge),
+                chunk -> {
+                    metrics.onFallback(CorrectionMetrics.Cause.CHUNK);
+                    return correctTextLocally(chunk);
+                },
+                listener).trim();
+    }
+    
+    private String completeChunk(String chunk, ChatCompletionClient.CallObserver observer, boolean hedge)
+            throws IOException {
+        try {
+            return completionClient.complete(chunk, null, observer, hedge);
+        } catch (InterruptedException e) {
+            // The pipeline sees the interrupt when it cancels the chunk
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
         }
     }
-}
\ No newline at end of file
+    
+    private boolean isCorrectLaterEnabled() {
+        return offlineQueue != null && offlineQueue.isEnabled();
+    }
+    
+    // Network failures and server-side errors, but not requests the API rejected outright
+    private static boolean isWorthRetrying(IOException failure) {
+        return !(failure instanceof ChatCompletionClient.ApiException)
+                || ((ChatCompletionClient.ApiException) failure).isRetryable();
+    }
+}
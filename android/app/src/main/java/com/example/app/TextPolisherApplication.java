@@ -0,0 +1,120 @@
+package com.example.app;
+
+import android.app.Application;
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.os.Trace;
+import android.util.Log;
+import com.example.app.core.ChatCompletionClient;
+import com.example.app.core.CompactDictionary;
+import com.example.app.core.CorrectionBackend;
+import com.example.app.core.CorrectionCache;
+import com.example.app.core.HttpClientProvider;
+import com.example.app.core.OfflineCorrector;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TextPolisherApplication extends Application {
+    private static final String TAG = "TextPolisherApplication";
+
+    private PreferencesManager preferencesManager;
+    private HttpClientProvider httpClientProvider;
+    private CorrectionCache correctionCache;
+    private OfflineCorrectionQueue offlineQueue;
+    private CorrectionHistoryStore historyStore;
+    private TextCorrectionService correctionService;
+
+    public static TextPolisherApplication from(Context context) {
+        return (TextPolisherApplication) context.getApplicationContext();
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        Trace.beginSection("TextPolisherApplication.onCreate");
+        try {
+            // Kept cheap, since a PROCESS_TEXT launch waits for it; file reads go to startInBackground
+            preferencesManager = new PreferencesManager(this);
+            httpClientProvider = new HttpClientProvider();
+            correctionCache = new CorrectionCache(new File(getCacheDir(), "corrections"));
+            // Kept with the app's files rather than its cache, since queued requests must not be evicted
+            offlineQueue = new OfflineCorrectionQueue(new File(getFilesDir(), "correction-journal"),
+                    preferencesManager);
+            historyStore = new CorrectionHistoryStore(new File(getFilesDir(), "correction-history"));
+            // One service for the whole process, so its worker pool and request deduplication are shared
+            correctionService = new TextCorrectionService(preferencesManager, httpClientProvider.getClient(),
+                    correctionCache, offlineQueue, historyStore);
+            new Thread(this::startInBackground, "app-startup").start();
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    private void startInBackground() {
+        // Loads the preferences file, decrypts the API key and keeps it and the backends in memory for
+        // the first request, then warms up the connections to them while the first activity is still starting
+        preferencesManager.getApiKey();
+        preferencesManager.getCustomBackends();
+        correctionService.setLargeInputThreshold(preferencesManager.getLargeInputThreshold());
+        correctionService.setLatencyBudget(preferencesManager.getLatencyBudgetMillis());
+        warmUpConnection();
+        offlineQueue.start(this, correctionService::correctDeferred);
+        correctionService.setOfflineCorrector(new OfflineCorrector(mapDictionary("pl"), mapDictionary("en")));
+    }
+
+    // Mapped where it lies in the APK, so only the pages a lookup touches are ever read
+    private CompactDictionary mapDictionary(String language) {
+        try (AssetFileDescriptor asset = getAssets().openFd("dictionaries/" + language + ".dict");
+             FileInputStream in = asset.createInputStream()) {
+            return CompactDictionary.wrap(in.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                    asset.getStartOffset(), asset.getLength()));
+        } catch (IOException e) {
+            Log.w(TAG, "No " + language + " dictionary, correcting offline without it", e);
+            return null;
+        }
+    }
+
+    public PreferencesManager getPreferencesManager() {
+        return preferencesManager;
+    }
+
+    public HttpClientProvider getHttpClientProvider() {
+        return httpClientProvider;
+    }
+
+    public CorrectionCache getCorrectionCache() {
+        return correctionCache;
+    }
+
+    public OfflineCorrectionQueue getOfflineQueue() {
+        return offlineQueue;
+    }
+
+    public CorrectionHistoryStore getHistoryStore() {
+        return historyStore;
+    }
+
+    public TextCorrectionService getCorrectionService() {
+        return correctionService;
+    }
+
+    // Every backend a request may go to; does nothing until the preferences have been read
+    public void warmUpConnection() {
+        List<CorrectionBackend> customBackends = preferencesManager.getCachedCustomBackends();
+        if (customBackends == null) {
+            return;
+        }
+        List<String> urls = new ArrayList<>();
+        for (CorrectionBackend backend : customBackends) {
+            urls.add(backend.getUrl());
+        }
+        if (preferencesManager.hasCachedApiKey()) {
+            urls.add(ChatCompletionClient.API_URL);
+        }
+        httpClientProvider.preconnect(urls);
+    }
+}
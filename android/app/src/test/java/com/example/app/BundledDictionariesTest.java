@@ -0,0 +1,52 @@
+package com.example.app;
+
+import static org.junit.Assert.*;
+
+import com.example.app.core.CompactDictionary;
+import com.example.app.core.DictionaryBuilder;
+import com.example.app.core.OfflineCorrector;
+import java.io.File;
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+// The word lists the app ships, compiled as compileDictionaries does
+public class BundledDictionariesTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CompactDictionary polish;
+    private CompactDictionary english;
+    private OfflineCorrector corrector;
+
+    @Before
+    public void setUp() throws IOException {
+        File output = folder.newFolder("dictionaries");
+        // Unit tests run in the module directory
+        DictionaryBuilder.main(new String[] {new File("src/main/dictionaries").getPath(), output.getPath()});
+        polish = CompactDictionary.map(new File(output, "pl.dict"));
+        english = CompactDictionary.map(new File(output, "en.dict"));
+        corrector = new OfflineCorrector(polish, english);
+    }
+
+    @Test
+    public void theStarterListsAreNotMarkedComplete() {
+        assertFalse(polish.isComplete());
+        assertFalse(english.isComplete());
+    }
+
+    @Test
+    public void restoresPolishLettersTypedWithoutDiacritics() {
+        assertEquals("Nie wiem czy przyjdę jutro, proszę.", corrector.correct("nie wiem czy przyjde jutro, prosze"));
+    }
+
+    @Test
+    public void leavesCorrectWordsTheListsLackAlone() {
+        assertEquals("We will meet at the park, the cat and the dog.",
+                corrector.correct("we will meet at the park, the cat and the dog."));
+        assertEquals("Nie mam dużo pracy w nowym domu.", corrector.correct("nie mam dużo pracy w nowym domu"));
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.app;
+
+import android.content.SharedPreferences;
+import com.example.app.core.AesGcmVault;
+import com.example.app.core.KeyVault;
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// SharedPreferences backed by a map, for constructing PreferencesManager in JVM tests
+class InMemorySharedPreferences implements SharedPreferences {
+    // Stands in for the keystore: one key for the whole test run, so every manager opens what another sealed
+    private static final KeyVault VAULT = generateVault();
+
+    private final Map<String, Object> values = new HashMap<>();
+
+    static PreferencesManager preferencesWithApiKey(String apiKey) {
+        PreferencesManager preferences = preferences(new InMemorySharedPreferences());
+        preferences.saveApiKey(apiKey);
+        // Read up front, as the application does at startup, so requests take the warm path
+        preferences.getCustomBackends();
+        return preferences;
+    }
+
+    static PreferencesManager preferences(SharedPreferences stored) {
+        return new PreferencesManager(stored, VAULT);
+    }
+
+    private static KeyVault generateVault() {
+        try {
+            return AesGcmVault.generate();
+        } catch (GeneralSecurityException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Override
+    public synchronized Map<String, ?> getAll() {
+        return new HashMap<>(values);
+    }
+
+    @Override
+    public synchronized String getString(String key, String defValue) {
+        return values.containsKey(key) ? (String) values.get(key) : defValue;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public synchronized Set<String> getStringSet(String key, Set<String> defValues) {
+        return values.containsKey(key) ? (Set<String>) values.get(key) : defValues;
+    }
+
+    @Override
+    public synchronized int getInt(String key, int defValue) {
+        return values.containsKey(key) ? (Integer) values.get(key) : defValue;
+    }
+
+    @Override
+    public synchronized long getLong(String key, long defValue) {
+        return values.containsKey(key) ? (Long) values.get(key) : defValue;
+    }
+
+    @Override
+    public synchronized float getFloat(String key, float defValue) {
+        return values.containsKey(key) ? (Float) values.get(key) : defValue;
+    }
+
+    @Override
+    public synchronized boolean getBoolean(String key, boolean defValue) {
+        return values.containsKey(key) ? (Boolean) values.get(key) : defValue;
+    }
+
+    @Override
+    public synchronized boolean contains(String key) {
+        return values.containsKey(key);
+    }
+
+    @Override
+    public Editor edit() {
+        return new InMemoryEditor();
+    }
+
+    @Override
+    public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+    }
+
+    @Override
+    public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+    }
+
+    private class InMemoryEditor implements Editor {
+        private final Map<String, Object> pending = new HashMap<>();
+        private final Set<String> removed = new HashSet<>();
+        private boolean clear;
+
+        @Override
+        public Editor putString(String key, String value) {
+            pending.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putStringSet(String key, Set<String> values) {
+            pending.put(key, values);
+            return this;
+        }
+
+        @Override
+        public Editor putInt(String key, int value) {
+            pending.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putLong(String key, long value) {
+            pending.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putFloat(String key, float value) {
+            pending.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putBoolean(String key, boolean value) {
+            pending.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor remove(String key) {
+            removed.add(key);
+            return this;
+        }
+
+        @Override
+        public Editor clear() {
+            clear = true;
+            return this;
+        }
+
+        @Override
+        public boolean commit() {
+            synchronized (InMemorySharedPreferences.this) {
+                if (clear) {
+                    values.clear();
+                }
+                for (String key : removed) {
+                    values.remove(key);
+                }
+                values.putAll(pending);
+            }
+            return true;
+        }
+
+        @Override
+        public void apply() {
+            commit();
+        }
+    }
+}
@@ -0,0 +1,721 @@
+package com.example.app;
+
+import static org.junit.Assert.*;
+
+import com.example.app.core.ChatCompletionClient;
+import com.example.app.core.CorrectionBackend;
+import com.example.app.core.CorrectionCache;
+import com.example.app.core.CorrectionHistory;
+import com.example.app.core.CorrectionJournal;
+import com.example.app.core.CorrectionMetrics;
+import com.example.app.core.CorrectionPrompt;
+import com.example.app.core.HttpClientProvider;
+import com.example.app.core.LocalCorrector;
+import com.example.app.core.TokenEstimator;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TextCorrectionServiceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private OkHttpClient client;
+    private CorrectionCache cache;
+    private PreferencesManager preferences;
+    private File journalFile;
+    private OfflineCorrectionQueue offlineQueue;
+    private CorrectionHistoryStore history;
+    private TextCorrectionService service;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        client = new OkHttpClient();
+        cache = new CorrectionCache(folder.newFolder());
+        preferences = InMemorySharedPreferences.preferencesWithApiKey("sk-test");
+        journalFile = new File(folder.getRoot(), "journal");
+        offlineQueue = new OfflineCorrectionQueue(journalFile, preferences, Runnable::run);
+        history = new CorrectionHistoryStore(new File(folder.getRoot(), "history"), Runnable::run, Runnable::run);
+        service = new TextCorrectionService(preferences, client, cache, offlineQueue, history,
+                server.url("/v1/chat/completions").toString(), Runnable::run);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    static MockResponse completion(String content) {
+        return new MockResponse().setBody(
+                "{\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":\"" + content + "\"}}]}");
+    }
+
+    // One failure per attempt, so the request really fails; Retry-After keeps the retries instant.
+    // Not for 503, which OkHttp itself retries once when it carries Retry-After: 0
+    private void enqueueFailures(int code) {
+        for (int i = 0; i < TextCorrectionService.MAX_API_ATTEMPTS; i++) {
+            server.enqueue(new MockResponse().setResponseCode(code).setHeader("Retry-After", "0"));
+        }
+    }
+
+    @Test
+    public void cacheHitNeverTouchesTheNetwork() {
+        String input = "ala ma kota";
+        cache.put(CorrectionCache.key(ChatCompletionClient.MODEL, CorrectionPrompt.COMPACT.getText(),
+                ChatCompletionClient.TEMPERATURE, input), "Ala ma kota.");
+        RecordingCallback callback = new RecordingCallback();
+
+        service.correctText(input, callback);
+
+        assertEquals("Ala ma kota.", callback.result.get());
+        assertEquals(0, server.getRequestCount());
+        assertEquals(1, cache.getMemoryHits());
+    }
+
+    @Test
+    public void apiCorrectionIsRecordedAndFoundInTheHistory() throws Exception {
+        server.enqueue(completion("Żółw idzie powoli."));
+        RecordingCallback callback = new RecordingCallback();
+
+        service.correctText("zolw idzie powoli", callback);
+        assertTrue(callback.await());
+        // Answered from the cache, so not recorded again
+        service.correctText("zolw idzie powoli", new RecordingCallback());
+        service.correctText("", new RecordingCallback());
+
+        AtomicReference<List<CorrectionHistory.Entry>> found = new AtomicReference<>();
+        history.search("żółw", found::set);
+        assertEquals(1, found.get().size());
+        CorrectionHistory.Entry entry = found.get().get(0);
+        assertEquals("zolw idzie powoli", entry.getInput());
+        assertEquals("Żółw idzie powoli.", entry.getOutput());
+        assertEquals(ChatCompletionClient.MODEL, entry.getModel());
+        assertTrue(entry.getLatencyMillis() >= 0);
+        history.search("pies", found::set);
+        assertTrue(found.get().isEmpty());
+    }
+
+    @Test
+    public void concurrentRequestsOverlap() throws Exception {
+        CountDownLatch bothArrived = new CountDownLatch(2);
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                bothArrived.countDown();
+                bothArrived.await(5, TimeUnit.SECONDS);
+                active.decrementAndGet();
+                return completion("Poprawione.");
+            }
+        });
+        RecordingCallback first = new RecordingCallback();
+        RecordingCallback second = new RecordingCallback();
+
+        service.correctText("pierwszy tekst", first);
+        service.correctText("drugi tekst", second);
+
+        assertTrue(first.await());
+        assertTrue(second.await());
+        assertEquals(2, maxActive.get());
+        assertEquals("Poprawione.", first.result.get());
+        assertEquals("Poprawione.", second.result.get());
+    }
+
+    @Test
+    public void identicalConcurrentRequestsShareOneCall() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                release.await(5, TimeUnit.SECONDS);
+                return completion("Ten sam tekst.");
+            }
+        });
+        RecordingCallback first = new RecordingCallback();
+        RecordingCallback second = new RecordingCallback();
+
+        service.correctText("ten sam tekst", first);
+        service.correctText("ten sam tekst", second);
+        release.countDown();
+
+        assertTrue(first.await());
+        assertTrue(second.await());
+        assertEquals("Ten sam tekst.", second.result.get());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void cancelledRequestReleasesItsConnectionAndSkipsCallbacks() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                release.await(5, TimeUnit.SECONDS);
+                return completion("Za późno.");
+            }
+        });
+        RecordingCallback callback = new RecordingCallback();
+
+        CorrectionScheduler.RequestHandle handle = service.correctText("anulowany tekst", callback);
+        assertNotNull(server.takeRequest(5, TimeUnit.SECONDS));
+        assertEquals(1, client.dispatcher().runningCallsCount());
+
+        handle.cancel();
+
+        assertTrue(waitUntil(() -> client.dispatcher().runningCallsCount() == 0));
+        assertTrue(waitUntil(() -> client.connectionPool().connectionCount() == 0));
+        release.countDown();
+        assertFalse(callback.await(300));
+        assertNull(callback.result.get());
+        assertNull(callback.error.get());
+    }
+
+    @Test
+    public void releasedRequestRunsOnForTheCacheWithoutItsCallback() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                release.await(5, TimeUnit.SECONDS);
+                return completion("Do cache.");
+            }
+        });
+        RecordingCallback callback = new RecordingCallback();
+
+        CorrectionScheduler.RequestHandle handle = service.correctText("tekst po budżecie", callback);
+        assertNotNull(server.takeRequest(5, TimeUnit.SECONDS));
+        handle.release();
+        release.countDown();
+
+        assertFalse(callback.await(300));
+        assertNull(callback.result.get());
+        RecordingCallback again = new RecordingCallback();
+        service.correctText("tekst po budżecie", again);
+        assertTrue(again.await());
+        assertEquals("Do cache.", again.result.get());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void failedRequestIsJournaledAndCorrectedOnReplay() throws Exception {
+        preferences.setCorrectLaterEnabled(true);
+        offlineQueue.setCorrector(service::correctDeferred);
+        CountDownLatch queued = new CountDownLatch(1);
+        CountDownLatch corrected = new CountDownLatch(1);
+        AtomicReference<CorrectionJournal.Entry> replayed = new AtomicReference<>();
+        offlineQueue.addListener(new OfflineCorrectionQueue.Listener() {
+            @Override
+            public void onQueued(int pendingCount) {
+                queued.countDown();
+            }
+
+            @Override
+            public void onCorrected(CorrectionJournal.Entry entry) {
+                replayed.set(entry);
+                corrected.countDown();
+            }
+        });
+        enqueueFailures(502);
+        RecordingCallback callback = new RecordingCallback();
+
+        service.correctText("tekst  bez sieci", callback);
+
+        // The caller still gets the local correction straight away
+        assertTrue(callback.await());
+        assertEquals("Tekst bez sieci.", callback.result.get());
+        assertTrue(queued.await(5, TimeUnit.SECONDS));
+
+        server.enqueue(completion("Tekst bez sieci, poprawiony."));
+        offlineQueue.replay();
+
+        assertTrue(corrected.await(5, TimeUnit.SECONDS));
+        assertEquals("tekst  bez sieci", replayed.get().getText());
+        assertEquals("Tekst bez sieci, poprawiony.", replayed.get().getResult());
+
+        // A fresh process finds the result in the journal until it has been shown
+        AtomicReference<List<CorrectionJournal.Entry>> reloaded = new AtomicReference<>();
+        CountDownLatch loaded = new CountDownLatch(1);
+        new OfflineCorrectionQueue(journalFile, preferences, Runnable::run).loadCorrected(entries -> {
+            reloaded.set(entries);
+            loaded.countDown();
+        });
+        assertTrue(loaded.await(5, TimeUnit.SECONDS));
+        assertEquals(1, reloaded.get().size());
+        assertEquals("Tekst bez sieci, poprawiony.", reloaded.get().get(0).getResult());
+    }
+
+    @Test
+    public void apiKeyNotYetLoadedIsReadOnTheWorker() throws Exception {
+        InMemorySharedPreferences stored = new InMemorySharedPreferences();
+        stored.edit().putString("openai_api_key", "sk-stored").apply();
+        PreferencesManager coldPreferences = InMemorySharedPreferences.preferences(stored);
+        TextCorrectionService cold = new TextCorrectionService(coldPreferences, client, cache, offlineQueue,
+                history, server.url("/v1/chat/completions").toString(), Runnable::run);
+        server.enqueue(completion("Zimny start."));
+        RecordingCallback callback = new RecordingCallback();
+
+        long receivedNanos = System.nanoTime();
+        cold.correctText("zimny start", receivedNanos, callback);
+
+        assertTrue(callback.await());
+        assertEquals("Zimny start.", callback.result.get());
+        assertEquals("Bearer sk-stored", server.takeRequest().getHeader("Authorization"));
+        assertEquals("sk-stored", coldPreferences.getCachedApiKey());
+        assertEquals(1, cold.getMetrics().getLatency(CorrectionMetrics.Phase.DISPATCH).getCount());
+        // Left in plaintext by an earlier version, now sealed
+        assertFalse(stored.contains("openai_api_key"));
+        assertEquals("sk-stored", InMemorySharedPreferences.preferences(stored).getApiKey());
+    }
+
+    @Test
+    public void apiKeyIsStoredEncrypted() {
+        InMemorySharedPreferences stored = new InMemorySharedPreferences();
+        InMemorySharedPreferences.preferences(stored).saveApiKey("sk-secret");
+
+        for (Object value : stored.getAll().values()) {
+            assertFalse(String.valueOf(value).contains("sk-secret"));
+        }
+        PreferencesManager reopened = InMemorySharedPreferences.preferences(stored);
+        assertNull(reopened.getCachedApiKey());
+        assertFalse(reopened.hasCachedApiKey());
+        assertEquals("sk-secret", reopened.getApiKey());
+        assertTrue(reopened.hasCachedApiKey());
+
+        reopened.clearApiKey();
+        assertFalse(reopened.hasApiKey());
+        assertTrue(stored.getAll().isEmpty());
+    }
+
+    @Test
+    public void screenOpenedBeforeStartupWaitsForTheKeyOffItsThread() throws Exception {
+        InMemorySharedPreferences stored = new InMemorySharedPreferences();
+        InMemorySharedPreferences.preferences(stored).saveApiKey("sk-secret");
+        PreferencesManager cold = InMemorySharedPreferences.preferences(stored);
+        Thread caller = Thread.currentThread();
+        AtomicReference<Thread> loader = new AtomicReference<>();
+        CountDownLatch loaded = new CountDownLatch(1);
+
+        cold.whenLoaded(Runnable::run, () -> {
+            loader.set(Thread.currentThread());
+            loaded.countDown();
+        });
+
+        assertTrue(loaded.await(5, TimeUnit.SECONDS));
+        assertNotSame(caller, loader.get());
+        assertEquals("sk-secret", cold.getCachedApiKey());
+        // Once loaded, at once on the caller's thread
+        cold.whenLoaded(Runnable::run, () -> loader.set(Thread.currentThread()));
+        assertSame(caller, loader.get());
+    }
+
+    @Test
+    public void backendHeadersLeftInPlaintextAreSealed() {
+        InMemorySharedPreferences stored = new InMemorySharedPreferences();
+        stored.edit().putString("custom_backends", "[{\"name\":\"LAN\",\"url\":\"http://10.0.0.2/v1\","
+                + "\"model\":\"llama-3.1-8b\",\"headers\":{\"X-Api-Key\":\"lan-token\"}}]").apply();
+
+        List<CorrectionBackend> backends = InMemorySharedPreferences.preferences(stored).getCustomBackends();
+
+        assertEquals("lan-token", backends.get(0).getHeaders().get("X-Api-Key"));
+        for (Object value : stored.getAll().values()) {
+            assertFalse(String.valueOf(value).contains("lan-token"));
+        }
+        CorrectionBackend reopened = InMemorySharedPreferences.preferences(stored).getCustomBackends().get(0);
+        assertEquals("LAN", reopened.getName());
+        assertEquals("lan-token", reopened.getHeaders().get("X-Api-Key"));
+    }
+
+    @Test
+    public void localServerAnswersWithoutAnApiKey() throws Exception {
+        MockWebServer lan = new MockWebServer();
+        lan.start();
+        try {
+            InMemorySharedPreferences stored = new InMemorySharedPreferences();
+            CorrectionBackend backend = new CorrectionBackend("LAN", lan.url("/v1").toString(), "llama-3.1-8b",
+                    Collections.singletonMap("X-Api-Key", "lan-token"), 2);
+            InMemorySharedPreferences.preferences(stored).saveCustomBackends(Collections.singletonList(backend));
+            for (Object value : stored.getAll().values()) {
+                assertFalse(String.valueOf(value).contains("lan-token"));
+            }
+            // A fresh manager reads the backend back from storage
+            PreferencesManager lanPreferences = InMemorySharedPreferences.preferences(stored);
+            // Nothing in memory until the first read
+            assertFalse(lanPreferences.hasCachedBackend());
+            assertTrue(lanPreferences.hasBackend());
+            assertTrue(lanPreferences.hasCachedBackend());
+            TextCorrectionService local = new TextCorrectionService(lanPreferences, client, cache, offlineQueue,
+                    history, server.url("/v1/chat/completions").toString(), Runnable::run);
+            lan.enqueue(completion("Z serwera lokalnego."));
+            RecordingCallback callback = new RecordingCallback();
+
+            local.correctText("z serwera lokalnego", callback);
+
+            assertTrue(callback.await());
+            assertEquals("Z serwera lokalnego.", callback.result.get());
+            RecordedRequest request = lan.takeRequest();
+            assertEquals("/v1/chat/completions", request.getPath());
+            assertEquals("lan-token", request.getHeader("X-Api-Key"));
+            assertNull(request.getHeader("Authorization"));
+            assertTrue(request.getBody().readUtf8().contains("\"model\":\"llama-3.1-8b\""));
+            assertEquals(0, server.getRequestCount());
+        } finally {
+            lan.shutdown();
+        }
+    }
+
+    @Test
+    public void metricsTrackErrorsFallbacksAndUsage() throws Exception {
+        // The shared client's event listener is what fills in the phase timings
+        TextCorrectionService timed = new TextCorrectionService(preferences, new HttpClientProvider().getClient(),
+                cache, offlineQueue, history, server.url("/v1/chat/completions").toString(), Runnable::run);
+        enqueueFailures(500);
+        server.enqueue(new MockResponse().setBody("{\"choices\":[{\"message\":{\"content\":\"Drugi tekst.\"}}],"
+                + "\"usage\":{\"prompt_tokens\":300,\"completion_tokens\":4}}"));
+        RecordingCallback failed = new RecordingCallback();
+        RecordingCallback succeeded = new RecordingCallback();
+
+        timed.correctText("pierwszy tekst", failed);
+        assertTrue(failed.await());
+        timed.correctText("drugi tekst", succeeded);
+        assertTrue(succeeded.await());
+
+        CorrectionMetrics metrics = timed.getMetrics();
+        assertEquals(TextCorrectionService.MAX_API_ATTEMPTS, metrics.getErrorCount(500));
+        assertEquals(TextCorrectionService.MAX_API_ATTEMPTS - 1, metrics.getRetryCount(CorrectionMetrics.Cause.HTTP));
+        assertEquals(1, metrics.getFallbackCount(CorrectionMetrics.Cause.HTTP));
+        assertEquals(2, metrics.getCacheOutcomeCount(CorrectionMetrics.CacheOutcome.MISS));
+        assertEquals(300, metrics.getPromptTokens());
+        assertEquals(4, metrics.getCompletionTokens());
+        assertEquals(2, metrics.getLatency(CorrectionMetrics.Phase.QUEUE_WAIT).getCount());
+        assertEquals(TextCorrectionService.MAX_API_ATTEMPTS + 1, metrics.getLatency(CorrectionMetrics.Phase.TTFB).getCount());
+        assertEquals(1, metrics.getLatency(CorrectionMetrics.Phase.PARSE).getCount());
+        // Both texts are short, so they went with the compact prompt
+        assertEquals(TextCorrectionService.MAX_API_ATTEMPTS + 1, metrics.getPromptCount(CorrectionPrompt.COMPACT));
+        assertTrue(metrics.getBytesSent() > CorrectionPrompt.COMPACT.getText().length());
+    }
+
+    @Test
+    public void editedTextIsCorrectedIncrementally() throws Exception {
+        List<String> sent = new java.util.concurrent.CopyOnWriteArrayList<>();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                try {
+                    String text = new JSONObject(request.getBody().readUtf8())
+                            .getJSONArray("messages").getJSONObject(1).getString("content");
+                    sent.add(text);
+                    JSONObject message = new JSONObject().put("role", "assistant")
+                            .put("content", text.replace("teh", "the"));
+                    return new MockResponse().setBody(new JSONObject()
+                            .put("choices", new JSONArray().put(new JSONObject().put("message", message)))
+                            .toString());
+                } catch (org.json.JSONException e) {
+                    return new MockResponse().setResponseCode(400);
+                }
+            }
+        });
+        String original = "Pierwsze zdanie. Drugie zdanie. Trzecie zdanie. Czwarte zdanie. Piąte zdanie.";
+        String edited = "Pierwsze zdanie. Drugie zdanie. Trzecie teh zdanie. Czwarte zdanie. Piąte zdanie.";
+        TextCorrectionService.IncrementalSession session = new TextCorrectionService.IncrementalSession();
+        RecordingCallback first = new RecordingCallback();
+        service.correctText(original, session, first);
+        assertTrue(first.await());
+        // Another caller's correction in between leaves the session's base alone
+        RecordingCallback other = new RecordingCallback();
+        service.correctText("Zupełnie inny tekst.", other);
+        assertTrue(other.await());
+        RecordingCallback second = new RecordingCallback();
+
+        service.correctText(edited, session, second);
+
+        assertTrue(second.await());
+        assertEquals("Pierwsze zdanie. Drugie zdanie. Trzecie the zdanie. Czwarte zdanie. Piąte zdanie.",
+                second.result.get());
+        assertEquals(3, sent.size());
+        assertEquals("Drugie zdanie. Trzecie teh zdanie. Czwarte zdanie.", sent.get(2));
+    }
+
+    @Test
+    public void localCorrectionIsMadeOnAWorker() throws Exception {
+        Thread caller = Thread.currentThread();
+        AtomicReference<Thread> corrector = new AtomicReference<>();
+        RecordingCallback callback = new RecordingCallback() {
+            @Override
+            public void onSuccess(String correctedText) {
+                corrector.set(Thread.currentThread());
+                super.onSuccess(correctedText);
+            }
+        };
+
+        service.correctTextLocally("ala ma   kota", callback);
+
+        assertTrue(callback.await());
+        assertEquals(service.correctTextLocally("ala ma   kota"), callback.result.get());
+        assertNotSame(caller, corrector.get());
+        assertEquals(0, server.getRequestCount());
+    }
+
+    @Test
+    public void largeInputIsCorrectedByTheApiWindowByWindowIntoAFile() throws Exception {
+        List<String> sent = new java.util.concurrent.CopyOnWriteArrayList<>();
+        server.setDispatcher(echoing(sent, false));
+        StringBuilder input = new StringBuilder("\n  ");
+        for (int i = 0; input.length() < TextCorrectionService.LARGE_INPUT_WINDOW_CHARS * 5 / 2; i++) {
+            input.append("Zdanie numer ").append(i).append(" ma teh błąd.").append(i % 7 == 6 ? "\n\n" : " ");
+        }
+        service.setLargeInputThreshold(32 * 1024);
+        assertTrue(service.isLargeInput(input));
+        File output = folder.newFile("corrected.txt");
+        AtomicReference<Boolean> aiCorrected = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+
+        service.correctLargeText(input, output, new TextCorrectionService.LargeTextCallback() {
+            @Override
+            public void onSuccess(File file, boolean ai) {
+                aiCorrected.set(ai);
+                done.countDown();
+            }
+
+            @Override
+            public void onError(String error) {
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        assertEquals(Boolean.TRUE, aiCorrected.get());
+        assertEquals(input.toString().trim().replace("teh", "the"),
+                new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_8));
+        for (String chunk : sent) {
+            assertTrue(TokenEstimator.estimate(chunk) <= TextCorrectionService.MAX_CHUNK_TOKENS);
+        }
+    }
+
+    @Test
+    public void largeInputWithoutABackendIsCorrectedLocallyIntoAFile() throws Exception {
+        TextCorrectionService local = new TextCorrectionService(
+                InMemorySharedPreferences.preferences(new InMemorySharedPreferences()), client, cache, offlineQueue,
+                history, server.url("/v1/chat/completions").toString(), Runnable::run);
+        StringBuilder input = new StringBuilder();
+        while (input.length() < 64 * 1024) {
+            input.append("  ala ma   kota , a kot ma ale .\n");
+        }
+        local.setLargeInputThreshold(32 * 1024);
+        assertTrue(local.isLargeInput(input));
+        assertFalse(local.isLargeInput("ala ma kota"));
+        File output = folder.newFile("corrected.txt");
+        AtomicReference<Boolean> aiCorrected = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+
+        local.correctLargeText(input, output, new TextCorrectionService.LargeTextCallback() {
+            @Override
+            public void onSuccess(File file, boolean ai) {
+                aiCorrected.set(ai);
+                done.countDown();
+            }
+
+            @Override
+            public void onError(String error) {
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Boolean.FALSE, aiCorrected.get());
+        assertEquals(LocalCorrector.correct(input),
+                new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_8));
+        assertEquals(0, server.getRequestCount());
+    }
+
+    // Answers with the user message, "teh" corrected; a packed batch is answered with or without its instructions
+    private static Dispatcher echoing(List<String> sent, boolean echoBatchInstructions) {
+        return new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                try {
+                    String text = new JSONObject(request.getBody().readUtf8())
+                            .getJSONArray("messages").getJSONObject(1).getString("content");
+                    sent.add(text);
+                    int firstMarker = text.indexOf("\n<<<1>>>\n");
+                    String reply = firstMarker > 0 && !echoBatchInstructions ? text.substring(firstMarker + 1) : text;
+                    JSONObject message = new JSONObject().put("role", "assistant")
+                            .put("content", reply.replace("teh", "the"));
+                    return new MockResponse().setBody(new JSONObject()
+                            .put("choices", new JSONArray().put(new JSONObject().put("message", message)))
+                            .toString());
+                } catch (org.json.JSONException e) {
+                    return new MockResponse().setResponseCode(400);
+                }
+            }
+        };
+    }
+
+    private RecordingCallback[] correctAll(String... inputs) {
+        RecordingCallback[] callbacks = new RecordingCallback[inputs.length];
+        for (int i = 0; i < inputs.length; i++) {
+            callbacks[i] = new RecordingCallback();
+            service.correctText(inputs[i], callbacks[i]);
+        }
+        return callbacks;
+    }
+
+    @Test
+    public void shortTextsArrivingTogetherShareOneCall() throws Exception {
+        List<String> sent = new java.util.concurrent.CopyOnWriteArrayList<>();
+        server.setDispatcher(echoing(sent, false));
+        preferences.setBatchingEnabled(true);
+
+        RecordingCallback[] callbacks = correctAll("teh first", "teh second", "teh third");
+
+        for (int i = 0; i < callbacks.length; i++) {
+            assertTrue(callbacks[i].await());
+        }
+        assertEquals("the first", callbacks[0].result.get());
+        assertEquals("the second", callbacks[1].result.get());
+        assertEquals("the third", callbacks[2].result.get());
+        // Within one batch window all three normally travel together, but a slow worker may miss it
+        assertTrue(sent.size() < callbacks.length);
+        CorrectionMetrics metrics = service.getMetrics();
+        assertEquals(0, metrics.getUnsplitBatchCount());
+        assertEquals(3, metrics.getLatency(CorrectionMetrics.Phase.DISPATCH).getCount());
+        // Each text is cached on its own, as if it had been corrected alone
+        RecordingCallback again = new RecordingCallback();
+        service.correctText("teh second", again);
+        assertEquals("the second", again.result.get());
+    }
+
+    @Test
+    public void batchWhoseReplyCannotBeSplitIsSentAgainTextByText() throws Exception {
+        List<String> sent = new java.util.concurrent.CopyOnWriteArrayList<>();
+        server.setDispatcher(echoing(sent, true));
+        preferences.setBatchingEnabled(true);
+
+        RecordingCallback[] callbacks = correctAll("teh first", "teh second");
+
+        assertTrue(callbacks[0].await());
+        assertTrue(callbacks[1].await());
+        assertEquals("the first", callbacks[0].result.get());
+        assertEquals("the second", callbacks[1].result.get());
+        CorrectionMetrics metrics = service.getMetrics();
+        assertEquals(metrics.getBatchCount(), metrics.getUnsplitBatchCount());
+        // The batched call, if the texts met in one, and then one call per text
+        assertEquals(metrics.getBatchCount() + callbacks.length, sent.size());
+    }
+
+    @Test
+    public void answerPastTheLatencyBudgetIsReadyForTheNextRequest() throws Exception {
+        server.enqueue(completion("Ala ma kota.").setHeadersDelay(200, TimeUnit.MILLISECONDS));
+        assertEquals(0, preferences.getLatencyBudgetMillis());
+        preferences.setSpeculativeEnabled(true);
+        assertEquals(TextCorrectionService.DEFAULT_LATENCY_BUDGET_MILLIS, preferences.getLatencyBudgetMillis());
+        RecordingCallback late = new RecordingCallback();
+
+        // The caller settles for the local correction and leaves the request running
+        service.correctText("ala ma kota", late);
+        assertEquals(LocalCorrector.correct("ala ma kota"), service.correctTextLocally("ala ma kota"));
+        assertNull(late.result.get());
+        assertTrue(late.await());
+
+        RecordingCallback next = new RecordingCallback();
+        service.correctText("ala ma kota", next);
+        assertEquals("Ala ma kota.", next.result.get());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void replyCutOffAtMaxTokensIsRequestedAgainInParts() throws Exception {
+        String input = "teh first sentence is here. teh second one follows it.";
+        List<String> sent = new java.util.concurrent.CopyOnWriteArrayList<>();
+        Dispatcher echo = echoing(sent, false);
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                if (request.getBody().snapshot().utf8().contains(input)) {
+                    sent.add(input);
+                    return new MockResponse().setBody("{\"choices\":[{\"message\":{\"content\":\"The first\"},"
+                            + "\"finish_reason\":\"length\"}]}");
+                }
+                return echo.dispatch(request);
+            }
+        });
+        RecordingCallback callback = new RecordingCallback();
+
+        service.correctText(input, callback);
+
+        assertTrue(callback.await());
+        assertEquals("the first sentence is here. the second one follows it.", callback.result.get());
+        assertEquals(3, sent.size());
+        assertEquals(1, service.getMetrics().getErrorCount(CorrectionMetrics.Cause.TRUNCATED));
+    }
+
+    private interface Condition {
+        boolean holds();
+    }
+
+    private static boolean waitUntil(Condition condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.holds()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    static class RecordingCallback implements TextCorrectionService.CorrectionCallback {
+        final AtomicReference<String> result = new AtomicReference<>();
+        final AtomicReference<String> error = new AtomicReference<>();
+        final StringBuffer partials = new StringBuffer();
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        @Override
+        public void onSuccess(String correctedText) {
+            result.set(correctedText);
+            done.countDown();
+        }
+
+        @Override
+        public void onError(String message) {
+            error.set(message);
+            done.countDown();
+        }
+
+        @Override
+        public void onPartial(CharSequence delta) {
+            partials.append(delta);
+        }
+
+        boolean await() throws InterruptedException {
+            return await(5000);
+        }
+
+        boolean await(long millis) throws InterruptedException {
+            return done.await(millis, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.app.benchmarks;
+
+import com.example.app.core.ChatCompletionClient;
+import com.example.app.core.CorrectionBackend;
+import com.example.app.core.CorrectionBatcher;
+import com.example.app.core.HttpClientProvider;
+import com.example.app.core.MetricsListener;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// A burst of short corrections, one call each versus batched, with the app's limit of parallel calls
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchingBenchmark {
+    private static final int BURST = 16;
+    private static final int MAX_PARALLEL_CALLS = 4;
+
+    // Simulated server think time before the response headers
+    @Param({"0", "50"})
+    public int latencyMillis;
+
+    private MockWebServer server;
+    private ChatCompletionClient client;
+    private ExecutorService executor;
+    private CorrectionBatcher batcher;
+    private final List<String> texts = new ArrayList<>();
+
+    @Setup
+    public void setUp() throws IOException {
+        for (int i = 0; i < BURST; i++) {
+            texts.add(BenchmarkTexts.text(60 + i).trim());
+        }
+        server = LocalApiServer.start(BatchingBenchmark::echo, latencyMillis);
+        CorrectionBackend backend = new CorrectionBackend("Local", server.url("/v1").toString(),
+                ChatCompletionClient.MODEL, Collections.<String, String>emptyMap(), MAX_PARALLEL_CALLS);
+        client = new ChatCompletionClient(new HttpClientProvider().getClient(), backend, MetricsListener.NONE);
+        executor = Executors.newFixedThreadPool(MAX_PARALLEL_CALLS);
+        batcher = new CorrectionBatcher(8, 5, 800, MAX_PARALLEL_CALLS,
+                (input, observer) -> client.complete(input, null, observer), MetricsListener.NONE);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        server.shutdown();
+    }
+
+    // Answers with the user message, minus the batch instructions
+    private static String echo(RecordedRequest request) {
+        try {
+            String content = new JSONObject(request.getBody().readUtf8())
+                    .getJSONArray("messages").getJSONObject(1).getString("content");
+            int firstMarker = content.indexOf("\n<<<1>>>\n");
+            return CompletionJsonBenchmark.completionResponse(
+                    firstMarker >= 0 ? content.substring(firstMarker + 1) : content);
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public int individual() throws InterruptedException, ExecutionException {
+        List<Future<String>> futures = new ArrayList<>(BURST);
+        for (String text : texts) {
+            futures.add(executor.submit(() -> client.complete(text, null, ChatCompletionClient.CallObserver.NONE)));
+        }
+        int length = 0;
+        for (Future<String> future : futures) {
+            length += future.get().length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public int batched() throws InterruptedException, IOException {
+        CountDownLatch done = new CountDownLatch(BURST);
+        AtomicInteger length = new AtomicInteger();
+        AtomicReference<IOException> failed = new AtomicReference<>();
+        CorrectionBatcher.ItemCallback callback = new CorrectionBatcher.ItemCallback() {
+            @Override
+            public void onResult(String corrected) {
+                length.addAndGet(corrected.length());
+                done.countDown();
+            }
+
+            @Override
+            public void onFailure(IOException failure) {
+                failed.set(failure);
+                done.countDown();
+            }
+        };
+        for (String text : texts) {
+            batcher.submit(text, callback);
+        }
+        done.await();
+        if (failed.get() != null) {
+            throw failed.get();
+        }
+        return length.get();
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.app.benchmarks;
+
+import java.util.Random;
+
+// Deterministic, messy Polish-like input of a given size for the benchmarks
+final class BenchmarkTexts {
+    private static final String[] WORDS = {
+            "ala", "ma", "kota", "który", "często", "śpi", "na", "parapecie", "gdy", "słońce", "świeci",
+            "żółw", "jednak", "woli", "cień", "i", "spokój", "wieczorem", "wszyscy", "idą", "spać"
+    };
+    private static final String[] GAPS = {" ", " ", " ", "  ", " ,", ", ", " .", ". ", "\t", "\r\n", "\n\n", " ? ", "!"};
+
+    private BenchmarkTexts() {
+    }
+
+    static String text(int length) {
+        Random random = new Random(length);
+        StringBuilder sb = new StringBuilder(length + 16);
+        while (sb.length() < length) {
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+            sb.append(GAPS[random.nextInt(GAPS.length)]);
+        }
+        sb.setLength(length);
+        return sb.toString();
+    }
+}
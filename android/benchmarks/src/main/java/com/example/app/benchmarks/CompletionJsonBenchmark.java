@@ -0,0 +1,92 @@
+package com.example.app.benchmarks;
+
+import com.example.app.core.ChatCompletionClient;
+import com.example.app.core.CompletionCodec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Request encoding and response decoding as done for every API call, streaming codec vs the old
+// org.json DOM. Run with -prof gc to compare allocation per request (gc.alloc.rate.norm).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompletionJsonBenchmark {
+
+    @Param({"256", "16384", "262144"})
+    public int size;
+
+    private String input;
+    private byte[] responseBytes;
+    // Stands in for the socket sink; cleared after each write so segments go back to the pool
+    private final Buffer sink = new Buffer();
+
+    @Setup
+    public void setUp() throws JSONException {
+        input = BenchmarkTexts.text(size);
+        responseBytes = completionResponse(input).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public long writeRequestStreaming() throws IOException {
+        RequestBody body = CompletionCodec.requestBody(input, false);
+        body.writeTo(sink);
+        long written = sink.size();
+        sink.clear();
+        return written;
+    }
+
+    @Benchmark
+    public long writeRequestDom() throws JSONException {
+        sink.writeUtf8(LegacyCompletionJson.buildRequestJson(input, false));
+        long written = sink.size();
+        sink.clear();
+        return written;
+    }
+
+    @Benchmark
+    public String readResponseStreaming() throws IOException {
+        return CompletionCodec.readContent(new Buffer().write(responseBytes));
+    }
+
+    @Benchmark
+    public String readResponseDom() throws JSONException {
+        // What response.body().string() did before handing the text to org.json
+        return LegacyCompletionJson.parseContent(new String(responseBytes, StandardCharsets.UTF_8));
+    }
+
+    static String completionResponse(String content) throws JSONException {
+        JSONObject message = new JSONObject().put("role", "assistant").put("content", content);
+        JSONObject choice = new JSONObject().put("index", 0).put("message", message).put("finish_reason", "stop");
+        JSONObject usage = new JSONObject()
+                .put("prompt_tokens", 400 + content.length() / 4)
+                .put("completion_tokens", content.length() / 4)
+                .put("total_tokens", 400 + content.length() / 2);
+        return new JSONObject()
+                .put("id", "chatcmpl-bench")
+                .put("object", "chat.completion")
+                .put("model", ChatCompletionClient.MODEL)
+                .put("choices", new JSONArray().put(choice))
+                .put("usage", usage)
+                .toString();
+    }
+}
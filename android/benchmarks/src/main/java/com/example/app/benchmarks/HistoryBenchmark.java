@@ -0,0 +1,137 @@
+package com.example.app.benchmarks;
+
+import com.example.app.core.CorrectionHistory;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// One search of the correction history for the first screen of results, over short texts drawn
+// from a skewed vocabulary as real ones are. Setup prints the load time, file size and index heap
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistoryBenchmark {
+    private static final int RESULTS = 50;
+    private static final int VOCABULARY = 30_000;
+    private static final String[] SYLLABLES = {
+            "ka", "ro", "mi", "sze", "ło", "wą", "ży", "ćmi", "po", "dre", "gra", "ni", "bu", "sta", "le", "wo",
+            "cze", "zi", "ta", "pu", "ko", "rzy", "mę", "ść"
+    };
+
+    @Param({"10000", "100000"})
+    public int entries;
+
+    private File file;
+    private CorrectionHistory history;
+    private String[] words;
+    private int added;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(entries);
+        LinkedHashSet<String> unique = new LinkedHashSet<>();
+        while (unique.size() < VOCABULARY) {
+            StringBuilder word = new StringBuilder();
+            for (int s = 1 + random.nextInt(4); s > 0; s--) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            unique.add(word.toString());
+        }
+        words = unique.toArray(new String[0]);
+
+        file = File.createTempFile("history-bench", null);
+        file.delete();
+        try (CorrectionHistory writer = new CorrectionHistory(file, entries)) {
+            for (int i = 0; i < entries; i++) {
+                String input = sentence(random);
+                writer.add(input, input + ".", "gpt-4o-mini", 500 + random.nextInt(2000), i);
+            }
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+        long startNanos = System.nanoTime();
+        history = new CorrectionHistory(file, entries);
+        long loadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        System.gc();
+        long heapAfter = runtime.totalMemory() - runtime.freeMemory();
+        System.out.println("\nHistory: " + history.size() + " entries loaded in " + loadMillis + " ms, "
+                + file.length() + " bytes on disk, about " + Math.max(0, heapAfter - heapBefore) + " bytes of heap");
+        System.out.println("Matches: common word " + history.search(words[0], Integer.MAX_VALUE).size()
+                + ", rare word " + history.search(words[VOCABULARY / 2], Integer.MAX_VALUE).size()
+                + ", prefix " + history.search(SYLLABLES[0], Integer.MAX_VALUE).size());
+    }
+
+    // Short texts with a few frequent words and a long tail, like the Zipf distribution of real ones
+    private String sentence(Random random) {
+        StringBuilder sentence = new StringBuilder();
+        for (int w = 5 + random.nextInt(20); w > 0; w--) {
+            double skew = random.nextDouble();
+            sentence.append(words[(int) (VOCABULARY * skew * skew * skew)]).append(' ');
+        }
+        return sentence.toString().trim();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        history.close();
+        file.delete();
+    }
+
+    // Results are read from the file, so a word in most entries costs the most
+    @Benchmark
+    public List<CorrectionHistory.Entry> commonWord() throws IOException {
+        return history.search(words[0], RESULTS);
+    }
+
+    @Benchmark
+    public List<CorrectionHistory.Entry> rareWord() throws IOException {
+        return history.search(words[VOCABULARY / 2], RESULTS);
+    }
+
+    // As typed: two letters match thousands of distinct words
+    @Benchmark
+    public List<CorrectionHistory.Entry> shortPrefix() throws IOException {
+        return history.search(SYLLABLES[0], RESULTS);
+    }
+
+    @Benchmark
+    public List<CorrectionHistory.Entry> twoWords() throws IOException {
+        return history.search(words[1] + " " + words[VOCABULARY / 10].substring(0, 2), RESULTS);
+    }
+
+    @Benchmark
+    public List<CorrectionHistory.Entry> newest() throws IOException {
+        return history.search("", RESULTS);
+    }
+
+    // One correction recorded, with compaction whenever the app would run it
+    @Benchmark
+    public long add() throws IOException {
+        long id = history.add("tekst " + added, "Tekst " + added++ + ".", "gpt-4o-mini", 800, added);
+        if (history.needsCompaction()) {
+            history.compact();
+        }
+        return id;
+    }
+}
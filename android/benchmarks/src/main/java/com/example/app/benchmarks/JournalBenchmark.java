@@ -0,0 +1,69 @@
+package com.example.app.benchmarks;
+
+import com.example.app.core.CorrectionJournal;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Cost of journaling a deferred request: the batched-fsync append the app uses vs syncing every record
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JournalBenchmark {
+
+    @Param({"256", "4096"})
+    public int size;
+
+    private File directory;
+    private CorrectionJournal journal;
+    private String text;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal-bench").toFile();
+        journal = new CorrectionJournal(new File(directory, "journal"));
+        text = BenchmarkTexts.text(size);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        journal.close();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    // Enqueue and drop, so the journal stays small and compaction is part of the steady state
+    @Benchmark
+    public long appendBatchedSync() throws IOException {
+        long id = journal.enqueue(text);
+        journal.remove(id);
+        return id;
+    }
+
+    @Benchmark
+    public long appendSyncEachRecord() throws IOException {
+        long id = journal.enqueue(text);
+        journal.sync();
+        journal.remove(id);
+        journal.sync();
+        return id;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.app.benchmarks;
+
+import com.example.app.core.ChatCompletionClient;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+// The org.json DOM request/response handling that CompletionCodec replaced, kept as the baseline
+final class LegacyCompletionJson {
+
+    private LegacyCompletionJson() {
+    }
+
+    static String buildRequestJson(String input, boolean stream) throws JSONException {
+        JSONObject requestBody = new JSONObject();
+        requestBody.put("model", ChatCompletionClient.MODEL);
+        requestBody.put("max_tokens", ChatCompletionClient.MAX_TOKENS);
+        requestBody.put("temperature", ChatCompletionClient.TEMPERATURE);
+        if (stream) {
+            requestBody.put("stream", true);
+        }
+
+        JSONArray messages = new JSONArray();
+        JSONObject systemMessage = new JSONObject();
+        systemMessage.put("role", "system");
+        systemMessage.put("content", ChatCompletionClient.SYSTEM_PROMPT);
+
+        JSONObject userMessage = new JSONObject();
+        userMessage.put("role", "user");
+        userMessage.put("content", input);
+
+        messages.put(systemMessage);
+        messages.put(userMessage);
+        requestBody.put("messages", messages);
+        return requestBody.toString();
+    }
+
+    static String parseContent(String responseBody) throws JSONException {
+        JSONObject jsonResponse = new JSONObject(responseBody);
+
+        JSONArray choices = jsonResponse.getJSONArray("choices");
+        if (choices.length() > 0) {
+            JSONObject choice = choices.getJSONObject(0);
+            JSONObject message = choice.getJSONObject("message");
+            return message.getString("content");
+        }
+        return null;
+    }
+}
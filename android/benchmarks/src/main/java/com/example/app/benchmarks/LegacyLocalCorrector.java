@@ -0,0 +1,37 @@
+package com.example.app.benchmarks;
+
+// The replaceAll chain that LocalCorrector replaced, kept as the baseline to compare against
+final class LegacyLocalCorrector {
+
+    private LegacyLocalCorrector() {
+    }
+
+    static String correct(String input) {
+        if (input == null) return "";
+        String s = input;
+
+        s = s.replaceAll("\r\n", "\n");
+        s = s.replaceAll("\t", " ");
+        s = s.replaceAll("\\s+", " ").trim();
+
+        s = s.replaceAll(" \\.", ".");
+        s = s.replaceAll(" ,", ",");
+        s = s.replaceAll(" ;", ";");
+        s = s.replaceAll(" !", "!");
+        s = s.replaceAll(" \\?", "?");
+
+        if (!s.isEmpty()) {
+            char first = s.charAt(0);
+            char upper = Character.toUpperCase(first);
+            if (first != upper) {
+                s = upper + (s.length() > 1 ? s.substring(1) : "");
+            }
+        }
+
+        if (!s.isEmpty() && !s.matches(".*[\\.!\\?]$")) {
+            s = s + ".";
+        }
+
+        return s;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.app.benchmarks;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+import javax.net.ServerSocketFactory;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+// MockWebServer answering every request with a completion after a fixed delay
+final class LocalApiServer {
+
+    // Builds the response body for one request
+    interface Answer {
+        String body(RecordedRequest request);
+    }
+
+    private LocalApiServer() {
+    }
+
+    // The same completion for every request
+    static MockWebServer start(String responseBody, int latencyMillis) throws IOException {
+        return start(request -> responseBody, latencyMillis);
+    }
+
+    static MockWebServer start(Answer answer, int latencyMillis) throws IOException {
+        MockWebServer server = new MockWebServer();
+        // MockWebServer writes headers and body separately; with Nagle on, the body waits for a delayed ACK
+        server.setServerSocketFactory(new NoDelayServerSocketFactory());
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse()
+                        .setHeadersDelay(latencyMillis, TimeUnit.MILLISECONDS)
+                        .setBody(answer.body(request));
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static final class NoDelayServerSocketFactory extends ServerSocketFactory {
+        @Override
+        public ServerSocket createServerSocket() throws IOException {
+            return new ServerSocket() {
+                @Override
+                public Socket accept() throws IOException {
+                    Socket socket = super.accept();
+                    socket.setTcpNoDelay(true);
+                    return socket;
+                }
+            };
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port, int backlog) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port, int backlog, InetAddress address) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.app.benchmarks;
+
+import com.example.app.core.LocalCorrector;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// correctTextLocally runs on every network failure; compare it with the replaceAll chain it replaced
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocalCorrectorBenchmark {
+
+    @Param({"1024", "65536", "4194304"})
+    public int size;
+
+    private String input;
+
+    @Setup
+    public void setUp() {
+        input = BenchmarkTexts.text(size);
+    }
+
+    @Benchmark
+    public String singlePass() {
+        return LocalCorrector.correct(input);
+    }
+
+    @Benchmark
+    public String legacyReplaceAll() {
+        return LegacyLocalCorrector.correct(input);
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.app.benchmarks;
+
+import com.example.app.core.CompactDictionary;
+import com.example.app.core.DictionaryBuilder;
+import com.example.app.core.OfflineCorrector;
+import com.example.app.core.SpellChecker;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Words per second through the mapped dictionary, on an inflected word list the size of a real one.
+// Setup prints the file size next to the heap the opened dictionary takes, which stays near zero
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OfflineCorrectorBenchmark {
+    private static final int BATCH = 1_000;
+    private static final String[] SYLLABLES = {
+            "ka", "ro", "mi", "sze", "ło", "wą", "ży", "ćmi", "po", "dre", "gra", "ni", "bu", "sta", "le", "wo",
+            "cze", "zi", "ta", "pu", "ko", "rzy", "mę", "ść"
+    };
+    private static final String[] ENDINGS = {"", "a", "u", "em", "ie", "om", "ami", "ach", "y", "ów", "ą", "ę"};
+
+    @Param({"100000", "1000000"})
+    public int words;
+
+    private File file;
+    private CompactDictionary dictionary;
+    private SpellChecker checker;
+    private OfflineCorrector corrector;
+    private String[] known;
+    private String[] misspelled;
+    private String text;
+    private final StringBuilder out = new StringBuilder();
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(words);
+        LinkedHashSet<String> unique = new LinkedHashSet<>();
+        // Stands in for a full list of word forms
+        DictionaryBuilder builder = new DictionaryBuilder().complete(true);
+        // The benchmark text's own words first, as the most common ones
+        for (String word : BenchmarkTexts.text(4096).split("[^\\p{L}]+")) {
+            builder.add(word);
+        }
+        while (unique.size() < words) {
+            StringBuilder stem = new StringBuilder();
+            for (int s = 2 + random.nextInt(3); s > 0; s--) {
+                stem.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            for (String ending : ENDINGS) {
+                unique.add(stem + ending);
+            }
+        }
+        List<String> list = new ArrayList<>(unique);
+        for (String word : list) {
+            builder.add(word);
+        }
+        file = File.createTempFile("offline-bench", ".dict");
+        builder.write(file);
+
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+        dictionary = CompactDictionary.map(file);
+        System.gc();
+        long heapAfter = runtime.totalMemory() - runtime.freeMemory();
+        System.out.println("\nDictionary: " + dictionary.getWordCount() + " words, " + file.length()
+                + " bytes mapped, about " + Math.max(0, heapAfter - heapBefore) + " bytes of heap");
+
+        checker = new SpellChecker(dictionary);
+        corrector = new OfflineCorrector(dictionary, null);
+        known = new String[BATCH];
+        misspelled = new String[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            String word = list.get(random.nextInt(list.size()));
+            known[i] = word;
+            // One substituted letter, as a typo would
+            int at = random.nextInt(word.length());
+            misspelled[i] = word.substring(0, at) + "x" + word.substring(at + 1);
+        }
+        text = BenchmarkTexts.text(4096);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int lookup() {
+        int found = 0;
+        for (String word : known) {
+            if (dictionary.contains(word, 0, word.length())) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int suggest() {
+        int suggested = 0;
+        for (String word : misspelled) {
+            out.setLength(0);
+            if (checker.suggest(word, 0, word.length(), 1, out)) {
+                suggested++;
+            }
+        }
+        return suggested;
+    }
+
+    // A 4 KB text, normalized, spell-checked and run through the rules
+    @Benchmark
+    public String correctText() {
+        return corrector.correct(text);
+    }
+}
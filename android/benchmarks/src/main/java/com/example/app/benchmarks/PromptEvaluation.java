@@ -0,0 +1,163 @@
+package com.example.app.benchmarks;
+
+import com.example.app.core.ChatCompletionClient;
+import com.example.app.core.CorrectionPrompt;
+import com.example.app.core.HttpClientProvider;
+import com.example.app.core.TokenUsage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Scanner;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Offline comparison of the {@link CorrectionPrompt} variants: output quality against the expected
+ * corrections, tokens and latency, from fixtures recorded against the real API. Runs without
+ * network access; only recording needs a key:
+ * <pre>
+ *   ./gradlew :benchmarks:promptEval
+ *   OPENAI_API_KEY=... ./gradlew :benchmarks:promptEval -PpromptEvalArgs="record prompt-fixtures.json"
+ * </pre>
+ * Recording reads the cases of the bundled fixtures and writes them with fresh recordings of every
+ * variant to the given file, which can then be evaluated with {@code evaluate <file>}.
+ */
+public final class PromptEvaluation {
+    private static final String FIXTURES = "/prompt-fixtures.json";
+
+    private PromptEvaluation() {
+    }
+
+    public static void main(String[] args) throws IOException, JSONException {
+        String mode = args.length > 0 ? args[0] : "evaluate";
+        if (mode.equals("evaluate")) {
+            JSONObject fixtures = args.length > 1 ? readFile(args[1]) : readBundled();
+            System.out.print(evaluate(fixtures));
+        } else if (mode.equals("record") && args.length > 1) {
+            String apiKey = System.getenv("OPENAI_API_KEY");
+            if (apiKey == null || apiKey.isEmpty()) {
+                throw new IllegalStateException("Set OPENAI_API_KEY to record fixtures");
+            }
+            JSONObject fixtures = record(readBundled(), apiKey);
+            Files.write(Paths.get(args[1]), fixtures.toString(2).getBytes(StandardCharsets.UTF_8));
+            System.out.print(evaluate(fixtures));
+        } else {
+            System.err.println("Usage: PromptEvaluation [evaluate [fixtures.json] | record <fixtures.json>]");
+            System.exit(2);
+        }
+    }
+
+    // One line per variant that has recordings
+    static String evaluate(JSONObject fixtures) throws JSONException {
+        JSONArray cases = fixtures.getJSONArray("cases");
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%-12s %5s %7s %10s %7s %7s %7s %8s%n",
+                "prompt", "cases", "exact", "similarity", "prompt", "cached", "output", "latency"));
+        for (CorrectionPrompt prompt : CorrectionPrompt.values()) {
+            int count = 0;
+            int exact = 0;
+            double similarity = 0;
+            long promptTokens = 0;
+            long cachedTokens = 0;
+            long completionTokens = 0;
+            long latencyMillis = 0;
+            for (int i = 0; i < cases.length(); i++) {
+                JSONObject fixture = cases.getJSONObject(i);
+                JSONObject recording = fixture.getJSONObject("recordings").optJSONObject(prompt.getId());
+                if (recording == null) {
+                    continue;
+                }
+                String expected = fixture.getString("expected");
+                String output = recording.getString("output");
+                count++;
+                exact += output.equals(expected) ? 1 : 0;
+                similarity += similarity(output, expected);
+                promptTokens += recording.getLong("promptTokens");
+                cachedTokens += recording.optLong("cachedTokens");
+                completionTokens += recording.getLong("completionTokens");
+                latencyMillis += recording.getLong("latencyMillis");
+            }
+            if (count == 0) {
+                continue;
+            }
+            sb.append(String.format(Locale.ROOT, "%-12s %5d %6.0f%% %10.3f %7d %6.0f%% %7d %6dms%n",
+                    prompt.getId(), count, 100.0 * exact / count, similarity / count, promptTokens / count,
+                    promptTokens == 0 ? 0.0 : 100.0 * cachedTokens / promptTokens, completionTokens / count,
+                    latencyMillis / count));
+        }
+        return sb.toString();
+    }
+
+    // Every variant on every case, one call at a time so latencies do not skew each other
+    private static JSONObject record(JSONObject fixtures, String apiKey) throws IOException, JSONException {
+        ChatCompletionClient client = new ChatCompletionClient(new HttpClientProvider().getClient(),
+                ChatCompletionClient.API_URL);
+        JSONArray cases = fixtures.getJSONArray("cases");
+        JSONArray recorded = new JSONArray();
+        for (int i = 0; i < cases.length(); i++) {
+            JSONObject fixture = cases.getJSONObject(i);
+            JSONObject recordings = new JSONObject();
+            for (CorrectionPrompt prompt : CorrectionPrompt.values()) {
+                TokenUsage usage = new TokenUsage();
+                long startNanos = System.nanoTime();
+                String output = client.complete(apiKey, prompt, fixture.getString("input"), null,
+                        ChatCompletionClient.CallObserver.NONE, usage);
+                recordings.put(prompt.getId(), new JSONObject()
+                        .put("output", output)
+                        .put("promptTokens", usage.getPromptTokens())
+                        .put("cachedTokens", usage.getCachedPromptTokens())
+                        .put("completionTokens", usage.getCompletionTokens())
+                        .put("latencyMillis", (System.nanoTime() - startNanos) / 1_000_000));
+            }
+            recorded.put(new JSONObject()
+                    .put("input", fixture.getString("input"))
+                    .put("expected", fixture.getString("expected"))
+                    .put("recordings", recordings));
+        }
+        return new JSONObject()
+                .put("model", ChatCompletionClient.MODEL)
+                .put("cases", recorded);
+    }
+
+    // 1 for identical texts, down to 0 for texts with nothing in common
+    static double similarity(String a, String b) {
+        int longest = Math.max(a.length(), b.length());
+        return longest == 0 ? 1.0 : 1.0 - (double) editDistance(a, b) / longest;
+    }
+
+    private static int editDistance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    private static JSONObject readBundled() throws IOException, JSONException {
+        try (InputStream in = PromptEvaluation.class.getResourceAsStream(FIXTURES)) {
+            if (in == null) {
+                throw new IOException("Missing " + FIXTURES);
+            }
+            return new JSONObject(new Scanner(in, "UTF-8").useDelimiter("\\A").next());
+        }
+    }
+
+    private static JSONObject readFile(String path) throws IOException, JSONException {
+        return new JSONObject(new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8));
+    }
+}
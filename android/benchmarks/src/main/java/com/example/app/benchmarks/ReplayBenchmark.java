@@ -0,0 +1,89 @@
+package com.example.app.benchmarks;
+
+import com.example.app.core.ChatCompletionClient;
+import com.example.app.core.CorrectionJournal;
+import com.example.app.core.HttpClientProvider;
+import com.example.app.core.JournalReplayer;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import okhttp3.mockwebserver.MockWebServer;
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Time to drain a backlog of deferred requests against a local stand-in for the API
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReplayBenchmark {
+    private static final int BACKLOG = 32;
+    private static final int BATCH_SIZE = 8;
+
+    @Param({"1", "2", "4"})
+    public int concurrency;
+
+    // Simulated server time per request
+    @Param({"20"})
+    public int latencyMillis;
+
+    private MockWebServer server;
+    private File directory;
+    private CorrectionJournal journal;
+    private JournalReplayer replayer;
+    private JournalReplayer.Corrector corrector;
+    private String text;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, JSONException {
+        text = BenchmarkTexts.text(512);
+        String body = CompletionJsonBenchmark.completionResponse(text);
+        server = LocalApiServer.start(body, latencyMillis);
+        ChatCompletionClient client = new ChatCompletionClient(new HttpClientProvider().getClient(),
+                server.url("/v1/chat/completions").toString());
+        corrector = input -> client.complete("sk-benchmark", input, null, ChatCompletionClient.CallObserver.NONE);
+        directory = Files.createTempDirectory("replay-bench").toFile();
+        journal = new CorrectionJournal(new File(directory, "journal"));
+        replayer = new JournalReplayer(journal, BATCH_SIZE, concurrency);
+    }
+
+    @Setup(Level.Invocation)
+    public void fillBacklog() throws IOException {
+        for (CorrectionJournal.Entry entry : journal.corrected()) {
+            journal.remove(entry.getId());
+        }
+        for (int i = 0; i < BACKLOG; i++) {
+            journal.enqueue(text);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        journal.close();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+        server.shutdown();
+    }
+
+    @Benchmark
+    public int replayBacklog() throws IOException, InterruptedException {
+        return replayer.replay(corrector, entry -> { });
+    }
+}
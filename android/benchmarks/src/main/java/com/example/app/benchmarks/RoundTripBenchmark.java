@@ -0,0 +1,60 @@
+package com.example.app.benchmarks;
+
+import com.example.app.core.ChatCompletionClient;
+import com.example.app.core.HttpClientProvider;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import okhttp3.mockwebserver.MockWebServer;
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Full request/response cycle through the shared client against a local stand-in for the API
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoundTripBenchmark {
+
+    // Simulated server think time before the response headers
+    @Param({"0", "20"})
+    public int latencyMillis;
+
+    @Param({"256", "16384"})
+    public int size;
+
+    private MockWebServer server;
+    private ChatCompletionClient client;
+    private String input;
+
+    @Setup
+    public void setUp() throws IOException, JSONException {
+        input = BenchmarkTexts.text(size);
+        String body = CompletionJsonBenchmark.completionResponse(input);
+        server = LocalApiServer.start(body, latencyMillis);
+        client = new ChatCompletionClient(new HttpClientProvider().getClient(),
+                server.url("/v1/chat/completions").toString());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Benchmark
+    public String complete() throws IOException {
+        return client.complete("sk-benchmark", input, null, ChatCompletionClient.CallObserver.NONE);
+    }
+}
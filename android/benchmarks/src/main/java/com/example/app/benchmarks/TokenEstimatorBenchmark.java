@@ -0,0 +1,48 @@
+package com.example.app.benchmarks;
+
+import com.example.app.core.TextChunker;
+import com.example.app.core.TokenEstimator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Every request is estimated for its prompt, reply budget, batching and chunking; the split of a long
+// document measures it once more. Divide size by the time for chars per second
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenEstimatorBenchmark {
+
+    @Param({"1024", "65536", "4194304"})
+    public int size;
+
+    private String input;
+
+    @Setup
+    public void setUp() {
+        input = BenchmarkTexts.text(size);
+        System.out.println("\nEstimate: " + TokenEstimator.estimate(input) + " tokens for " + size + " chars");
+    }
+
+    @Benchmark
+    public int estimate() {
+        return TokenEstimator.estimate(input);
+    }
+
+    @Benchmark
+    public TextChunker.Split split() {
+        return TextChunker.split(input, 600);
+    }
+}
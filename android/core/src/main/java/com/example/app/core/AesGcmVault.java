@@ -0,0 +1,54 @@
+package com.example.app.core;
+
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * AES-GCM with a key the vault was given, which may live in a keystore that never hands out its
+ * bytes: the cipher picks the IV, as keystore keys require, and it is stored in front of the
+ * ciphertext. With a key from {@link #generate()} it is the JVM stand-in for the keystore.
+ */
+public final class AesGcmVault implements KeyVault {
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int TAG_BITS = 128;
+
+    private final SecretKey key;
+
+    public AesGcmVault(SecretKey key) {
+        this.key = key;
+    }
+
+    // A vault with a fresh key that lives as long as the process
+    public static AesGcmVault generate() throws GeneralSecurityException {
+        KeyGenerator generator = KeyGenerator.getInstance("AES");
+        generator.init(256);
+        return new AesGcmVault(generator.generateKey());
+    }
+
+    @Override
+    public byte[] encrypt(byte[] plaintext) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.ENCRYPT_MODE, key);
+        byte[] iv = cipher.getIV();
+        byte[] sealed = new byte[1 + iv.length + cipher.getOutputSize(plaintext.length)];
+        sealed[0] = (byte) iv.length;
+        System.arraycopy(iv, 0, sealed, 1, iv.length);
+        int length = cipher.doFinal(plaintext, 0, plaintext.length, sealed, 1 + iv.length);
+        return length == sealed.length - 1 - iv.length ? sealed : Arrays.copyOf(sealed, 1 + iv.length + length);
+    }
+
+    @Override
+    public byte[] decrypt(byte[] ciphertext) throws GeneralSecurityException {
+        int ivLength = ciphertext.length > 0 ? ciphertext[0] & 0xff : 0;
+        if (ivLength == 0 || 1 + ivLength > ciphertext.length) {
+            throw new GeneralSecurityException("Not sealed by this vault");
+        }
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, ciphertext, 1, ivLength));
+        return cipher.doFinal(ciphertext, 1 + ivLength, ciphertext.length - 1 - ivLength);
+    }
+}
@@ -0,0 +1,324 @@
+package com.example.app.core;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+
+/**
+ * Spreads requests over several {@link CorrectionBackend}s, preferring the one with the lowest
+ * rolling time to first byte. Every backend has its own circuit breaker and concurrency limit: a
+ * backend that is open or busy is skipped, and one that fails transiently hands the request to
+ * the next, so a request only fails when no backend can answer it. A measurement outlives idle
+ * periods, and a backend whose last one has gone stale is measured again by a small probe request
+ * in the background, so a slow backend is not tried just because time has passed.
+ */
+public class BackendRouter implements CompletionClient {
+    // Weight of a new sample in the rolling estimate
+    static final double RTT_SMOOTHING = 0.2;
+    // After this long without a sample a backend is measured again with a probe
+    static final long RTT_STALE_MILLIS = 60_000;
+    // A correction of next to nothing, so a probe costs a few tokens
+    static final String PROBE_INPUT = "Ok.";
+    private static final Executor PROBES = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "backend-probe");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final OkHttpClient client;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final MetricsListener metrics;
+    private final long maxPermitWaitMillis;
+    private final CircuitBreaker.Clock clock;
+    private final Executor probes;
+    // Replaced as a whole, so a request works with one consistent list
+    private volatile List<Route> routes = Collections.emptyList();
+
+    // failureThreshold and openMillis configure each backend's circuit breaker
+    public BackendRouter(OkHttpClient client, List<CorrectionBackend> backends, int failureThreshold, long openMillis,
+                         MetricsListener metrics) {
+        this(client, backends, failureThreshold, openMillis, metrics, Long.MAX_VALUE, System::nanoTime, PROBES);
+    }
+
+    // maxPermitWaitMillis caps the wait for a busy backend below the call's own deadline; probes run on probes
+    BackendRouter(OkHttpClient client, List<CorrectionBackend> backends, int failureThreshold, long openMillis,
+                  MetricsListener metrics, long maxPermitWaitMillis, CircuitBreaker.Clock clock, Executor probes) {
+        this.client = client;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.metrics = metrics;
+        this.maxPermitWaitMillis = maxPermitWaitMillis;
+        this.clock = clock;
+        this.probes = probes;
+        setBackends(backends);
+    }
+
+    // Backends that stay keep their measurements, breaker and in-flight count
+    public synchronized void setBackends(List<CorrectionBackend> backends) {
+        List<Route> current = routes;
+        if (current.size() == backends.size()) {
+            boolean same = true;
+            for (int i = 0; i < backends.size() && same; i++) {
+                same = current.get(i).backend.equals(backends.get(i));
+            }
+            if (same) {
+                return;
+            }
+        }
+        List<Route> updated = new ArrayList<>(backends.size());
+        for (CorrectionBackend backend : backends) {
+            Route route = null;
+            for (Route existing : current) {
+                if (existing.backend.equals(backend)) {
+                    route = existing;
+                }
+            }
+            updated.add(route != null ? route : new Route(backend));
+        }
+        routes = Collections.unmodifiableList(updated);
+    }
+
+    public List<CorrectionBackend> getBackends() {
+        List<CorrectionBackend> backends = new ArrayList<>();
+        for (Route route : routes) {
+            backends.add(route.backend);
+        }
+        return backends;
+    }
+
+    // Throws CircuitOpenException when every backend's breaker is open, and InterruptedIOException when
+    // every backend stays busy for as long as the call itself would be allowed to take
+    @Override
+    public String complete(String input, CompletionStreamReader.DeltaListener listener,
+                           ChatCompletionClient.CallObserver observer) throws IOException {
+        List<Route> ordered = new ArrayList<>(routes);
+        Collections.sort(ordered, new Comparator<Route>() {
+            @Override
+            public int compare(Route a, Route b) {
+                return Long.compare(a.expectedLatencyNanos(), b.expectedLatencyNanos());
+            }
+        });
+        // The first one is measured by this request
+        long now = clock.nanoTime();
+        for (int i = 1; i < ordered.size(); i++) {
+            Route route = ordered.get(i);
+            if (route.startProbe(now)) {
+                probes.execute(() -> probe(route));
+            }
+        }
+
+        IOException lastFailure = null;
+        Route busy = null;
+        for (Route route : ordered) {
+            if (!route.permits.tryAcquire()) {
+                if (busy == null) {
+                    busy = route;
+                }
+                continue;
+            }
+            if (!route.breaker.allowRequest()) {
+                route.permits.release();
+                continue;
+            }
+            if (lastFailure != null) {
+                metrics.onFailover();
+            }
+            Attempt attempt = new Attempt(route, listener, observer);
+            try {
+                return attempt.run(input);
+            } catch (IOException e) {
+                if (!attempt.canFailOver(e)) {
+                    throw e;
+                }
+                lastFailure = e;
+            }
+        }
+
+        if (busy != null) {
+            // Every backend that can still answer is at its limit: queue for the fastest of them
+            long waitMillis = Math.min(maxPermitWaitMillis, deadlineMillis(input, listener != null));
+            boolean acquired;
+            try {
+                acquired = busy.permits.tryAcquire(waitMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for " + busy.backend.getName());
+            }
+            if (!acquired) {
+                // Reported like a call timeout, which it would have become had it been sent
+                throw new InterruptedIOException(busy.backend.getName() + " busy for " + waitMillis + "ms");
+            }
+            if (busy.breaker.allowRequest()) {
+                if (lastFailure != null) {
+                    metrics.onFailover();
+                }
+                return new Attempt(busy, listener, observer).run(input);
+            }
+            busy.permits.release();
+        }
+        throw lastFailure != null ? lastFailure : new CircuitOpenException();
+    }
+
+    // Skipped when the backend is busy or its breaker open; a failed probe counts against the breaker like a request
+    private void probe(Route route) {
+        try {
+            if (!route.permits.tryAcquire()) {
+                return;
+            }
+            if (!route.breaker.allowRequest()) {
+                route.permits.release();
+                return;
+            }
+            new Attempt(route, null, ChatCompletionClient.CallObserver.NONE).run(PROBE_INPUT);
+        } catch (IOException e) {
+            // The breaker has it; the old measurement stays
+        } finally {
+            route.endProbe();
+        }
+    }
+
+    // The client's call timeout if it has one, otherwise the read timeout the request would get
+    private long deadlineMillis(String input, boolean stream) {
+        int callTimeoutMillis = client.callTimeoutMillis();
+        return callTimeoutMillis > 0 ? callTimeoutMillis : ChatCompletionClient.readTimeoutMillis(input, stream);
+    }
+
+    // One line per backend, for the debug screen
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Route route : routes) {
+            sb.append(route).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private final class Route {
+        final CorrectionBackend backend;
+        final ChatCompletionClient client;
+        final CircuitBreaker breaker;
+        final Semaphore permits;
+        private long rttNanos = -1;
+        private long sampledAtNanos;
+        private boolean probing;
+
+        Route(CorrectionBackend backend) {
+            this.backend = backend;
+            this.client = new ChatCompletionClient(BackendRouter.this.client, backend, metrics);
+            this.breaker = new CircuitBreaker(failureThreshold, openMillis);
+            this.permits = new Semaphore(backend.getMaxConcurrentRequests());
+        }
+
+        // Unmeasured backends come first, so each gets a sample; a stale one keeps its place until probed
+        synchronized long expectedLatencyNanos() {
+            return Math.max(0, rttNanos);
+        }
+
+        // Whether the caller should probe this backend, which it then is until endProbe
+        synchronized boolean startProbe(long now) {
+            if (rttNanos < 0 || probing || now - sampledAtNanos <= TimeUnit.MILLISECONDS.toNanos(RTT_STALE_MILLIS)) {
+                return false;
+            }
+            probing = true;
+            return true;
+        }
+
+        synchronized void endProbe() {
+            probing = false;
+            // A probe that could not measure waits for the next stale period rather than repeating at once
+            sampledAtNanos = Math.max(sampledAtNanos, clock.nanoTime());
+        }
+
+        synchronized void recordRtt(long nanos) {
+            rttNanos = rttNanos < 0 ? nanos : (long) (rttNanos + RTT_SMOOTHING * (nanos - rttNanos));
+            sampledAtNanos = clock.nanoTime();
+        }
+
+        @Override
+        public synchronized String toString() {
+            String rtt = rttNanos < 0 ? "-" : TimeUnit.NANOSECONDS.toMillis(rttNanos) + "ms";
+            int inFlight = backend.getMaxConcurrentRequests() - permits.availablePermits();
+            return backend + ": rtt=" + rtt + " " + breaker.getState()
+                    + " in-flight=" + inFlight + "/" + backend.getMaxConcurrentRequests();
+        }
+    }
+
+    // One call to one backend, holding one of its permits
+    private static final class Attempt implements ChatCompletionClient.CallObserver {
+        private final Route route;
+        private final CompletionStreamReader.DeltaListener listener;
+        private final ChatCompletionClient.CallObserver observer;
+        private volatile Call call;
+        private volatile CallTimings timings;
+        private volatile boolean streamed;
+
+        Attempt(Route route, CompletionStreamReader.DeltaListener listener,
+                ChatCompletionClient.CallObserver observer) {
+            this.route = route;
+            this.listener = listener;
+            this.observer = observer;
+        }
+
+        String run(String input) throws IOException {
+            CompletionStreamReader.DeltaListener tracking = listener == null ? null : delta -> {
+                streamed = true;
+                listener.onDelta(delta);
+            };
+            long startNanos = System.nanoTime();
+            try {
+                String result = route.client.complete(input, tracking, this);
+                route.breaker.onSuccess();
+                // Only answers count: a quick error page says nothing about how fast corrections come.
+                // Without the timing event listener on the client the whole call is measured instead
+                long ttfb = timings != null ? timings.timeToFirstByteNanos() : -1;
+                route.recordRtt(ttfb >= 0 ? ttfb : System.nanoTime() - startNanos);
+                return result;
+            } catch (IOException e) {
+                if (!isCancelled()) {
+                    if (RetryPolicy.isTransient(e)) {
+                        route.breaker.onFailure();
+                    } else {
+                        // The backend answered, so it is up even though it did not like this request
+                        route.breaker.onSuccess();
+                    }
+                }
+                throw e;
+            } finally {
+                route.permits.release();
+            }
+        }
+
+        // Another backend may succeed where this one was down, but text already streamed cannot be
+        // taken back, and a cancelled call is not wanted anywhere
+        boolean canFailOver(IOException failure) {
+            return RetryPolicy.isTransient(failure) && !streamed && !isCancelled();
+        }
+
+        private boolean isCancelled() {
+            Call current = call;
+            return current != null && current.isCanceled();
+        }
+
+        @Override
+        public void onCallStarted(Call call) {
+            this.call = call;
+            observer.onCallStarted(call);
+        }
+
+        @Override
+        public void onCallFinished(Call call, CallTimings timings) {
+            this.timings = timings;
+            observer.onCallFinished(call, timings);
+        }
+    }
+}
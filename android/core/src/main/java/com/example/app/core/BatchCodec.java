@@ -0,0 +1,96 @@
+package com.example.app.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Packs several short texts into the user message of one request and splits the reply back up.
+ * Every text is introduced by a marker line such as {@code <<<2>>>} and the model is asked to
+ * answer with the same markers. A reply that does not carry exactly the expected markers in order,
+ * or whose parts are implausibly long or short for their inputs, is rejected as a whole, since
+ * corrections attributed to the wrong text are worse than none.
+ */
+public final class BatchCodec {
+    private static final String MARKER_OPEN = "<<<";
+    private static final String MARKER_CLOSE = ">>>";
+    private static final Pattern MARKER_LINE = Pattern.compile("(?m)^[ \\t]*<<<(\\d+)>>>[ \\t]*$");
+    // A corrected part longer or shorter than this against its input was probably mixed up with another
+    private static final double MAX_LENGTH_RATIO = 2.0;
+    private static final int LENGTH_SLACK = 20;
+
+    private BatchCodec() {
+    }
+
+    // Texts that could be mistaken for markers are corrected on their own
+    public static boolean canPack(String text) {
+        return !text.contains(MARKER_OPEN) && !text.contains(MARKER_CLOSE);
+    }
+
+    public static String pack(List<String> texts) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Correct each of the following ").append(texts.size())
+                .append(" texts separately; they are unrelated. Every text starts with a marker line such as ")
+                .append(marker(1)).append(". Reply with every marker line, in the same order, each followed by ")
+                .append("the corrected text, and nothing else.\n");
+        for (int i = 0; i < texts.size(); i++) {
+            sb.append(marker(i + 1)).append('\n').append(texts.get(i).trim()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    // The corrected texts in input order, or null when the reply cannot be split reliably
+    public static List<String> split(String reply, List<String> texts) {
+        Matcher matcher = MARKER_LINE.matcher(reply);
+        List<String> parts = new ArrayList<>(texts.size());
+        int expected = 1;
+        int partStart = -1;
+        while (matcher.find()) {
+            if (!matcher.group(1).equals(String.valueOf(expected))) {
+                return null;
+            }
+            if (partStart < 0) {
+                // Only a code fence may come before the first marker
+                if (!isFence(reply.substring(0, matcher.start()))) {
+                    return null;
+                }
+            } else {
+                parts.add(reply.substring(partStart, matcher.start()));
+            }
+            partStart = matcher.end();
+            expected++;
+        }
+        if (partStart < 0 || expected - 1 != texts.size()) {
+            return null;
+        }
+        parts.add(stripClosingFence(reply.substring(partStart)));
+
+        List<String> corrected = new ArrayList<>(parts.size());
+        for (int i = 0; i < parts.size(); i++) {
+            String part = parts.get(i).trim();
+            int inputLength = texts.get(i).trim().length();
+            if (part.isEmpty()
+                    || part.length() > inputLength * MAX_LENGTH_RATIO + LENGTH_SLACK
+                    || part.length() < inputLength / MAX_LENGTH_RATIO - LENGTH_SLACK) {
+                return null;
+            }
+            corrected.add(part);
+        }
+        return corrected;
+    }
+
+    private static String marker(int index) {
+        return MARKER_OPEN + index + MARKER_CLOSE;
+    }
+
+    private static boolean isFence(String text) {
+        String trimmed = text.trim();
+        return trimmed.isEmpty() || (trimmed.startsWith("```") && trimmed.indexOf('\n') < 0);
+    }
+
+    private static String stripClosingFence(String text) {
+        String trimmed = text.trim();
+        return trimmed.endsWith("```") ? trimmed.substring(0, trimmed.length() - 3) : trimmed;
+    }
+}
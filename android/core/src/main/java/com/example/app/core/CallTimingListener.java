@@ -0,0 +1,91 @@
+package com.example.app.core;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Response;
+
+/**
+ * Records connect, TLS and time-to-first-byte for calls that carry a {@link CallTimings} tag.
+ */
+class CallTimingListener extends EventListener {
+
+    static final EventListener.Factory FACTORY = call -> {
+        CallTimings timings = call.request().tag(CallTimings.class);
+        return timings != null ? new CallTimingListener(timings) : EventListener.NONE;
+    };
+
+    private final CallTimings timings;
+
+    CallTimingListener(CallTimings timings) {
+        this.timings = timings;
+    }
+
+    @Override
+    public void callStart(Call call) {
+        timings.callStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        timings.connectionReused = false;
+        if (timings.connectStartNanos == -1) {
+            timings.connectStartNanos = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void secureConnectStart(Call call) {
+        timings.tlsStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public void secureConnectEnd(Call call, Handshake handshake) {
+        timings.tlsEndNanos = System.nanoTime();
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+        timings.connectEndNanos = System.nanoTime();
+    }
+
+    @Override
+    public void connectionAcquired(Call call, Connection connection) {
+        timings.protocol = connection.protocol().toString();
+    }
+
+    @Override
+    public void requestHeadersStart(Call call) {
+        timings.requestStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public void requestBodyEnd(Call call, long byteCount) {
+        timings.requestBodyBytes += byteCount;
+    }
+
+    @Override
+    public void responseHeadersStart(Call call) {
+        timings.responseStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+        timings.responseBodyBytes += byteCount;
+    }
+
+    @Override
+    public void callEnd(Call call) {
+        timings.callEndNanos = System.nanoTime();
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        timings.callEndNanos = System.nanoTime();
+    }
+}
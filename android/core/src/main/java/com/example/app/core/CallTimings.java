@@ -0,0 +1,91 @@
+package com.example.app.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phase timings of a single HTTP call, filled in by {@link CallTimingListener}.
+ * Attach an instance as a request tag to read the timings of that call.
+ */
+public class CallTimings {
+    private static final long UNSET = -1;
+
+    volatile long callStartNanos = UNSET;
+    volatile long connectStartNanos = UNSET;
+    volatile long connectEndNanos = UNSET;
+    volatile long tlsStartNanos = UNSET;
+    volatile long tlsEndNanos = UNSET;
+    volatile long requestStartNanos = UNSET;
+    volatile long responseStartNanos = UNSET;
+    volatile long callEndNanos = UNSET;
+    volatile long requestBodyBytes;
+    volatile long responseBodyBytes;
+    volatile boolean connectionReused = true;
+    volatile String protocol;
+
+    public long getConnectMillis() {
+        return elapsedMillis(connectStartNanos, connectEndNanos);
+    }
+
+    public long getTlsMillis() {
+        return elapsedMillis(tlsStartNanos, tlsEndNanos);
+    }
+
+    // Time from the first request byte written until response headers start arriving
+    public long getTimeToFirstByteMillis() {
+        return elapsedMillis(requestStartNanos, responseStartNanos);
+    }
+
+    public long getTotalMillis() {
+        return elapsedMillis(callStartNanos, callEndNanos);
+    }
+
+    public long getRequestBodyBytes() {
+        return requestBodyBytes;
+    }
+
+    // Counted once the body has been read to the end or closed
+    public long getResponseBodyBytes() {
+        return responseBodyBytes;
+    }
+
+    public boolean isConnectionReused() {
+        return connectionReused;
+    }
+
+    public String getProtocol() {
+        return protocol;
+    }
+
+    private static long elapsedMillis(long start, long end) {
+        if (start == UNSET || end == UNSET) return 0;
+        return TimeUnit.NANOSECONDS.toMillis(end - start);
+    }
+
+    // Nanosecond variants for metrics; -1 when the phase was not observed
+    long connectNanos() {
+        return elapsedNanos(connectStartNanos, connectEndNanos);
+    }
+
+    long timeToFirstByteNanos() {
+        return elapsedNanos(requestStartNanos, responseStartNanos);
+    }
+
+    long totalNanos() {
+        return elapsedNanos(callStartNanos, callEndNanos);
+    }
+
+    private static long elapsedNanos(long start, long end) {
+        if (start == UNSET || end == UNSET) return -1;
+        return end - start;
+    }
+
+    @Override
+    public String toString() {
+        return "connect=" + getConnectMillis() + "ms"
+                + " tls=" + getTlsMillis() + "ms"
+                + " ttfb=" + getTimeToFirstByteMillis() + "ms"
+                + " total=" + getTotalMillis() + "ms"
+                + " reused=" + connectionReused
+                + " protocol=" + protocol;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.app.core;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+
+/**
+ * Reusable char buffers for streaming large texts, so handling one costs a buffer instead of
+ * another full copy of the text. Buffers beyond the pooled count are allocated on demand and
+ * dropped on release.
+ */
+public final class CharBufferPool {
+    public static final int DEFAULT_BUFFER_CHARS = 16 * 1024;
+
+    private final int bufferChars;
+    private final int maxPooled;
+    private final ArrayDeque<char[]> free = new ArrayDeque<>();
+
+    public CharBufferPool(int bufferChars, int maxPooled) {
+        // Room for a char and the space before it
+        if (bufferChars < 2) {
+            throw new IllegalArgumentException("bufferChars must be at least 2");
+        }
+        this.bufferChars = bufferChars;
+        this.maxPooled = maxPooled;
+    }
+
+    public synchronized char[] acquire() {
+        char[] buffer = free.poll();
+        return buffer != null ? buffer : new char[bufferChars];
+    }
+
+    public synchronized void release(char[] buffer) {
+        if (buffer.length == bufferChars && free.size() < maxPooled) {
+            free.push(buffer);
+        }
+    }
+
+    // Writes text[start, end) one buffer at a time
+    public void write(CharSequence text, int start, int end, Writer out) throws IOException {
+        char[] buffer = acquire();
+        try {
+            int position = start;
+            while (position < end) {
+                int count = Math.min(buffer.length, end - position);
+                if (text instanceof String) {
+                    ((String) text).getChars(position, position + count, buffer, 0);
+                } else {
+                    for (int i = 0; i < count; i++) {
+                        buffer[i] = text.charAt(position + i);
+                    }
+                }
+                out.write(buffer, 0, count);
+                position += count;
+            }
+        } finally {
+            release(buffer);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.example.app.core;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.ByteString;
+
+/**
+ * Builds, sends and parses chat-completions requests for the proofreading prompt, against one
+ * {@link CorrectionBackend}.
+ */
+public class ChatCompletionClient implements CompletionClient {
+    public static final String API_URL = "https://api.openai.com/v1/chat/completions";
+    public static final String MODEL = "gpt-4o-mini";
+    // The most a reply may be sized to; inputs that would need more are chunked first
+    public static final int MAX_TOKENS = 2000;
+    public static final double TEMPERATURE = 0.3;
+    public static final String SYSTEM_PROMPT =
+            "You are a proofreader and will correct my typos in the text. You will only return the corrected text, nothing else.\n" +
+            "Task and objective:\n" +
+            "* Correcting typos, spelling, punctuation, and grammatical errors in the text provided by the user.\n" +
+            "* Return only the corrected version of the text, without any additional comments, explanations, or questions.\n" +
+            "Behavior and rules:\n" +
+            "1) Receiving the text:\n" +
+            "a) Wait for the text from the user that needs proofreading.\n" +
+            "b) Do not initiate a conversation or ask questions.\n" +
+            "2) Correction and return:\n" +
+            "a) Carefully correct the text for typos, spelling, grammar, and punctuation.\n" +
+            "b) Return the entire text after correction.\n" +
+            "c) Make sure that the reply contains only the corrected text. Do not add any \"Please,\" \"Here is the corrected text,\" or similar phrases.\n" +
+            "3) Tone and style:\n" +
+            "a) Be neutral and impersonal.\n" +
+            "b) Your \"personality\" is to be a quiet but effective tool for proofreading text.\n" +
+            "Text to be corrected:";
+
+    // A complete (non-streamed) reply only starts once the model has generated all of it, so its
+    // read timeout grows with the input, up to MAX_TOKENS of reply; a stream only has to cover the
+    // gap between events
+    static final long MIN_READ_TIMEOUT_MILLIS = 15_000;
+    // Allows for generation as slow as 25 tokens per second
+    static final long READ_TIMEOUT_MILLIS_PER_TOKEN = 40;
+    // A corrected text is about as long as its input, but added diacritics and punctuation cost
+    // tokens, and the estimate can be short; max_tokens counts against the rate limit, so it is no larger
+    static final int REPLY_MARGIN_PERCENT = 50;
+    static final int MIN_REPLY_TOKENS = 64;
+
+    // Lets the caller cancel in-flight calls and see their timings
+    public interface CallObserver {
+        // For calls nobody needs to cancel
+        CallObserver NONE = new CallObserver() {
+            @Override
+            public void onCallStarted(Call call) {
+            }
+
+            @Override
+            public void onCallFinished(Call call, CallTimings timings) {
+            }
+        };
+
+        void onCallStarted(Call call);
+
+        void onCallFinished(Call call, CallTimings timings);
+    }
+
+    // The API answered with an error status, as opposed to the request not getting through
+    public static class ApiException extends IOException {
+        private static final long serialVersionUID = 1L;
+        private final int code;
+        private final long retryAfterMillis;
+
+        public ApiException(int code) {
+            this(code, -1);
+        }
+
+        public ApiException(int code, long retryAfterMillis) {
+            super("API error: " + code);
+            this.code = code;
+            this.retryAfterMillis = retryAfterMillis;
+        }
+
+        public int getCode() {
+            return code;
+        }
+
+        // How long the server asked us to wait before retrying, or -1 if it did not say
+        public long getRetryAfterMillis() {
+            return retryAfterMillis;
+        }
+
+        // Server-side and rate-limit errors may succeed later; other client errors will not
+        public boolean isRetryable() {
+            return code >= 500 || code == 408 || code == 429;
+        }
+    }
+
+    private final OkHttpClient client;
+    private final CorrectionBackend backend;
+    // Encoded once per prompt: [prompt.ordinal() * 2 + (stream ? 1 : 0)]
+    private final ByteString[] requestPrefixes;
+    private final MetricsListener metrics;
+
+    public ChatCompletionClient(OkHttpClient client, String apiUrl) {
+        this(client, apiUrl, MetricsListener.NONE);
+    }
+
+    // The API key is then passed with each call
+    public ChatCompletionClient(OkHttpClient client, String apiUrl, MetricsListener metrics) {
+        this(client, new CorrectionBackend(CorrectionBackend.OPENAI_NAME, apiUrl, MODEL,
+                Collections.<String, String>emptyMap(), CorrectionBackend.DEFAULT_MAX_CONCURRENT_REQUESTS), metrics);
+    }
+
+    // Timings are reported only when the client's event listener fills in CallTimings
+    public ChatCompletionClient(OkHttpClient client, CorrectionBackend backend, MetricsListener metrics) {
+        // Shares the connection pool and dispatcher; only adds the per-call read timeout
+        this.client = client.newBuilder().addInterceptor(ReadTimeout.INTERCEPTOR).build();
+        this.backend = backend;
+        CorrectionPrompt[] prompts = CorrectionPrompt.values();
+        this.requestPrefixes = new ByteString[prompts.length * 2];
+        for (CorrectionPrompt prompt : prompts) {
+            requestPrefixes[prompt.ordinal() * 2] = CompletionCodec.requestPrefix(backend.getModel(), prompt, false);
+            requestPrefixes[prompt.ordinal() * 2 + 1] = CompletionCodec.requestPrefix(backend.getModel(), prompt, true);
+        }
+        this.metrics = metrics;
+    }
+
+    public CorrectionBackend getBackend() {
+        return backend;
+    }
+
+    // Authenticated by the backend's own headers
+    @Override
+    public String complete(String input, CompletionStreamReader.DeltaListener listener, CallObserver observer)
+            throws IOException {
+        return complete(null, input, listener, observer);
+    }
+
+    // Sends one request; with a listener the response is streamed and each delta reported
+    public String complete(String apiKey, String input, CompletionStreamReader.DeltaListener listener,
+                           CallObserver observer) throws IOException {
+        return complete(apiKey, CorrectionPrompt.forInput(input), input, listener, observer, null);
+    }
+
+    // With a given prompt rather than the one for the input's length; usage, if given, receives the token counts
+    public String complete(String apiKey, CorrectionPrompt prompt, String input,
+                           CompletionStreamReader.DeltaListener listener, CallObserver observer, TokenUsage usage)
+            throws IOException {
+        boolean stream = listener != null;
+        CallTimings timings = new CallTimings();
+        ByteString prefix = requestPrefixes[prompt.ordinal() * 2 + (stream ? 1 : 0)];
+        int maxTokens = maxTokensFor(input);
+        metrics.onPrompt(prompt);
+        Request.Builder builder = new Request.Builder()
+                .url(backend.getUrl())
+                .post(CompletionCodec.requestBody(prefix, input, maxTokens))
+                .addHeader("Content-Type", "application/json")
+                .tag(CallTimings.class, timings)
+                .tag(ReadTimeout.class, new ReadTimeout(readTimeoutMillis(input, stream)));
+        if (apiKey != null) {
+            builder.header("Authorization", "Bearer " + apiKey);
+        }
+        for (Map.Entry<String, String> header : backend.getHeaders().entrySet()) {
+            builder.header(header.getKey(), header.getValue());
+        }
+        Request request = builder.build();
+
+        Call call = client.newCall(request);
+        TokenUsage reported = usage != null ? usage : new TokenUsage();
+        long parseNanos = -1;
+        observer.onCallStarted(call);
+        try (Response response = call.execute()) {
+            if (!response.isSuccessful()) {
+                throw new ApiException(response.code(), retryAfterMillis(response));
+            }
+
+            String content;
+            if (stream) {
+                // Parse events straight off the socket instead of buffering the whole body
+                content = CompletionStreamReader.read(response.body().source(), listener, reported);
+            } else {
+                long parseStartNanos = System.nanoTime();
+                content = CompletionCodec.readContent(response.body().source(), reported);
+                parseNanos = System.nanoTime() - parseStartNanos;
+            }
+            if (reported.isTruncated()) {
+                throw new TruncatedResponseException("Reply cut off at " + maxTokens + " tokens");
+            }
+            if (content == null || content.trim().isEmpty()) {
+                throw new MalformedResponseException("No response from API");
+            }
+            return content.trim();
+        } catch (IOException e) {
+            // A cancelled call was abandoned by the caller, not failed by the API
+            if (!call.isCanceled()) {
+                int httpCode = e instanceof ApiException ? ((ApiException) e).getCode() : 0;
+                metrics.onError(CorrectionMetrics.causeOf(e), httpCode);
+            }
+            throw e;
+        } finally {
+            record(timings, reported, parseNanos);
+            observer.onCallFinished(call, timings);
+        }
+    }
+
+    // The max_tokens a request for this input asks for
+    public static int maxTokensFor(String input) {
+        int expected = TokenEstimator.estimate(input);
+        return Math.min(MAX_TOKENS, expected + expected * REPLY_MARGIN_PERCENT / 100 + MIN_REPLY_TOKENS);
+    }
+
+    static long readTimeoutMillis(String input, boolean stream) {
+        if (stream) {
+            return MIN_READ_TIMEOUT_MILLIS;
+        }
+        // A proofread reply is about as long as its input
+        long expectedTokens = Math.min(TokenEstimator.estimate(input), MAX_TOKENS);
+        return MIN_READ_TIMEOUT_MILLIS + expectedTokens * READ_TIMEOUT_MILLIS_PER_TOKEN;
+    }
+
+    // Retry-After is either a number of seconds or an HTTP date
+    private static long retryAfterMillis(Response response) {
+        String value = response.header("Retry-After");
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim())));
+        } catch (NumberFormatException e) {
+            Date date = response.headers().getDate("Retry-After");
+            return date != null ? Math.max(0, date.getTime() - System.currentTimeMillis()) : -1;
+        }
+    }
+
+    private void record(CallTimings timings, TokenUsage usage, long parseNanos) {
+        recordLatency(CorrectionMetrics.Phase.CONNECT, timings.connectNanos());
+        recordLatency(CorrectionMetrics.Phase.TTFB, timings.timeToFirstByteNanos());
+        recordLatency(CorrectionMetrics.Phase.TOTAL, timings.totalNanos());
+        recordLatency(CorrectionMetrics.Phase.PARSE, parseNanos);
+        if (timings.requestBodyBytes > 0 || timings.responseBodyBytes > 0) {
+            metrics.onBytes(timings.requestBodyBytes, timings.responseBodyBytes);
+        }
+        if (usage.isReported()) {
+            metrics.onTokens(usage.getPromptTokens(), usage.getCompletionTokens());
+        }
+        if (usage.getCachedPromptTokens() > 0) {
+            metrics.onCachedPromptTokens(usage.getCachedPromptTokens());
+        }
+    }
+
+    private void recordLatency(CorrectionMetrics.Phase phase, long nanos) {
+        if (nanos >= 0) {
+            metrics.onLatency(phase, nanos);
+        }
+    }
+
+    private static final class ReadTimeout {
+        static final Interceptor INTERCEPTOR = chain -> {
+            ReadTimeout timeout = chain.request().tag(ReadTimeout.class);
+            return timeout != null
+                    ? chain.withReadTimeout((int) timeout.millis, TimeUnit.MILLISECONDS).proceed(chain.request())
+                    : chain.proceed(chain.request());
+        };
+
+        final long millis;
+
+        ReadTimeout(long millis) {
+            this.millis = millis;
+        }
+    }
+}
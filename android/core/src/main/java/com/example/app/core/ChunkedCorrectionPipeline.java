@@ -0,0 +1,114 @@
+package com.example.app.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Corrects the chunks of a {@link TextChunker.Split} concurrently and joins them back in order,
+ * so a long document takes about as long as its slowest chunk.
+ */
+public class ChunkedCorrectionPipeline {
+    public interface ChunkCorrector {
+        String correct(String chunk) throws IOException;
+    }
+
+    public interface ChunkFallback {
+        String correct(String chunk);
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final int maxAttempts;
+    private final AtomicLong failedChunks = new AtomicLong();
+
+    public ChunkedCorrectionPipeline(int maxParallelism, int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+        this.executor = new ThreadPoolExecutor(maxParallelism, maxParallelism, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "correction-chunk");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    // Blocks until every chunk is corrected; a chunk that keeps failing is corrected by the fallback alone
+    public String correct(TextChunker.Split split, ChunkCorrector corrector, ChunkFallback fallback,
+                   CompletionStreamReader.DeltaListener listener) throws InterruptedException {
+        int count = split.size();
+        String[] results = new String[count];
+        OrderedEmitter emitter = new OrderedEmitter(split, results, listener);
+
+        List<Future<?>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final int index = i;
+            futures.add(executor.submit(() -> {
+                results[index] = correctChunk(split.getChunks().get(index), corrector, fallback);
+                emitter.onChunkDone();
+            }));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+            throw e;
+        }
+        return split.join(Arrays.asList(results));
+    }
+
+    // Chunks that exhausted their attempts and were corrected by the fallback
+    public long getFailedChunkCount() {
+        return failedChunks.get();
+    }
+
+    private String correctChunk(String chunk, ChunkCorrector corrector, ChunkFallback fallback) {
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                return corrector.correct(chunk);
+            } catch (IOException e) {
+                // Retry, then fall back below
+            }
+        }
+        failedChunks.incrementAndGet();
+        return fallback.correct(chunk);
+    }
+
+    // Hands finished chunks to the listener strictly in document order
+    private static class OrderedEmitter {
+        private final TextChunker.Split split;
+        private final String[] results;
+        private final CompletionStreamReader.DeltaListener listener;
+        private int next;
+
+        OrderedEmitter(TextChunker.Split split, String[] results, CompletionStreamReader.DeltaListener listener) {
+            this.split = split;
+            this.results = results;
+            this.listener = listener;
+        }
+
+        synchronized void onChunkDone() {
+            if (listener == null) {
+                return;
+            }
+            while (next < results.length && results[next] != null) {
+                // Leading whitespace of the document is dropped, as in the trimmed single-request result
+                listener.onDelta(next == 0 ? results[0] : split.separatorBefore(next) + results[next]);
+                next++;
+            }
+        }
+    }
+}
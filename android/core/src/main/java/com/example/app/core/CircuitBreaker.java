@@ -0,0 +1,84 @@
+package com.example.app.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops calling the API after a run of consecutive failures. While open every request is refused
+ * (so the caller can go straight to the local correction); after the open period a single probe
+ * request is let through, and its outcome closes the breaker again or re-opens it.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    interface Clock {
+        long nanoTime();
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final Clock clock;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtNanos;
+    private long probeStartedNanos;
+    private boolean probeInFlight;
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this(failureThreshold, openMillis, System::nanoTime);
+    }
+
+    CircuitBreaker(int failureThreshold, long openMillis, Clock clock) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.clock = clock;
+    }
+
+    // False while the API is considered down; a true in the half-open state makes the caller the probe
+    public synchronized boolean allowRequest() {
+        long now = clock.nanoTime();
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (now - openedAtNanos < openNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                break;
+            case HALF_OPEN:
+                // A probe that never reported back (e.g. it was cancelled) must not block the breaker for good
+                if (probeInFlight && now - probeStartedNanos < openNanos) {
+                    return false;
+                }
+                break;
+        }
+        probeInFlight = true;
+        probeStartedNanos = now;
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        probeInFlight = false;
+    }
+
+    // Only failures that say something about the API's health should be reported
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAtNanos = clock.nanoTime();
+            probeInFlight = false;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
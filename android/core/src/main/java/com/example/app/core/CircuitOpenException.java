@@ -0,0 +1,14 @@
+package com.example.app.core;
+
+import java.io.IOException;
+
+/**
+ * The request was not sent because the {@link CircuitBreaker} considers the API down.
+ */
+public class CircuitOpenException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public CircuitOpenException() {
+        super("API unavailable, circuit open");
+    }
+}
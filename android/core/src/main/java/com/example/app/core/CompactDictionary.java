@@ -0,0 +1,159 @@
+package com.example.app.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only word list, memory-mapped in the automaton format {@link DictionaryBuilder} writes.
+ * Only the pages a lookup touches are read in, so opening a dictionary costs nothing however large
+ * it is, and the words never live on the heap. Lookups fold case and allocate nothing; instances
+ * are safe to share between threads.
+ *
+ * <p>File layout, big-endian: magic, word count, root node offset, alphabet size, flags and the
+ * alphabet as UTF-16 chars, then the nodes. A node is a flags byte (terminal bit and frequency class), a
+ * child count and, per child in label order, a one-byte label and the child's int offset.
+ */
+public final class CompactDictionary {
+    static final int MAGIC = 0x54504432;
+    // The word list holds every word form of its language, so a word missing from it is misspelled
+    static final int COMPLETE = 0x01;
+    static final int MAX_ALPHABET = 255;
+    static final int TERMINAL = 0x80;
+    private static final int FREQUENCY_MASK = 0x0f;
+    private static final int CHILD_ENTRY_BYTES = 5;
+
+    private final ByteBuffer buffer;
+    private final int wordCount;
+    private final int root;
+    private final boolean complete;
+    // Label - 1 to char, and char to label for the chars up to the largest one in the alphabet
+    private final char[] alphabet;
+    private final byte[] labels;
+
+    private CompactDictionary(ByteBuffer buffer, int wordCount, int root, boolean complete, char[] alphabet) {
+        this.buffer = buffer;
+        this.wordCount = wordCount;
+        this.root = root;
+        this.complete = complete;
+        this.alphabet = alphabet;
+        this.labels = new byte[alphabet.length == 0 ? 0 : alphabet[alphabet.length - 1] + 1];
+        for (int i = 0; i < alphabet.length; i++) {
+            labels[alphabet[i]] = (byte) (i + 1);
+        }
+    }
+
+    static int headerSize(int alphabetSize) {
+        return 16 + 2 * alphabetSize;
+    }
+
+    public static CompactDictionary map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            // The mapping outlives the channel
+            return wrap(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // For a buffer holding exactly one dictionary, e.g. an uncompressed asset mapped at its offset
+    public static CompactDictionary wrap(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < headerSize(0) || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a dictionary");
+        }
+        int alphabetSize = buffer.getShort(12);
+        if (alphabetSize < 0 || alphabetSize > MAX_ALPHABET || buffer.capacity() < headerSize(alphabetSize)) {
+            throw new IOException("Corrupt dictionary header");
+        }
+        char[] alphabet = new char[alphabetSize];
+        for (int i = 0; i < alphabetSize; i++) {
+            alphabet[i] = buffer.getChar(16 + 2 * i);
+        }
+        int root = buffer.getInt(8);
+        if (root < headerSize(alphabetSize) || root >= buffer.capacity()) {
+            throw new IOException("Corrupt dictionary header");
+        }
+        boolean complete = (buffer.getShort(14) & COMPLETE) != 0;
+        return new CompactDictionary(buffer, buffer.getInt(4), root, complete, alphabet);
+    }
+
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    // Whether the word list was marked as holding every word form; a starter list is not
+    public boolean isComplete() {
+        return complete;
+    }
+
+    // Bytes of the mapped file, which the OS pages in on demand
+    public int getSizeBytes() {
+        return buffer.capacity();
+    }
+
+    public boolean contains(CharSequence text, int start, int end) {
+        return frequencyClass(text, start, end) >= 0;
+    }
+
+    // From 0 for the rarest words to 15 for the most common, or -1 when the word is not in the dictionary
+    public int frequencyClass(CharSequence text, int start, int end) {
+        int node = root;
+        for (int i = start; i < end && node >= 0; i++) {
+            int label = label(text.charAt(i));
+            node = label == 0 ? -1 : child(node, label);
+        }
+        return node >= 0 && isTerminal(node) ? frequencyClass(node) : -1;
+    }
+
+    int root() {
+        return root;
+    }
+
+    // The label of the lower-cased char, or 0 when no word contains it
+    int label(char c) {
+        char folded = Character.toLowerCase(c);
+        return folded < labels.length ? labels[folded] & 0xff : 0;
+    }
+
+    char charOf(int label) {
+        return alphabet[label - 1];
+    }
+
+    boolean isTerminal(int node) {
+        return (buffer.get(node) & TERMINAL) != 0;
+    }
+
+    int frequencyClass(int node) {
+        return buffer.get(node) & FREQUENCY_MASK;
+    }
+
+    int childCount(int node) {
+        return buffer.get(node + 1) & 0xff;
+    }
+
+    int childLabel(int node, int index) {
+        return buffer.get(node + 2 + index * CHILD_ENTRY_BYTES) & 0xff;
+    }
+
+    int childNode(int node, int index) {
+        return buffer.getInt(node + 3 + index * CHILD_ENTRY_BYTES);
+    }
+
+    // Children are sorted by label
+    int child(int node, int label) {
+        int low = 0;
+        int high = childCount(node) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midLabel = childLabel(node, mid);
+            if (midLabel < label) {
+                low = mid + 1;
+            } else if (midLabel > label) {
+                high = mid - 1;
+            } else {
+                return childNode(node, mid);
+            }
+        }
+        return -1;
+    }
+}
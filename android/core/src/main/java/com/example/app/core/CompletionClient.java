@@ -0,0 +1,13 @@
+package com.example.app.core;
+
+import java.io.IOException;
+
+/**
+ * Sends one correction request somewhere that answers it: a single backend, or a router that
+ * picks one of several.
+ */
+public interface CompletionClient {
+    // With a listener the response is streamed and each delta reported
+    String complete(String input, CompletionStreamReader.DeltaListener listener,
+                    ChatCompletionClient.CallObserver observer) throws IOException;
+}
@@ -0,0 +1,302 @@
+package com.example.app.core;
+
+import java.io.IOException;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+
+/**
+ * Streams chat-completions JSON without building a document tree: requests are written straight
+ * into the request sink behind a pre-encoded prompt prefix, and only the reply text is pulled
+ * out of responses.
+ */
+public final class CompletionCodec {
+    public static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    // Escapes for the characters JSON strings cannot hold as-is, indexed by char
+    private static final String[] REPLACEMENTS = new String[128];
+
+    static {
+        for (int c = 0; c < 0x20; c++) {
+            REPLACEMENTS[c] = String.format("\\u%04x", c);
+        }
+        REPLACEMENTS['"'] = "\\\"";
+        REPLACEMENTS['\\'] = "\\\\";
+        REPLACEMENTS['\t'] = "\\t";
+        REPLACEMENTS['\b'] = "\\b";
+        REPLACEMENTS['\n'] = "\\n";
+        REPLACEMENTS['\r'] = "\\r";
+        REPLACEMENTS['\f'] = "\\f";
+    }
+
+    // Everything up to the user text is constant, so it is encoded once per process
+    private static final ByteString REQUEST_PREFIX = requestPrefix(ChatCompletionClient.MODEL, false);
+    private static final ByteString STREAM_REQUEST_PREFIX = requestPrefix(ChatCompletionClient.MODEL, true);
+    // max_tokens follows the messages, so the prefix stays the same whatever the reply is sized to
+    private static final ByteString REQUEST_SUFFIX = ByteString.encodeUtf8("\"}],\"max_tokens\":");
+
+    private static final ByteString CHOICES = ByteString.encodeUtf8("choices");
+    private static final ByteString MESSAGE = ByteString.encodeUtf8("message");
+    private static final ByteString DELTA = ByteString.encodeUtf8("delta");
+    private static final ByteString CONTENT = ByteString.encodeUtf8("content");
+    private static final ByteString FINISH_REASON = ByteString.encodeUtf8("finish_reason");
+    private static final ByteString USAGE = ByteString.encodeUtf8("usage");
+    private static final ByteString PROMPT_TOKENS = ByteString.encodeUtf8("prompt_tokens");
+    private static final ByteString COMPLETION_TOKENS = ByteString.encodeUtf8("completion_tokens");
+    private static final ByteString PROMPT_TOKENS_DETAILS = ByteString.encodeUtf8("prompt_tokens_details");
+    private static final ByteString CACHED_TOKENS = ByteString.encodeUtf8("cached_tokens");
+    // Top-level fields of a response, of the usage object and of its prompt details, in selectName order
+    private static final ByteString[] RESPONSE_FIELDS = {CHOICES, USAGE};
+    private static final ByteString[] MESSAGE_CHOICE_FIELDS = {MESSAGE, FINISH_REASON};
+    private static final ByteString[] DELTA_CHOICE_FIELDS = {DELTA, FINISH_REASON};
+    private static final ByteString[] USAGE_FIELDS = {PROMPT_TOKENS, COMPLETION_TOKENS, PROMPT_TOKENS_DETAILS};
+    private static final ByteString[] PROMPT_DETAILS_FIELDS = {CACHED_TOKENS};
+
+    private CompletionCodec() {
+    }
+
+    public static RequestBody requestBody(String input, boolean stream) {
+        return new CompletionRequestBody(stream ? STREAM_REQUEST_PREFIX : REQUEST_PREFIX, input,
+                ChatCompletionClient.MAX_TOKENS);
+    }
+
+    // For another model: the caller encodes the prefix once with requestPrefix and keeps it
+    public static RequestBody requestBody(ByteString prefix, String input) {
+        return new CompletionRequestBody(prefix, input, ChatCompletionClient.MAX_TOKENS);
+    }
+
+    // With the reply limited to maxTokens
+    public static RequestBody requestBody(ByteString prefix, String input, int maxTokens) {
+        return new CompletionRequestBody(prefix, input, maxTokens);
+    }
+
+    // Returns choices[0].message.content of a complete response, or null when there is none
+    public static String readContent(BufferedSource source) throws IOException {
+        return readChoiceContent(source, MESSAGE_CHOICE_FIELDS, null);
+    }
+
+    // As above, also filling in the usage and truncation when the response reports them
+    public static String readContent(BufferedSource source, TokenUsage usage) throws IOException {
+        return readChoiceContent(source, MESSAGE_CHOICE_FIELDS, usage);
+    }
+
+    // Returns choices[0].delta.content of one streamed event, or null when there is none
+    static String readDeltaContent(BufferedSource source, TokenUsage usage) throws IOException {
+        return readChoiceContent(source, DELTA_CHOICE_FIELDS, usage);
+    }
+
+    // choiceFields are the field holding the content, then finish_reason
+    private static String readChoiceContent(BufferedSource source, ByteString[] choiceFields, TokenUsage usage)
+            throws IOException {
+        JsonStreamReader reader = new JsonStreamReader(source);
+        String content = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            int name = reader.selectName(RESPONSE_FIELDS);
+            if (name == 1 && usage != null && reader.peek() == '{') {
+                // null in every streamed event but the last
+                readUsage(reader, usage);
+            } else if (name == 0 && reader.peek() == '[') {
+                reader.beginArray();
+                if (reader.hasNext()) {
+                    content = readFieldContent(reader, choiceFields, usage);
+                }
+                while (reader.hasNext()) {
+                    reader.skipValue();
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return content;
+    }
+
+    private static void readUsage(JsonStreamReader reader, TokenUsage usage) throws IOException {
+        long promptTokens = 0;
+        long completionTokens = 0;
+        long cachedTokens = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            int name = reader.selectName(USAGE_FIELDS);
+            if (name == -1 || reader.peek() == 'n') {
+                reader.skipValue();
+            } else if (name == 0) {
+                promptTokens = reader.nextLong();
+            } else if (name == 1) {
+                completionTokens = reader.nextLong();
+            } else {
+                cachedTokens = readCachedTokens(reader);
+            }
+        }
+        reader.endObject();
+        usage.set(promptTokens, completionTokens, cachedTokens);
+    }
+
+    // The prompt tokens the provider served from its prompt cache
+    private static long readCachedTokens(JsonStreamReader reader) throws IOException {
+        long cachedTokens = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.selectName(PROMPT_DETAILS_FIELDS) == 0 && reader.peek() != 'n') {
+                cachedTokens = reader.nextLong();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return cachedTokens;
+    }
+
+    // Reads choice.<field>.content and whether finish_reason says the reply was cut off, skipping the rest
+    private static String readFieldContent(JsonStreamReader reader, ByteString[] choiceFields, TokenUsage usage)
+            throws IOException {
+        String content = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            int name = reader.selectName(choiceFields);
+            if (name == 1 && usage != null && reader.peek() == '"') {
+                // "length" when the reply stopped at max_tokens
+                if ("length".equals(reader.nextString())) {
+                    usage.markTruncated();
+                }
+            } else if (name == 0 && reader.peek() == '{') {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (reader.nextNameIs(CONTENT) && reader.peek() == '"') {
+                        content = reader.nextString();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return content;
+    }
+
+    static void writeString(BufferedSink sink, String value) throws IOException {
+        int runStart = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            String replacement = replacementFor(value.charAt(i));
+            if (replacement == null) {
+                continue;
+            }
+            if (runStart < i) {
+                sink.writeUtf8(value, runStart, i);
+            }
+            sink.writeUtf8(replacement);
+            runStart = i + 1;
+        }
+        if (runStart < length) {
+            sink.writeUtf8(value, runStart, length);
+        }
+    }
+
+    // Byte length of writeString's output, so the body can declare a Content-Length
+    static long encodedLength(String value) {
+        long size = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            String replacement = replacementFor(c);
+            if (replacement != null) {
+                size += replacement.length();
+            } else if (c < 0x80) {
+                size += 1;
+            } else if (c < 0x800) {
+                size += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                size += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // okio writes an unpaired surrogate as '?'
+                size += 1;
+            } else {
+                size += 3;
+            }
+        }
+        return size;
+    }
+
+    private static String replacementFor(char c) {
+        if (c < 128) {
+            return REPLACEMENTS[c];
+        }
+        // Valid JSON, but not valid inside JavaScript strings
+        if (c == '\u2028') {
+            return "\\u2028";
+        }
+        if (c == '\u2029') {
+            return "\\u2029";
+        }
+        return null;
+    }
+
+    public static ByteString requestPrefix(String model, boolean stream) {
+        return requestPrefix(model, CorrectionPrompt.FULL, stream);
+    }
+
+    // Everything before the user's text. The system prompt comes first in the messages, so the part
+    // a provider can cache is the same for every request with this prompt
+    public static ByteString requestPrefix(String model, CorrectionPrompt prompt, boolean stream) {
+        Buffer buffer = new Buffer();
+        try {
+            buffer.writeUtf8("{\"model\":\"");
+            writeString(buffer, model);
+            buffer.writeUtf8("\",\"temperature\":").writeUtf8(String.valueOf(ChatCompletionClient.TEMPERATURE));
+            if (stream) {
+                // The final event then reports the token usage, as a complete response does
+                buffer.writeUtf8(",\"stream\":true,\"stream_options\":{\"include_usage\":true}");
+            }
+            buffer.writeUtf8(",\"messages\":[{\"role\":\"system\",\"content\":\"");
+            writeString(buffer, prompt.getText());
+            buffer.writeUtf8("\"},{\"role\":\"user\",\"content\":\"");
+        } catch (IOException e) {
+            // A Buffer never fails to write
+            throw new AssertionError(e);
+        }
+        return buffer.readByteString();
+    }
+
+    private static final class CompletionRequestBody extends RequestBody {
+        private final ByteString prefix;
+        private final String input;
+        // The value of max_tokens and the closing brace
+        private final String end;
+        private final long contentLength;
+
+        CompletionRequestBody(ByteString prefix, String input, int maxTokens) {
+            this.prefix = prefix;
+            this.input = input;
+            this.end = maxTokens + "}";
+            this.contentLength = prefix.size() + encodedLength(input) + REQUEST_SUFFIX.size() + end.length();
+        }
+
+        @Override
+        public MediaType contentType() {
+            return JSON;
+        }
+
+        @Override
+        public long contentLength() {
+            return contentLength;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            sink.write(prefix);
+            writeString(sink, input);
+            sink.write(REQUEST_SUFFIX);
+            sink.writeUtf8(end);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.app.core;
+
+import java.io.IOException;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+
+/**
+ * Reads a chat-completions server-sent-event stream line by line off the response source.
+ */
+public class CompletionStreamReader {
+    private static final ByteString DATA_PREFIX = ByteString.encodeUtf8("data:");
+    private static final ByteString DONE = ByteString.encodeUtf8("[DONE]");
+
+    public interface DeltaListener {
+        void onDelta(String delta);
+    }
+
+    private CompletionStreamReader() {
+    }
+
+    // Returns the concatenated content of all deltas, notifying the listener as each one arrives
+    public static String read(BufferedSource source, DeltaListener listener) throws IOException {
+        return read(source, listener, null);
+    }
+
+    // As above, also filling in the usage reported by the final event, if any
+    public static String read(BufferedSource source, DeltaListener listener, TokenUsage usage) throws IOException {
+        StringBuilder content = new StringBuilder();
+        Buffer event = new Buffer();
+        while (!source.exhausted()) {
+            long lineEnd = source.indexOf((byte) '\n');
+            long lineLength = lineEnd == -1 ? source.getBuffer().size() : lineEnd;
+            if (!source.rangeEquals(0, DATA_PREFIX)) {
+                // Blank event separators, comments and other SSE fields carry no content
+                source.skip(lineEnd == -1 ? lineLength : lineLength + 1);
+                continue;
+            }
+
+            // Move the event's bytes over as-is and parse them in place, without decoding the line
+            source.skip(DATA_PREFIX.size());
+            source.readFully(event, lineLength - DATA_PREFIX.size());
+            if (lineEnd != -1) {
+                source.skip(1);
+            }
+            while (event.size() > 0 && event.getByte(0) == ' ') {
+                event.skip(1);
+            }
+            if (event.rangeEquals(0, DONE)) {
+                break;
+            }
+            if (event.size() == 0) {
+                continue;
+            }
+
+            String text = CompletionCodec.readDeltaContent(event, usage);
+            event.clear();
+            if (text != null && !text.isEmpty()) {
+                content.append(text);
+                listener.onDelta(text);
+            }
+        }
+        return content.toString();
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.app.core;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import okhttp3.HttpUrl;
+
+/**
+ * An OpenAI-compatible chat-completions endpoint: where to send requests, which model to ask for,
+ * the headers to add (credentials included) and how many requests it may serve at once.
+ */
+public final class CorrectionBackend {
+    public static final String OPENAI_NAME = "OpenAI";
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+    private static final String CHAT_COMPLETIONS_PATH = "/chat/completions";
+
+    private final String name;
+    private final String url;
+    private final String model;
+    private final Map<String, String> headers;
+    private final int maxConcurrentRequests;
+
+    // baseUrl is either the full chat-completions URL or the API root it hangs off, e.g. http://host:8080/v1
+    public CorrectionBackend(String name, String baseUrl, String model, Map<String, String> headers,
+                             int maxConcurrentRequests) {
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException("maxConcurrentRequests must be at least 1");
+        }
+        this.name = name;
+        this.url = chatCompletionsUrl(baseUrl);
+        if (HttpUrl.parse(url) == null) {
+            throw new IllegalArgumentException("Not an http(s) URL: " + baseUrl);
+        }
+        this.model = model;
+        this.headers = Collections.unmodifiableMap(new LinkedHashMap<>(headers));
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    public static CorrectionBackend openAi(String apiKey) {
+        return openAi(ChatCompletionClient.API_URL, apiKey);
+    }
+
+    public static CorrectionBackend openAi(String url, String apiKey) {
+        return new CorrectionBackend(OPENAI_NAME, url, ChatCompletionClient.MODEL,
+                Collections.singletonMap("Authorization", "Bearer " + apiKey), DEFAULT_MAX_CONCURRENT_REQUESTS);
+    }
+
+    private static String chatCompletionsUrl(String baseUrl) {
+        String url = baseUrl.trim();
+        while (url.endsWith("/")) {
+            url = url.substring(0, url.length() - 1);
+        }
+        return url.endsWith(CHAT_COMPLETIONS_PATH) ? url : url + CHAT_COMPLETIONS_PATH;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CorrectionBackend)) {
+            return false;
+        }
+        CorrectionBackend other = (CorrectionBackend) o;
+        return name.equals(other.name) && url.equals(other.url) && model.equals(other.model)
+                && headers.equals(other.headers) && maxConcurrentRequests == other.maxConcurrentRequests;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = name.hashCode();
+        result = 31 * result + url.hashCode();
+        result = 31 * result + model.hashCode();
+        result = 31 * result + headers.hashCode();
+        return 31 * result + maxConcurrentRequests;
+    }
+
+    // Without the headers, which may hold credentials
+    @Override
+    public String toString() {
+        return name + " (" + model + " @ " + url + ")";
+    }
+}
@@ -0,0 +1,315 @@
+package com.example.app.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Call;
+
+/**
+ * Collects short texts submitted within a few milliseconds of each other and corrects them with a
+ * single API call, packed and split by {@link BatchCodec}. A batch goes out when its window ends or
+ * when it reaches its size or token limit. When the reply cannot be split reliably, each text of
+ * the batch is corrected with a call of its own instead.
+ */
+public class CorrectionBatcher {
+    public interface Sender {
+        // One API call; the observer sees every HTTP call made for it
+        String send(String input, ChatCompletionClient.CallObserver observer) throws IOException, InterruptedException;
+    }
+
+    // Called on a batcher thread, once per item unless the item was cancelled
+    public interface ItemCallback {
+        void onResult(String corrected);
+
+        void onFailure(IOException failure);
+
+        // The first HTTP call carrying the item has started
+        default void onSent() {
+        }
+    }
+
+    // Marker line and separating newlines around each packed text
+    private static final int TOKENS_PER_ITEM = 4;
+
+    private final int maxBatchSize;
+    private final long maxWaitMillis;
+    private final int maxBatchTokens;
+    private final Sender sender;
+    private final MetricsListener metrics;
+    private final ScheduledThreadPoolExecutor timer;
+    private final ThreadPoolExecutor executor;
+    private final List<Item> pending = new ArrayList<>();
+    private int pendingTokens;
+    private ScheduledFuture<?> scheduledFlush;
+
+    // maxBatchTokens bounds the packed texts, so the corrected batch still fits in one reply
+    public CorrectionBatcher(int maxBatchSize, long maxWaitMillis, int maxBatchTokens, int maxParallelCalls,
+                             Sender sender, MetricsListener metrics) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be at least 1");
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitMillis = maxWaitMillis;
+        this.maxBatchTokens = maxBatchTokens;
+        this.sender = sender;
+        this.metrics = metrics;
+        this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "correction-batch-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer.setRemoveOnCancelPolicy(true);
+        this.executor = new ThreadPoolExecutor(maxParallelCalls, maxParallelCalls, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "correction-batch");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public static int estimateTokens(String text) {
+        return TokenEstimator.estimate(text) + TOKENS_PER_ITEM;
+    }
+
+    // Texts that BatchCodec cannot pack, or that fill a batch alone, are sent by themselves right away
+    public Item submit(String text, ItemCallback callback) {
+        Item item = new Item(text, callback);
+        if (!BatchCodec.canPack(text) || item.tokens >= maxBatchTokens) {
+            send(single(item));
+            return item;
+        }
+        List<Item> full = null;
+        List<Item> ready = null;
+        synchronized (this) {
+            if (!pending.isEmpty() && pendingTokens + item.tokens > maxBatchTokens) {
+                full = drain();
+            }
+            pending.add(item);
+            pendingTokens += item.tokens;
+            if (pending.size() >= maxBatchSize) {
+                ready = drain();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = timer.schedule(this::flush, maxWaitMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full != null) {
+            send(full);
+        }
+        if (ready != null) {
+            send(ready);
+        }
+        return item;
+    }
+
+    // Sends whatever is waiting without waiting for the window to end
+    public void flush() {
+        List<Item> batch;
+        synchronized (this) {
+            batch = drain();
+        }
+        if (!batch.isEmpty()) {
+            send(batch);
+        }
+    }
+
+    // Called with the lock held
+    private List<Item> drain() {
+        List<Item> batch = new ArrayList<>(pending);
+        pending.clear();
+        pendingTokens = 0;
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private static List<Item> single(Item item) {
+        List<Item> batch = new ArrayList<>(1);
+        batch.add(item);
+        return batch;
+    }
+
+    private void send(List<Item> items) {
+        executor.execute(() -> {
+            Batch batch = new Batch(items);
+            if (!batch.isEmpty()) {
+                batch.run();
+            }
+        });
+    }
+
+    public final class Item {
+        private final String text;
+        private final ItemCallback callback;
+        private final int tokens;
+        private Batch batch;
+        private boolean cancelled;
+
+        private Item(String text, ItemCallback callback) {
+            this.text = text;
+            this.callback = callback;
+            this.tokens = estimateTokens(text);
+        }
+
+        // Drops the item; the call carrying it is cancelled once nothing else in it is wanted
+        public void cancel() {
+            Batch current;
+            synchronized (CorrectionBatcher.this) {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                if (pending.remove(this)) {
+                    pendingTokens -= tokens;
+                }
+                current = batch;
+            }
+            if (current != null) {
+                current.onItemCancelled();
+            }
+        }
+    }
+
+    // One API call for the items that were still wanted when it was sent
+    private final class Batch implements ChatCompletionClient.CallObserver {
+        private final List<Item> items = new ArrayList<>();
+        private final List<Call> calls = new ArrayList<>();
+        private boolean sent;
+
+        Batch(List<Item> candidates) {
+            synchronized (CorrectionBatcher.this) {
+                for (Item item : candidates) {
+                    if (!item.cancelled) {
+                        item.batch = this;
+                        items.add(item);
+                    }
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return items.isEmpty();
+        }
+
+        void run() {
+            if (items.size() == 1) {
+                Item item = items.get(0);
+                try {
+                    deliver(item, sender.send(item.text, this));
+                } catch (IOException e) {
+                    fail(item, e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    fail(item, new IOException("Interrupted", e));
+                }
+                return;
+            }
+
+            List<String> texts = new ArrayList<>(items.size());
+            for (Item item : items) {
+                texts.add(item.text);
+            }
+            List<String> corrected;
+            try {
+                corrected = BatchCodec.split(sender.send(BatchCodec.pack(texts), this), texts);
+            } catch (IOException e) {
+                for (Item item : items) {
+                    fail(item, e);
+                }
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                IOException failure = new IOException("Interrupted", e);
+                for (Item item : items) {
+                    fail(item, failure);
+                }
+                return;
+            }
+
+            metrics.onBatch(items.size(), corrected != null);
+            if (corrected == null) {
+                // Better one call per text than corrections handed to the wrong caller
+                for (Item item : items) {
+                    send(single(item));
+                }
+                return;
+            }
+            for (int i = 0; i < items.size(); i++) {
+                deliver(items.get(i), corrected.get(i));
+            }
+        }
+
+        private void deliver(Item item, String corrected) {
+            if (!isCancelled(item)) {
+                item.callback.onResult(corrected);
+            }
+        }
+
+        private void fail(Item item, IOException failure) {
+            if (!isCancelled(item)) {
+                item.callback.onFailure(failure);
+            }
+        }
+
+        private boolean isCancelled(Item item) {
+            synchronized (CorrectionBatcher.this) {
+                return item.cancelled;
+            }
+        }
+
+        void onItemCancelled() {
+            List<Call> toCancel;
+            synchronized (CorrectionBatcher.this) {
+                for (Item item : items) {
+                    if (!item.cancelled) {
+                        return;
+                    }
+                }
+                toCancel = new ArrayList<>(calls);
+                calls.clear();
+            }
+            for (Call call : toCancel) {
+                call.cancel();
+            }
+        }
+
+        @Override
+        public void onCallStarted(Call call) {
+            List<Item> notified = null;
+            synchronized (CorrectionBatcher.this) {
+                boolean allCancelled = true;
+                for (Item item : items) {
+                    allCancelled &= item.cancelled;
+                }
+                if (allCancelled) {
+                    call.cancel();
+                    return;
+                }
+                calls.add(call);
+                if (!sent) {
+                    sent = true;
+                    notified = new ArrayList<>(items);
+                }
+            }
+            if (notified != null) {
+                for (Item item : notified) {
+                    item.callback.onSent();
+                }
+            }
+        }
+
+        @Override
+        public void onCallFinished(Call call, CallTimings timings) {
+            synchronized (CorrectionBatcher.this) {
+                calls.remove(call);
+            }
+        }
+    }
+}
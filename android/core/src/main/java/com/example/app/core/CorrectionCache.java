@@ -0,0 +1,275 @@
+package com.example.app.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two-tier cache of corrected texts keyed by a hash of everything that determines the API output:
+ * a bounded in-memory LRU in front of a size-capped directory of files with a TTL. Each file starts
+ * with the time it was written, which the TTL is measured from; its modification time is moved
+ * on every hit, so the disk tier too evicts the least recently used entries first.
+ */
+public class CorrectionCache {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int HEADER_BYTES = 8;
+
+    static final int DEFAULT_MEMORY_MAX_CHARS = 256 * 1024;
+    static final long DEFAULT_DISK_MAX_BYTES = 4 * 1024 * 1024;
+    static final long DEFAULT_DISK_TTL_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+    private final int memoryMaxChars;
+    private final LinkedHashMap<String, String> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private int memoryChars;
+
+    private final File directory;
+    private final long diskMaxBytes;
+    private final long diskTtlMillis;
+    private long diskBytes = -1;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public CorrectionCache(File directory) {
+        this(directory, DEFAULT_MEMORY_MAX_CHARS, DEFAULT_DISK_MAX_BYTES, DEFAULT_DISK_TTL_MILLIS);
+    }
+
+    CorrectionCache(File directory, int memoryMaxChars, long diskMaxBytes, long diskTtlMillis) {
+        this.directory = directory;
+        this.memoryMaxChars = memoryMaxChars;
+        this.diskMaxBytes = diskMaxBytes;
+        this.diskTtlMillis = diskTtlMillis;
+    }
+
+    public static String key(String model, String systemPrompt, double temperature, String input) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, model);
+            update(digest, systemPrompt);
+            update(digest, Double.toString(temperature));
+            update(digest, input);
+            byte[] hash = digest.digest();
+            char[] hex = new char[hash.length * 2];
+            for (int i = 0; i < hash.length; i++) {
+                hex[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+                hex[i * 2 + 1] = HEX[hash[i] & 0xf];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String part) {
+        digest.update(part.getBytes(StandardCharsets.UTF_8));
+        // Separator keeps ("ab", "c") and ("a", "bc") from hashing alike
+        digest.update((byte) 0);
+    }
+
+    // Memory tier only; cheap enough for the main thread
+    public String getFromMemory(String key) {
+        String value;
+        synchronized (memory) {
+            value = memory.get(key);
+        }
+        if (value != null) {
+            memoryHits.incrementAndGet();
+        }
+        return value;
+    }
+
+    // Disk tier; does file I/O so it must run on a background thread. A hit is promoted to memory.
+    public String getFromDisk(String key) {
+        String value = readFile(key);
+        if (value != null) {
+            diskHits.incrementAndGet();
+            putInMemory(key, value);
+        } else {
+            misses.incrementAndGet();
+        }
+        return value;
+    }
+
+    public String get(String key) {
+        String value = getFromMemory(key);
+        return value != null ? value : getFromDisk(key);
+    }
+
+    // Writes both tiers; does file I/O so it must run on a background thread
+    public void put(String key, String value) {
+        putInMemory(key, value);
+        writeFile(key, value);
+    }
+
+    private void putInMemory(String key, String value) {
+        if (value.length() > memoryMaxChars) {
+            return;
+        }
+        synchronized (memory) {
+            String previous = memory.put(key, value);
+            if (previous != null) {
+                memoryChars -= previous.length();
+            }
+            memoryChars += value.length();
+
+            Iterator<Map.Entry<String, String>> eldest = memory.entrySet().iterator();
+            while (memoryChars > memoryMaxChars && eldest.hasNext()) {
+                memoryChars -= eldest.next().getValue().length();
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private synchronized String readFile(String key) {
+        File file = new File(directory, key);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        byte[] data = new byte[(int) file.length()];
+        try (InputStream in = new FileInputStream(file)) {
+            int offset = 0;
+            while (offset < data.length) {
+                int read = in.read(data, offset, data.length - offset);
+                if (read < 0) {
+                    return null;
+                }
+                offset += read;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        // A header from the future is a file from before headers, or a clock set back: dropped either way
+        long age = data.length < HEADER_BYTES ? -1 : now - readLong(data);
+        if (age < 0 || age > diskTtlMillis) {
+            deleteFile(file);
+            return null;
+        }
+        file.setLastModified(now);
+        return new String(data, HEADER_BYTES, data.length - HEADER_BYTES, StandardCharsets.UTF_8);
+    }
+
+    private static long readLong(byte[] data) {
+        long value = 0;
+        for (int i = 0; i < HEADER_BYTES; i++) {
+            value = value << 8 | (data[i] & 0xff);
+        }
+        return value;
+    }
+
+    private synchronized void writeFile(String key, String value) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            return;
+        }
+        ensureDiskSizeKnown();
+
+        File file = new File(directory, key);
+        File temp = new File(directory, key + ".tmp");
+        byte[] text = value.getBytes(StandardCharsets.UTF_8);
+        byte[] data = new byte[HEADER_BYTES + text.length];
+        long now = System.currentTimeMillis();
+        for (int i = HEADER_BYTES - 1; i >= 0; i--, now >>>= 8) {
+            data[i] = (byte) now;
+        }
+        System.arraycopy(text, 0, data, HEADER_BYTES, text.length);
+        if (data.length > diskMaxBytes) {
+            return;
+        }
+        try (OutputStream out = new FileOutputStream(temp)) {
+            out.write(data);
+        } catch (IOException e) {
+            // A cache that cannot be written is just a miss next time
+            temp.delete();
+            return;
+        }
+
+        long previousLength = file.length();
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            return;
+        }
+        diskBytes += data.length - previousLength;
+        trimDisk();
+    }
+
+    private void ensureDiskSizeKnown() {
+        if (diskBytes >= 0) {
+            return;
+        }
+        diskBytes = 0;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                diskBytes += file.length();
+            }
+        }
+    }
+
+    // Removes the least recently used files until under the cap
+    private void trimDisk() {
+        if (diskBytes <= diskMaxBytes) {
+            return;
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (diskBytes <= diskMaxBytes) {
+                break;
+            }
+            deleteFile(file);
+        }
+    }
+
+    private void deleteFile(File file) {
+        long length = file.length();
+        if (file.delete()) {
+            if (diskBytes >= 0) {
+                diskBytes -= length;
+            }
+            evictions.incrementAndGet();
+        }
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "memoryHits=" + memoryHits.get()
+                + " diskHits=" + diskHits.get()
+                + " misses=" + misses.get()
+                + " evictions=" + evictions.get();
+    }
+}
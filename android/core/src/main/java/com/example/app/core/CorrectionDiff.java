@@ -0,0 +1,165 @@
+package com.example.app.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds the parts of one correction that another did not make, word by word, so a result shown
+ * early, such as the local correction, can be updated with the API's answer while marking only
+ * what the API changed on top of it. Text removed without a replacement has no span to mark.
+ */
+public final class CorrectionDiff {
+    // Token-level LCS is quadratic; past this many cells the differing middle is reported as one span
+    private static final int MAX_DIFF_CELLS = 250_000;
+
+    /** A range [start, end) of the newer text. */
+    public static final class Span {
+        private final int start;
+        private final int end;
+
+        Span(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Span)) {
+                return false;
+            }
+            Span other = (Span) o;
+            return start == other.start && end == other.end;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * start + end;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + start + ", " + end + ")";
+        }
+    }
+
+    private CorrectionDiff() {
+    }
+
+    // The spans of after that are not in before, in order; spans separated only by whitespace are merged
+    public static List<Span> changedSpans(String before, String after) {
+        List<int[]> from = tokenize(before);
+        List<int[]> to = tokenize(after);
+
+        // The ends usually match, so only the middle goes through the quadratic part
+        int prefix = 0;
+        while (prefix < from.size() && prefix < to.size()
+                && sameToken(before, from.get(prefix), after, to.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < from.size() - prefix && suffix < to.size() - prefix
+                && sameToken(before, from.get(from.size() - 1 - suffix), after, to.get(to.size() - 1 - suffix))) {
+            suffix++;
+        }
+        int fromCount = from.size() - prefix - suffix;
+        int toCount = to.size() - prefix - suffix;
+
+        boolean[] changed = new boolean[toCount];
+        if (fromCount == 0 || (long) fromCount * toCount > MAX_DIFF_CELLS) {
+            for (int j = 0; j < toCount; j++) {
+                changed[j] = true;
+            }
+        } else {
+            markUnmatched(before, from.subList(prefix, prefix + fromCount), after, to.subList(prefix, prefix + toCount),
+                    changed);
+        }
+
+        List<Span> spans = new ArrayList<>();
+        for (int j = 0; j < toCount; j++) {
+            if (!changed[j]) {
+                continue;
+            }
+            int[] token = to.get(prefix + j);
+            Span last = spans.isEmpty() ? null : spans.get(spans.size() - 1);
+            if (last != null && isBlank(after, last.end, token[0])) {
+                spans.set(spans.size() - 1, new Span(last.start, token[1]));
+            } else {
+                spans.add(new Span(token[0], token[1]));
+            }
+        }
+        // Whitespace alone is not worth marking
+        for (int i = spans.size() - 1; i >= 0; i--) {
+            if (isBlank(after, spans.get(i).start, spans.get(i).end)) {
+                spans.remove(i);
+            }
+        }
+        return spans;
+    }
+
+    // Sets changed[j] for every token of to that is not part of a longest common subsequence
+    private static void markUnmatched(String a, List<int[]> from, String b, List<int[]> to, boolean[] changed) {
+        int n = from.size();
+        int m = to.size();
+        int[][] lcs = new int[n + 1][m + 1];
+        for (int i = n - 1; i >= 0; i--) {
+            for (int j = m - 1; j >= 0; j--) {
+                lcs[i][j] = sameToken(a, from.get(i), b, to.get(j))
+                        ? lcs[i + 1][j + 1] + 1
+                        : Math.max(lcs[i + 1][j], lcs[i][j + 1]);
+            }
+        }
+        int i = 0;
+        int j = 0;
+        while (j < m) {
+            if (i < n && sameToken(a, from.get(i), b, to.get(j))) {
+                i++;
+                j++;
+            } else if (i < n && lcs[i + 1][j] >= lcs[i][j + 1]) {
+                i++;
+            } else {
+                changed[j++] = true;
+            }
+        }
+    }
+
+    // Words, runs of whitespace and single other characters, as [start, end) pairs
+    private static List<int[]> tokenize(String text) {
+        List<int[]> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            int start = i;
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                while (i < text.length() && Character.isLetterOrDigit(text.charAt(i))) i++;
+            } else if (Character.isWhitespace(c)) {
+                while (i < text.length() && Character.isWhitespace(text.charAt(i))) i++;
+            } else {
+                i++;
+            }
+            tokens.add(new int[] {start, i});
+        }
+        return tokens;
+    }
+
+    private static boolean sameToken(String a, int[] x, String b, int[] y) {
+        int length = x[1] - x[0];
+        return length == y[1] - y[0] && a.regionMatches(x[0], b, y[0], length);
+    }
+
+    private static boolean isBlank(String text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
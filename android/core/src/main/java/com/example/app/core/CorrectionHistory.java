@@ -0,0 +1,535 @@
+package com.example.app.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.Okio;
+
+/**
+ * Corrections received so far, kept so a result can be found and reused instead of requested
+ * again. Records are appended to a file in the format of {@link CorrectionJournal}. Memory holds
+ * only an index: each entry's id and file offset, and for each word the entries containing it,
+ * as varint-coded gaps in a sorted map, so a word prefix is a range of keys. A search reads the
+ * file only for the entries it returns. Past maxEntries the oldest entries are dropped, and
+ * {@link #compact()} rewrites the file without them once they make up most of it.
+ */
+public class CorrectionHistory implements Closeable {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final byte ADDED = 1;
+    private static final byte REMOVED = 2;
+    // type(1) + id(8) + payload length(4), then the payload and a CRC32 of type, id and payload
+    private static final int HEADER_SIZE = 13;
+    private static final int MAX_PAYLOAD_SIZE = 64 * 1024 * 1024;
+    private static final int MIN_RECORDS_TO_COMPACT = 64;
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    // Lowercase and without diacritics, so "zolw" finds "Żółw"
+    private static final char[] FOLDED = new char[0x250];
+
+    static {
+        for (char c = 0; c < FOLDED.length; c++) {
+            char lower = Character.toLowerCase(c);
+            char base = Normalizer.normalize(String.valueOf(lower), Normalizer.Form.NFD).charAt(0);
+            FOLDED[c] = base < 0x80 ? base : lower;
+        }
+        FOLDED['ł'] = 'l';
+        FOLDED['Ł'] = 'l';
+    }
+
+    public static final class Entry {
+        private final long id;
+        private final String input;
+        private final String output;
+        private final String model;
+        private final long latencyMillis;
+        private final long timeMillis;
+
+        Entry(long id, String input, String output, String model, long latencyMillis, long timeMillis) {
+            this.id = id;
+            this.input = input;
+            this.output = output;
+            this.model = model;
+            this.latencyMillis = latencyMillis;
+            this.timeMillis = timeMillis;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getInput() {
+            return input;
+        }
+
+        public String getOutput() {
+            return output;
+        }
+
+        // The model or models the request could go to
+        public String getModel() {
+            return model;
+        }
+
+        // From receiving the text to having its correction
+        public long getLatencyMillis() {
+            return latencyMillis;
+        }
+
+        // When the correction was received, in milliseconds since the epoch
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+    }
+
+    // The entries containing one word, in the order they were added
+    private static final class Postings {
+        private byte[] gaps = new byte[4];
+        private int length;
+        private int last = -1;
+
+        void add(int ordinal) {
+            if (ordinal == last) {
+                return;
+            }
+            if (length + 5 > gaps.length) {
+                gaps = Arrays.copyOf(gaps, Math.max(gaps.length * 2, length + 5));
+            }
+            int gap = ordinal - last;
+            while (gap >= 0x80) {
+                gaps[length++] = (byte) (gap | 0x80);
+                gap >>>= 7;
+            }
+            gaps[length++] = (byte) gap;
+            last = ordinal;
+        }
+
+        void addTo(long[] bits) {
+            int ordinal = -1;
+            int i = 0;
+            while (i < length) {
+                int gap = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = gaps[i++];
+                    gap |= (b & 0x7f) << shift;
+                    shift += 7;
+                } while (b < 0);
+                ordinal += gap;
+                bits[ordinal >>> 6] |= 1L << ordinal;
+            }
+        }
+
+        // The same entries under their ordinals after compaction; null when none is left
+        Postings remap(int[] ordinals, int count) {
+            long[] bits = new long[(count + 63) >>> 6];
+            addTo(bits);
+            Postings remapped = new Postings();
+            for (int ordinal = nextBit(bits, 0); ordinal >= 0; ordinal = nextBit(bits, ordinal + 1)) {
+                if (ordinals[ordinal] >= 0) {
+                    remapped.add(ordinals[ordinal]);
+                }
+            }
+            if (remapped.length == 0) {
+                return null;
+            }
+            remapped.gaps = Arrays.copyOf(remapped.gaps, remapped.length);
+            return remapped;
+        }
+    }
+
+    private final File file;
+    private final int maxEntries;
+    // Per entry, in the order added: its id, where its record starts, and whether it is gone
+    private long[] ids = new long[64];
+    private long[] offsets = new long[64];
+    private long[] removed = new long[1];
+    private int count;
+    private int liveCount;
+    // The oldest entry that may still be live
+    private int oldest;
+    private final TreeMap<String, Postings> index = new TreeMap<>();
+    private final Buffer record = new Buffer();
+    private final CRC32 crc = new CRC32();
+    private final StringBuilder word = new StringBuilder();
+    private FileOutputStream out;
+    private RandomAccessFile reader;
+    private long fileLength;
+    private long nextId = 1;
+    private int recordCount;
+    // The newest entry's texts, so correcting the same text twice in a row keeps one entry
+    private String lastInput;
+    private String lastOutput;
+
+    public CorrectionHistory(File file) throws IOException {
+        this(file, DEFAULT_MAX_ENTRIES);
+    }
+
+    public CorrectionHistory(File file, int maxEntries) throws IOException {
+        this.file = file;
+        this.maxEntries = maxEntries;
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        load();
+        evictOverLimit();
+        out = new FileOutputStream(file, true);
+        reader = new RandomAccessFile(file, "r");
+    }
+
+    public synchronized long add(String input, String output, String model, long latencyMillis, long timeMillis)
+            throws IOException {
+        if (liveCount > 0 && !isRemoved(count - 1) && input.equals(lastInput) && output.equals(lastOutput)) {
+            return ids[count - 1];
+        }
+        long id = nextId++;
+        Buffer payload = new Buffer()
+                .writeLong(timeMillis)
+                .writeLong(latencyMillis);
+        writeString(payload, model);
+        writeString(payload, input);
+        writeString(payload, output);
+        long offset = fileLength;
+        append(ADDED, id, payload.readByteArray());
+        addToIndex(id, offset, input, output);
+        evictOverLimit();
+        return id;
+    }
+
+    public synchronized void remove(long id) throws IOException {
+        int ordinal = ordinalOf(id);
+        if (ordinal < 0 || isRemoved(ordinal)) {
+            return;
+        }
+        append(REMOVED, id, new byte[0]);
+        markRemoved(ordinal);
+    }
+
+    /**
+     * Entries whose input or correction contains a word starting with each word of the query,
+     * ignoring case and diacritics, newest first. An empty query returns the newest entries.
+     */
+    public synchronized List<Entry> search(String query, int limit) throws IOException {
+        long[] matches = null;
+        int i = 0;
+        while ((i = nextWord(query, i)) >= 0) {
+            i += word.length();
+            long[] bits = new long[(count + 63) >>> 6];
+            String prefix = word.toString();
+            // Every word that starts with the prefix sorts between it and the prefix followed by the last char
+            for (Postings postings : index.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+                postings.addTo(bits);
+            }
+            if (matches == null) {
+                matches = bits;
+            } else {
+                for (int w = 0; w < matches.length; w++) {
+                    matches[w] &= bits[w];
+                }
+            }
+        }
+        List<Entry> entries = new ArrayList<>(Math.min(limit, liveCount));
+        for (int ordinal = count - 1; ordinal >= oldest && entries.size() < limit; ordinal--) {
+            if (matches != null) {
+                ordinal = previousBit(matches, ordinal);
+                if (ordinal < oldest) {
+                    break;
+                }
+            }
+            if (!isRemoved(ordinal)) {
+                entries.add(read(ordinal));
+            }
+        }
+        return entries;
+    }
+
+    public synchronized int size() {
+        return liveCount;
+    }
+
+    // Whether dropped entries make up most of the file
+    public synchronized boolean needsCompaction() {
+        return recordCount >= MIN_RECORDS_TO_COMPACT && recordCount >= 2 * liveCount;
+    }
+
+    // Rewrites the file with only the live entries and renumbers the index to match
+    public synchronized void compact() throws IOException {
+        File compacted = new File(file.getPath() + ".tmp");
+        int[] ordinals = new int[count];
+        long[] newIds = new long[Math.max(64, liveCount)];
+        long[] newOffsets = new long[newIds.length];
+        int live = 0;
+        long length = 0;
+        try (FileOutputStream tmp = new FileOutputStream(compacted)) {
+            for (int ordinal = 0; ordinal < count; ordinal++) {
+                if (isRemoved(ordinal)) {
+                    ordinals[ordinal] = -1;
+                    continue;
+                }
+                // Copied as it is, checksum included
+                byte[] bytes = readRecord(ordinal);
+                tmp.write(bytes);
+                ordinals[ordinal] = live;
+                newIds[live] = ids[ordinal];
+                newOffsets[live] = length;
+                live++;
+                length += bytes.length;
+            }
+            tmp.getFD().sync();
+        }
+        out.close();
+        reader.close();
+        if (!compacted.renameTo(file)) {
+            out = new FileOutputStream(file, true);
+            reader = new RandomAccessFile(file, "r");
+            throw new IOException("Cannot replace " + file);
+        }
+        out = new FileOutputStream(file, true);
+        reader = new RandomAccessFile(file, "r");
+
+        Iterator<Map.Entry<String, Postings>> terms = index.entrySet().iterator();
+        while (terms.hasNext()) {
+            Map.Entry<String, Postings> term = terms.next();
+            Postings remapped = term.getValue().remap(ordinals, count);
+            if (remapped == null) {
+                terms.remove();
+            } else {
+                term.setValue(remapped);
+            }
+        }
+        ids = newIds;
+        offsets = newOffsets;
+        removed = new long[(newIds.length + 63) >>> 6];
+        count = live;
+        liveCount = live;
+        oldest = 0;
+        fileLength = length;
+        recordCount = live;
+    }
+
+    // Forces appended records to the storage device
+    public synchronized void sync() throws IOException {
+        out.getFD().sync();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        sync();
+        out.close();
+        reader.close();
+    }
+
+    private void append(byte type, long id, byte[] payload) throws IOException {
+        writeRecord(record, type, id, payload);
+        long size = record.size();
+        out.write(record.readByteArray());
+        fileLength += size;
+        recordCount++;
+    }
+
+    private void writeRecord(Buffer target, byte type, long id, byte[] payload) {
+        target.writeByte(type).writeLong(id).writeInt(payload.length).write(payload)
+                .writeInt(checksum(type, id, payload));
+    }
+
+    private int checksum(byte type, long id, byte[] payload) {
+        crc.reset();
+        crc.update(type);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (id >>> shift));
+        }
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    private static void writeString(Buffer target, String value) {
+        byte[] bytes = value.getBytes(UTF_8);
+        target.writeInt(bytes.length).write(bytes);
+    }
+
+    private static String readString(Buffer source) throws IOException {
+        int length = source.readInt();
+        if (length < 0 || length > source.size()) {
+            throw new IOException("Corrupt history record");
+        }
+        return source.readString(length, UTF_8);
+    }
+
+    private void load() throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        long validLength = 0;
+        try (BufferedSource source = Okio.buffer(Okio.source(file))) {
+            while (source.request(HEADER_SIZE)) {
+                byte type = source.readByte();
+                long id = source.readLong();
+                int length = source.readInt();
+                if (length < 0 || length > MAX_PAYLOAD_SIZE || !source.request(length + 4L)) {
+                    break;
+                }
+                byte[] payload = source.readByteArray(length);
+                if (source.readInt() != checksum(type, id, payload)) {
+                    break;
+                }
+                nextId = Math.max(nextId, id + 1);
+                if (type == ADDED) {
+                    Buffer fields = new Buffer().write(payload);
+                    fields.skip(16);
+                    readString(fields);
+                    addToIndex(id, validLength, readString(fields), readString(fields));
+                } else if (type == REMOVED) {
+                    int ordinal = ordinalOf(id);
+                    if (ordinal >= 0 && !isRemoved(ordinal)) {
+                        markRemoved(ordinal);
+                    }
+                }
+                validLength += HEADER_SIZE + length + 4;
+                recordCount++;
+            }
+        }
+        if (validLength < file.length()) {
+            // Torn or corrupt tail from a crash mid-append; everything before it is intact
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+            }
+        }
+        fileLength = validLength;
+    }
+
+    private void addToIndex(long id, long offset, String input, String output) {
+        if (count == ids.length) {
+            ids = Arrays.copyOf(ids, count * 2);
+            offsets = Arrays.copyOf(offsets, count * 2);
+            removed = Arrays.copyOf(removed, (count * 2 + 63) >>> 6);
+        }
+        int ordinal = count++;
+        ids[ordinal] = id;
+        offsets[ordinal] = offset;
+        liveCount++;
+        indexWords(input, ordinal);
+        indexWords(output, ordinal);
+        lastInput = input;
+        lastOutput = output;
+    }
+
+    private void indexWords(String text, int ordinal) {
+        int i = 0;
+        while ((i = nextWord(text, i)) >= 0) {
+            i += word.length();
+            String term = word.toString();
+            Postings postings = index.get(term);
+            if (postings == null) {
+                postings = new Postings();
+                index.put(term, postings);
+            }
+            postings.add(ordinal);
+        }
+    }
+
+    // Folds the next run of letters and digits at or after start into word and returns where it
+    // starts, or -1 when there is none
+    private int nextWord(String text, int start) {
+        int i = start;
+        while (i < text.length() && !Character.isLetterOrDigit(text.charAt(i))) {
+            i++;
+        }
+        if (i == text.length()) {
+            return -1;
+        }
+        word.setLength(0);
+        for (int j = i; j < text.length() && Character.isLetterOrDigit(text.charAt(j)); j++) {
+            char c = text.charAt(j);
+            word.append(c < FOLDED.length ? FOLDED[c] : Character.toLowerCase(c));
+        }
+        return i;
+    }
+
+    private void evictOverLimit() {
+        while (liveCount > maxEntries) {
+            if (!isRemoved(oldest)) {
+                markRemoved(oldest);
+            }
+            oldest++;
+        }
+    }
+
+    private int ordinalOf(long id) {
+        return Arrays.binarySearch(ids, 0, count, id);
+    }
+
+    private boolean isRemoved(int ordinal) {
+        return (removed[ordinal >>> 6] & 1L << ordinal) != 0;
+    }
+
+    private void markRemoved(int ordinal) {
+        removed[ordinal >>> 6] |= 1L << ordinal;
+        liveCount--;
+    }
+
+    // The whole record, checksum included; removals may follow it in the file
+    private byte[] readRecord(int ordinal) throws IOException {
+        reader.seek(offsets[ordinal] + HEADER_SIZE - 4);
+        int length = reader.readInt();
+        if (length < 0 || offsets[ordinal] + HEADER_SIZE + length + 4 > fileLength) {
+            throw new IOException("Corrupt history record");
+        }
+        byte[] bytes = new byte[HEADER_SIZE + length + 4];
+        reader.seek(offsets[ordinal]);
+        reader.readFully(bytes);
+        return bytes;
+    }
+
+    private Entry read(int ordinal) throws IOException {
+        Buffer fields = new Buffer().write(readRecord(ordinal));
+        fields.skip(HEADER_SIZE);
+        long timeMillis = fields.readLong();
+        long latencyMillis = fields.readLong();
+        String model = readString(fields);
+        String input = readString(fields);
+        String output = readString(fields);
+        return new Entry(ids[ordinal], input, output, model, latencyMillis, timeMillis);
+    }
+
+    private static int nextBit(long[] bits, int from) {
+        int w = from >>> 6;
+        if (w >= bits.length) {
+            return -1;
+        }
+        long word = bits[w] & (-1L << from);
+        while (word == 0) {
+            if (++w == bits.length) {
+                return -1;
+            }
+            word = bits[w];
+        }
+        return w * 64 + Long.numberOfTrailingZeros(word);
+    }
+
+    // The highest set bit at or below from, or -1
+    private static int previousBit(long[] bits, int from) {
+        int w = from >>> 6;
+        long word = bits[w] & (-1L >>> (63 - (from & 63)));
+        while (word == 0) {
+            if (--w < 0) {
+                return -1;
+            }
+            word = bits[w];
+        }
+        return w * 64 + 63 - Long.numberOfLeadingZeros(word);
+    }
+}
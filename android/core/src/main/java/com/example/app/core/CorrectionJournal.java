@@ -0,0 +1,247 @@
+package com.example.app.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.Okio;
+
+/**
+ * Append-only on-disk journal of corrections deferred until the network is back. Every record
+ * reaches the OS as soon as it is appended, which is enough to survive process death; fsync,
+ * which only guards against power loss, is batched. A torn record at the tail (from a crash
+ * mid-write) is dropped on load, and the file is compacted once dead records dominate it.
+ */
+public class CorrectionJournal implements Closeable {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final byte ENQUEUED = 1;
+    private static final byte CORRECTED = 2;
+    private static final byte REMOVED = 3;
+    // type(1) + id(8) + payload length(4), then the payload and a CRC32 of type, id and payload
+    private static final int HEADER_SIZE = 13;
+    private static final int MAX_PAYLOAD_SIZE = 64 * 1024 * 1024;
+    private static final int MAX_UNSYNCED_RECORDS = 32;
+    private static final int MIN_RECORDS_TO_COMPACT = 64;
+
+    public static final class Entry {
+        private final long id;
+        private final String text;
+        private final String result;
+
+        Entry(long id, String text, String result) {
+            this.id = id;
+            this.text = text;
+            this.result = result;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        // The correction, or null while the entry is still waiting for the network
+        public String getResult() {
+            return result;
+        }
+
+        public boolean isCorrected() {
+            return result != null;
+        }
+    }
+
+    private final File file;
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>();
+    private final Buffer record = new Buffer();
+    private final CRC32 crc = new CRC32();
+    private FileOutputStream out;
+    private long nextId = 1;
+    private int recordCount;
+    private int unsyncedRecords;
+
+    public CorrectionJournal(File file) throws IOException {
+        this.file = file;
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        load();
+        out = new FileOutputStream(file, true);
+        compactIfNeeded();
+    }
+
+    public synchronized long enqueue(String text) throws IOException {
+        long id = nextId++;
+        append(ENQUEUED, id, text);
+        entries.put(id, new Entry(id, text, null));
+        return id;
+    }
+
+    public synchronized void markCorrected(long id, String result) throws IOException {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return;
+        }
+        append(CORRECTED, id, result);
+        entries.put(id, new Entry(id, entry.text, result));
+    }
+
+    // Drops an entry, once its result has been shown or the user no longer wants it
+    public synchronized void remove(long id) throws IOException {
+        if (entries.remove(id) == null) {
+            return;
+        }
+        append(REMOVED, id, "");
+        compactIfNeeded();
+    }
+
+    // Entries still waiting for a correction, oldest first
+    public synchronized List<Entry> pending() {
+        List<Entry> pending = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (!entry.isCorrected()) {
+                pending.add(entry);
+            }
+        }
+        return pending;
+    }
+
+    // Entries corrected but not yet removed, oldest first
+    public synchronized List<Entry> corrected() {
+        List<Entry> corrected = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (entry.isCorrected()) {
+                corrected.add(entry);
+            }
+        }
+        return corrected;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // Forces appended records to the storage device
+    public synchronized void sync() throws IOException {
+        if (unsyncedRecords > 0) {
+            out.getFD().sync();
+            unsyncedRecords = 0;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        sync();
+        out.close();
+    }
+
+    private void append(byte type, long id, String payload) throws IOException {
+        writeRecord(record, type, id, payload);
+        out.write(record.readByteArray());
+        recordCount++;
+        if (++unsyncedRecords >= MAX_UNSYNCED_RECORDS) {
+            sync();
+        }
+    }
+
+    private void writeRecord(Buffer target, byte type, long id, String payload) {
+        byte[] bytes = payload.getBytes(UTF_8);
+        target.writeByte(type).writeLong(id).writeInt(bytes.length).write(bytes).writeInt(checksum(type, id, bytes));
+    }
+
+    private int checksum(byte type, long id, byte[] payload) {
+        crc.reset();
+        crc.update(type);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (id >>> shift));
+        }
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    private void load() throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        long validLength = 0;
+        try (BufferedSource source = Okio.buffer(Okio.source(file))) {
+            while (source.request(HEADER_SIZE)) {
+                byte type = source.readByte();
+                long id = source.readLong();
+                int length = source.readInt();
+                if (length < 0 || length > MAX_PAYLOAD_SIZE || !source.request(length + 4L)) {
+                    break;
+                }
+                byte[] payload = source.readByteArray(length);
+                if (source.readInt() != checksum(type, id, payload)) {
+                    break;
+                }
+                apply(type, id, new String(payload, UTF_8));
+                validLength += HEADER_SIZE + length + 4;
+                recordCount++;
+            }
+        }
+        if (validLength < file.length()) {
+            // Torn or corrupt tail from a crash mid-append; everything before it is intact
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+            }
+        }
+    }
+
+    private void apply(byte type, long id, String payload) {
+        nextId = Math.max(nextId, id + 1);
+        if (type == ENQUEUED) {
+            entries.put(id, new Entry(id, payload, null));
+        } else if (type == CORRECTED) {
+            Entry entry = entries.get(id);
+            if (entry != null) {
+                entries.put(id, new Entry(id, entry.text, payload));
+            }
+        } else if (type == REMOVED) {
+            entries.remove(id);
+        }
+    }
+
+    private void compactIfNeeded() throws IOException {
+        int liveRecords = 0;
+        for (Entry entry : entries.values()) {
+            liveRecords += entry.isCorrected() ? 2 : 1;
+        }
+        if (recordCount < MIN_RECORDS_TO_COMPACT || recordCount < 2 * liveRecords) {
+            return;
+        }
+
+        // Rewrite only the live records next to the journal, then swap it in atomically
+        File compacted = new File(file.getPath() + ".tmp");
+        try (FileOutputStream tmp = new FileOutputStream(compacted)) {
+            Buffer buffer = new Buffer();
+            for (Entry entry : entries.values()) {
+                writeRecord(buffer, ENQUEUED, entry.id, entry.text);
+                if (entry.isCorrected()) {
+                    writeRecord(buffer, CORRECTED, entry.id, entry.result);
+                }
+                buffer.writeTo(tmp);
+            }
+            tmp.getFD().sync();
+        }
+        out.close();
+        if (!compacted.renameTo(file)) {
+            out = new FileOutputStream(file, true);
+            throw new IOException("Cannot replace " + file);
+        }
+        out = new FileOutputStream(file, true);
+        recordCount = liveRecords;
+        unsyncedRecords = 0;
+    }
+}
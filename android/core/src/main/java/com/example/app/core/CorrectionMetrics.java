@@ -0,0 +1,417 @@
+package com.example.app.core;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process-wide counters and latency histograms for corrections. The instrumented code reports to
+ * a {@link MetricsListener}; this is the listener that keeps the numbers, and it forwards every
+ * event to extra listeners plugged in with {@link #addListener}. Recording never allocates or locks.
+ */
+public class CorrectionMetrics implements MetricsListener {
+    private static final int MAX_HTTP_CODE = 600;
+
+    public enum Phase {
+        // From the moment the app received a request, e.g. a PROCESS_TEXT intent, until its first call is sent
+        DISPATCH,
+        // Waiting for a free worker
+        QUEUE_WAIT,
+        // DNS, TCP and TLS, for calls that could not reuse a connection
+        CONNECT,
+        // From the first request byte until response headers start arriving
+        TTFB,
+        // The whole HTTP call
+        TOTAL,
+        // Reading and parsing a non-streamed response body
+        PARSE
+    }
+
+    public enum Cause {
+        NO_API_KEY,
+        OFFLINE,
+        HTTP,
+        TIMEOUT,
+        PARSE,
+        // The reply reached max_tokens before the end of the text
+        TRUNCATED,
+        NETWORK,
+        // Not sent at all while the circuit breaker considers the API down
+        CIRCUIT_OPEN,
+        // A chunk of a long text that kept failing, while the rest was corrected by the API
+        CHUNK
+    }
+
+    public enum CacheOutcome {
+        MEMORY_HIT,
+        DISK_HIT,
+        MISS,
+        // Joined an identical request already in flight
+        DEDUPLICATED
+    }
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Phase.values().length];
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong promptTokens = new AtomicLong();
+    private final AtomicLong completionTokens = new AtomicLong();
+    private final AtomicLong cachedPromptTokens = new AtomicLong();
+    private final AtomicLongArray prompts = new AtomicLongArray(CorrectionPrompt.values().length);
+    private final AtomicLongArray errors = new AtomicLongArray(Cause.values().length);
+    private final AtomicLongArray errorsByHttpCode = new AtomicLongArray(MAX_HTTP_CODE);
+    private final AtomicLongArray fallbacks = new AtomicLongArray(Cause.values().length);
+    private final AtomicLongArray retries = new AtomicLongArray(Cause.values().length);
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgesWon = new AtomicLong();
+    private final AtomicLong failovers = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong batchedItems = new AtomicLong();
+    private final AtomicLong unsplitBatches = new AtomicLong();
+    private final AtomicLong speculations = new AtomicLong();
+    private final AtomicLong speculationsOverBudget = new AtomicLong();
+    private final AtomicLongArray cacheOutcomes = new AtomicLongArray(CacheOutcome.values().length);
+    // Copied on write and iterated by index, so forwarding allocates nothing
+    private volatile MetricsListener[] listeners = new MetricsListener[0];
+
+    public CorrectionMetrics() {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    // Maps a failed call to the cause it is counted under
+    public static Cause causeOf(IOException e) {
+        if (e instanceof ChatCompletionClient.ApiException) {
+            return Cause.HTTP;
+        }
+        if (e instanceof TruncatedResponseException) {
+            return Cause.TRUNCATED;
+        }
+        if (e instanceof MalformedResponseException) {
+            return Cause.PARSE;
+        }
+        if (e instanceof CircuitOpenException) {
+            return Cause.CIRCUIT_OPEN;
+        }
+        // OkHttp reports both socket and call timeouts this way
+        if (e instanceof InterruptedIOException) {
+            return Cause.TIMEOUT;
+        }
+        return Cause.NETWORK;
+    }
+
+    public synchronized void addListener(MetricsListener listener) {
+        MetricsListener[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+        updated[listeners.length] = listener;
+        listeners = updated;
+    }
+
+    public synchronized void removeListener(MetricsListener listener) {
+        MetricsListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == listener) {
+                MetricsListener[] updated = new MetricsListener[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                listeners = updated;
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void onLatency(Phase phase, long nanos) {
+        latencies[phase.ordinal()].recordNanos(nanos);
+        MetricsListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            current[i].onLatency(phase, nanos);
+        }
+    }
+
+    @Override
+    public void onBytes(long sent, long received) {
+        bytesSent.addAndGet(sent);
+        bytesReceived.addAndGet(received);
+        MetricsListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            current[i].onBytes(sent, received);
+        }
+    }
+
+    @Override
+    public void onTokens(long prompt, long completion) {
+        promptTokens.addAndGet(prompt);
+        completionTokens.addAndGet(completion);
+        MetricsListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            current[i].onTokens(prompt, completion);
+        }
+    }
+
+    @Override
+    public void onCachedPromptTokens(long cached) {
+        cachedPromptTokens.addAndGet(cached);
+        MetricsListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            current[i].onCachedPromptTokens(cached);
+        }
+    }
+
+    @Override
+    public void onPrompt(CorrectionPrompt prompt) {
+        prompts.incrementAndGet(prompt.ordinal());
+        MetricsListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            current[i].onPrompt(prompt);
+        }
+    }
+
+    @Override
+    public void onError(Cause cause, int httpCode) {
+        errors.incrementAndGet(cause.ordinal());
+        if (httpCode > 0 && httpCode < MAX_HTTP_CODE) {
+            errorsByHttpCode.incrementAndGet(httpCode);
+        }
+        MetricsListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            current[i].onError(cause, httpCode);
+        }
+    }
+
+    @Override
+    public void onFallback(Cause cause) {
+        fallbacks.incrementAndGet(cause.ordinal());
+        MetricsListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            current[i].onFallback(cause);
+        }
+    }
+
+    @Override
+    public void onRetry(Cause cause) {
+        retries.incrementAndGet(cause.ordinal());
+        MetricsListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            current[i].onRetry(cause);
+        }
+    }
+
+    @Override
+    public void onHedge(boolean won) {
+        hedges.incrementAndGet();
+        if (won) {
+            hedgesWon.incrementAndGet();
+        }
+        MetricsListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            current[i].onHedge(won);
+        }
+    }
+
+    @Override
+    public void onFailover() {
+        failovers.incrementAndGet();
+        MetricsListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            current[i].onFailover();
+        }
+    }
+
+    @Override
+    public void onBatch(int size, boolean split) {
+        batches.incrementAndGet();
+        batchedItems.addAndGet(size);
+        if (!split) {
+            unsplitBatches.incrementAndGet();
+        }
+        MetricsListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            current[i].onBatch(size, split);
+        }
+    }
+
+    @Override
+    public void onSpeculation(boolean inBudget) {
+        speculations.incrementAndGet();
+        if (!inBudget) {
+            speculationsOverBudget.incrementAndGet();
+        }
+        MetricsListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            current[i].onSpeculation(inBudget);
+        }
+    }
+
+    @Override
+    public void onCacheOutcome(CacheOutcome outcome) {
+        cacheOutcomes.incrementAndGet(outcome.ordinal());
+        MetricsListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            current[i].onCacheOutcome(outcome);
+        }
+    }
+
+    public LatencyHistogram.Snapshot getLatency(Phase phase) {
+        return latencies[phase.ordinal()].snapshot();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    public long getPromptTokens() {
+        return promptTokens.get();
+    }
+
+    public long getCompletionTokens() {
+        return completionTokens.get();
+    }
+
+    public long getCachedPromptTokens() {
+        return cachedPromptTokens.get();
+    }
+
+    public long getPromptCount(CorrectionPrompt prompt) {
+        return prompts.get(prompt.ordinal());
+    }
+
+    public long getErrorCount(Cause cause) {
+        return errors.get(cause.ordinal());
+    }
+
+    public long getErrorCount(int httpCode) {
+        return httpCode > 0 && httpCode < MAX_HTTP_CODE ? errorsByHttpCode.get(httpCode) : 0;
+    }
+
+    public long getFallbackCount(Cause cause) {
+        return fallbacks.get(cause.ordinal());
+    }
+
+    public long getRetryCount(Cause cause) {
+        return retries.get(cause.ordinal());
+    }
+
+    public long getHedgeCount() {
+        return hedges.get();
+    }
+
+    public long getHedgesWonCount() {
+        return hedgesWon.get();
+    }
+
+    public long getFailoverCount() {
+        return failovers.get();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public long getBatchedItemCount() {
+        return batchedItems.get();
+    }
+
+    // Batches whose reply could not be split and whose texts were sent again one by one
+    public long getUnsplitBatchCount() {
+        return unsplitBatches.get();
+    }
+
+    public long getSpeculationCount() {
+        return speculations.get();
+    }
+
+    // Requests that kept the local correction because the API missed the latency budget
+    public long getSpeculationsOverBudgetCount() {
+        return speculationsOverBudget.get();
+    }
+
+    public long getCacheOutcomeCount(CacheOutcome outcome) {
+        return cacheOutcomes.get(outcome.ordinal());
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : latencies) {
+            histogram.reset();
+        }
+        bytesSent.set(0);
+        bytesReceived.set(0);
+        promptTokens.set(0);
+        completionTokens.set(0);
+        cachedPromptTokens.set(0);
+        for (int i = 0; i < prompts.length(); i++) {
+            prompts.set(i, 0);
+        }
+        for (int i = 0; i < errors.length(); i++) {
+            errors.set(i, 0);
+            fallbacks.set(i, 0);
+            retries.set(i, 0);
+        }
+        hedges.set(0);
+        hedgesWon.set(0);
+        failovers.set(0);
+        batches.set(0);
+        batchedItems.set(0);
+        unsplitBatches.set(0);
+        speculations.set(0);
+        speculationsOverBudget.set(0);
+        for (int i = 0; i < MAX_HTTP_CODE; i++) {
+            errorsByHttpCode.set(i, 0);
+        }
+        for (int i = 0; i < cacheOutcomes.length(); i++) {
+            cacheOutcomes.set(i, 0);
+        }
+    }
+
+    // A plain-text report for the debug screen and bug reports
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Latency\n");
+        for (Phase phase : Phase.values()) {
+            sb.append("  ").append(phase).append(": ").append(getLatency(phase)).append('\n');
+        }
+        sb.append("Bytes: sent=").append(getBytesSent()).append(" received=").append(getBytesReceived()).append('\n');
+        sb.append("Tokens: prompt=").append(getPromptTokens()).append(" cached=").append(getCachedPromptTokens())
+                .append(" completion=").append(getCompletionTokens()).append('\n');
+        sb.append("Prompts:");
+        for (CorrectionPrompt prompt : CorrectionPrompt.values()) {
+            sb.append(' ').append(prompt.getId()).append('=').append(getPromptCount(prompt));
+        }
+        sb.append('\n');
+        appendCounts(sb, "Errors", errors);
+        for (int code = 0; code < MAX_HTTP_CODE; code++) {
+            long count = errorsByHttpCode.get(code);
+            if (count > 0) {
+                sb.append("  HTTP ").append(code).append(": ").append(count).append('\n');
+            }
+        }
+        appendCounts(sb, "Fallbacks", fallbacks);
+        appendCounts(sb, "Retries", retries);
+        sb.append("Hedges: ").append(getHedgeCount()).append(" won=").append(getHedgesWonCount()).append('\n');
+        sb.append("Failovers: ").append(getFailoverCount()).append('\n');
+        sb.append("Batches: ").append(getBatchCount()).append(" items=").append(getBatchedItemCount())
+                .append(" unsplit=").append(getUnsplitBatchCount()).append('\n');
+        sb.append("Speculative: ").append(getSpeculationCount())
+                .append(" late=").append(getSpeculationsOverBudgetCount()).append('\n');
+        sb.append("Cache\n");
+        for (CacheOutcome outcome : CacheOutcome.values()) {
+            sb.append("  ").append(outcome).append(": ").append(getCacheOutcomeCount(outcome)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void appendCounts(StringBuilder sb, String title, AtomicLongArray counts) {
+        sb.append(title).append('\n');
+        for (Cause cause : Cause.values()) {
+            long count = counts.get(cause.ordinal());
+            if (count > 0) {
+                sb.append("  ").append(cause).append(": ").append(count).append('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.app.core;
+
+import java.util.Locale;
+
+/**
+ * The versioned system prompts a correction can be sent with. Each variant's text is sent
+ * byte for byte the same on every request, first in the body, so providers that cache prompt
+ * prefixes can reuse it; changing a text means bumping its version, which also moves the
+ * correction cache onto new keys.
+ */
+public enum CorrectionPrompt {
+    // The original instructions
+    FULL(1, ChatCompletionClient.SYSTEM_PROMPT),
+    // For short texts, where the full instructions would cost several times the text itself
+    COMPACT(1, "You are a proofreader. Correct typos, spelling, grammar and punctuation in the user's text, "
+            + "keeping its language, meaning and formatting. Reply with the corrected text only, nothing else.");
+
+    // Inputs up to this size get the compact prompt
+    public static final int COMPACT_MAX_INPUT_TOKENS = 200;
+
+    private final int version;
+    private final String text;
+
+    CorrectionPrompt(int version, String text) {
+        this.version = version;
+        this.text = text;
+    }
+
+    public static CorrectionPrompt forInput(CharSequence input) {
+        return TokenEstimator.estimate(input) <= COMPACT_MAX_INPUT_TOKENS ? COMPACT : FULL;
+    }
+
+    // Looks a variant up by getId(), as written in evaluation fixtures; null when unknown
+    public static CorrectionPrompt forId(String id) {
+        for (CorrectionPrompt prompt : values()) {
+            if (prompt.getId().equals(id)) {
+                return prompt;
+            }
+        }
+        return null;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    // E.g. "compact-v1"
+    public String getId() {
+        return name().toLowerCase(Locale.ROOT) + "-v" + version;
+    }
+
+    public String getText() {
+        return text;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.app.core;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+
+/**
+ * A secret kept sealed by a {@link KeyVault} in a {@link Storage} and, once opened, in memory.
+ * Only the first {@link #get()} reads and decrypts, so it belongs on a background thread at
+ * startup; every read after it is one volatile read, with no lock, I/O or crypto. Saving or
+ * clearing replaces the copy in memory together with the stored one.
+ */
+public final class CredentialStore {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // Where the sealed secret lives, such as a preferences entry
+    public interface Storage {
+        // Null when nothing is stored
+        String read();
+
+        // Null removes the stored secret
+        void write(String sealed);
+    }
+
+    private final KeyVault vault;
+    private final Storage storage;
+    // Null until opened, empty when nothing is stored
+    private volatile String value;
+
+    public CredentialStore(KeyVault vault, Storage storage) {
+        this.vault = vault;
+        this.storage = storage;
+    }
+
+    public String get() {
+        String current = value;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (value == null) {
+                value = open(storage.read());
+            }
+            return value;
+        }
+    }
+
+    // The secret if it has already been opened, otherwise null; never touches storage or the vault
+    public String peek() {
+        return value;
+    }
+
+    /**
+     * Keeps the secret in memory at once and stores it sealed. When the vault cannot seal it, the
+     * stored one is removed rather than left stale and the secret lasts only as long as the process.
+     */
+    public synchronized void set(String secret) throws GeneralSecurityException {
+        value = secret;
+        try {
+            storage.write(toHex(vault.encrypt(secret.getBytes(StandardCharsets.UTF_8))));
+        } catch (GeneralSecurityException e) {
+            storage.write(null);
+            throw e;
+        }
+    }
+
+    public synchronized void clear() {
+        value = "";
+        storage.write(null);
+    }
+
+    // What the vault can no longer open, as after the keystore was reset, reads as nothing stored;
+    // it stays in storage in case the failure passes, until a new secret replaces it
+    private String open(String sealed) {
+        if (sealed == null) {
+            return "";
+        }
+        try {
+            return new String(vault.decrypt(fromHex(sealed)), StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            return "";
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    private static byte[] fromHex(String hex) {
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("Odd length");
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(i * 2), 16);
+            int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Not hex");
+            }
+            bytes[i] = (byte) (high << 4 | low);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.app.core;
+
+import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Compiles a word list into the file {@link CompactDictionary} maps. Words are lower-cased and
+ * stored as a minimal acyclic automaton (a DAWG): words that end the same way and have the same
+ * frequency class share their suffix nodes, so inflected forms cost little more than their stems.
+ * Word lists have one word per line, most frequent first; blank lines and lines starting with
+ * {@code #} are skipped, except a {@code #!complete} line, which marks a list holding every word
+ * form of its language. Runs at build time, so it favours simplicity over memory.
+ */
+public final class DictionaryBuilder {
+    // Rank 0 gets the top class; every doubling of the rank drops one
+    static final int MAX_FREQUENCY_CLASS = 15;
+    static final String COMPLETE_MARK = "#!complete";
+
+    private final Map<String, Integer> words = new LinkedHashMap<>();
+    private boolean complete;
+
+    public DictionaryBuilder add(String word) {
+        String folded = word.trim().toLowerCase(Locale.ROOT);
+        if (!folded.isEmpty() && !words.containsKey(folded)) {
+            int rank = words.size();
+            int frequencyClass = MAX_FREQUENCY_CLASS - (31 - Integer.numberOfLeadingZeros(rank + 1));
+            words.put(folded, Math.max(0, frequencyClass));
+        }
+        return this;
+    }
+
+    // Only a complete dictionary is trusted to call a word it lacks misspelled
+    public DictionaryBuilder complete(boolean complete) {
+        this.complete = complete;
+        return this;
+    }
+
+    public DictionaryBuilder addAll(File wordList) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(wordList), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().equals(COMPLETE_MARK)) {
+                    complete = true;
+                } else if (!line.trim().isEmpty() && !line.startsWith("#")) {
+                    add(line);
+                }
+            }
+        }
+        return this;
+    }
+
+    public void write(File file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            write(out);
+        }
+    }
+
+    public void write(OutputStream out) throws IOException {
+        TreeSet<Character> chars = new TreeSet<>();
+        for (String word : words.keySet()) {
+            for (int i = 0; i < word.length(); i++) {
+                chars.add(word.charAt(i));
+            }
+        }
+        if (chars.size() > CompactDictionary.MAX_ALPHABET) {
+            throw new IOException("Too many distinct characters: " + chars.size());
+        }
+        char[] alphabet = new char[chars.size()];
+        int index = 0;
+        for (char c : chars) {
+            alphabet[index++] = c;
+        }
+
+        // Sorted by char value, which is also label order, as the incremental construction needs
+        List<String> sorted = new ArrayList<>(words.keySet());
+        Collections.sort(sorted);
+        Node root = new Node();
+        Map<Node, Node> register = new HashMap<>();
+        String previous = "";
+        for (String word : sorted) {
+            int common = 0;
+            while (common < previous.length() && common < word.length()
+                    && previous.charAt(common) == word.charAt(common)) {
+                common++;
+            }
+            Node node = root;
+            for (int i = 0; i < common; i++) {
+                node = node.lastChild();
+            }
+            if (node.childCount > 0) {
+                replaceOrRegister(node, register);
+            }
+            for (int i = common; i < word.length(); i++) {
+                Node child = new Node();
+                node.addChild(label(alphabet, word.charAt(i)), child);
+                node = child;
+            }
+            node.terminal = true;
+            node.frequencyClass = words.get(word);
+            previous = word;
+        }
+        if (root.childCount > 0) {
+            replaceOrRegister(root, register);
+        }
+
+        // Children before parents, so every target offset is known when its parent is written
+        int headerSize = CompactDictionary.headerSize(alphabet.length);
+        ByteArrayOutputStream nodes = new ByteArrayOutputStream();
+        DataOutputStream nodeData = new DataOutputStream(nodes);
+        int rootOffset = writeNode(root, nodeData, headerSize);
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(CompactDictionary.MAGIC);
+        data.writeInt(words.size());
+        data.writeInt(rootOffset);
+        data.writeShort(alphabet.length);
+        data.writeShort(complete ? CompactDictionary.COMPLETE : 0);
+        for (char c : alphabet) {
+            data.writeChar(c);
+        }
+        nodes.writeTo(data);
+        data.flush();
+    }
+
+    // Merges the most recently added branch below node with an equal one seen before, if any
+    private static void replaceOrRegister(Node node, Map<Node, Node> register) {
+        Node child = node.lastChild();
+        if (child.childCount > 0) {
+            replaceOrRegister(child, register);
+        }
+        Node existing = register.get(child);
+        if (existing != null) {
+            node.targets[node.childCount - 1] = existing;
+        } else {
+            register.put(child, child);
+        }
+    }
+
+    private static int writeNode(Node node, DataOutputStream out, int base) throws IOException {
+        if (node.offset >= 0) {
+            return node.offset;
+        }
+        int[] targets = new int[node.childCount];
+        for (int i = 0; i < node.childCount; i++) {
+            targets[i] = writeNode(node.targets[i], out, base);
+        }
+        node.offset = base + out.size();
+        out.writeByte((node.terminal ? CompactDictionary.TERMINAL : 0) | node.frequencyClass);
+        out.writeByte(node.childCount);
+        for (int i = 0; i < node.childCount; i++) {
+            out.writeByte(node.labels[i]);
+            out.writeInt(targets[i]);
+        }
+        return node.offset;
+    }
+
+    private static byte label(char[] alphabet, char c) {
+        return (byte) (Arrays.binarySearch(alphabet, c) + 1);
+    }
+
+    // Compiles every <name>.txt in the input directory into <name>.dict in the output directory
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: DictionaryBuilder <word list dir> <output dir>");
+            System.exit(2);
+        }
+        File[] lists = new File(args[0]).listFiles((dir, name) -> name.endsWith(".txt"));
+        File outputDir = new File(args[1]);
+        if (lists == null || (!outputDir.isDirectory() && !outputDir.mkdirs())) {
+            throw new IOException("Cannot read " + args[0] + " or write " + args[1]);
+        }
+        for (File list : lists) {
+            String name = list.getName().substring(0, list.getName().length() - ".txt".length());
+            File output = new File(outputDir, name + ".dict");
+            DictionaryBuilder builder = new DictionaryBuilder().addAll(list);
+            builder.write(output);
+            System.out.println(list.getName() + ": " + builder.words.size() + " words, " + output.length() + " bytes"
+                    + (builder.complete ? "" : ", starter list"));
+        }
+    }
+
+    // Equal when the same words, with the same frequencies, continue from both; targets are already unique
+    private static final class Node {
+        boolean terminal;
+        int frequencyClass;
+        byte[] labels = new byte[2];
+        Node[] targets = new Node[2];
+        int childCount;
+        int offset = -1;
+
+        Node lastChild() {
+            return targets[childCount - 1];
+        }
+
+        void addChild(byte label, Node child) {
+            if (childCount == labels.length) {
+                labels = Arrays.copyOf(labels, childCount * 2);
+                targets = Arrays.copyOf(targets, childCount * 2);
+            }
+            labels[childCount] = label;
+            targets[childCount++] = child;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Node)) {
+                return false;
+            }
+            Node other = (Node) o;
+            if (terminal != other.terminal || frequencyClass != other.frequencyClass
+                    || childCount != other.childCount) {
+                return false;
+            }
+            for (int i = 0; i < childCount; i++) {
+                if (labels[i] != other.labels[i] || targets[i] != other.targets[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = (terminal ? 31 : 0) + frequencyClass;
+            for (int i = 0; i < childCount; i++) {
+                hash = hash * 31 + labels[i];
+                hash = hash * 31 + System.identityHashCode(targets[i]);
+            }
+            return hash;
+        }
+    }
+}
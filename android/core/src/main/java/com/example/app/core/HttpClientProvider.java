@@ -0,0 +1,93 @@
+package com.example.app.core;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Owns the single OkHttpClient shared by every TextCorrectionService in the process.
+ */
+public class HttpClientProvider {
+    // HTTP/2 multiplexes all calls to a host over one connection, so one or two per backend is enough
+    private static final int MAX_IDLE_CONNECTIONS = 4;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    private static final int MAX_REQUESTS_PER_HOST = 8;
+
+    private final OkHttpClient client;
+
+    public HttpClientProvider() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+
+        this.client = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .dispatcher(dispatcher)
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .eventListenerFactory(CallTimingListener.FACTORY)
+                .connectTimeout(10, TimeUnit.SECONDS)
+                .writeTimeout(10, TimeUnit.SECONDS)
+                .readTimeout(30, TimeUnit.SECONDS)
+                .build();
+    }
+
+    public OkHttpClient getClient() {
+        return client;
+    }
+
+    // Opens (DNS + TCP + TLS) a pooled connection to the host of the given URL ahead of the first real request
+    public void preconnect(String url) {
+        preconnect(Collections.singletonList(url));
+    }
+
+    // One connection per host; skipped once the pool holds as many connections as there are hosts
+    public void preconnect(List<String> urls) {
+        Map<String, HttpUrl> hosts = new LinkedHashMap<>();
+        for (String url : urls) {
+            HttpUrl parsed = HttpUrl.parse(url);
+            if (parsed != null) {
+                String host = parsed.host() + ":" + parsed.port();
+                if (!hosts.containsKey(host)) {
+                    hosts.put(host, parsed);
+                }
+            }
+        }
+        if (client.connectionPool().connectionCount() >= hosts.size()) {
+            return;
+        }
+        for (HttpUrl url : hosts.values()) {
+            preconnect(url);
+        }
+    }
+
+    private void preconnect(HttpUrl url) {
+        Request request = new Request.Builder()
+                .url(url)
+                .head()
+                .build();
+
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                // Only a warm-up; the real request will connect on its own
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.close();
+            }
+        });
+    }
+}
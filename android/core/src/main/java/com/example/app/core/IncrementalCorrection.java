@@ -0,0 +1,207 @@
+package com.example.app.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Re-corrects an edited text by sending only the sentences that changed since the previous
+ * correction, widened by a little unchanged context, and splicing the corrected regions into the
+ * previous output. It relies on the previous input and output having the same number of
+ * sentences, which is the norm for a proofreader; when they do not, there is no plan and the
+ * caller corrects the whole text.
+ */
+public class IncrementalCorrection {
+    // Above this share of changed text a full correction costs about the same and reads better
+    static final double MAX_CHANGED_RATIO = 0.6;
+    // Sentence-level LCS is quadratic; past this many cells the edit is treated as one region
+    private static final int MAX_DIFF_CELLS = 250_000;
+
+    private final TextChunker.Split input;
+    private final List<String> previousOutput;
+    // Per new-input sentence: the index of the identical previous sentence, or -1 if it changed
+    private final int[] previousIndex;
+    private final List<Region> regions;
+
+    // A run of new-input sentences [start, end) that is sent for correction as one request
+    private static final class Region {
+        final int start;
+        final int end;
+
+        Region(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private IncrementalCorrection(TextChunker.Split input, List<String> previousOutput, int[] previousIndex,
+                                  List<Region> regions) {
+        this.input = input;
+        this.previousOutput = previousOutput;
+        this.previousIndex = previousIndex;
+        this.regions = regions;
+    }
+
+    // Returns null when the new input cannot, or should not, be corrected incrementally
+    public static IncrementalCorrection plan(String previousInput, String previousOutput, String newInput,
+                                             int contextSentences) {
+        TextChunker.Split before = TextChunker.splitSentences(previousInput);
+        TextChunker.Split after = TextChunker.splitSentences(previousOutput);
+        TextChunker.Split input = TextChunker.splitSentences(newInput);
+        if (before.size() == 0 || before.size() != after.size() || input.size() == 0) {
+            return null;
+        }
+
+        int[] previousIndex = match(before.getChunks(), input.getChunks());
+        int changedChars = 0;
+        int totalChars = 0;
+        for (int i = 0; i < input.size(); i++) {
+            int length = input.getChunks().get(i).length();
+            totalChars += length;
+            if (previousIndex[i] < 0) {
+                changedChars += length;
+            }
+        }
+        if (changedChars > totalChars * MAX_CHANGED_RATIO) {
+            return null;
+        }
+
+        // Widen every changed run by the context and merge runs that then touch
+        List<Region> regions = new ArrayList<>();
+        int i = 0;
+        while (i < input.size()) {
+            if (previousIndex[i] >= 0) {
+                i++;
+                continue;
+            }
+            int end = i;
+            while (end < input.size() && previousIndex[end] < 0) end++;
+            int start = Math.max(0, i - contextSentences);
+            int widenedEnd = Math.min(input.size(), end + contextSentences);
+            Region last = regions.isEmpty() ? null : regions.get(regions.size() - 1);
+            if (last != null && start <= last.end) {
+                regions.set(regions.size() - 1, new Region(last.start, widenedEnd));
+            } else {
+                regions.add(new Region(start, widenedEnd));
+            }
+            i = end;
+        }
+        return new IncrementalCorrection(input, after.getChunks(), previousIndex, regions);
+    }
+
+    // The texts to correct, one per changed region, each with its original inner whitespace
+    public List<String> getRequests() {
+        List<String> requests = new ArrayList<>(regions.size());
+        for (Region region : regions) {
+            StringBuilder sb = new StringBuilder(input.getChunks().get(region.start));
+            for (int i = region.start + 1; i < region.end; i++) {
+                sb.append(input.separatorBefore(i)).append(input.getChunks().get(i));
+            }
+            requests.add(sb.toString());
+        }
+        return requests;
+    }
+
+    // Characters that will be sent, against the length of the whole new input
+    public int getRequestedLength() {
+        int length = 0;
+        for (String request : getRequests()) {
+            length += request.length();
+        }
+        return length;
+    }
+
+    // Builds the corrected text from the corrections of getRequests(), in the same order
+    public String splice(List<String> corrections) {
+        if (corrections.size() != regions.size()) {
+            throw new IllegalArgumentException("Expected " + regions.size() + " corrections, got " + corrections.size());
+        }
+        String[] output = new String[input.size()];
+        for (int i = 0; i < output.length; i++) {
+            if (previousIndex[i] >= 0) {
+                output[i] = previousOutput.get(previousIndex[i]);
+            }
+        }
+
+        for (int r = 0; r < regions.size(); r++) {
+            Region region = regions.get(r);
+            TextChunker.Split corrected = TextChunker.splitSentences(corrections.get(r).trim());
+            if (corrected.size() == region.end - region.start) {
+                // Sentences still line up: take the changed ones and keep the earlier output for the context
+                for (int i = region.start; i < region.end; i++) {
+                    if (previousIndex[i] < 0) {
+                        output[i] = corrected.getChunks().get(i - region.start);
+                    }
+                }
+            } else {
+                // The model merged or split sentences, so the whole region is replaced
+                output[region.start] = corrections.get(r).trim();
+                for (int i = region.start + 1; i < region.end; i++) {
+                    output[i] = null;
+                }
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < output.length; i++) {
+            if (output[i] == null) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append(input.separatorBefore(i));
+            }
+            sb.append(output[i]);
+        }
+        return sb.toString();
+    }
+
+    // Pairs identical sentences of the two lists in order (longest common subsequence)
+    private static int[] match(List<String> before, List<String> after) {
+        int[] previousIndex = new int[after.size()];
+        Arrays.fill(previousIndex, -1);
+
+        int prefix = 0;
+        while (prefix < before.size() && prefix < after.size() && before.get(prefix).equals(after.get(prefix))) {
+            previousIndex[prefix] = prefix;
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < before.size() - prefix && suffix < after.size() - prefix
+                && before.get(before.size() - 1 - suffix).equals(after.get(after.size() - 1 - suffix))) {
+            previousIndex[after.size() - 1 - suffix] = before.size() - 1 - suffix;
+            suffix++;
+        }
+
+        List<String> middleBefore = before.subList(prefix, before.size() - suffix);
+        List<String> middleAfter = after.subList(prefix, after.size() - suffix);
+        if (middleBefore.isEmpty() || middleAfter.isEmpty()
+                || (long) middleBefore.size() * middleAfter.size() > MAX_DIFF_CELLS) {
+            return previousIndex;
+        }
+
+        int n = middleBefore.size();
+        int m = middleAfter.size();
+        int[][] lcs = new int[n + 1][m + 1];
+        for (int i = n - 1; i >= 0; i--) {
+            for (int j = m - 1; j >= 0; j--) {
+                lcs[i][j] = middleBefore.get(i).equals(middleAfter.get(j))
+                        ? lcs[i + 1][j + 1] + 1
+                        : Math.max(lcs[i + 1][j], lcs[i][j + 1]);
+            }
+        }
+        int i = 0;
+        int j = 0;
+        while (i < n && j < m) {
+            if (middleBefore.get(i).equals(middleAfter.get(j))) {
+                previousIndex[prefix + j] = prefix + i;
+                i++;
+                j++;
+            } else if (lcs[i + 1][j] >= lcs[i][j + 1]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return previousIndex;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.app.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Works through the pending entries of a {@link CorrectionJournal} in batches, correcting up to a
+ * fixed number of entries at once. Results of a batch are synced to the journal together, and a
+ * batch that hits a network failure ends the replay so the rest waits for the next attempt.
+ */
+public class JournalReplayer {
+
+    public interface Corrector {
+        // Throws IOException when the entry should stay queued and be retried later
+        String correct(String text) throws IOException, InterruptedException;
+    }
+
+    public interface Listener {
+        void onCorrected(CorrectionJournal.Entry entry);
+    }
+
+    private final CorrectionJournal journal;
+    private final int batchSize;
+    private final ExecutorService executor;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public JournalReplayer(CorrectionJournal journal, int batchSize, int maxConcurrency) {
+        this.journal = journal;
+        this.batchSize = batchSize;
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "journal-replay");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = pool;
+    }
+
+    // Returns how many entries were corrected; a replay already in progress makes this a no-op
+    public int replay(Corrector corrector, Listener listener) throws IOException, InterruptedException {
+        if (!running.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            List<CorrectionJournal.Entry> pending = journal.pending();
+            int corrected = 0;
+            for (int start = 0; start < pending.size(); start += batchSize) {
+                List<CorrectionJournal.Entry> batch = pending.subList(start, Math.min(start + batchSize, pending.size()));
+                List<Future<String>> results = new ArrayList<>(batch.size());
+                for (CorrectionJournal.Entry entry : batch) {
+                    results.add(executor.submit(() -> corrector.correct(entry.getText())));
+                }
+
+                boolean failed = false;
+                for (int i = 0; i < batch.size(); i++) {
+                    String result;
+                    try {
+                        result = results.get(i).get();
+                    } catch (InterruptedException e) {
+                        for (Future<String> future : results) {
+                            future.cancel(true);
+                        }
+                        throw e;
+                    } catch (ExecutionException e) {
+                        if (!(e.getCause() instanceof IOException)) {
+                            throw new IOException("Replay failed", e.getCause());
+                        }
+                        failed = true;
+                        continue;
+                    }
+                    CorrectionJournal.Entry entry = batch.get(i);
+                    journal.markCorrected(entry.getId(), result);
+                    corrected++;
+                    listener.onCorrected(new CorrectionJournal.Entry(entry.getId(), entry.getText(), result));
+                }
+                journal.sync();
+                if (failed) {
+                    break;
+                }
+            }
+            return corrected;
+        } finally {
+            running.set(false);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.app.core;
+
+import java.io.EOFException;
+import java.io.IOException;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+
+/**
+ * Minimal pull reader over JSON on an okio source. It only materializes the strings asked for,
+ * decoding each straight from the source bytes into one builder of the right size; names are
+ * compared as bytes and everything else is skipped without being decoded.
+ */
+final class JsonStreamReader {
+    private final BufferedSource source;
+    private final Buffer buffer;
+
+    JsonStreamReader(BufferedSource source) {
+        this.source = source;
+        this.buffer = source.getBuffer();
+    }
+
+    // The next significant byte without consuming it, or -1 at the end of the input
+    int peek() throws IOException {
+        while (source.request(1)) {
+            byte b = buffer.getByte(0);
+            if (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                buffer.skip(1);
+            } else {
+                return b & 0xff;
+            }
+        }
+        return -1;
+    }
+
+    void beginObject() throws IOException {
+        expect('{');
+    }
+
+    void endObject() throws IOException {
+        expect('}');
+    }
+
+    void beginArray() throws IOException {
+        expect('[');
+    }
+
+    void endArray() throws IOException {
+        expect(']');
+    }
+
+    // True while the current object or array has more members; consumes the separating comma
+    boolean hasNext() throws IOException {
+        int next = peek();
+        if (next == ',') {
+            buffer.skip(1);
+            next = peek();
+        }
+        if (next == -1) {
+            throw new EOFException("Unexpected end of JSON");
+        }
+        return next != '}' && next != ']';
+    }
+
+    // Consumes the next member name and its colon, reporting whether it is the given name
+    boolean nextNameIs(ByteString name) throws IOException {
+        expect('"');
+        long length = stringLength();
+        boolean matches = length == name.size() && buffer.rangeEquals(0, name);
+        buffer.skip(length + 1);
+        expect(':');
+        return matches;
+    }
+
+    // Consumes the next member name and its colon, returning its index in names or -1
+    int selectName(ByteString[] names) throws IOException {
+        expect('"');
+        long length = stringLength();
+        int selected = -1;
+        for (int i = 0; i < names.length && selected == -1; i++) {
+            if (length == names[i].size() && buffer.rangeEquals(0, names[i])) {
+                selected = i;
+            }
+        }
+        buffer.skip(length + 1);
+        expect(':');
+        return selected;
+    }
+
+    String nextString() throws IOException {
+        expect('"');
+        long length = stringLength();
+        // Escapes and multi-byte sequences only shrink, so the raw length bounds the decoded one
+        StringBuilder out = new StringBuilder((int) length);
+        long end = buffer.size() - length;
+        while (buffer.size() > end) {
+            int b = buffer.readByte();
+            if (b == '\\') {
+                readEscape(out);
+            } else if (b >= 0) {
+                out.append((char) b);
+            } else {
+                readUtf8(b, out);
+            }
+        }
+        buffer.skip(1);
+        return out.toString();
+    }
+
+    // Reads an integer; a fraction or exponent is not expected in the fields read this way
+    long nextLong() throws IOException {
+        int next = peek();
+        boolean negative = next == '-';
+        if (negative) {
+            buffer.skip(1);
+        }
+        long value = 0;
+        int digits = 0;
+        while (source.request(1)) {
+            byte b = buffer.getByte(0);
+            if (b < '0' || b > '9') {
+                break;
+            }
+            value = value * 10 + (b - '0');
+            digits++;
+            buffer.skip(1);
+        }
+        if (digits == 0) {
+            throw new MalformedResponseException("Malformed JSON: expected a number");
+        }
+        return negative ? -value : value;
+    }
+
+    void skipValue() throws IOException {
+        int next = peek();
+        if (next == '{' || next == '[') {
+            buffer.skip(1);
+            while (hasNext()) {
+                if (next == '{') {
+                    nextNameIs(ByteString.EMPTY);
+                }
+                skipValue();
+            }
+            buffer.skip(1);
+        } else if (next == '"') {
+            buffer.skip(1);
+            buffer.skip(stringLength() + 1);
+        } else if (next == -1) {
+            throw new EOFException("Unexpected end of JSON");
+        } else {
+            // Numbers and literals run until the next separator
+            while (source.request(1)) {
+                byte b = buffer.getByte(0);
+                if (b == ',' || b == '}' || b == ']' || b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                    break;
+                }
+                buffer.skip(1);
+            }
+        }
+    }
+
+    private void expect(char c) throws IOException {
+        int next = peek();
+        if (next != c) {
+            throw new MalformedResponseException("Malformed JSON: expected '" + c + "' but was "
+                    + (next == -1 ? "end of input" : "'" + (char) next + "'"));
+        }
+        buffer.skip(1);
+    }
+
+    // Bytes up to the unescaped closing quote of a string whose opening quote was consumed
+    private long stringLength() throws IOException {
+        long from = 0;
+        while (true) {
+            long quote = source.indexOf((byte) '"', from);
+            if (quote == -1) {
+                throw new EOFException("Unterminated JSON string");
+            }
+            long backslashes = 0;
+            while (quote - backslashes > 0 && buffer.getByte(quote - backslashes - 1) == '\\') {
+                backslashes++;
+            }
+            if (backslashes % 2 == 0) {
+                return quote;
+            }
+            from = quote + 1;
+        }
+    }
+
+    private void readEscape(StringBuilder out) throws IOException {
+        byte escaped = buffer.readByte();
+        switch (escaped) {
+            case 'n': out.append('\n'); break;
+            case 't': out.append('\t'); break;
+            case 'r': out.append('\r'); break;
+            case 'b': out.append('\b'); break;
+            case 'f': out.append('\f'); break;
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(buffer.readByte(), 16);
+                    if (digit == -1) {
+                        throw new MalformedResponseException("Malformed JSON: invalid \\u escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                out.append((char) value);
+                break;
+            default:
+                // \" \\ \/ stand for themselves
+                out.append((char) escaped);
+        }
+    }
+
+    // Decodes one multi-byte UTF-8 sequence whose lead byte was already read
+    private void readUtf8(int lead, StringBuilder out) throws IOException {
+        int count;
+        int codePoint;
+        if ((lead & 0xe0) == 0xc0) {
+            count = 1;
+            codePoint = lead & 0x1f;
+        } else if ((lead & 0xf0) == 0xe0) {
+            count = 2;
+            codePoint = lead & 0x0f;
+        } else if ((lead & 0xf8) == 0xf0) {
+            count = 3;
+            codePoint = lead & 0x07;
+        } else {
+            out.append('\ufffd');
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            if (buffer.size() == 0 || (buffer.getByte(0) & 0xc0) != 0x80) {
+                out.append('\ufffd');
+                return;
+            }
+            codePoint = (codePoint << 6) | (buffer.readByte() & 0x3f);
+        }
+        if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            out.append(Character.highSurrogate(codePoint)).append(Character.lowSurrogate(codePoint));
+        } else {
+            out.append((char) codePoint);
+        }
+    }
+}
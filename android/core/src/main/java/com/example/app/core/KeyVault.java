@@ -0,0 +1,13 @@
+package com.example.app.core;
+
+import java.security.GeneralSecurityException;
+
+/**
+ * Encrypts small secrets with a key the caller never sees, such as one held by the platform
+ * keystore. What {@link #encrypt} returns carries everything {@link #decrypt} needs besides the key.
+ */
+public interface KeyVault {
+    byte[] encrypt(byte[] plaintext) throws GeneralSecurityException;
+
+    byte[] decrypt(byte[] ciphertext) throws GeneralSecurityException;
+}
@@ -0,0 +1,128 @@
+package com.example.app.core;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Offline fallback normalizer. One pass over the input into a single StringBuilder, producing
+ * exactly what the former chain of replaceAll calls did:
+ * collapse whitespace and trim, drop the space before {@code . , ; ! ?}, capitalize the first
+ * character and make sure the text ends with {@code . ! ?}. The streaming variant produces the
+ * same text into a Writer through a pooled buffer, for inputs too large to copy.
+ */
+public final class LocalCorrector {
+
+    private LocalCorrector() {
+    }
+
+    public static String correct(CharSequence input) {
+        if (input == null) return "";
+
+        // String.trim() semantics: strip every char <= ' ' at both ends
+        int start = 0;
+        int end = input.length();
+        while (start < end && input.charAt(start) <= ' ') start++;
+        while (end > start && input.charAt(end - 1) <= ' ') end--;
+        if (start == end) return "";
+
+        StringBuilder sb = new StringBuilder(end - start + 1);
+        // Set by NEL, LINE SEPARATOR or PARAGRAPH SEPARATOR, which the old ".*[.!?]$" check could never match across
+        boolean sawLineSeparator = false;
+        boolean pendingSpace = false;
+        for (int i = start; i < end; i++) {
+            char c = input.charAt(i);
+            if (isRegexWhitespace(c)) {
+                pendingSpace = true;
+                continue;
+            }
+            if (pendingSpace) {
+                if (!isSpacedPunctuation(c)) {
+                    sb.append(' ');
+                }
+                pendingSpace = false;
+            }
+            if (c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                sawLineSeparator = true;
+            }
+            sb.append(c);
+        }
+
+        // Character.toUpperCase(char), like the original, rather than the code point variant
+        sb.setCharAt(0, Character.toUpperCase(sb.charAt(0)));
+
+        char last = sb.charAt(sb.length() - 1);
+        if (sawLineSeparator || (last != '.' && last != '!' && last != '?')) {
+            sb.append('.');
+        }
+        return sb.toString();
+    }
+
+    // Same output as correct(input), written out one pooled buffer at a time; returns the chars written
+    public static long correct(CharSequence input, Writer out, CharBufferPool pool) throws IOException {
+        if (input == null) return 0;
+
+        int start = 0;
+        int end = input.length();
+        while (start < end && input.charAt(start) <= ' ') start++;
+        while (end > start && input.charAt(end - 1) <= ' ') end--;
+        if (start == end) return 0;
+
+        char[] buffer = pool.acquire();
+        try {
+            int buffered = 0;
+            long written = 0;
+            boolean sawLineSeparator = false;
+            boolean pendingSpace = false;
+            // The first char cannot be whitespace after the trim, so no space is ever emitted before it
+            char last = Character.toUpperCase(input.charAt(start));
+            buffer[buffered++] = last;
+            if (last == '\u0085' || last == '\u2028' || last == '\u2029') {
+                sawLineSeparator = true;
+            }
+            for (int i = start + 1; i < end; i++) {
+                char c = input.charAt(i);
+                if (isRegexWhitespace(c)) {
+                    pendingSpace = true;
+                    continue;
+                }
+                if (buffered + 2 > buffer.length) {
+                    out.write(buffer, 0, buffered);
+                    written += buffered;
+                    buffered = 0;
+                }
+                if (pendingSpace) {
+                    if (!isSpacedPunctuation(c)) {
+                        buffer[buffered++] = ' ';
+                    }
+                    pendingSpace = false;
+                }
+                if (c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                    sawLineSeparator = true;
+                }
+                buffer[buffered++] = c;
+                last = c;
+            }
+            if (buffered + 1 > buffer.length) {
+                out.write(buffer, 0, buffered);
+                written += buffered;
+                buffered = 0;
+            }
+            if (sawLineSeparator || (last != '.' && last != '!' && last != '?')) {
+                buffer[buffered++] = '.';
+            }
+            out.write(buffer, 0, buffered);
+            return written + buffered;
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    // The \s class of java.util.regex: [ \t\n\x0B\f\r]
+    private static boolean isRegexWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isSpacedPunctuation(char c) {
+        return c == '.' || c == ',' || c == ';' || c == '!' || c == '?';
+    }
+}
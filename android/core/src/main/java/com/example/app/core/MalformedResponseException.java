@@ -0,0 +1,14 @@
+package com.example.app.core;
+
+import java.io.IOException;
+
+/**
+ * The API answered, but not with a chat completion this client can read.
+ */
+public class MalformedResponseException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public MalformedResponseException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.app.core;
+
+/**
+ * Receives the events of the correction path. Methods may be called from any thread, on the
+ * request path, so implementations must be quick and must not block.
+ */
+public interface MetricsListener {
+    MetricsListener NONE = new MetricsListener() {
+    };
+
+    default void onLatency(CorrectionMetrics.Phase phase, long nanos) {
+    }
+
+    default void onBytes(long sent, long received) {
+    }
+
+    default void onTokens(long promptTokens, long completionTokens) {
+    }
+
+    // The part of a call's prompt tokens the provider read from its prompt cache
+    default void onCachedPromptTokens(long cachedPromptTokens) {
+    }
+
+    // A request was sent with this system prompt
+    default void onPrompt(CorrectionPrompt prompt) {
+    }
+
+    // httpCode is 0 unless the cause is HTTP
+    default void onError(CorrectionMetrics.Cause cause, int httpCode) {
+    }
+
+    default void onFallback(CorrectionMetrics.Cause cause) {
+    }
+
+    // A failed call is about to be tried again
+    default void onRetry(CorrectionMetrics.Cause cause) {
+    }
+
+    // A hedged second call was fired; won tells whether it answered first
+    default void onHedge(boolean won) {
+    }
+
+    // A backend failed and the request moved on to the next one
+    default void onFailover() {
+    }
+
+    // Several texts went out in one call; split tells whether the reply could be handed back out
+    default void onBatch(int size, boolean split) {
+    }
+
+    // A request had a latency budget, with the local correction as the answer past it; inBudget tells whether
+    // the API answered in time
+    default void onSpeculation(boolean inBudget) {
+    }
+
+    default void onCacheOutcome(CorrectionMetrics.CacheOutcome outcome) {
+    }
+}
@@ -0,0 +1,314 @@
+package com.example.app.core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The correction used without the API: {@link LocalCorrector}'s normalization, then, for a text
+ * whose language one of the dictionaries recognizes, spelling fixes from a {@link SpellChecker}
+ * and a few common grammar and typo rules of that language. It stays conservative, since a wrong
+ * change is worse than a missed one: names, acronyms, codes and addresses are left alone, only
+ * unambiguous spelling candidates are used, and a dictionary that knows too few of the text's words
+ * is not trusted for spelling at all. Nor is a dictionary not marked complete, since most correct
+ * words are missing from a starter list and each would be "corrected" to its nearest neighbour:
+ * from such a list only Polish letters typed without their diacritics are restored, as in "prosze".
+ * Without dictionaries it is exactly LocalCorrector.
+ */
+public final class OfflineCorrector {
+    public static final OfflineCorrector BASIC = new OfflineCorrector(null, null);
+
+    // Below this share of known words the dictionary probably lacks the text's vocabulary
+    static final double MIN_KNOWN_SHARE = 0.5;
+    // Words looked up to tell the language
+    private static final int DETECTION_WORDS = 64;
+    private static final int MIN_SPELLED_LENGTH = 3;
+    // From this length on, two edits are allowed
+    private static final int LONG_WORD_LENGTH = 8;
+
+    public enum Language {
+        POLISH(map("wogóle", "w ogóle", "wogule", "w ogóle", "narazie", "na razie", "napewno", "na pewno",
+                        "poprostu", "po prostu", "conajmniej", "co najmniej", "conajwyżej", "co najwyżej",
+                        "niewiem", "nie wiem", "niemam", "nie mam", "wziąść", "wziąć", "poszłem", "poszedłem",
+                        "włanczać", "włączać", "spowrotem", "z powrotem"),
+                set("bardzo", "coraz"),
+                set("że", "żeby", "ponieważ", "gdyż", "ale", "lecz", "bo", "który", "która", "które", "którego",
+                        "której", "którym", "którą", "których", "którzy", "którymi"),
+                // Conjunctions that belong to the word before, prepositions that take który with them,
+                // and words after which no comma goes
+                set("mimo", "pomimo", "chyba", "tylko", "zwłaszcza", "dlatego", "tak", "i", "a", "oraz", "lub",
+                        "albo", "ani", "czy", "że", "bo", "ale", "lecz", "w", "we", "z", "ze", "na", "do", "o",
+                        "od", "po", "za", "dla", "przy", "przez", "nad", "pod", "przed", "u", "bez", "między")),
+        ENGLISH(map("alot", "a lot", "infact", "in fact", "aswell", "as well", "eachother", "each other",
+                        "incase", "in case", "noone", "no one"),
+                set("had", "that"),
+                Collections.<String>emptySet(),
+                Collections.<String>emptySet());
+
+        final Map<String, String> splitWords;
+        final Set<String> repeatable;
+        final Set<String> commaBefore;
+        final Set<String> noCommaAfter;
+
+        Language(Map<String, String> splitWords, Set<String> repeatable, Set<String> commaBefore,
+                 Set<String> noCommaAfter) {
+            this.splitWords = splitWords;
+            this.repeatable = repeatable;
+            this.commaBefore = commaBefore;
+            this.noCommaAfter = noCommaAfter;
+        }
+    }
+
+    private static final Set<String> MODALS = set("could", "should", "would", "must", "might");
+
+    private final SpellChecker polish;
+    private final SpellChecker english;
+
+    // Either dictionary may be null
+    public OfflineCorrector(CompactDictionary polish, CompactDictionary english) {
+        this.polish = polish != null ? new SpellChecker(polish) : null;
+        this.english = english != null ? new SpellChecker(english) : null;
+    }
+
+    public String correct(CharSequence input) {
+        String text = LocalCorrector.correct(input);
+        if (text.isEmpty() || (polish == null && english == null)) {
+            return text;
+        }
+        Words words = Words.of(text);
+        Language language = detect(text, words);
+        if (language == null) {
+            return text;
+        }
+        SpellChecker checker = language == Language.POLISH ? polish : english;
+        int checked = Math.min(words.count, DETECTION_WORDS);
+        if (known(checker, text, words, checked) < checked * MIN_KNOWN_SHARE) {
+            checker = null;
+        }
+        return apply(text, words, language, checker);
+    }
+
+    Language detectLanguage(CharSequence input) {
+        String text = LocalCorrector.correct(input);
+        return detect(text, Words.of(text));
+    }
+
+    // The language whose dictionary knows more of the first words; Polish letters settle a tie
+    private Language detect(String text, Words words) {
+        int checked = Math.min(words.count, DETECTION_WORDS);
+        int knownPolish = known(polish, text, words, checked);
+        int knownEnglish = known(english, text, words, checked);
+        if (knownPolish > knownEnglish || (knownPolish == knownEnglish && knownPolish > 0 && hasPolishLetters(text))) {
+            return Language.POLISH;
+        }
+        return knownEnglish > knownPolish ? Language.ENGLISH : null;
+    }
+
+    private static int known(SpellChecker checker, String text, Words words, int count) {
+        if (checker == null) {
+            return 0;
+        }
+        int known = 0;
+        for (int i = 0; i < count; i++) {
+            if (checker.getDictionary().contains(text, words.starts[i], words.ends[i])) {
+                known++;
+            }
+        }
+        return known;
+    }
+
+    private static String apply(String text, Words words, Language language, SpellChecker checker) {
+        StringBuilder out = new StringBuilder(text.length() + 16);
+        int copied = 0;
+        for (int i = 0; i < words.count; i++) {
+            int start = words.starts[i];
+            int end = words.ends[i];
+            String word = text.substring(start, end);
+            String lower = word.toLowerCase(Locale.ROOT);
+            boolean afterSpace = i > 0 && words.ends[i - 1] == start - 1 && text.charAt(start - 1) == ' ';
+            String previous = afterSpace ? text.substring(words.starts[i - 1], words.ends[i - 1]) : null;
+
+            // "the the" loses its second word
+            if (previous != null && previous.equalsIgnoreCase(word) && !language.repeatable.contains(lower)) {
+                out.append(text, copied, words.ends[i - 1]);
+                copied = end;
+                continue;
+            }
+
+            if (previous != null && language.commaBefore.contains(lower)
+                    && !language.noCommaAfter.contains(previous.toLowerCase(Locale.ROOT))) {
+                out.append(text, copied, words.ends[i - 1]).append(',');
+                copied = words.ends[i - 1];
+            }
+
+            String replacement = language.splitWords.get(lower);
+            if (replacement == null && language == Language.ENGLISH) {
+                replacement = englishRule(text, words, i, lower, previous);
+            }
+            out.append(text, copied, start);
+            copied = end;
+            int suggested = out.length();
+            if (replacement != null) {
+                appendInCaseOf(word, replacement, out);
+            } else if (checker == null || !isSpellable(text, words, i)
+                    || checker.getDictionary().contains(text, start, end)
+                    || !checker.suggest(text, start, end, end - start < LONG_WORD_LENGTH ? 1 : 2, out)) {
+                out.append(word);
+            } else if (!checker.getDictionary().isComplete() && !restoresDiacritics(word, out, suggested)) {
+                out.setLength(suggested);
+                out.append(word);
+            }
+        }
+        out.append(text, copied, text.length());
+        return out.toString();
+    }
+
+    private static String englishRule(String text, Words words, int i, String lower, String previous) {
+        if (lower.equals("i")) {
+            return "I";
+        }
+        boolean beforeSpace = i + 1 < words.count && words.starts[i + 1] == words.ends[i] + 1
+                && text.charAt(words.ends[i]) == ' ';
+        String next = beforeSpace
+                ? text.substring(words.starts[i + 1], words.ends[i + 1]).toLowerCase(Locale.ROOT) : null;
+        // "a apple", but not "a one" or "a user", which start with a consonant sound
+        if (lower.equals("a") && next != null && next.length() > 1 && "aeio".indexOf(next.charAt(0)) >= 0
+                && !next.startsWith("one") && !next.startsWith("once")) {
+            return "an";
+        }
+        if (lower.equals("of") && previous != null && MODALS.contains(previous.toLowerCase(Locale.ROOT))
+                && !"course".equals(next)) {
+            return "have";
+        }
+        return null;
+    }
+
+    // Only lower-case words, or capitalized ones that start a sentence; the rest are names, acronyms and codes
+    private static boolean isSpellable(String text, Words words, int i) {
+        int start = words.starts[i];
+        int end = words.ends[i];
+        if (end - start < MIN_SPELLED_LENGTH || end - start > SpellChecker.MAX_WORD_LENGTH) {
+            return false;
+        }
+        for (int j = start + 1; j < end; j++) {
+            if (Character.isUpperCase(text.charAt(j))) {
+                return false;
+            }
+        }
+        if (Character.isUpperCase(text.charAt(start)) && !startsSentence(text, start)) {
+            return false;
+        }
+        // Parts of addresses, file names, handles and numbers
+        char before = start > 0 ? text.charAt(start - 1) : ' ';
+        char after = end < text.length() ? text.charAt(end) : ' ';
+        char afterNext = end + 1 < text.length() ? text.charAt(end + 1) : ' ';
+        return !isTechnical(before) && !isTechnical(after) && before != '.'
+                && !((after == '.' || after == '-') && Character.isLetterOrDigit(afterNext));
+    }
+
+    private static boolean isTechnical(char c) {
+        return Character.isDigit(c) || c == '@' || c == '_' || c == '/' || c == '\\' || c == '#' || c == '&'
+                || c == '=';
+    }
+
+    private static boolean startsSentence(String text, int start) {
+        for (int j = start - 1; j >= 0; j--) {
+            char c = text.charAt(j);
+            if (!Character.isWhitespace(c)) {
+                return c == '.' || c == '!' || c == '?';
+            }
+        }
+        return true;
+    }
+
+    // Whether the suggestion in out from offset on is the word with some of its letters given diacritics;
+    // a correct word without them is rare, unlike one a starter list lacks
+    private static boolean restoresDiacritics(String word, StringBuilder out, int offset) {
+        if (out.length() - offset != word.length()) {
+            return false;
+        }
+        boolean restored = false;
+        for (int i = 0; i < word.length(); i++) {
+            char typed = Character.toLowerCase(word.charAt(i));
+            char suggested = Character.toLowerCase(out.charAt(offset + i));
+            int diacritic = "ąćęłńóśźż".indexOf(suggested);
+            if (diacritic >= 0 && "acelnoszz".charAt(diacritic) == typed) {
+                restored = true;
+            } else if (typed != suggested) {
+                return false;
+            }
+        }
+        return restored;
+    }
+
+    private static boolean hasPolishLetters(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if ("ąćęłńóśźżĄĆĘŁŃÓŚŹŻ".indexOf(text.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Keeps a capital first letter
+    private static void appendInCaseOf(String original, String replacement, StringBuilder out) {
+        if (Character.isUpperCase(original.charAt(0))) {
+            out.append(Character.toUpperCase(replacement.charAt(0))).append(replacement, 1, replacement.length());
+        } else {
+            out.append(replacement);
+        }
+    }
+
+    private static Map<String, String> map(String... pairs) {
+        Map<String, String> map = new HashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            map.put(pairs[i], pairs[i + 1]);
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    private static Set<String> set(String... words) {
+        return Collections.unmodifiableSet(new HashSet<>(Arrays.asList(words)));
+    }
+
+    // Runs of letters, with apostrophes between letters as in "don't", as [start, end) ranges
+    private static final class Words {
+        int[] starts = new int[16];
+        int[] ends = new int[16];
+        int count;
+
+        static Words of(String text) {
+            Words words = new Words();
+            int i = 0;
+            while (i < text.length()) {
+                if (!Character.isLetter(text.charAt(i))) {
+                    i++;
+                    continue;
+                }
+                int start = i;
+                while (i < text.length() && (Character.isLetter(text.charAt(i)) || isInnerApostrophe(text, i))) i++;
+                words.add(start, i);
+            }
+            return words;
+        }
+
+        private static boolean isInnerApostrophe(String text, int i) {
+            char c = text.charAt(i);
+            return (c == '\'' || c == '’') && i > 0 && i + 1 < text.length()
+                    && Character.isLetter(text.charAt(i - 1)) && Character.isLetter(text.charAt(i + 1));
+        }
+
+        private void add(int start, int end) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            starts[count] = start;
+            ends[count++] = end;
+        }
+    }
+}
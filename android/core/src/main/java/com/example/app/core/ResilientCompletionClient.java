@@ -0,0 +1,206 @@
+package com.example.app.core;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Call;
+
+/**
+ * Puts a {@link CompletionClient} behind a circuit breaker and retries transient failures
+ * per the {@link RetryPolicy}. Optionally a non-streamed request is hedged: if the first call has
+ * not started answering by the p95 time to first byte seen so far, a second identical call is
+ * fired and whichever answers first wins, the other being cancelled.
+ */
+public class ResilientCompletionClient {
+    // Below this many observed calls the p95 means little, so there is no hedging yet
+    static final int MIN_TTFB_SAMPLES = 20;
+    static final long MIN_HEDGE_DELAY_MILLIS = 250;
+
+    private final CompletionClient client;
+    private final RetryPolicy retryPolicy;
+    private final CircuitBreaker circuitBreaker;
+    private final CorrectionMetrics metrics;
+    private final ThreadPoolExecutor hedgeExecutor;
+
+    public ResilientCompletionClient(CompletionClient client, RetryPolicy retryPolicy,
+                                     CircuitBreaker circuitBreaker, CorrectionMetrics metrics) {
+        this.client = client;
+        this.retryPolicy = retryPolicy;
+        this.circuitBreaker = circuitBreaker;
+        this.metrics = metrics;
+        this.hedgeExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 30, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "correction-hedge");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    // Throws CircuitOpenException without calling the API while the breaker is open
+    public String complete(String input, CompletionStreamReader.DeltaListener listener,
+                           ChatCompletionClient.CallObserver observer, boolean hedge)
+            throws IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            if (!circuitBreaker.allowRequest()) {
+                throw new CircuitOpenException();
+            }
+            long hedgeDelayMillis = hedge && listener == null ? hedgeDelayMillis() : -1;
+            Attempt result = hedgeDelayMillis >= 0
+                    ? completeHedged(input, observer, hedgeDelayMillis)
+                    : new Attempt(input, listener, observer, null).call();
+            if (result.succeeded()) {
+                circuitBreaker.onSuccess();
+                return result.result;
+            }
+            if (result.unexpected != null) {
+                throw result.unexpected;
+            }
+
+            IOException failure = result.failure;
+            // Every backend behind the client is refusing calls; that is for its own breakers to track
+            if (result.cancelledByCaller || failure instanceof CircuitOpenException) {
+                throw failure;
+            }
+            if (RetryPolicy.isTransient(failure)) {
+                circuitBreaker.onFailure();
+            } else {
+                // The API answered, so it is up even though it did not like this request
+                circuitBreaker.onSuccess();
+            }
+            // Text already streamed to the caller cannot be taken back, so a broken stream is not retried
+            long delayMillis = result.streamed ? -1 : retryPolicy.delayBeforeRetry(attempt, failure);
+            if (delayMillis < 0) {
+                throw failure;
+            }
+            metrics.onRetry(CorrectionMetrics.causeOf(failure));
+            Thread.sleep(delayMillis);
+        }
+    }
+
+    private long hedgeDelayMillis() {
+        LatencyHistogram.Snapshot ttfb = metrics.getLatency(CorrectionMetrics.Phase.TTFB);
+        if (ttfb.getCount() < MIN_TTFB_SAMPLES) {
+            return -1;
+        }
+        return Math.max(MIN_HEDGE_DELAY_MILLIS, TimeUnit.MICROSECONDS.toMillis(ttfb.getPercentileMicros(95)));
+    }
+
+    // Returns the first successful attempt, or the last failed one when neither succeeds
+    private Attempt completeHedged(String input, ChatCompletionClient.CallObserver observer, long hedgeDelayMillis)
+            throws InterruptedException {
+        BlockingQueue<Attempt> finished = new LinkedBlockingQueue<>();
+        Attempt primary = new Attempt(input, null, observer, finished);
+        Attempt hedge = null;
+        try {
+            hedgeExecutor.execute(primary::call);
+            Attempt done = finished.poll(hedgeDelayMillis, TimeUnit.MILLISECONDS);
+            if (done == null && !primary.hasResponseStarted()) {
+                hedge = new Attempt(input, null, observer, finished);
+                hedgeExecutor.execute(hedge::call);
+            }
+            int outstanding = hedge != null ? 2 : 1;
+            if (done == null) {
+                done = finished.take();
+            }
+            outstanding--;
+            while (!done.succeeded() && outstanding > 0) {
+                done = finished.take();
+                outstanding--;
+            }
+            if (hedge != null) {
+                metrics.onHedge(done == hedge && done.succeeded());
+            }
+            return done;
+        } finally {
+            // Whatever is still running lost the race or is no longer wanted
+            primary.cancel();
+            if (hedge != null) {
+                hedge.cancel();
+            }
+        }
+    }
+
+    // One call to the API, run on the caller's thread or on the hedge executor
+    private final class Attempt implements ChatCompletionClient.CallObserver {
+        private final String input;
+        private final CompletionStreamReader.DeltaListener listener;
+        private final ChatCompletionClient.CallObserver observer;
+        private final BlockingQueue<Attempt> finished;
+        private volatile Call call;
+        private volatile boolean cancelled;
+        private volatile boolean streamed;
+        private String result;
+        private IOException failure;
+        private RuntimeException unexpected;
+        private boolean cancelledByCaller;
+
+        Attempt(String input, CompletionStreamReader.DeltaListener listener, ChatCompletionClient.CallObserver observer,
+                BlockingQueue<Attempt> finished) {
+            this.input = input;
+            this.listener = listener;
+            this.observer = observer;
+            this.finished = finished;
+        }
+
+        boolean succeeded() {
+            return failure == null && unexpected == null;
+        }
+
+        Attempt call() {
+            CompletionStreamReader.DeltaListener tracking = listener == null ? null : delta -> {
+                streamed = true;
+                listener.onDelta(delta);
+            };
+            try {
+                result = client.complete(input, tracking, this);
+            } catch (IOException e) {
+                failure = e;
+                // Cancelled from outside, i.e. the caller gave up on the request
+                Call current = call;
+                cancelledByCaller = !cancelled && current != null && current.isCanceled();
+            } catch (RuntimeException e) {
+                unexpected = e;
+            }
+            if (finished != null) {
+                finished.add(this);
+            }
+            return this;
+        }
+
+        @Override
+        public void onCallStarted(Call call) {
+            this.call = call;
+            if (cancelled) {
+                call.cancel();
+            }
+            observer.onCallStarted(call);
+        }
+
+        @Override
+        public void onCallFinished(Call call, CallTimings timings) {
+            observer.onCallFinished(call, timings);
+        }
+
+        // Response headers have arrived, so the server is answering and a hedge would not help
+        boolean hasResponseStarted() {
+            Call current = call;
+            CallTimings timings = current != null ? current.request().tag(CallTimings.class) : null;
+            return timings != null && timings.responseStartNanos != -1;
+        }
+
+        void cancel() {
+            cancelled = true;
+            Call current = call;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+    }
+}
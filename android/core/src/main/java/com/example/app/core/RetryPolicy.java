@@ -0,0 +1,53 @@
+package com.example.app.core;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Decides whether and when a failed API call is tried again: exponential backoff with full
+ * jitter, so clients that failed together do not retry together, unless the server said how
+ * long to wait with Retry-After.
+ */
+public class RetryPolicy {
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final Random random;
+
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        this(maxAttempts, baseDelayMillis, maxDelayMillis, new Random());
+    }
+
+    RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, Random random) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.random = random;
+    }
+
+    // Failures that may go away on their own: overload, server errors, timeouts and dropped connections
+    public static boolean isTransient(IOException failure) {
+        if (failure instanceof ChatCompletionClient.ApiException) {
+            return ((ChatCompletionClient.ApiException) failure).isRetryable();
+        }
+        return !(failure instanceof MalformedResponseException) && !(failure instanceof CircuitOpenException);
+    }
+
+    // Milliseconds to wait before the next attempt, or -1 to give up; attempt counts the calls made so far
+    public long delayBeforeRetry(int attempt, IOException failure) {
+        if (attempt >= maxAttempts || !isTransient(failure)) {
+            return -1;
+        }
+        if (failure instanceof ChatCompletionClient.ApiException) {
+            long retryAfter = ((ChatCompletionClient.ApiException) failure).getRetryAfterMillis();
+            if (retryAfter >= 0) {
+                // Asked to come back later than we are willing to keep the user waiting
+                return retryAfter <= maxDelayMillis ? retryAfter : -1;
+            }
+        }
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 20));
+        synchronized (random) {
+            return (long) (random.nextDouble() * (ceiling + 1));
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.app.core;
+
+/**
+ * Finds the dictionary word closest to a misspelled one by walking the {@link CompactDictionary}
+ * automaton with a row of the Damerau-Levenshtein table per depth, abandoning every branch whose
+ * row already exceeds the allowed distance, so a lookup reads only the few branches that can still
+ * lead to a close word. Each thread keeps its own table, so after its first use a lookup allocates
+ * nothing.
+ */
+public final class SpellChecker {
+    // Longer tokens are codes, hashes or URLs rather than words
+    public static final int MAX_WORD_LENGTH = 32;
+    static final int MAX_DISTANCE = 2;
+
+    private final CompactDictionary dictionary;
+    private final ThreadLocal<Search> searches = new ThreadLocal<Search>() {
+        @Override
+        protected Search initialValue() {
+            return new Search();
+        }
+    };
+
+    public SpellChecker(CompactDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    public CompactDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Appends to out the one closest word within maxDistance edits, in the case pattern of the
+     * original, and returns true. Returns false without appending when the word is not made of
+     * letters, when nothing is close enough, or when several words are equally close and common,
+     * since guessing between them would do more harm than leaving the word.
+     */
+    public boolean suggest(CharSequence text, int start, int end, int maxDistance, StringBuilder out) {
+        int length = end - start;
+        if (length == 0 || length > MAX_WORD_LENGTH || maxDistance < 1 || maxDistance > MAX_DISTANCE) {
+            return false;
+        }
+        Search search = searches.get();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(start + i);
+            if (!Character.isLetter(c) && c != '\'' && c != '’') {
+                return false;
+            }
+            // A letter no word contains matches nothing, and costs an edit like any other
+            int label = dictionary.label(c);
+            search.word[i] = label != 0 ? label : -1;
+        }
+        search.start(length, maxDistance);
+        search.walk(dictionary.root(), 0);
+        if (search.bestLength < 0 || search.ambiguous || search.bestDistance == 0) {
+            return false;
+        }
+        appendInCaseOf(text, start, end, search.best, search.bestLength, out);
+        return true;
+    }
+
+    // Upper case throughout, a capital first letter, or as in the dictionary
+    private void appendInCaseOf(CharSequence original, int start, int end, int[] labels, int length,
+                                StringBuilder out) {
+        boolean firstUpper = Character.isUpperCase(original.charAt(start));
+        boolean allUpper = firstUpper && end - start > 1;
+        for (int i = start + 1; i < end && allUpper; i++) {
+            allUpper = !Character.isLowerCase(original.charAt(i));
+        }
+        for (int i = 0; i < length; i++) {
+            char c = dictionary.charOf(labels[i]);
+            out.append(allUpper || (firstUpper && i == 0) ? Character.toUpperCase(c) : c);
+        }
+    }
+
+    // The table and the best match so far for one thread
+    private final class Search {
+        final int[] word = new int[MAX_WORD_LENGTH];
+        // rows[d] is the edit distance row after the first d letters of the path
+        final int[][] rows = new int[MAX_WORD_LENGTH + MAX_DISTANCE + 1][MAX_WORD_LENGTH + 1];
+        final int[] path = new int[MAX_WORD_LENGTH + MAX_DISTANCE];
+        final int[] best = new int[MAX_WORD_LENGTH + MAX_DISTANCE];
+        int length;
+        int maxDistance;
+        int bestLength;
+        int bestDistance;
+        int bestFrequency;
+        boolean ambiguous;
+
+        void start(int length, int maxDistance) {
+            this.length = length;
+            this.maxDistance = maxDistance;
+            bestLength = -1;
+            bestDistance = Integer.MAX_VALUE;
+            bestFrequency = -1;
+            ambiguous = false;
+            for (int j = 0; j <= length; j++) {
+                rows[0][j] = j;
+            }
+        }
+
+        void walk(int node, int depth) {
+            if (depth == length + maxDistance) {
+                return;
+            }
+            int[] previous = rows[depth];
+            int[] current = rows[depth + 1];
+            int count = dictionary.childCount(node);
+            for (int c = 0; c < count; c++) {
+                int label = dictionary.childLabel(node, c);
+                path[depth] = label;
+                current[0] = depth + 1;
+                int rowMin = current[0];
+                for (int j = 1; j <= length; j++) {
+                    int cost = word[j - 1] == label ? 0 : 1;
+                    int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                    if (depth > 0 && j > 1 && label == word[j - 2] && path[depth - 1] == word[j - 1]) {
+                        value = Math.min(value, rows[depth - 1][j - 2] + 1);
+                    }
+                    current[j] = value;
+                    rowMin = Math.min(rowMin, value);
+                }
+                if (rowMin > maxDistance) {
+                    continue;
+                }
+                int child = dictionary.childNode(node, c);
+                if (current[length] <= maxDistance && dictionary.isTerminal(child)) {
+                    offer(depth + 1, current[length], dictionary.frequencyClass(child));
+                }
+                walk(child, depth + 1);
+            }
+        }
+
+        // Fewer edits win, then the more common word; a tie on both leaves the choice open
+        void offer(int wordLength, int distance, int frequency) {
+            if (distance < bestDistance || (distance == bestDistance && frequency > bestFrequency)) {
+                bestDistance = distance;
+                bestFrequency = frequency;
+                bestLength = wordLength;
+                System.arraycopy(path, 0, best, 0, wordLength);
+                ambiguous = false;
+            } else if (distance == bestDistance && frequency == bestFrequency) {
+                ambiguous = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.app.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits long text into token-budgeted chunks at paragraph, then sentence, then word boundaries,
+ * measured with {@link TokenEstimator}. The whitespace between chunks is kept aside so corrected
+ * chunks can be joined back losslessly.
+ */
+public class TextChunker {
+    private static final int WORD = 0;
+    private static final int SENTENCE = 1;
+    private static final int PARAGRAPH = 2;
+
+    private TextChunker() {
+    }
+
+    public static final class Split {
+        private final List<String> chunks;
+        // separators.get(i) precedes chunks.get(i); the last one trails the final chunk
+        private final List<String> separators;
+
+        Split(List<String> chunks, List<String> separators) {
+            this.chunks = chunks;
+            this.separators = separators;
+        }
+
+        public List<String> getChunks() {
+            return chunks;
+        }
+
+        public int size() {
+            return chunks.size();
+        }
+
+        public String separatorBefore(int index) {
+            return separators.get(index);
+        }
+
+        public String trailingSeparator() {
+            return separators.get(chunks.size());
+        }
+
+        // Rebuilds the text from (corrected) chunks with the original separators
+        public String join(List<String> correctedChunks) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < correctedChunks.size(); i++) {
+                sb.append(separators.get(i)).append(correctedChunks.get(i));
+            }
+            return sb.append(trailingSeparator()).toString();
+        }
+    }
+
+    public static Split split(String text, int maxTokensPerChunk) {
+        List<String> chunks = new ArrayList<>();
+        List<String> separators = new ArrayList<>();
+
+        int start = 0;
+        int end = text.length();
+        while (start < end && Character.isWhitespace(text.charAt(start))) start++;
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) end--;
+        separators.add(text.substring(0, start));
+
+        while (true) {
+            // The longest piece from start that fits the budget
+            int limit = TokenEstimator.prefixEnd(text, start, end, maxTokensPerChunk);
+            if (limit >= end) {
+                break;
+            }
+            int cutStart = -1;
+            int cutEnd = -1;
+            int cutLevel = -1;
+
+            // Pick the last whitespace run of the strongest kind that still fits the budget
+            int i = start + 1;
+            while (i <= limit) {
+                if (!Character.isWhitespace(text.charAt(i))) {
+                    i++;
+                    continue;
+                }
+                int runEnd = i;
+                while (runEnd < end && Character.isWhitespace(text.charAt(runEnd))) runEnd++;
+                int level = boundaryLevel(text, i, runEnd);
+                if (level >= cutLevel) {
+                    cutStart = i;
+                    cutEnd = runEnd;
+                    cutLevel = level;
+                }
+                i = runEnd;
+            }
+
+            if (cutStart < 0) {
+                // A single "word" longer than the budget; cut it without splitting a surrogate pair
+                cutStart = Character.isHighSurrogate(text.charAt(limit - 1)) ? limit - 1 : limit;
+                cutEnd = cutStart;
+            }
+            chunks.add(text.substring(start, cutStart));
+            separators.add(text.substring(cutStart, cutEnd));
+            start = cutEnd;
+        }
+
+        if (start < end) {
+            chunks.add(text.substring(start, end));
+        }
+        separators.add(text.substring(end));
+        return new Split(chunks, separators);
+    }
+
+    // Cuts at every sentence and line boundary, regardless of length
+    public static Split splitSentences(String text) {
+        List<String> sentences = new ArrayList<>();
+        List<String> separators = new ArrayList<>();
+
+        int start = 0;
+        int end = text.length();
+        while (start < end && Character.isWhitespace(text.charAt(start))) start++;
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) end--;
+        separators.add(text.substring(0, start));
+
+        int i = start + 1;
+        while (i < end) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int runEnd = i;
+            while (runEnd < end && Character.isWhitespace(text.charAt(runEnd))) runEnd++;
+            if (boundaryLevel(text, i, runEnd) >= SENTENCE) {
+                sentences.add(text.substring(start, i));
+                separators.add(text.substring(i, runEnd));
+                start = runEnd;
+            }
+            i = runEnd;
+        }
+
+        if (start < end) {
+            sentences.add(text.substring(start, end));
+        }
+        separators.add(text.substring(end));
+        return new Split(sentences, separators);
+    }
+
+    // Classifies the whitespace run text[runStart, runEnd) that follows a non-whitespace character
+    private static int boundaryLevel(String text, int runStart, int runEnd) {
+        int newlines = 0;
+        for (int i = runStart; i < runEnd; i++) {
+            if (text.charAt(i) == '\n') newlines++;
+        }
+        if (newlines >= 2) {
+            return PARAGRAPH;
+        }
+        if (newlines == 1) {
+            return SENTENCE;
+        }
+
+        int i = runStart - 1;
+        while (i > 0 && isClosingMark(text.charAt(i))) i--;
+        char c = text.charAt(i);
+        return c == '.' || c == '!' || c == '?' || c == '…' ? SENTENCE : WORD;
+    }
+
+    private static boolean isClosingMark(char c) {
+        return c == '"' || c == '\'' || c == ')' || c == ']' || c == '»' || c == '”' || c == '’';
+    }
+}
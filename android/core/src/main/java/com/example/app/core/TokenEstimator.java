@@ -0,0 +1,217 @@
+package com.example.app.core;
+
+/**
+ * Estimates how many tokens the model's tokenizer (o200k_base for gpt-4o-mini) makes of a text,
+ * without its vocabulary. The text is cut the way the tokenizer pre-splits it, into words with
+ * their leading space, groups of up to three digits, punctuation runs and whitespace runs, and each
+ * piece costs what byte-pair merging typically leaves of a piece of its kind and length: a common
+ * short word is one token, longer words and words with diacritics break into several, and scripts
+ * with few merges cost nearly a token per letter. One pass, no allocation.
+ */
+public final class TokenEstimator {
+    // Latin words up to this long are usually a single token
+    private static final int SINGLE_TOKEN_WORD = 8;
+    // Chars per token beyond that, and in words with diacritics or in other alphabets
+    private static final int WORD_CHARS_PER_TOKEN = 4;
+    private static final int PUNCTUATION_PER_TOKEN = 3;
+    private static final int DIGITS_PER_TOKEN = 3;
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(CharSequence text) {
+        return estimate(text, 0, text.length());
+    }
+
+    public static int estimate(CharSequence text, int start, int end) {
+        return (int) (scan(text, start, end, Integer.MAX_VALUE) >>> 32);
+    }
+
+    /**
+     * The end of the longest prefix of text[start, end) within maxTokens, cut between pieces where
+     * possible. Always covers at least one code point, so a caller cutting text into budgeted
+     * parts makes progress even when a single char costs more than the budget.
+     */
+    public static int prefixEnd(CharSequence text, int start, int end, int maxTokens) {
+        return (int) scan(text, start, end, maxTokens);
+    }
+
+    // Tokens in the high half, the end of the prefix within maxTokens in the low half
+    private static long scan(CharSequence text, int start, int end, int maxTokens) {
+        long tokens = 0;
+        // Where the space that goes with the next piece starts, or -1
+        int joined = -1;
+        int i = start;
+        while (i < end) {
+            char c = text.charAt(i);
+            int pieceEnd;
+            int cost;
+            if (isWordChar(c) || (isWordPrefix(c) && i + 1 < end && isWordChar(text.charAt(i + 1)))) {
+                pieceEnd = wordEnd(text, isWordChar(c) ? i : i + 1, end);
+                cost = wordCost(text, i, pieceEnd);
+            } else if (Character.isDigit(c)) {
+                pieceEnd = i + 1;
+                while (pieceEnd < end && pieceEnd - i < DIGITS_PER_TOKEN && Character.isDigit(text.charAt(pieceEnd))) {
+                    pieceEnd++;
+                }
+                cost = 1;
+            } else if (Character.isWhitespace(c)) {
+                pieceEnd = i + 1;
+                while (pieceEnd < end && Character.isWhitespace(text.charAt(pieceEnd))) pieceEnd++;
+                cost = whitespaceCost(text, i, pieceEnd, end);
+            } else {
+                pieceEnd = punctuationEnd(text, i, end);
+                cost = punctuationCost(text, i, pieceEnd);
+            }
+            if (tokens + cost > maxTokens) {
+                // Without the piece after it, that space would be a token of its own
+                int prefixEnd = i == start ? partialEnd(text, i, pieceEnd, maxTokens) : joined > start ? joined : i;
+                return tokens << 32 | prefixEnd;
+            }
+            tokens += cost;
+            boolean spaceJoinsNext = Character.isWhitespace(c) && whitespaceCost(text, i, pieceEnd, pieceEnd) > cost;
+            joined = spaceJoinsNext ? pieceEnd - 1 : -1;
+            i = pieceEnd;
+        }
+        return tokens << 32 | end;
+    }
+
+    // Letters of one case run, so "TextPolisher" is two words
+    private static int wordEnd(CharSequence text, int start, int end) {
+        int i = start + 1;
+        while (i < end && isWordChar(text.charAt(i))
+                && !(Character.isUpperCase(text.charAt(i)) && Character.isLowerCase(text.charAt(i - 1)))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int wordCost(CharSequence text, int start, int end) {
+        int latin = 0;
+        int diacritics = 0;
+        int ideographs = 0;
+        int other = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (isWordPrefix(c)) {
+                continue;
+            }
+            if (c < 0x250) {
+                latin++;
+                diacritics += c < 0x80 ? 0 : 1;
+            } else if (isIdeographic(c)) {
+                ideographs++;
+            } else {
+                other++;
+            }
+        }
+        int cost;
+        if (latin == 0) {
+            cost = 0;
+        } else if (diacritics == 0) {
+            cost = latin <= SINGLE_TOKEN_WORD
+                    ? 1 : 1 + (latin - SINGLE_TOKEN_WORD + WORD_CHARS_PER_TOKEN - 1) / WORD_CHARS_PER_TOKEN;
+        } else {
+            // Letters outside ASCII tend to end merges; every second one costs a token of its own
+            cost = 1 + (latin - 1) / WORD_CHARS_PER_TOKEN + diacritics / 2;
+        }
+        // Common Chinese and Japanese words are a token for two or three chars
+        cost += (ideographs * 2 + 2) / 3;
+        if (other > 0) {
+            cost += 1 + (other - 1) / WORD_CHARS_PER_TOKEN;
+        }
+        return Math.max(1, cost);
+    }
+
+    // A run of symbols with the newlines or slashes that follow it, as in ".\n\n" or "://"
+    private static int punctuationEnd(CharSequence text, int start, int end) {
+        int i = start + 1;
+        while (i < end) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c) || Character.isDigit(c) || isWordChar(c)
+                    || (isWordPrefix(c) && i + 1 < end && isWordChar(text.charAt(i + 1)))) {
+                break;
+            }
+            i++;
+        }
+        while (i < end && (text.charAt(i) == '\n' || text.charAt(i) == '\r' || text.charAt(i) == '/')) i++;
+        return i;
+    }
+
+    // ASCII symbols merge in threes; other symbols are a token each, emoji and other pairs two
+    private static int punctuationCost(CharSequence text, int start, int end) {
+        int ascii = 0;
+        int cost = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r' || (c == '/' && i > start)) {
+                continue;
+            }
+            if (c < 0x80) {
+                ascii++;
+            } else if (Character.isHighSurrogate(c)) {
+                cost += 2;
+                i++;
+            } else {
+                cost++;
+            }
+        }
+        return cost + (ascii + PUNCTUATION_PER_TOKEN - 1) / PUNCTUATION_PER_TOKEN;
+    }
+
+    // A single space goes with the word or symbols after it; longer runs and line breaks are tokens
+    private static int whitespaceCost(CharSequence text, int start, int end, int textEnd) {
+        int lastBreak = -1;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r') {
+                lastBreak = i;
+            }
+        }
+        int cost = lastBreak >= 0 ? 1 : 0;
+        int trailing = end - (lastBreak >= 0 ? lastBreak + 1 : start);
+        if (trailing > 1) {
+            cost++;
+        } else if (trailing == 1 && (end == textEnd || Character.isDigit(text.charAt(end)))) {
+            cost++;
+        }
+        return cost;
+    }
+
+    // As much of an over-budget first piece as fits, by its average cost per char
+    private static int partialEnd(CharSequence text, int start, int pieceEnd, int maxTokens) {
+        int end = start + 1;
+        if (maxTokens > 0) {
+            int pieceCost = Math.max(1, estimate(text, start, pieceEnd));
+            end = Math.max(end, start + (int) ((long) (pieceEnd - start) * maxTokens / pieceCost));
+            while (end > start + 1 && estimate(text, start, end) > maxTokens) end--;
+        }
+        if (end < pieceEnd && Character.isHighSurrogate(text.charAt(end - 1))
+                && Character.isLowSurrogate(text.charAt(end))) {
+            end++;
+        }
+        return end;
+    }
+
+    private static boolean isWordChar(char c) {
+        if (c < 0x80) {
+            char lower = (char) (c | 0x20);
+            return lower >= 'a' && lower <= 'z';
+        }
+        if (Character.isLetter(c)) {
+            return true;
+        }
+        int type = Character.getType(c);
+        return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK;
+    }
+
+    // Merged into the word after it, as in "'s", ".com" or "/path"
+    private static boolean isWordPrefix(char c) {
+        return c == '\'' || c == '’' || c == '.' || c == '/' || c == '_' || c == '-';
+    }
+
+    // CJK ideographs, kana and Hangul
+    private static boolean isIdeographic(char c) {
+        return (c >= 0x2e80 && c <= 0x9fff) || (c >= 0xac00 && c <= 0xd7af) || (c >= 0xf900 && c <= 0xfaff);
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.app.core;
+
+/**
+ * The token counts an API response reports in its {@code usage} field, zero when it has none, and
+ * whether the reply was cut off at max_tokens.
+ */
+public final class TokenUsage {
+    private long promptTokens;
+    private long completionTokens;
+    private long cachedPromptTokens;
+    private boolean truncated;
+
+    public long getPromptTokens() {
+        return promptTokens;
+    }
+
+    public long getCompletionTokens() {
+        return completionTokens;
+    }
+
+    // The part of the prompt the provider served from its prompt cache
+    public long getCachedPromptTokens() {
+        return cachedPromptTokens;
+    }
+
+    public boolean isReported() {
+        return promptTokens > 0 || completionTokens > 0;
+    }
+
+    // The choice's finish_reason was "length"
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    void markTruncated() {
+        truncated = true;
+    }
+
+    void set(long promptTokens, long completionTokens, long cachedPromptTokens) {
+        this.promptTokens = promptTokens;
+        this.completionTokens = completionTokens;
+        this.cachedPromptTokens = cachedPromptTokens;
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.app.core;
+
+/**
+ * The reply stopped at max_tokens, so it lacks the end of the text and must not replace it.
+ */
+public class TruncatedResponseException extends MalformedResponseException {
+    private static final long serialVersionUID = 1L;
+
+    public TruncatedResponseException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.app.core;
+
+import static org.junit.Assert.*;
+
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BackendRouterTest {
+    private static final int FAILURE_THRESHOLD = 3;
+
+    private MockWebServer fast;
+    private MockWebServer slow;
+    private CorrectionMetrics metrics;
+
+    @Before
+    public void setUp() throws Exception {
+        fast = new MockWebServer();
+        slow = new MockWebServer();
+        fast.start();
+        slow.start();
+        metrics = new CorrectionMetrics();
+        slow.setDispatcher(answering("Wolny.", 150));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        fast.shutdown();
+        slow.shutdown();
+    }
+
+    private static Dispatcher answering(String content, long delayMillis) {
+        return new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse()
+                        .setBody("{\"choices\":[{\"message\":{\"content\":\"" + content + "\"}}]}")
+                        .setHeadersDelay(delayMillis, TimeUnit.MILLISECONDS);
+            }
+        };
+    }
+
+    private static CorrectionBackend backend(String name, MockWebServer server, int maxConcurrentRequests) {
+        return new CorrectionBackend(name, server.url("/v1").toString(), "model",
+                Collections.<String, String>emptyMap(), maxConcurrentRequests);
+    }
+
+    private BackendRouter router(CorrectionBackend... backends) {
+        return new BackendRouter(new OkHttpClient(), Arrays.asList(backends), FAILURE_THRESHOLD, 60_000, metrics);
+    }
+
+    private static String complete(BackendRouter router) throws Exception {
+        return router.complete("tekst", null, ChatCompletionClient.CallObserver.NONE);
+    }
+
+    @Test
+    public void routesToTheFasterBackendOnceBothAreMeasured() throws Exception {
+        fast.setDispatcher(answering("Szybki.", 0));
+        BackendRouter router = router(backend("slow", slow, 4), backend("fast", fast, 4));
+
+        // Each unmeasured backend gets one request first
+        assertEquals("Wolny.", complete(router));
+        assertEquals("Szybki.", complete(router));
+        for (int i = 0; i < 4; i++) {
+            assertEquals("Szybki.", complete(router));
+        }
+
+        assertEquals(1, slow.getRequestCount());
+        assertEquals(5, fast.getRequestCount());
+        assertEquals(0, metrics.getFailoverCount());
+    }
+
+    @Test
+    public void keepsTheFasterBackendFirstAfterAnIdlePeriodAndProbesTheOther() throws Exception {
+        fast.setDispatcher(answering("Szybki.", 0));
+        AtomicLong nanos = new AtomicLong();
+        // Probes run inline, before the request they were started by
+        BackendRouter router = new BackendRouter(new OkHttpClient(),
+                Arrays.asList(backend("slow", slow, 4), backend("fast", fast, 4)), FAILURE_THRESHOLD, 60_000, metrics,
+                Long.MAX_VALUE, nanos::get, Runnable::run);
+        assertEquals("Wolny.", complete(router));
+        assertEquals("Szybki.", complete(router));
+
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(BackendRouter.RTT_STALE_MILLIS + 1));
+        assertEquals("Szybki.", complete(router));
+        assertEquals("Szybki.", complete(router));
+
+        // One probe for the stale slow backend, carrying the probe text rather than the user's
+        assertEquals(2, slow.getRequestCount());
+        slow.takeRequest();
+        assertTrue(slow.takeRequest().getBody().readUtf8().contains(BackendRouter.PROBE_INPUT));
+        assertEquals(3, fast.getRequestCount());
+    }
+
+    @Test
+    public void failsOverAndStopsCallingABackendThatKeepsFailing() throws Exception {
+        fast.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setResponseCode(500);
+            }
+        });
+        BackendRouter router = router(backend("fast", fast, 4), backend("slow", slow, 4));
+
+        for (int i = 0; i < FAILURE_THRESHOLD + 2; i++) {
+            assertEquals("Wolny.", complete(router));
+        }
+
+        // The breaker opened after the threshold, so the last requests went straight to the other backend
+        assertEquals(FAILURE_THRESHOLD, fast.getRequestCount());
+        assertEquals(FAILURE_THRESHOLD, metrics.getFailoverCount());
+    }
+
+    @Test
+    public void rejectedRequestIsNotSentElsewhere() throws Exception {
+        fast.enqueue(new MockResponse().setResponseCode(400));
+        BackendRouter router = router(backend("fast", fast, 4), backend("slow", slow, 4));
+
+        try {
+            complete(router);
+            fail("Expected the API error");
+        } catch (ChatCompletionClient.ApiException e) {
+            assertEquals(400, e.getCode());
+        }
+        assertEquals(0, slow.getRequestCount());
+    }
+
+    @Test
+    public void busyBackendPassesRequestsToTheNext() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        fast.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                release.await(5, TimeUnit.SECONDS);
+                return new MockResponse().setBody("{\"choices\":[{\"message\":{\"content\":\"Szybki.\"}}]}");
+            }
+        });
+        BackendRouter router = router(backend("fast", fast, 1), backend("slow", slow, 4));
+        AtomicReference<String> first = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                first.set(complete(router));
+            } catch (Exception e) {
+                first.set(e.toString());
+            }
+        });
+        thread.start();
+        assertNotNull(fast.takeRequest(5, TimeUnit.SECONDS));
+
+        assertEquals("Wolny.", complete(router));
+
+        release.countDown();
+        thread.join(5_000);
+        assertEquals("Szybki.", first.get());
+        assertEquals(1, fast.getRequestCount());
+    }
+
+    @Test
+    public void waitForABusyBackendEndsInATimeout() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        fast.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                release.await(5, TimeUnit.SECONDS);
+                return new MockResponse().setBody("{\"choices\":[{\"message\":{\"content\":\"Szybki.\"}}]}");
+            }
+        });
+        BackendRouter router = new BackendRouter(new OkHttpClient(),
+                Collections.singletonList(backend("fast", fast, 1)), FAILURE_THRESHOLD, 60_000, metrics, 200,
+                System::nanoTime, Runnable::run);
+        Thread thread = new Thread(() -> {
+            try {
+                complete(router);
+            } catch (Exception e) {
+                // Only holds the permit
+            }
+        });
+        thread.start();
+        assertNotNull(fast.takeRequest(5, TimeUnit.SECONDS));
+
+        try {
+            complete(router);
+            fail("Expected the wait to time out");
+        } catch (InterruptedIOException e) {
+            assertEquals(CorrectionMetrics.Cause.TIMEOUT, CorrectionMetrics.causeOf(e));
+        } finally {
+            release.countDown();
+            thread.join(5_000);
+        }
+        assertEquals(1, fast.getRequestCount());
+    }
+}
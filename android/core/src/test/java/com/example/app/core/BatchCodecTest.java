@@ -0,0 +1,59 @@
+package com.example.app.core;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class BatchCodecTest {
+    private static final List<String> TEXTS = Arrays.asList("ala ma kota", "  kot ma ale ", "pies");
+
+    @Test
+    public void packedTextsFollowTheirMarkers() {
+        String packed = BatchCodec.pack(TEXTS);
+
+        assertTrue(packed.startsWith("Correct each of the following 3 texts"));
+        assertTrue(packed.endsWith("<<<1>>>\nala ma kota\n<<<2>>>\nkot ma ale\n<<<3>>>\npies\n"));
+    }
+
+    @Test
+    public void splitsAReplyIntoTheCorrectedTexts() {
+        String reply = "<<<1>>>\nAla ma kota.\n\n<<<2>>>\nKot ma Alę.\n<<<3>>>  \nPies.";
+
+        assertEquals(Arrays.asList("Ala ma kota.", "Kot ma Alę.", "Pies."), BatchCodec.split(reply, TEXTS));
+    }
+
+    @Test
+    public void toleratesACodeFenceAroundTheReply() {
+        String reply = "```\n<<<1>>>\nAla ma kota.\n<<<2>>>\nKot ma Alę.\n<<<3>>>\nPies.\n```";
+
+        assertEquals(Arrays.asList("Ala ma kota.", "Kot ma Alę.", "Pies."), BatchCodec.split(reply, TEXTS));
+    }
+
+    @Test
+    public void rejectsRepliesThatCannotBeAttributed() {
+        // Missing, reordered, extra and empty parts, and chatter before the first marker
+        assertNull(BatchCodec.split("<<<1>>>\nAla ma kota.\n<<<2>>>\nKot ma Alę.", TEXTS));
+        assertNull(BatchCodec.split("<<<2>>>\nKot ma Alę.\n<<<1>>>\nAla ma kota.\n<<<3>>>\nPies.", TEXTS));
+        assertNull(BatchCodec.split("<<<1>>>\na\n<<<2>>>\nb\n<<<3>>>\nc\n<<<4>>>\nd", TEXTS));
+        assertNull(BatchCodec.split("<<<1>>>\nAla ma kota.\n<<<2>>>\n\n<<<3>>>\nPies.", TEXTS));
+        assertNull(BatchCodec.split("Oto poprawki:\n<<<1>>>\nAla ma kota.\n<<<2>>>\nKot ma Alę.\n<<<3>>>\nPies.",
+                TEXTS));
+        assertNull(BatchCodec.split("Ala ma kota. Kot ma Alę. Pies.", TEXTS));
+    }
+
+    @Test
+    public void rejectsAPartFarLongerThanItsText() {
+        String reply = "<<<1>>>\nAla ma kota.\n<<<2>>>\nKot ma Alę.\n<<<3>>>\nPies szczeka na kota i na Alę przez cały dzień.";
+
+        assertNull(BatchCodec.split(reply, TEXTS));
+    }
+
+    @Test
+    public void textsThatLookLikeMarkersAreNotPacked() {
+        assertTrue(BatchCodec.canPack("a < b > c"));
+        assertFalse(BatchCodec.canPack("<<<2>>>"));
+        assertFalse(BatchCodec.canPack("x >>> y"));
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.app.core;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import org.junit.Test;
+
+public class CharBufferPoolTest {
+
+    @Test
+    public void releasedBuffersAreReusedUpToThePoolSize() {
+        CharBufferPool pool = new CharBufferPool(8, 1);
+        char[] first = pool.acquire();
+        char[] second = pool.acquire();
+        assertNotSame(first, second);
+
+        pool.release(first);
+        pool.release(second);
+
+        assertSame(first, pool.acquire());
+        assertNotSame(second, pool.acquire());
+    }
+
+    @Test
+    public void writesAnyCharSequenceInBufferSizedPieces() throws Exception {
+        CharBufferPool pool = new CharBufferPool(3, 1);
+        StringWriter fromString = new StringWriter();
+        StringWriter fromBuilder = new StringWriter();
+
+        pool.write("ala ma kota", 2, 10, fromString);
+        pool.write(new StringBuilder("ala ma kota"), 0, 11, fromBuilder);
+
+        assertEquals("a ma kot", fromString.toString());
+        assertEquals("ala ma kota", fromBuilder.toString());
+    }
+}
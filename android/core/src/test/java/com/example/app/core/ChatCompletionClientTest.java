@@ -0,0 +1,136 @@
+package com.example.app.core;
+
+import static org.junit.Assert.*;
+
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChatCompletionClientTest {
+
+    private MockWebServer server;
+    private ChatCompletionClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        client = new ChatCompletionClient(new OkHttpClient(), server.url("/v1/chat/completions").toString());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void readTimeoutGrowsWithInputUpToTheCap() {
+        long shortText = ChatCompletionClient.readTimeoutMillis("Ala ma kota.", false);
+        long longText = ChatCompletionClient.readTimeoutMillis(text(4_000), false);
+
+        assertTrue(shortText >= ChatCompletionClient.MIN_READ_TIMEOUT_MILLIS && shortText < longText);
+        assertEquals(ChatCompletionClient.MIN_READ_TIMEOUT_MILLIS
+                        + ChatCompletionClient.MAX_TOKENS * ChatCompletionClient.READ_TIMEOUT_MILLIS_PER_TOKEN,
+                ChatCompletionClient.readTimeoutMillis(text(100_000), false));
+        assertEquals(ChatCompletionClient.MIN_READ_TIMEOUT_MILLIS,
+                ChatCompletionClient.readTimeoutMillis(text(100_000), true));
+    }
+
+    @Test
+    public void replyBudgetFollowsTheInput() throws Exception {
+        int shortText = ChatCompletionClient.maxTokensFor("Ala ma kota.");
+        int longText = ChatCompletionClient.maxTokensFor(text(2_000));
+
+        assertTrue(shortText >= ChatCompletionClient.MIN_REPLY_TOKENS && shortText < 100);
+        assertTrue(longText > TokenEstimator.estimate(text(2_000)) && longText < ChatCompletionClient.MAX_TOKENS);
+        assertEquals(ChatCompletionClient.MAX_TOKENS, ChatCompletionClient.maxTokensFor(text(100_000)));
+
+        server.enqueue(new MockResponse().setBody("{\"choices\":[{\"message\":{\"content\":\"Tekst.\"}}]}"));
+        client.complete("sk-test", "tekst", null, ChatCompletionClient.CallObserver.NONE);
+        String body = server.takeRequest().getBody().readUtf8();
+        assertTrue(body, body.endsWith(",\"max_tokens\":" + ChatCompletionClient.maxTokensFor("tekst") + "}"));
+    }
+
+    @Test
+    public void replyCutOffAtMaxTokensIsNotReturned() throws Exception {
+        server.enqueue(new MockResponse().setBody(
+                "{\"choices\":[{\"message\":{\"content\":\"Ala ma\"},\"finish_reason\":\"length\"}]}"));
+        server.enqueue(new MockResponse().setBody("data: {\"choices\":[{\"delta\":{\"content\":\"Ala\"}}]}\n\n"
+                + "data: {\"choices\":[{\"delta\":{\"content\":\" ma\"},\"finish_reason\":\"length\"}]}\n\n"
+                + "data: [DONE]\n\n"));
+
+        try {
+            client.complete("sk-test", "ala ma kota", null, ChatCompletionClient.CallObserver.NONE);
+            fail();
+        } catch (TruncatedResponseException expected) {
+        }
+        StringBuilder streamed = new StringBuilder();
+        try {
+            client.complete("sk-test", "ala ma kota", streamed::append, ChatCompletionClient.CallObserver.NONE);
+            fail();
+        } catch (TruncatedResponseException expected) {
+        }
+        assertEquals("Ala ma", streamed.toString());
+    }
+
+    @Test
+    public void apiErrorCarriesRetryAfter() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "7"));
+        server.enqueue(new MockResponse().setResponseCode(502)
+                .setHeader("Retry-After", httpDate(System.currentTimeMillis() + 60_000)));
+        server.enqueue(new MockResponse().setResponseCode(500));
+
+        assertEquals(7_000, failure().getRetryAfterMillis());
+        long fromDate = failure().getRetryAfterMillis();
+        assertTrue(fromDate > 55_000 && fromDate <= 60_000);
+        assertEquals(-1, failure().getRetryAfterMillis());
+    }
+
+    @Test
+    public void backendSuppliesUrlModelAndHeaders() throws Exception {
+        CorrectionBackend backend = new CorrectionBackend("LAN", server.url("/v1/").toString(), "llama-3.1-8b",
+                Collections.singletonMap("X-Api-Key", "lan-secret"), 2);
+        ChatCompletionClient lan = new ChatCompletionClient(new OkHttpClient(), backend, MetricsListener.NONE);
+        server.enqueue(new MockResponse().setBody("{\"choices\":[{\"message\":{\"content\":\"Tekst.\"}}]}"));
+
+        assertEquals("Tekst.", lan.complete("tekst", null, ChatCompletionClient.CallObserver.NONE));
+
+        RecordedRequest request = server.takeRequest();
+        assertEquals("/v1/chat/completions", request.getPath());
+        assertEquals("lan-secret", request.getHeader("X-Api-Key"));
+        assertNull(request.getHeader("Authorization"));
+        assertTrue(request.getBody().readUtf8().startsWith("{\"model\":\"llama-3.1-8b\","));
+    }
+
+    private ChatCompletionClient.ApiException failure() throws Exception {
+        try {
+            client.complete("sk-test", "tekst", null, ChatCompletionClient.CallObserver.NONE);
+        } catch (ChatCompletionClient.ApiException e) {
+            return e;
+        }
+        throw new AssertionError("Expected an API error");
+    }
+
+    private static String text(int chars) {
+        StringBuilder sb = new StringBuilder(chars);
+        while (sb.length() < chars) {
+            sb.append("Ala ma kota. ");
+        }
+        return sb.substring(0, chars);
+    }
+
+    private static String httpDate(long millis) {
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format.format(new Date(millis));
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.app.core;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class ChunkedCorrectionPipelineTest {
+
+    private static final ChunkedCorrectionPipeline.ChunkFallback NO_FALLBACK = chunk -> {
+        throw new AssertionError("Unexpected fallback for " + chunk);
+    };
+
+    @Test
+    public void latencyScalesWithSlowestChunkNotSum() throws Exception {
+        TextChunker.Split split = TextChunker.split("One. Two. Three. Four.", 2);
+        assertEquals(4, split.size());
+        ChunkedCorrectionPipeline pipeline = new ChunkedCorrectionPipeline(4, 1);
+
+        long start = System.nanoTime();
+        String result = pipeline.correct(split, chunk -> {
+            sleep(300);
+            return chunk.toUpperCase(Locale.ROOT);
+        }, NO_FALLBACK, null);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals("ONE. TWO. THREE. FOUR.", result);
+        assertTrue("took " + elapsedMillis + "ms", elapsedMillis < 900);
+    }
+
+    @Test
+    public void reassemblesInOrderWithOriginalSeparators() throws Exception {
+        String text = "Pierwszy akapit.\n\nDrugi akapit.\tTrzeci.";
+        TextChunker.Split split = TextChunker.split(text, 4);
+        ChunkedCorrectionPipeline pipeline = new ChunkedCorrectionPipeline(3, 1);
+
+        String result = pipeline.correct(split, chunk -> {
+            // Finish later chunks first to exercise ordering
+            sleep(10 * (40 - chunk.length()));
+            return "[" + chunk + "]";
+        }, NO_FALLBACK, null);
+
+        assertEquals("[Pierwszy akapit.]\n\n[Drugi akapit.]\t[Trzeci.]", result);
+    }
+
+    @Test
+    public void retriesFailedChunkThenFallsBackForThatChunkOnly() throws Exception {
+        TextChunker.Split split = TextChunker.split("good. flaky. broken.", 2);
+        ConcurrentHashMap<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+        ChunkedCorrectionPipeline pipeline = new ChunkedCorrectionPipeline(3, 2);
+
+        String result = pipeline.correct(split, chunk -> {
+            attempts.putIfAbsent(chunk, new AtomicInteger());
+            int attempt = attempts.get(chunk).incrementAndGet();
+            if (chunk.equals("broken.") || (chunk.equals("flaky.") && attempt == 1)) {
+                throw new IOException("API error: 503");
+            }
+            return chunk.toUpperCase(Locale.ROOT);
+        }, chunk -> "local(" + chunk + ")", null);
+
+        assertEquals("GOOD. FLAKY. local(broken.)", result);
+        assertEquals(1, attempts.get("good.").get());
+        assertEquals(2, attempts.get("flaky.").get());
+        assertEquals(2, attempts.get("broken.").get());
+    }
+
+    @Test
+    public void emitsDeltasInDocumentOrder() throws Exception {
+        TextChunker.Split split = TextChunker.split("  a. bb. ccc. dddd.", 1);
+        List<String> deltas = Collections.synchronizedList(new ArrayList<>());
+        ChunkedCorrectionPipeline pipeline = new ChunkedCorrectionPipeline(4, 1);
+
+        String result = pipeline.correct(split, chunk -> {
+            sleep(50 * (6 - chunk.length()));
+            return chunk;
+        }, NO_FALLBACK, deltas::add);
+
+        StringBuilder streamed = new StringBuilder();
+        for (String delta : deltas) {
+            streamed.append(delta);
+        }
+        assertEquals(result.trim(), streamed.toString());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(Math.max(0, millis));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.app.core;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+    private long now;
+    private final CircuitBreaker breaker = new CircuitBreaker(3, 1_000, () -> now);
+
+    private void advanceMillis(long millis) {
+        now += TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Test
+    public void opensAfterConsecutiveFailuresOnly() {
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+        breaker.onFailure();
+        assertTrue(breaker.allowRequest());
+
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void letsOneProbeThroughAfterTheOpenPeriod() {
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure();
+        }
+        advanceMillis(1_000);
+
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void failedProbeReopens() {
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure();
+        }
+        advanceMillis(1_000);
+        assertTrue(breaker.allowRequest());
+
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        advanceMillis(999);
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void abandonedProbeDoesNotBlockForever() {
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure();
+        }
+        advanceMillis(1_000);
+        assertTrue(breaker.allowRequest());
+
+        advanceMillis(1_000);
+
+        assertTrue(breaker.allowRequest());
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.app.core;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CompactDictionaryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    static CompactDictionary dictionary(String... words) throws IOException {
+        return dictionary(false, words);
+    }
+
+    // As if the words were every word form of the language
+    static CompactDictionary completeDictionary(String... words) throws IOException {
+        return dictionary(true, words);
+    }
+
+    private static CompactDictionary dictionary(boolean complete, String... words) throws IOException {
+        DictionaryBuilder builder = new DictionaryBuilder().complete(complete);
+        for (String word : words) {
+            builder.add(word);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        builder.write(out);
+        return CompactDictionary.wrap(ByteBuffer.wrap(out.toByteArray()));
+    }
+
+    private static boolean contains(CompactDictionary dictionary, String word) {
+        return dictionary.contains(word, 0, word.length());
+    }
+
+    @Test
+    public void findsExactlyTheWordsItWasBuiltFrom() throws IOException {
+        CompactDictionary dictionary = dictionary("kot", "kota", "kotem", "pies", "psa", "żółw");
+
+        assertEquals(6, dictionary.getWordCount());
+        assertTrue(contains(dictionary, "kot"));
+        assertTrue(contains(dictionary, "kotem"));
+        assertTrue(contains(dictionary, "żółw"));
+        assertFalse(contains(dictionary, "ko"));
+        assertFalse(contains(dictionary, "kotek"));
+        assertFalse(contains(dictionary, "ps"));
+        assertFalse(contains(dictionary, ""));
+    }
+
+    @Test
+    public void foldsCaseAndRejectsUnknownCharacters() throws IOException {
+        CompactDictionary dictionary = dictionary("Żółw", "kot");
+
+        assertTrue(contains(dictionary, "ŻÓŁW"));
+        assertTrue(contains(dictionary, "Kot"));
+        assertFalse(contains(dictionary, "kot!"));
+        assertFalse(contains(dictionary, "k\u0000t"));
+    }
+
+    @Test
+    public void looksUpRangesOfALongerText() throws IOException {
+        CompactDictionary dictionary = dictionary("ala", "kota");
+        String text = "Ala ma kota.";
+
+        assertTrue(dictionary.contains(text, 0, 3));
+        assertFalse(dictionary.contains(text, 4, 6));
+        assertTrue(dictionary.contains(text, 7, 11));
+    }
+
+    @Test
+    public void earlierWordsAreMoreFrequent() throws IOException {
+        CompactDictionary dictionary = dictionary("the", "be", "to", "of", "receive");
+
+        assertEquals(DictionaryBuilder.MAX_FREQUENCY_CLASS, dictionary.frequencyClass("the", 0, 3));
+        assertTrue(dictionary.frequencyClass("receive", 0, 7) < dictionary.frequencyClass("be", 0, 2));
+        assertEquals(-1, dictionary.frequencyClass("bee", 0, 3));
+    }
+
+    @Test
+    public void sharesTheEndingsOfInflectedForms() throws IOException {
+        String[] stems = {"czyt", "pis", "rob", "mów", "myśl", "kup", "płac", "wal", "chodz", "nos"};
+        String[] endings = {"ać", "am", "asz", "a", "amy", "acie", "ają", "ałem", "ałam", "ało"};
+        DictionaryBuilder builder = new DictionaryBuilder();
+        int chars = 0;
+        for (String ending : endings) {
+            for (String stem : stems) {
+                builder.add(stem + ending);
+                chars += stem.length() + ending.length();
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        builder.write(out);
+        CompactDictionary dictionary = CompactDictionary.wrap(ByteBuffer.wrap(out.toByteArray()));
+
+        assertEquals(100, dictionary.getWordCount());
+        assertTrue(dictionary.contains("myślałam", 0, 8));
+        // Words of one frequency class share every ending, so the nodes cost less than the plain text
+        assertTrue(dictionary.getSizeBytes() + " bytes", dictionary.getSizeBytes() < chars * 2);
+    }
+
+    @Test
+    public void mapsACompiledWordList() throws IOException {
+        File list = folder.newFile("en.txt");
+        java.nio.file.Files.write(list.toPath(), "# comment\nthe\n\nlibrary\nTomorrow\n".getBytes("UTF-8"));
+        File output = folder.newFolder("out");
+
+        DictionaryBuilder.main(new String[] {list.getParent(), output.getPath()});
+        CompactDictionary dictionary = CompactDictionary.map(new File(output, "en.dict"));
+
+        assertEquals(3, dictionary.getWordCount());
+        assertTrue(contains(dictionary, "tomorrow"));
+        assertFalse(contains(dictionary, "comment"));
+        assertFalse(dictionary.isComplete());
+    }
+
+    @Test
+    public void aWordListCanBeMarkedComplete() throws IOException {
+        File list = folder.newFile("pl.txt");
+        java.nio.file.Files.write(list.toPath(), "# full list\n#!complete\nnie\nwiem\n".getBytes("UTF-8"));
+        File output = folder.newFolder("out");
+
+        DictionaryBuilder.main(new String[] {list.getParent(), output.getPath()});
+        CompactDictionary dictionary = CompactDictionary.map(new File(output, "pl.dict"));
+
+        assertTrue(dictionary.isComplete());
+        assertEquals(2, dictionary.getWordCount());
+        assertFalse(contains(dictionary, "#!complete"));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        CompactDictionary.wrap(ByteBuffer.wrap("not a dictionary at all".getBytes("UTF-8")));
+    }
+}
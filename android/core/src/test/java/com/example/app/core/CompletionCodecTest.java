@@ -0,0 +1,183 @@
+package com.example.app.core;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Random;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class CompletionCodecTest {
+
+    private static final String TRICKY = "Cytat: \"zażółć\" \\ gęślą\tjaźń\r\nlinia\u0001\u001f \u2028\u2029 😀 </script>";
+
+    private static JSONObject writeRequest(String input, boolean stream) throws IOException {
+        RequestBody body = CompletionCodec.requestBody(input, stream);
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+        assertEquals(body.contentLength(), buffer.size());
+        return new JSONObject(buffer.readUtf8());
+    }
+
+    @Test
+    public void requestCarriesPromptAndEscapedInput() throws Exception {
+        JSONObject request = writeRequest(TRICKY, false);
+
+        assertEquals(ChatCompletionClient.MODEL, request.getString("model"));
+        assertEquals(ChatCompletionClient.MAX_TOKENS, request.getInt("max_tokens"));
+        assertEquals(ChatCompletionClient.TEMPERATURE, request.getDouble("temperature"), 0.0);
+        assertFalse(request.has("stream"));
+        JSONArray messages = request.getJSONArray("messages");
+        assertEquals(2, messages.length());
+        assertEquals("system", messages.getJSONObject(0).getString("role"));
+        assertEquals(ChatCompletionClient.SYSTEM_PROMPT, messages.getJSONObject(0).getString("content"));
+        assertEquals("user", messages.getJSONObject(1).getString("role"));
+        assertEquals(TRICKY, messages.getJSONObject(1).getString("content"));
+    }
+
+    @Test
+    public void streamingRequestSetsStreamFlag() throws Exception {
+        JSONObject request = writeRequest("Ala ma kota", true);
+
+        assertTrue(request.getBoolean("stream"));
+        assertTrue(request.getJSONObject("stream_options").getBoolean("include_usage"));
+    }
+
+    @Test
+    public void contentLengthMatchesWrittenBytes() throws Exception {
+        String[] inputs = {"", "a", "ą", "€", "😀", "\"\\\n", "\ud83d", "x\udc00y", "\u2028", TRICKY};
+        for (String input : inputs) {
+            RequestBody body = CompletionCodec.requestBody(input, false);
+            Buffer buffer = new Buffer();
+            body.writeTo(buffer);
+            assertEquals(input, body.contentLength(), buffer.size());
+        }
+    }
+
+    @Test
+    public void readsContentRegardlessOfFieldOrderAndExtras() throws Exception {
+        String response = "{\"usage\":{\"total_tokens\":5},\"id\":\"x\",\"choices\":[{\"index\":0,"
+                + "\"logprobs\":null,\"message\":{\"role\":\"assistant\",\"refusal\":null,\"content\":\""
+                + "Zażółć \\\"gęślą\\\" jaźń\\n\\u2028\"},\"finish_reason\":\"stop\"},{\"index\":1,"
+                + "\"message\":{\"content\":\"druga\"}}],\"extra\":[1,{\"a\":[true,null]}]}";
+
+        String content = CompletionCodec.readContent(new Buffer().writeUtf8(response));
+
+        assertEquals("Zażółć \"gęślą\" jaźń\n\u2028", content);
+    }
+
+    @Test
+    public void readsTokenUsage() throws Exception {
+        String response = "{\"choices\":[{\"message\":{\"content\":\"Ala\"}}],\"usage\":{\"prompt_tokens\":412,"
+                + "\"completion_tokens\":37,\"total_tokens\":449,\"prompt_tokens_details\":{\"cached_tokens\":0}}}";
+        TokenUsage usage = new TokenUsage();
+
+        assertEquals("Ala", CompletionCodec.readContent(new Buffer().writeUtf8(response), usage));
+
+        assertEquals(412, usage.getPromptTokens());
+        assertEquals(37, usage.getCompletionTokens());
+        assertEquals(0, usage.getCachedPromptTokens());
+    }
+
+    @Test
+    public void readsTruncationFromFinishReason() throws Exception {
+        TokenUsage cut = new TokenUsage();
+        TokenUsage whole = new TokenUsage();
+
+        assertEquals("Ala ma", CompletionCodec.readContent(new Buffer().writeUtf8(
+                "{\"choices\":[{\"finish_reason\":\"length\",\"message\":{\"content\":\"Ala ma\"}}]}"), cut));
+        CompletionCodec.readContent(new Buffer().writeUtf8(
+                "{\"choices\":[{\"message\":{\"content\":\"Ala\"},\"finish_reason\":\"stop\"}]}"), whole);
+
+        assertTrue(cut.isTruncated());
+        assertFalse(whole.isTruncated());
+    }
+
+    @Test
+    public void readsCachedPromptTokens() throws Exception {
+        String response = "{\"usage\":{\"prompt_tokens\":1200,\"prompt_tokens_details\":{\"audio_tokens\":null,"
+                + "\"cached_tokens\":1024},\"completion_tokens\":20},\"choices\":[{\"message\":{\"content\":\"Ala\"}}]}";
+        TokenUsage usage = new TokenUsage();
+
+        CompletionCodec.readContent(new Buffer().writeUtf8(response), usage);
+
+        assertEquals(1200, usage.getPromptTokens());
+        assertEquals(1024, usage.getCachedPromptTokens());
+        assertEquals(20, usage.getCompletionTokens());
+    }
+
+    @Test
+    public void promptPrefixIsTheSameForEveryInput() throws Exception {
+        for (CorrectionPrompt prompt : CorrectionPrompt.values()) {
+            okio.ByteString prefix = CompletionCodec.requestPrefix(ChatCompletionClient.MODEL, prompt, false);
+            assertEquals(prefix, CompletionCodec.requestPrefix(ChatCompletionClient.MODEL, prompt, false));
+            for (String input : new String[] {"ala", "kot ma ale"}) {
+                Buffer buffer = new Buffer();
+                CompletionCodec.requestBody(prefix, input).writeTo(buffer);
+                JSONObject request = new JSONObject(buffer.readUtf8());
+                JSONArray messages = request.getJSONArray("messages");
+                // The system prompt leads, so only what follows it differs between requests
+                assertEquals(prompt.getText(), messages.getJSONObject(0).getString("content"));
+                assertEquals(input, messages.getJSONObject(1).getString("content"));
+            }
+        }
+    }
+
+    @Test
+    public void replyBudgetFollowsTheMessages() throws Exception {
+        okio.ByteString prefix =
+                CompletionCodec.requestPrefix(ChatCompletionClient.MODEL, CorrectionPrompt.COMPACT, false);
+        RequestBody body = CompletionCodec.requestBody(prefix, TRICKY, 77);
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+
+        assertEquals(body.contentLength(), buffer.size());
+        JSONObject request = new JSONObject(buffer.readUtf8());
+        assertEquals(77, request.getInt("max_tokens"));
+        assertEquals(TRICKY, request.getJSONArray("messages").getJSONObject(1).getString("content"));
+        assertFalse(prefix.utf8().contains("max_tokens"));
+    }
+
+    @Test
+    public void returnsNullWithoutChoicesOrContent() throws Exception {
+        assertNull(CompletionCodec.readContent(new Buffer().writeUtf8("{\"choices\":[]}")));
+        assertNull(CompletionCodec.readContent(new Buffer().writeUtf8("{\"id\":\"x\"}")));
+        assertNull(CompletionCodec.readContent(
+                new Buffer().writeUtf8("{\"choices\":[{\"message\":{\"content\":null}}]}")));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsMalformedResponse() throws Exception {
+        CompletionCodec.readContent(new Buffer().writeUtf8("{\"choices\":[{\"message\":"));
+    }
+
+    @Test
+    public void roundTripsRandomTextThroughOrgJson() throws Exception {
+        Random random = new Random(8);
+        String alphabet = "aąbcćeęlłnńoósśzźżAĄ \"\\/\n\r\t\b\f\u0000\u001f\u007f\u00a0\u2028\u2029€😀{}[]:,";
+        for (int round = 0; round < 500; round++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(200);
+            for (int i = 0; i < length; i++) {
+                int codePoint = alphabet.codePointAt(alphabet.offsetByCodePoints(0,
+                        random.nextInt(alphabet.codePointCount(0, alphabet.length()))));
+                text.appendCodePoint(codePoint);
+            }
+            String input = text.toString();
+
+            JSONObject request = writeRequest(input, false);
+            assertEquals(input, request.getJSONArray("messages").getJSONObject(1).getString("content"));
+
+            // org.json escapes some characters (such as "/") differently from the API; both must decode
+            String response = new JSONObject()
+                    .put("id", "r" + round)
+                    .put("choices", new JSONArray().put(new JSONObject()
+                            .put("message", new JSONObject().put("role", "assistant").put("content", input))))
+                    .toString();
+            assertEquals(input, CompletionCodec.readContent(new Buffer().writeUtf8(response)));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.app.core;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import okio.Buffer;
+import org.junit.Test;
+
+public class CompletionStreamReaderTest {
+
+    private static String event(String content) {
+        return "data: {\"choices\":[{\"index\":0,\"delta\":{\"content\":\"" + content + "\"}}]}\n\n";
+    }
+
+    @Test
+    public void deliversDeltasInOrderAndReturnsFullContent() throws Exception {
+        Buffer source = new Buffer()
+                .writeUtf8("data: {\"choices\":[{\"index\":0,\"delta\":{\"role\":\"assistant\",\"content\":\"\"}}]}\n\n")
+                .writeUtf8(event("Ala"))
+                .writeUtf8(": keep-alive\n\n")
+                .writeUtf8(event(" ma kota."))
+                .writeUtf8("data: {\"choices\":[{\"index\":0,\"delta\":{},\"finish_reason\":\"stop\"}]}\n\n")
+                .writeUtf8("data: [DONE]\n\n");
+        List<String> deltas = new ArrayList<>();
+
+        String content = CompletionStreamReader.read(source, deltas::add);
+
+        assertEquals("Ala ma kota.", content);
+        assertEquals(2, deltas.size());
+        assertEquals("Ala", deltas.get(0));
+        assertEquals(" ma kota.", deltas.get(1));
+    }
+
+    @Test
+    public void stopsReadingAtDoneMarker() throws Exception {
+        Buffer source = new Buffer()
+                .writeUtf8(event("tekst"))
+                .writeUtf8("data: [DONE]\n\n")
+                .writeUtf8(event("ignored"));
+
+        String content = CompletionStreamReader.read(source, delta -> { });
+
+        assertEquals("tekst", content);
+        assertFalse(source.exhausted());
+    }
+
+    @Test
+    public void readsUsageFromFinalEvent() throws Exception {
+        Buffer source = new Buffer()
+                .writeUtf8("data: {\"choices\":[{\"index\":0,\"delta\":{\"content\":\"Ala\"}}],\"usage\":null}\n\n")
+                .writeUtf8("data: {\"choices\":[],\"usage\":{\"prompt_tokens\":20,\"completion_tokens\":3}}\n\n")
+                .writeUtf8("data: [DONE]\n\n");
+        TokenUsage usage = new TokenUsage();
+
+        assertEquals("Ala", CompletionStreamReader.read(source, delta -> { }, usage));
+
+        assertEquals(20, usage.getPromptTokens());
+        assertEquals(3, usage.getCompletionTokens());
+    }
+
+    @Test
+    public void handlesStreamEndingWithoutDoneMarker() throws Exception {
+        Buffer source = new Buffer().writeUtf8(event("a")).writeUtf8(event("b"));
+
+        assertEquals("ab", CompletionStreamReader.read(source, delta -> { }));
+    }
+}
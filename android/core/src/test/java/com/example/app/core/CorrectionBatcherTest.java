@@ -0,0 +1,151 @@
+package com.example.app.core;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+public class CorrectionBatcherTest {
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+    private final CorrectionMetrics metrics = new CorrectionMetrics();
+
+    // Capitalizes every text; a packed batch is answered with its marker lines, without the instructions
+    private final CorrectionBatcher.Sender capitalizing = (input, observer) -> {
+        sent.add(input);
+        int firstMarker = input.indexOf("\n<<<1>>>\n");
+        String reply = firstMarker > 0 ? input.substring(firstMarker + 1) : input;
+        return reply.toUpperCase();
+    };
+
+    private CorrectionBatcher batcher(int maxBatchSize, long maxWaitMillis, CorrectionBatcher.Sender sender) {
+        return new CorrectionBatcher(maxBatchSize, maxWaitMillis, 100, 2, sender, metrics);
+    }
+
+    @Test
+    public void textsWithinTheWindowShareOneCall() throws Exception {
+        CorrectionBatcher batcher = batcher(8, 200, capitalizing);
+        Result first = new Result();
+        Result second = new Result();
+
+        batcher.submit("ala ma kota", first);
+        batcher.submit("kot ma ale", second);
+
+        assertEquals("ALA MA KOTA", first.await());
+        assertEquals("KOT MA ALE", second.await());
+        assertEquals(1, sent.size());
+        assertEquals(1, metrics.getBatchCount());
+        assertEquals(2, metrics.getBatchedItemCount());
+    }
+
+    @Test
+    public void fullBatchGoesOutWithoutWaitingForTheWindow() throws Exception {
+        CorrectionBatcher batcher = batcher(2, 60_000, capitalizing);
+        Result first = new Result();
+        Result second = new Result();
+
+        batcher.submit("jeden", first);
+        batcher.submit("dwa", second);
+
+        assertEquals("JEDEN", first.await());
+        assertEquals("DWA", second.await());
+        assertEquals(1, sent.size());
+    }
+
+    @Test
+    public void textsThatExceedTheTokenLimitStartANewBatch() throws Exception {
+        CorrectionBatcher batcher = batcher(8, 100, capitalizing);
+        StringBuilder longText = new StringBuilder();
+        while (CorrectionBatcher.estimateTokens(longText.toString()) < 60) {
+            longText.append("słowo ");
+        }
+        Result first = new Result();
+        Result second = new Result();
+
+        batcher.submit(longText.toString().trim(), first);
+        batcher.submit(longText.toString().trim(), second);
+
+        assertNotNull(first.await());
+        assertNotNull(second.await());
+        assertEquals(2, sent.size());
+        assertEquals(0, metrics.getBatchCount());
+    }
+
+    @Test
+    public void replyThatCannotBeSplitIsRetriedTextByText() throws Exception {
+        CorrectionBatcher batcher = batcher(2, 60_000, (input, observer) -> {
+            sent.add(input);
+            return input.contains("<<<1>>>") ? "Nie wiem, o co chodzi." : input.toUpperCase();
+        });
+        Result first = new Result();
+        Result second = new Result();
+
+        batcher.submit("jeden", first);
+        batcher.submit("dwa", second);
+
+        assertEquals("JEDEN", first.await());
+        assertEquals("DWA", second.await());
+        assertEquals(3, sent.size());
+        assertEquals(1, metrics.getUnsplitBatchCount());
+    }
+
+    @Test
+    public void failedCallFailsEveryTextInIt() throws Exception {
+        CorrectionBatcher batcher = batcher(2, 60_000, (input, observer) -> {
+            throw new IOException("Brak sieci");
+        });
+        Result first = new Result();
+        Result second = new Result();
+
+        batcher.submit("jeden", first);
+        batcher.submit("dwa", second);
+
+        assertNull(first.await());
+        assertNull(second.await());
+        assertEquals("Brak sieci", first.failure.get().getMessage());
+        assertEquals("Brak sieci", second.failure.get().getMessage());
+    }
+
+    @Test
+    public void cancelledTextIsLeftOutOfTheBatch() throws Exception {
+        CorrectionBatcher batcher = batcher(8, 60_000, capitalizing);
+        Result cancelled = new Result();
+        Result kept = new Result();
+
+        batcher.submit("anulowany", cancelled).cancel();
+        batcher.submit("zostaje", kept);
+        batcher.flush();
+
+        assertEquals("ZOSTAJE", kept.await());
+        assertEquals(1, sent.size());
+        assertEquals("zostaje", sent.get(0));
+        assertFalse(cancelled.done.await(100, TimeUnit.MILLISECONDS));
+    }
+
+    private static final class Result implements CorrectionBatcher.ItemCallback {
+        final AtomicReference<String> corrected = new AtomicReference<>();
+        final AtomicReference<IOException> failure = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        @Override
+        public void onResult(String text) {
+            corrected.set(text);
+            done.countDown();
+        }
+
+        @Override
+        public void onFailure(IOException e) {
+            failure.set(e);
+            done.countDown();
+        }
+
+        String await() throws InterruptedException {
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            return corrected.get();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.app.core;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CorrectionCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void keyDependsOnEveryComponent() {
+        String base = CorrectionCache.key("gpt-4o-mini", "prompt", 0.3, "text");
+
+        assertEquals(base, CorrectionCache.key("gpt-4o-mini", "prompt", 0.3, "text"));
+        assertNotEquals(base, CorrectionCache.key("gpt-4o", "prompt", 0.3, "text"));
+        assertNotEquals(base, CorrectionCache.key("gpt-4o-mini", "prompt2", 0.3, "text"));
+        assertNotEquals(base, CorrectionCache.key("gpt-4o-mini", "prompt", 0.7, "text"));
+        assertNotEquals(base, CorrectionCache.key("gpt-4o-mini", "prompt", 0.3, "text2"));
+        assertNotEquals(CorrectionCache.key("m", "ab", 0.3, "c"), CorrectionCache.key("m", "a", 0.3, "bc"));
+    }
+
+    @Test
+    public void memoryTierEvictsLeastRecentlyUsed() throws Exception {
+        CorrectionCache cache = new CorrectionCache(folder.newFolder(), 10, 1024, TimeUnit.DAYS.toMillis(1));
+        cache.put("a", "aaaa");
+        cache.put("b", "bbbb");
+        assertNotNull(cache.getFromMemory("a"));
+
+        cache.put("c", "cccc");
+
+        assertNotNull(cache.getFromMemory("a"));
+        assertNull(cache.getFromMemory("b"));
+        assertEquals(1, cache.getEvictions());
+        // Still served by the disk tier
+        assertEquals("bbbb", cache.get("b"));
+        assertEquals(1, cache.getDiskHits());
+    }
+
+    @Test
+    public void diskTierSurvivesNewInstance() throws Exception {
+        File dir = folder.newFolder();
+        new CorrectionCache(dir).put("key", "Zażółć gęślą jaźń.");
+
+        CorrectionCache reopened = new CorrectionCache(dir);
+
+        assertNull(reopened.getFromMemory("key"));
+        assertEquals("Zażółć gęślą jaźń.", reopened.get("key"));
+        assertEquals("Zażółć gęślą jaźń.", reopened.getFromMemory("key"));
+    }
+
+    @Test
+    public void diskTierExpiresEntriesAfterTtl() throws Exception {
+        File dir = folder.newFolder();
+        CorrectionCache cache = new CorrectionCache(dir, 0, 1024, 10);
+        cache.put("key", "value");
+        Thread.sleep(50);
+
+        assertNull(cache.get("key"));
+        assertFalse(new File(dir, "key").exists());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    public void diskTierStaysUnderSizeCap() throws Exception {
+        File dir = folder.newFolder();
+        CorrectionCache cache = new CorrectionCache(dir, 0, 40, TimeUnit.DAYS.toMillis(1));
+        cache.put("first", "0123456789");
+        assertTrue(new File(dir, "first").setLastModified(System.currentTimeMillis() - 10000));
+        cache.put("second", "0123456789");
+        cache.put("third", "0123456789");
+
+        assertFalse(new File(dir, "first").exists());
+        assertEquals("0123456789", cache.get("second"));
+        assertEquals("0123456789", cache.get("third"));
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    public void diskTierEvictsTheLeastRecentlyReadEntry() throws Exception {
+        File dir = folder.newFolder();
+        CorrectionCache cache = new CorrectionCache(dir, 0, 40, TimeUnit.DAYS.toMillis(1));
+        cache.put("first", "0123456789");
+        cache.put("second", "0123456789");
+        assertTrue(new File(dir, "first").setLastModified(System.currentTimeMillis() - 20000));
+        assertTrue(new File(dir, "second").setLastModified(System.currentTimeMillis() - 10000));
+
+        assertEquals("0123456789", cache.get("first"));
+        cache.put("third", "0123456789");
+
+        assertFalse(new File(dir, "second").exists());
+        assertEquals("0123456789", cache.get("first"));
+        assertEquals("0123456789", cache.get("third"));
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.app.core;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class CorrectionDiffTest {
+
+    private static List<String> changed(String before, String after) {
+        List<String> texts = new ArrayList<>();
+        for (CorrectionDiff.Span span : CorrectionDiff.changedSpans(before, after)) {
+            texts.add(after.substring(span.getStart(), span.getEnd()));
+        }
+        return texts;
+    }
+
+    @Test
+    public void identicalTextsHaveNoChanges() {
+        assertEquals(Collections.emptyList(), CorrectionDiff.changedSpans("Ala ma kota.", "Ala ma kota."));
+        assertEquals(Collections.emptyList(), CorrectionDiff.changedSpans("", ""));
+    }
+
+    @Test
+    public void marksOnlyTheWordsThatChanged() {
+        assertEquals(Arrays.asList("Alę", "psą"),
+                changed("Ala ma kota, a kot ma Ale i psa.", "Ala ma kota, a kot ma Alę i psą."));
+    }
+
+    @Test
+    public void mergesNeighbouringWords() {
+        assertEquals(Collections.singletonList("They're going"),
+                changed("Thier goin to the library.", "They're going to the library."));
+    }
+
+    @Test
+    public void marksInsertedPunctuation() {
+        String after = "Nie wiem, czy przyjdę.";
+        List<CorrectionDiff.Span> spans = CorrectionDiff.changedSpans("Nie wiem czy przyjdę.", after);
+
+        assertEquals(1, spans.size());
+        assertEquals(",", after.substring(spans.get(0).getStart(), spans.get(0).getEnd()));
+        assertEquals(8, spans.get(0).getStart());
+    }
+
+    @Test
+    public void removedTextAndWhitespaceAreNotMarked() {
+        assertEquals(Collections.emptyList(), CorrectionDiff.changedSpans("Ala ma ma kota.", "Ala ma kota."));
+        assertEquals(Collections.emptyList(), CorrectionDiff.changedSpans("Ala  ma kota.", "Ala ma kota."));
+    }
+
+    @Test
+    public void everythingIsNewAfterAnEmptyText() {
+        assertEquals(Collections.singletonList("Ala ma kota."), changed("", "Ala ma kota."));
+    }
+
+    @Test
+    public void spansStayWithinTheTextForLongInputs() {
+        StringBuilder before = new StringBuilder();
+        StringBuilder after = new StringBuilder();
+        for (int i = 0; i < 2_000; i++) {
+            before.append("slowo").append(i).append(' ');
+            after.append(i % 100 == 0 ? "zmiana" : "slowo").append(i).append(' ');
+        }
+
+        List<CorrectionDiff.Span> spans = CorrectionDiff.changedSpans(before.toString(), after.toString());
+
+        assertFalse(spans.isEmpty());
+        for (CorrectionDiff.Span span : spans) {
+            assertTrue(span.getStart() < span.getEnd());
+            assertTrue(span.getEnd() <= after.length());
+        }
+    }
+}
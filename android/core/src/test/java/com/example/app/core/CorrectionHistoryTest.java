@@ -0,0 +1,120 @@
+package com.example.app.core;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CorrectionHistoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String outputs(List<CorrectionHistory.Entry> entries) {
+        StringBuilder joined = new StringBuilder();
+        for (CorrectionHistory.Entry entry : entries) {
+            if (joined.length() > 0) {
+                joined.append(" | ");
+            }
+            joined.append(entry.getOutput());
+        }
+        return joined.toString();
+    }
+
+    @Test
+    public void entriesSurviveReopeningWithTheirMetadata() throws Exception {
+        File file = new File(folder.getRoot(), "history");
+        CorrectionHistory history = new CorrectionHistory(file);
+        history.add("ala ma kota", "Ala ma kota.", "gpt-4o-mini", 840, 1_700_000_000_000L);
+        long removed = history.add("kot ma ale", "Kot ma Alę.", "gpt-4o-mini", 910, 1_700_000_001_000L);
+        history.add("zolw idzie", "Żółw idzie.", "llama-3.1-8b", 120, 1_700_000_002_000L);
+        history.remove(removed);
+        // Deliberately not closed: appended records must already be in the file, as after process death
+
+        CorrectionHistory reopened = new CorrectionHistory(file);
+
+        List<CorrectionHistory.Entry> entries = reopened.search("", 10);
+        assertEquals("Żółw idzie. | Ala ma kota.", outputs(entries));
+        CorrectionHistory.Entry entry = entries.get(1);
+        assertEquals("ala ma kota", entry.getInput());
+        assertEquals("gpt-4o-mini", entry.getModel());
+        assertEquals(840, entry.getLatencyMillis());
+        assertEquals(1_700_000_000_000L, entry.getTimeMillis());
+        assertTrue(reopened.add("nowy", "Nowy.", "gpt-4o-mini", 1, 1) > removed);
+        reopened.close();
+    }
+
+    @Test
+    public void findsWordsByPrefixIgnoringCaseAndDiacritics() throws Exception {
+        CorrectionHistory history = new CorrectionHistory(new File(folder.getRoot(), "history"));
+        history.add("zolw idzie powoli", "Żółw idzie powoli.", "m", 1, 1);
+        history.add("kot spi", "Kot śpi.", "m", 1, 2);
+        history.add("kotek i zolw", "Kotek i żółw.", "m", 1, 3);
+
+        assertEquals("Kotek i żółw. | Kot śpi.", outputs(history.search("kot", 10)));
+        assertEquals("Kotek i żółw. | Żółw idzie powoli.", outputs(history.search("ŻÓŁW", 10)));
+        assertEquals("Kotek i żółw.", outputs(history.search("zo kot", 10)));
+        assertEquals("Kot śpi.", outputs(history.search("spi", 10)));
+        assertEquals("", outputs(history.search("pies", 10)));
+        assertEquals("Kotek i żółw.", outputs(history.search("", 1)));
+    }
+
+    @Test
+    public void sameCorrectionTwiceInARowIsKeptOnce() throws Exception {
+        CorrectionHistory history = new CorrectionHistory(new File(folder.getRoot(), "history"));
+        long first = history.add("ala", "Ala.", "m", 1, 1);
+
+        assertEquals(first, history.add("ala", "Ala.", "m", 2, 2));
+        assertEquals(1, history.size());
+    }
+
+    @Test
+    public void oldestEntriesGoPastTheLimitAndCompactionDropsThem() throws Exception {
+        File file = new File(folder.getRoot(), "history");
+        CorrectionHistory history = new CorrectionHistory(file, 10);
+        for (int i = 0; i < 100; i++) {
+            history.add("tekst numer " + i, "Tekst numer " + i + ".", "m", i, i);
+        }
+        history.remove(history.search("95", 1).get(0).getId());
+        long before = file.length();
+
+        assertEquals(9, history.size());
+        assertTrue(history.needsCompaction());
+        history.compact();
+
+        assertFalse(history.needsCompaction());
+        assertTrue(file.length() * 5 < before);
+        assertEquals("Tekst numer 99. | Tekst numer 98. | Tekst numer 97.", outputs(history.search("tekst", 3)));
+        assertEquals("", outputs(history.search("5", 10)));
+        assertEquals("Tekst numer 90.", outputs(history.search("90", 10)));
+        history.add("po kompakcji", "Po kompakcji.", "m", 1, 1);
+        assertEquals("Po kompakcji. | Tekst numer 99.", outputs(history.search("", 2)));
+
+        CorrectionHistory reopened = new CorrectionHistory(file, 10);
+        assertEquals(10, reopened.size());
+        assertEquals("Po kompakcji. | Tekst numer 99.", outputs(reopened.search("", 2)));
+        assertEquals("Tekst numer 93.", outputs(reopened.search("tekst 93", 10)));
+    }
+
+    @Test
+    public void tornTailIsDroppedOnLoad() throws Exception {
+        File file = new File(folder.getRoot(), "history");
+        CorrectionHistory history = new CorrectionHistory(file);
+        history.add("cały", "Cały.", "m", 1, 1);
+        history.add("urwany", "Urwany w połowie zapisu.", "m", 1, 2);
+        history.close();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 5);
+        }
+
+        CorrectionHistory reopened = new CorrectionHistory(file);
+        reopened.add("po awarii", "Po awarii.", "m", 1, 3);
+        reopened.close();
+
+        assertEquals("Po awarii. | Cały.", outputs(new CorrectionHistory(file).search("", 10)));
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.app.core;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CorrectionJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void stateSurvivesReopening() throws Exception {
+        File file = new File(folder.getRoot(), "journal");
+        CorrectionJournal journal = new CorrectionJournal(file);
+        long first = journal.enqueue("pierwszy");
+        long second = journal.enqueue("drugi — zażółć");
+        long third = journal.enqueue("trzeci");
+        journal.markCorrected(second, "Drugi.");
+        journal.remove(third);
+        // Deliberately not closed: appended records must already be in the file, as after process death
+
+        CorrectionJournal reopened = new CorrectionJournal(file);
+
+        List<CorrectionJournal.Entry> pending = reopened.pending();
+        assertEquals(1, pending.size());
+        assertEquals(first, pending.get(0).getId());
+        assertEquals("pierwszy", pending.get(0).getText());
+        List<CorrectionJournal.Entry> corrected = reopened.corrected();
+        assertEquals(1, corrected.size());
+        assertEquals("drugi — zażółć", corrected.get(0).getText());
+        assertEquals("Drugi.", corrected.get(0).getResult());
+        assertTrue(reopened.enqueue("czwarty") > third);
+        reopened.close();
+    }
+
+    @Test
+    public void tornTailIsDroppedOnLoad() throws Exception {
+        File file = new File(folder.getRoot(), "journal");
+        CorrectionJournal journal = new CorrectionJournal(file);
+        journal.enqueue("cały");
+        journal.enqueue("urwany w połowie zapisu");
+        journal.close();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 5);
+        }
+
+        CorrectionJournal reopened = new CorrectionJournal(file);
+        reopened.enqueue("po awarii");
+        reopened.close();
+
+        List<CorrectionJournal.Entry> pending = new CorrectionJournal(file).pending();
+        assertEquals(2, pending.size());
+        assertEquals("cały", pending.get(0).getText());
+        assertEquals("po awarii", pending.get(1).getText());
+    }
+
+    @Test
+    public void corruptRecordEndsTheValidLog() throws Exception {
+        File file = new File(folder.getRoot(), "journal");
+        CorrectionJournal journal = new CorrectionJournal(file);
+        journal.enqueue("dobry");
+        journal.enqueue("uszkodzony");
+        journal.close();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length() - 6);
+            raf.write('X');
+        }
+
+        List<CorrectionJournal.Entry> pending = new CorrectionJournal(file).pending();
+
+        assertEquals(1, pending.size());
+        assertEquals("dobry", pending.get(0).getText());
+    }
+
+    @Test
+    public void removedEntriesAreCompactedAway() throws Exception {
+        File file = new File(folder.getRoot(), "journal");
+        CorrectionJournal journal = new CorrectionJournal(file);
+        long kept = journal.enqueue("zostaje");
+        journal.markCorrected(kept, "Zostaje.");
+        for (int i = 0; i < 200; i++) {
+            long id = journal.enqueue("tymczasowy tekst numer " + i);
+            journal.markCorrected(id, "Tymczasowy tekst numer " + i + ".");
+            journal.remove(id);
+        }
+        long pending = journal.enqueue("czeka");
+        journal.close();
+
+        // Uncompacted, the 600 dead records alone would be over 30 KB
+        assertTrue(file.length() < 8 * 1024);
+        CorrectionJournal reopened = new CorrectionJournal(file);
+        assertEquals(2, reopened.size());
+        assertEquals("Zostaje.", reopened.corrected().get(0).getResult());
+        assertEquals(pending, reopened.pending().get(0).getId());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.app.core;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class CorrectionMetricsTest {
+
+    @Test
+    public void classifiesFailures() {
+        assertEquals(CorrectionMetrics.Cause.HTTP, CorrectionMetrics.causeOf(new ChatCompletionClient.ApiException(503)));
+        assertEquals(CorrectionMetrics.Cause.PARSE, CorrectionMetrics.causeOf(new MalformedResponseException("x")));
+        assertEquals(CorrectionMetrics.Cause.TRUNCATED, CorrectionMetrics.causeOf(new TruncatedResponseException("x")));
+        assertEquals(CorrectionMetrics.Cause.TIMEOUT, CorrectionMetrics.causeOf(new SocketTimeoutException()));
+        assertEquals(CorrectionMetrics.Cause.NETWORK, CorrectionMetrics.causeOf(new IOException("reset")));
+    }
+
+    @Test
+    public void recordsAndForwardsEvents() {
+        CorrectionMetrics metrics = new CorrectionMetrics();
+        List<String> forwarded = new ArrayList<>();
+        MetricsListener listener = new MetricsListener() {
+            @Override
+            public void onError(CorrectionMetrics.Cause cause, int httpCode) {
+                forwarded.add(cause + " " + httpCode);
+            }
+        };
+        metrics.addListener(listener);
+
+        metrics.onError(CorrectionMetrics.Cause.HTTP, 429);
+        metrics.onError(CorrectionMetrics.Cause.TIMEOUT, 0);
+        metrics.onFallback(CorrectionMetrics.Cause.TIMEOUT);
+        metrics.onTokens(120, 30);
+        metrics.onBytes(2_000, 500);
+        metrics.onLatency(CorrectionMetrics.Phase.TTFB, 250_000_000);
+        metrics.onCacheOutcome(CorrectionMetrics.CacheOutcome.DEDUPLICATED);
+        metrics.removeListener(listener);
+        metrics.onError(CorrectionMetrics.Cause.NETWORK, 0);
+
+        assertEquals(2, forwarded.size());
+        assertEquals("HTTP 429", forwarded.get(0));
+        assertEquals(1, metrics.getErrorCount(429));
+        assertEquals(1, metrics.getErrorCount(CorrectionMetrics.Cause.NETWORK));
+        assertEquals(1, metrics.getFallbackCount(CorrectionMetrics.Cause.TIMEOUT));
+        assertEquals(150, metrics.getPromptTokens() + metrics.getCompletionTokens());
+        assertEquals(2_000, metrics.getBytesSent());
+        assertEquals(1, metrics.getLatency(CorrectionMetrics.Phase.TTFB).getCount());
+        assertEquals(1, metrics.getCacheOutcomeCount(CorrectionMetrics.CacheOutcome.DEDUPLICATED));
+        String dump = metrics.dump();
+        assertTrue(dump, dump.contains("HTTP 429: 1"));
+        assertTrue(dump, dump.contains("TTFB: n=1"));
+
+        metrics.reset();
+        assertEquals(0, metrics.getErrorCount(429));
+        assertEquals(0, metrics.getLatency(CorrectionMetrics.Phase.TTFB).getCount());
+    }
+}
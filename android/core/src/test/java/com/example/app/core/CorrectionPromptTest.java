@@ -0,0 +1,47 @@
+package com.example.app.core;
+
+import static org.junit.Assert.*;
+
+import okio.ByteString;
+import org.junit.Test;
+
+public class CorrectionPromptTest {
+
+    @Test
+    public void shortInputGetsTheCompactPrompt() {
+        StringBuilder input = new StringBuilder();
+        while (TokenEstimator.estimate(input) < CorrectionPrompt.COMPACT_MAX_INPUT_TOKENS) {
+            input.append("ala ");
+        }
+        assertEquals(CorrectionPrompt.COMPACT, CorrectionPrompt.forInput(input));
+
+        input.append("kota ");
+
+        assertEquals(CorrectionPrompt.FULL, CorrectionPrompt.forInput(input));
+    }
+
+    @Test
+    public void compactPromptIsAFractionOfTheFullOne() {
+        assertTrue(CorrectionPrompt.COMPACT.getText().length() * 4 < CorrectionPrompt.FULL.getText().length());
+    }
+
+    @Test
+    public void idsIdentifyTheVariantAndVersion() {
+        assertEquals("full-v1", CorrectionPrompt.FULL.getId());
+        assertEquals("compact-v1", CorrectionPrompt.COMPACT.getId());
+        assertSame(CorrectionPrompt.COMPACT, CorrectionPrompt.forId("compact-v1"));
+        assertNull(CorrectionPrompt.forId("compact-v0"));
+    }
+
+    // Fails when a prompt's text changes without a new version, which would silently break
+    // provider-side prompt caching, the correction cache keys and the evaluation fixtures
+    @Test
+    public void textChangesComeWithANewVersion() {
+        assertEquals("full-v1 918ad06287d45abf", fingerprint(CorrectionPrompt.FULL));
+        assertEquals("compact-v1 459b2e6d8ce95073", fingerprint(CorrectionPrompt.COMPACT));
+    }
+
+    private static String fingerprint(CorrectionPrompt prompt) {
+        return prompt.getId() + " " + ByteString.encodeUtf8(prompt.getText()).sha256().hex().substring(0, 16);
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.app.core;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CredentialStoreTest {
+    private final AtomicInteger decryptions = new AtomicInteger();
+    private final AtomicInteger reads = new AtomicInteger();
+    private String stored;
+    private KeyVault vault;
+
+    private final CredentialStore.Storage storage = new CredentialStore.Storage() {
+        @Override
+        public String read() {
+            reads.incrementAndGet();
+            return stored;
+        }
+
+        @Override
+        public void write(String sealed) {
+            stored = sealed;
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        AesGcmVault aes = AesGcmVault.generate();
+        vault = new KeyVault() {
+            @Override
+            public byte[] encrypt(byte[] plaintext) throws GeneralSecurityException {
+                return aes.encrypt(plaintext);
+            }
+
+            @Override
+            public byte[] decrypt(byte[] ciphertext) throws GeneralSecurityException {
+                decryptions.incrementAndGet();
+                return aes.decrypt(ciphertext);
+            }
+        };
+    }
+
+    @Test
+    public void storesTheSecretSealed() throws Exception {
+        new CredentialStore(vault, storage).set("sk-secret");
+
+        assertNotNull(stored);
+        assertFalse(stored.contains("sk-secret"));
+        assertEquals("sk-secret", new CredentialStore(vault, storage).get());
+    }
+
+    @Test
+    public void decryptsOnceAndThenReadsFromMemory() throws Exception {
+        new CredentialStore(vault, storage).set("sk-secret");
+        CredentialStore store = new CredentialStore(vault, storage);
+        assertNull(store.peek());
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("sk-secret", store.get());
+        }
+
+        assertEquals(1, decryptions.get());
+        assertEquals(1, reads.get());
+        assertEquals("sk-secret", store.peek());
+    }
+
+    @Test
+    public void savingAndClearingReplaceTheCopyInMemory() throws Exception {
+        CredentialStore store = new CredentialStore(vault, storage);
+        assertEquals("", store.get());
+
+        store.set("sk-new");
+        assertEquals("sk-new", store.peek());
+        store.clear();
+
+        assertEquals("", store.peek());
+        assertNull(stored);
+        assertEquals("", new CredentialStore(vault, storage).get());
+        assertEquals(0, decryptions.get());
+    }
+
+    @Test
+    public void secretFromAnotherKeyReadsAsNothingStored() throws Exception {
+        new CredentialStore(AesGcmVault.generate(), storage).set("sk-old");
+        String sealed = stored;
+
+        assertEquals("", new CredentialStore(vault, storage).get());
+        assertEquals(sealed, stored);
+        stored = "not hex";
+        assertEquals("", new CredentialStore(vault, storage).get());
+    }
+
+    @Test
+    public void secretTheVaultCannotSealIsKeptInMemoryOnly() throws Exception {
+        new CredentialStore(vault, storage).set("sk-old");
+        CredentialStore store = new CredentialStore(new KeyVault() {
+            @Override
+            public byte[] encrypt(byte[] plaintext) throws GeneralSecurityException {
+                throw new GeneralSecurityException("Keystore unavailable");
+            }
+
+            @Override
+            public byte[] decrypt(byte[] ciphertext) throws GeneralSecurityException {
+                throw new GeneralSecurityException("Keystore unavailable");
+            }
+        }, storage);
+
+        try {
+            store.set("sk-new");
+            fail();
+        } catch (GeneralSecurityException expected) {
+        }
+
+        assertEquals("sk-new", store.get());
+        assertNull(stored);
+    }
+
+    @Test
+    public void readingOnceOpenedAllocatesNothing() throws Exception {
+        new CredentialStore(vault, storage).set("sk-secret");
+        CredentialStore store = new CredentialStore(vault, storage);
+        store.get();
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 10_000; i++) {
+            store.get();
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(allocated + " bytes", allocated < 1024);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.app.core;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HttpClientProviderTest {
+
+    private MockWebServer server;
+    private HttpClientProvider provider;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        provider = new HttpClientProvider();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void secondCallReusesPooledConnection() throws Exception {
+        server.enqueue(new MockResponse().setBody("first"));
+        server.enqueue(new MockResponse().setBody("second"));
+
+        CallTimings first = execute(provider.getClient());
+        CallTimings second = execute(provider.getClient());
+
+        assertFalse(first.isConnectionReused());
+        assertTrue(second.isConnectionReused());
+        assertEquals(0, second.getConnectMillis());
+        assertTrue(second.getTotalMillis() >= second.getTimeToFirstByteMillis());
+        assertEquals(1, provider.getClient().connectionPool().connectionCount());
+    }
+
+    @Test
+    public void preconnectWarmsUpConnectionForFirstRequest() throws Exception {
+        server.enqueue(new MockResponse());
+        server.enqueue(new MockResponse().setBody("ok"));
+
+        provider.preconnect(server.url("/v1/chat/completions").toString());
+        assertEquals("HEAD", server.takeRequest().getMethod());
+        waitForIdleConnection(provider.getClient());
+
+        CallTimings timings = execute(provider.getClient());
+
+        assertTrue(timings.isConnectionReused());
+        assertEquals(0, timings.getConnectMillis());
+    }
+
+    @Test
+    public void preconnectIsSkippedWhenConnectionAlreadyPooled() throws Exception {
+        server.enqueue(new MockResponse().setBody("ok"));
+        execute(provider.getClient());
+
+        provider.preconnect(server.url("/").toString());
+
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void preconnectOpensOneConnectionPerHost() throws Exception {
+        MockWebServer other = new MockWebServer();
+        other.start();
+        try {
+            server.enqueue(new MockResponse());
+            other.enqueue(new MockResponse());
+
+            provider.preconnect(Arrays.asList(server.url("/v1/chat/completions").toString(),
+                    other.url("/v1/chat/completions").toString(), server.url("/v1/models").toString()));
+
+            assertEquals("HEAD", server.takeRequest(5, TimeUnit.SECONDS).getMethod());
+            assertEquals("HEAD", other.takeRequest(5, TimeUnit.SECONDS).getMethod());
+            assertNull(server.takeRequest(200, TimeUnit.MILLISECONDS));
+        } finally {
+            other.shutdown();
+        }
+    }
+
+    private CallTimings execute(OkHttpClient client) throws Exception {
+        CallTimings timings = new CallTimings();
+        Request request = new Request.Builder()
+                .url(server.url("/v1/chat/completions"))
+                .tag(CallTimings.class, timings)
+                .build();
+        try (Response response = client.newCall(request).execute()) {
+            response.body().string();
+        }
+        return timings;
+    }
+
+    private static void waitForIdleConnection(OkHttpClient client) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (client.connectionPool().idleConnectionCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
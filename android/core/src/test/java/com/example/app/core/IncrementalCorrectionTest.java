@@ -0,0 +1,140 @@
+package com.example.app.core;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class IncrementalCorrectionTest {
+
+    // Stands in for the API: corrects sentence by sentence, so a full and a spliced correction must agree
+    private static String correct(String text) {
+        TextChunker.Split split = TextChunker.splitSentences(text);
+        List<String> corrected = new ArrayList<>();
+        for (String sentence : split.getChunks()) {
+            String fixed = sentence.replace("teh", "the").replace("  ", " ");
+            corrected.add(Character.toUpperCase(fixed.charAt(0)) + fixed.substring(1));
+        }
+        return split.join(corrected).trim();
+    }
+
+    private static String correctIncrementally(IncrementalCorrection plan) {
+        List<String> corrections = new ArrayList<>();
+        for (String request : plan.getRequests()) {
+            corrections.add(correct(request));
+        }
+        return plan.splice(corrections);
+    }
+
+    @Test
+    public void sendsOnlyTheEditedSentenceWithContext() {
+        String before = "one teh cat. two dogs. three birds. four fish. five mice.";
+        String edited = "one teh cat. two dogs. three big teh birds. four fish. five mice.";
+
+        IncrementalCorrection plan = IncrementalCorrection.plan(before, correct(before), edited, 1);
+
+        assertNotNull(plan);
+        assertEquals(Collections.singletonList("two dogs. three big teh birds. four fish."), plan.getRequests());
+        assertEquals(correct(edited), correctIncrementally(plan));
+    }
+
+    @Test
+    public void keepsThePreviousOutputForContextSentences() {
+        String before = "alpha one. beta two. gamma three.";
+        // An earlier correction chose wording that differs from what a fresh one would produce
+        String previousOutput = "Alpha 1. Beta 2. Gamma 3.";
+        String edited = "alpha one. beta changed. gamma three.";
+
+        IncrementalCorrection plan = IncrementalCorrection.plan(before, previousOutput, edited, 1);
+
+        assertEquals("Alpha 1. Beta changed. Gamma 3.",
+                plan.splice(Collections.singletonList("Alpha one. Beta changed. Gamma three.")));
+    }
+
+    @Test
+    public void replacesTheWholeRegionWhenTheModelMergesSentences() {
+        String before = "a one. b two. c three. d four.";
+        String edited = "a one. b two. c changed. d four.";
+
+        IncrementalCorrection plan = IncrementalCorrection.plan(before, correct(before), edited, 1);
+
+        assertEquals(Collections.singletonList("b two. c changed. d four."), plan.getRequests());
+        assertEquals("A one. B two, c changed and d four.",
+                plan.splice(Collections.singletonList("B two, c changed and d four.")));
+    }
+
+    @Test
+    public void deletionsAndWhitespaceEditsNeedNoRequest() {
+        String before = "first one. second two.\n\nthird three. fourth four.";
+        String edited = "first one.\nthird three.   fourth four.";
+
+        IncrementalCorrection plan = IncrementalCorrection.plan(before, correct(before), edited, 1);
+
+        assertTrue(plan.getRequests().isEmpty());
+        assertEquals("First one.\nThird three.   Fourth four.", plan.splice(Collections.<String>emptyList()));
+    }
+
+    @Test
+    public void declinesWhenSentencesDoNotLineUpOrMostTextChanged() {
+        String before = "one. two. three. four.";
+        assertNull(IncrementalCorrection.plan(before, "One, two. Three. Four.", "one. two. x. four.", 1));
+        assertNull(IncrementalCorrection.plan(before, correct(before), "new one. new two. new three. four.", 1));
+        assertNull(IncrementalCorrection.plan("", "", "one.", 1));
+    }
+
+    @Test
+    public void splicedResultMatchesFullCorrectionForRandomEdits() {
+        Random random = new Random(10);
+        String[] words = {"teh", "kot", "pies", "dom", "las", "rzeka", "góra", "słońce"};
+        String[] separators = {" ", " ", " ", "\n", "\n\n", "  "};
+        for (int round = 0; round < 500; round++) {
+            List<String> sentences = new ArrayList<>();
+            int count = 3 + random.nextInt(20);
+            for (int i = 0; i < count; i++) {
+                sentences.add(sentence(random, words));
+            }
+            String before = join(sentences, random, separators);
+
+            int edits = 1 + random.nextInt(3);
+            for (int e = 0; e < edits; e++) {
+                int at = random.nextInt(sentences.size());
+                switch (random.nextInt(3)) {
+                    case 0: sentences.set(at, sentence(random, words)); break;
+                    case 1: sentences.add(at, sentence(random, words)); break;
+                    default: if (sentences.size() > 1) sentences.remove(at);
+                }
+            }
+            String edited = join(sentences, random, separators);
+
+            IncrementalCorrection plan = IncrementalCorrection.plan(before, correct(before), edited, random.nextInt(3));
+            if (plan == null) {
+                continue;
+            }
+            assertEquals(before + "\n->\n" + edited, correct(edited), correctIncrementally(plan));
+            assertTrue(plan.getRequestedLength() <= edited.length());
+        }
+    }
+
+    private static String sentence(Random random, String[] words) {
+        StringBuilder sb = new StringBuilder();
+        int length = 1 + random.nextInt(6);
+        for (int i = 0; i < length; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(words[random.nextInt(words.length)]);
+        }
+        return sb.append(random.nextBoolean() ? "." : "?").toString();
+    }
+
+    private static String join(List<String> sentences, Random random, String[] separators) {
+        StringBuilder sb = new StringBuilder();
+        for (String sentence : sentences) {
+            if (sb.length() > 0) sb.append(separators[random.nextInt(separators.length)]);
+            sb.append(sentence);
+        }
+        return sb.toString();
+    }
+}
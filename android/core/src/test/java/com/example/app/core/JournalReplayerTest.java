@@ -0,0 +1,133 @@
+package com.example.app.core;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JournalReplayerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private ChatCompletionClient client;
+    private CorrectionJournal journal;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        client = new ChatCompletionClient(new OkHttpClient(), server.url("/v1/chat/completions").toString());
+        journal = new CorrectionJournal(new File(folder.getRoot(), "journal"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        journal.close();
+        server.shutdown();
+    }
+
+    private static MockResponse completion(String content) {
+        return new MockResponse().setBody(
+                "{\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":\"" + content + "\"}}]}");
+    }
+
+    private JournalReplayer.Corrector apiCorrector() {
+        return text -> client.complete("sk-test", text, null, ChatCompletionClient.CallObserver.NONE);
+    }
+
+    @Test
+    public void replaysEverythingWithBoundedConcurrency() throws Exception {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                Thread.sleep(20);
+                active.decrementAndGet();
+                return completion("Poprawione.");
+            }
+        });
+        for (int i = 0; i < 10; i++) {
+            journal.enqueue("tekst " + i);
+        }
+        List<CorrectionJournal.Entry> delivered = Collections.synchronizedList(new ArrayList<>());
+
+        int corrected = new JournalReplayer(journal, 4, 2).replay(apiCorrector(), delivered::add);
+
+        assertEquals(10, corrected);
+        assertEquals(10, delivered.size());
+        assertEquals(10, server.getRequestCount());
+        assertTrue(maxActive.get() <= 2);
+        assertTrue(journal.pending().isEmpty());
+        assertEquals(10, journal.corrected().size());
+        assertEquals("Poprawione.", journal.corrected().get(0).getResult());
+    }
+
+    @Test
+    public void networkFailureStopsAfterTheCurrentBatch() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                // The third request onwards finds the connection dropped
+                if (requests.incrementAndGet() >= 3) {
+                    return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START);
+                }
+                return completion("Poprawione.");
+            }
+        });
+        for (int i = 0; i < 6; i++) {
+            journal.enqueue("tekst " + i);
+        }
+
+        int corrected = new JournalReplayer(journal, 2, 1).replay(apiCorrector(), entry -> { });
+
+        assertEquals(2, corrected);
+        // The failing batch ended the replay; its successes are kept and the rest stays queued
+        assertTrue(requests.get() <= 4);
+        assertEquals(4, journal.pending().size());
+        assertEquals("tekst 2", journal.pending().get(0).getText());
+    }
+
+    @Test
+    public void concurrentReplayIsANoOp() throws Exception {
+        journal.enqueue("tekst");
+        JournalReplayer replayer = new JournalReplayer(journal, 4, 1);
+        AtomicInteger nested = new AtomicInteger(-1);
+
+        int corrected = replayer.replay(text -> {
+            nested.set(replayer.replay(inner -> "x", entry -> { }));
+            return "Tekst.";
+        }, entry -> { });
+
+        assertEquals(1, corrected);
+        assertEquals(0, nested.get());
+    }
+
+    @Test(expected = IOException.class)
+    public void unexpectedFailureIsReported() throws Exception {
+        journal.enqueue("tekst");
+
+        new JournalReplayer(journal, 4, 1).replay(text -> {
+            throw new IllegalStateException("boom");
+        }, entry -> { });
+    }
+}
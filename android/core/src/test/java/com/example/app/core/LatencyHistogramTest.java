@@ -0,0 +1,61 @@
+package com.example.app.core;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsCoverEveryValueInOrder() {
+        long previousUpperBound = -1;
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            long upperBound = LatencyHistogram.bucketUpperBound(i);
+            assertTrue(upperBound > previousUpperBound);
+            assertEquals(i, LatencyHistogram.bucketIndex(previousUpperBound + 1));
+            assertEquals(i, LatencyHistogram.bucketIndex(upperBound));
+            previousUpperBound = upperBound;
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentilesStayWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(7);
+        long[] values = new long[10_000];
+        for (int i = 0; i < values.length; i++) {
+            // Log-normal-ish spread from microseconds to seconds, like real call latencies
+            values[i] = (long) Math.exp(random.nextDouble() * 14);
+            histogram.recordMicros(values[i]);
+        }
+        Arrays.sort(values);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(values.length, snapshot.getCount());
+        assertEquals(values[values.length - 1], snapshot.getMaxMicros());
+        for (double percentile : new double[] {50, 90, 99, 99.9}) {
+            long exact = values[(int) Math.ceil(values.length * percentile / 100) - 1];
+            long reported = snapshot.getPercentileMicros(percentile);
+            assertTrue(percentile + ": " + reported + " vs " + exact,
+                    reported >= exact && reported <= exact + exact / 8 + 1);
+        }
+    }
+
+    @Test
+    public void emptyAndResetHistogramsReportZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.snapshot().getPercentileMicros(99));
+
+        histogram.recordNanos(5_000_000);
+        assertEquals(5_000, histogram.snapshot().getMaxMicros());
+        histogram.reset();
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMeanMicros());
+        assertEquals(0, snapshot.getPercentileMicros(50));
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.app.core;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import org.junit.Test;
+
+public class LocalCorrectorTest {
+
+    private static final String[][] GOLDEN = {
+            {"", ""},
+            {"   \t\r\n ", ""},
+            {"ala ma kota", "Ala ma kota."},
+            {"  ala   ma\tkota  ", "Ala ma kota."},
+            {"ala ma kota .", "Ala ma kota."},
+            {"pierwsze zdanie , drugie ; trzecie ! czwarte ?", "Pierwsze zdanie, drugie; trzecie! czwarte?"},
+            {"linia\r\ndruga\n\n\ttrzecia", "Linia druga trzecia."},
+            {"co ? !", "Co?!"},
+            {"a , . b", "A,. b."},
+            {"już dobrze!", "Już dobrze!"},
+            {"źle napisane", "Źle napisane."},
+            {"ǆungla", "Ǆungla."},
+            {"x", "X."},
+            {".", "."},
+            {"\u0001 tekst \u0001", "Tekst."},
+            {"a \u0001 .", "A \u0001."},
+            {"kropka na końcu.\u2028", "Kropka na końcu.\u2028."},
+            {"linia\u2028koniec.", "Linia\u2028koniec.."},
+            {"nel\u0085koniec!", "Nel\u0085koniec!."},
+            {"emoji 😀", "Emoji 😀."},
+            {"\u000B\fformfeed \u000B end", "Formfeed end."},
+            {"nbsp\u00A0przed .", "Nbsp\u00A0przed."},
+    };
+
+    @Test
+    public void matchesGoldenCorpus() {
+        for (String[] entry : GOLDEN) {
+            assertEquals("input: " + entry[0], entry[1], LocalCorrector.correct(entry[0]));
+            assertEquals("legacy: " + entry[0], entry[1], legacyCorrect(entry[0]));
+            assertEquals("streaming: " + entry[0], entry[1], streamed(entry[0], 4));
+        }
+        assertEquals("", LocalCorrector.correct(null));
+    }
+
+    @Test
+    public void isByteIdenticalToLegacyOnRandomInput() {
+        Random random = new Random(7);
+        char[] alphabet = {'a', 'Z', 'ż', 'ǆ', ' ', ' ', '\t', '\n', '\r', '\u000B', '\f', '\u0001', '\u00A0',
+                '.', ',', ';', '!', '?', ':', '\u0085', '\u2028', '\u2029', '\uD83D', '\uDE00'};
+        for (int round = 0; round < 20000; round++) {
+            char[] chars = new char[random.nextInt(24)];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = alphabet[random.nextInt(alphabet.length)];
+            }
+            String input = new String(chars);
+            assertEquals(escape(input), legacyCorrect(input), LocalCorrector.correct(input));
+            // A tiny buffer makes the streaming variant flush mid-text
+            assertEquals(escape(input), legacyCorrect(input), streamed(input, 2 + random.nextInt(6)));
+        }
+    }
+
+    @Test
+    public void streamingFiveMegabytesNeedsOnlyItsBuffer() throws IOException {
+        String input = largeInput(5 * 1024 * 1024);
+        CharBufferPool pool = new CharBufferPool(CharBufferPool.DEFAULT_BUFFER_CHARS, 1);
+        CountingWriter out = new CountingWriter();
+        LocalCorrector.correct(input, out, pool);
+        assertEquals(LocalCorrector.correct(input).length(), out.count);
+
+        // Everything allocated on the way bounds how far the heap can grow above the input itself
+        long[] written = new long[1];
+        long streamingBytes = allocatedBytes(() -> {
+            try {
+                written[0] = LocalCorrector.correct(input, new CountingWriter(), pool);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        });
+        long copyingBytes = allocatedBytes(() -> LocalCorrector.correct(input));
+
+        assertEquals(out.count, written[0]);
+        assertTrue("streaming allocated " + streamingBytes, streamingBytes < 64 * 1024);
+        assertTrue("copying allocated " + copyingBytes, copyingBytes > input.length());
+    }
+
+    private static String streamed(String input, int bufferChars) {
+        StringWriter out = new StringWriter();
+        try {
+            long written = LocalCorrector.correct(input, out, new CharBufferPool(bufferChars, 1));
+            assertEquals(out.toString().length(), written);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return out.toString();
+    }
+
+    // Discards the text, so only the corrector's own allocations are measured
+    private static final class CountingWriter extends Writer {
+        long count;
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            count += length;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void allocatesLessThanLegacyOnMultiMegabyteInput() {
+        String input = largeInput(4 * 1024 * 1024);
+        // Warm up both paths so class loading and regex compilation don't skew the comparison
+        assertEquals(legacyCorrect(input), LocalCorrector.correct(input));
+
+        long legacyBytes = allocatedBytes(() -> legacyCorrect(input));
+        long singlePassBytes = allocatedBytes(() -> LocalCorrector.correct(input));
+
+        assertTrue("single pass " + singlePassBytes + " vs legacy " + legacyBytes,
+                singlePassBytes * 3 < legacyBytes);
+    }
+
+    static String largeInput(int length) {
+        String[] words = {"ala ", "ma  ", "kota ", ", ", "\r\n", "\t", "zdanie . ", "pytanie ? ", "żółw ! "};
+        Random random = new Random(1);
+        StringBuilder sb = new StringBuilder(length + 16);
+        while (sb.length() < length) {
+            sb.append(words[random.nextInt(words.length)]);
+        }
+        return sb.toString();
+    }
+
+    private static long allocatedBytes(Runnable runnable) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        runnable.run();
+        return threads.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    private static String escape(String s) {
+        StringBuilder sb = new StringBuilder();
+        for (char c : s.toCharArray()) {
+            sb.append(String.format("\\u%04x", (int) c));
+        }
+        return sb.toString();
+    }
+
+    // The replaceAll chain LocalCorrector replaced, kept as the reference implementation
+    static String legacyCorrect(String input) {
+        if (input == null) return "";
+        String s = input;
+
+        s = s.replaceAll("\r\n", "\n");
+        s = s.replaceAll("\t", " ");
+        s = s.replaceAll("\\s+", " ").trim();
+
+        s = s.replaceAll(" \\.", ".");
+        s = s.replaceAll(" ,", ",");
+        s = s.replaceAll(" ;", ";");
+        s = s.replaceAll(" !", "!");
+        s = s.replaceAll(" \\?", "?");
+
+        if (!s.isEmpty()) {
+            char first = s.charAt(0);
+            char upper = Character.toUpperCase(first);
+            if (first != upper) {
+                s = upper + (s.length() > 1 ? s.substring(1) : "");
+            }
+        }
+
+        if (!s.isEmpty() && !s.matches(".*[\\.!\\?]$")) {
+            s = s + ".";
+        }
+
+        return s;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.app.core;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OfflineCorrectorTest {
+    private CompactDictionary polish;
+    private CompactDictionary english;
+    private OfflineCorrector corrector;
+
+    @Before
+    public void setUp() throws IOException {
+        String[] polishWords = {"nie", "wiem", "czy", "jutro", "bo", "mam",
+                "dużo", "pracy", "ala", "ma", "kota", "i", "psa", "proszę", "o", "przesłanie", "faktury", "do",
+                "piątku", "to", "jest", "dom", "który", "kupiłem", "myślę", "że", "masz", "rację", "mimo", "pada",
+                "idę", "w", "ogóle", "przyjdę", "spotkanie", "bardzo"};
+        String[] englishWords = {"the", "i", "is", "to", "a", "an", "going",
+                "library", "tomorrow", "could", "have", "done", "it", "better", "apple", "ate", "user", "one",
+                "they", "are", "we", "will", "meet", "at", "of", "course", "lot", "receive", "did", "you", "my",
+                "letter"};
+        polish = CompactDictionaryTest.dictionary(polishWords);
+        english = CompactDictionaryTest.dictionary(englishWords);
+        // Spells with the tiny dictionaries as if they held every word
+        corrector = new OfflineCorrector(CompactDictionaryTest.completeDictionary(polishWords),
+                CompactDictionaryTest.completeDictionary(englishWords));
+    }
+
+    @Test
+    public void withoutDictionariesItIsTheLocalCorrector() {
+        String input = "  ala   ma kota ,i psa  ";
+
+        assertEquals(LocalCorrector.correct(input), OfflineCorrector.BASIC.correct(input));
+    }
+
+    @Test
+    public void tellsTheLanguageByKnownWords() {
+        assertEquals(OfflineCorrector.Language.POLISH, corrector.detectLanguage("nie wiem czy przyjdę jutro"));
+        assertEquals(OfflineCorrector.Language.ENGLISH, corrector.detectLanguage("we will meet at the library"));
+        assertNull(corrector.detectLanguage("xyz qwerty"));
+    }
+
+    @Test
+    public void fixesSpellingInTheTextsLanguage() {
+        assertEquals("We will meet at the library tomorrow.",
+                corrector.correct("we will meet at teh libary tomorow"));
+        assertEquals("Proszę o przesłanie faktury do piątku.",
+                corrector.correct("Prosze o przesłanie fakturry do piątku"));
+    }
+
+    @Test
+    public void leavesNamesAcronymsAndCodesAlone() {
+        assertEquals("We will meet Tomorow at the NASA library, room b7 or libary.com.",
+                corrector.correct("we will meet Tomorow at the NASA library, room b7 or libary.com."));
+    }
+
+    @Test
+    public void doesNotSpellWithADictionaryThatKnowsTooLittleOfTheText() {
+        String input = "the wombats devoured numerous succulent plantz";
+
+        assertEquals(LocalCorrector.correct(input), corrector.correct(input));
+    }
+
+    @Test
+    public void leavesCorrectWordsAStarterDictionaryLacksAlone() {
+        OfflineCorrector starter = new OfflineCorrector(polish, english);
+
+        assertEquals("We will meet at the park, the cat and the dog.",
+                starter.correct("we will meet at the park, the cat and the dog."));
+        assertEquals("Ala ma kota i psa w nowym domu.", starter.correct("ala ma kota i psa w nowym domu"));
+        // Misspellings too, but for missing diacritics, while the rules still apply
+        assertEquals("We will meet at teh libary, a lot.", starter.correct("we will meet at teh libary, alot."));
+        assertEquals("Nie wiem czy przyjdę jutro, proszę o przesłanie fakturry.",
+                starter.correct("nie wiem czy przyjde jutro, prosze o przeslanie fakturry"));
+        assertEquals("Myślę, że masz rację.", starter.correct("myślę że masz rację"));
+    }
+
+    @Test
+    public void appliesEnglishRules() {
+        assertEquals("I could have done it better.", corrector.correct("i could of done it better"));
+        assertEquals("I ate an apple, a user did a lot.", corrector.correct("i ate a apple, a user did alot."));
+        assertEquals("Could of course.", corrector.correct("could of course"));
+        assertEquals("Did you receive my letter?", corrector.correct("did you you receive my letter?"));
+    }
+
+    @Test
+    public void appliesPolishRules() {
+        assertEquals("Myślę, że masz rację.", corrector.correct("myślę że masz rację"));
+        assertEquals("To jest dom, który kupiłem.", corrector.correct("to jest dom który kupiłem"));
+        // "mimo że" stays together
+        assertEquals("Idę, mimo że pada.", corrector.correct("idę, mimo że pada"));
+        assertEquals("Nie wiem, czy w ogóle przyjdę.", corrector.correct("nie wiem, czy wogóle przyjdę"));
+        assertEquals("Ala ma kota i psa.", corrector.correct("ala ma ma kota i psa"));
+        assertEquals("Bardzo bardzo dużo pracy.", corrector.correct("bardzo bardzo dużo pracy"));
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.app.core;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResilientCompletionClientTest {
+
+    private MockWebServer server;
+    private CorrectionMetrics metrics;
+    private CircuitBreaker breaker;
+    private ResilientCompletionClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        metrics = new CorrectionMetrics();
+        breaker = new CircuitBreaker(3, 60_000);
+        ChatCompletionClient completionClient = new ChatCompletionClient(new HttpClientProvider().getClient(),
+                CorrectionBackend.openAi(server.url("/v1/chat/completions").toString(), "sk-test"), metrics);
+        client = new ResilientCompletionClient(completionClient, new RetryPolicy(3, 10, 2_000), breaker, metrics);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    private static MockResponse completion(String content) {
+        return new MockResponse().setBody("{\"choices\":[{\"message\":{\"content\":\"" + content + "\"}}]}");
+    }
+
+    private String complete(boolean hedge) throws Exception {
+        return client.complete("tekst", null, ChatCompletionClient.CallObserver.NONE, hedge);
+    }
+
+    @Test
+    public void retriesTransientFailures() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(500));
+        server.enqueue(completion("Urwana odpowiedź").setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY));
+        server.enqueue(completion("Tekst."));
+
+        assertEquals("Tekst.", complete(false));
+
+        assertEquals(3, server.getRequestCount());
+        assertEquals(1, metrics.getRetryCount(CorrectionMetrics.Cause.HTTP));
+        assertEquals(1, metrics.getRetryCount(CorrectionMetrics.Cause.NETWORK));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void waitsAsLongAsRetryAfterAsks() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "1"));
+        server.enqueue(completion("Tekst."));
+        long start = System.nanoTime();
+
+        assertEquals("Tekst.", complete(false));
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 1_000);
+    }
+
+    @Test
+    public void doesNotRetryRejectedRequests() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(400));
+
+        try {
+            complete(false);
+            fail();
+        } catch (ChatCompletionClient.ApiException e) {
+            assertEquals(400, e.getCode());
+        }
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void openCircuitSkipsTheNetwork() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setResponseCode(500));
+        }
+        try {
+            complete(false);
+            fail();
+        } catch (ChatCompletionClient.ApiException e) {
+            assertEquals(500, e.getCode());
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        try {
+            complete(false);
+            fail();
+        } catch (CircuitOpenException e) {
+            assertEquals(CorrectionMetrics.Cause.CIRCUIT_OPEN, CorrectionMetrics.causeOf(e));
+        }
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void hedgesACallThatIsSlowToAnswer() throws Exception {
+        // Calls so far answered within 10ms, so the hedge fires at the minimum delay
+        for (int i = 0; i < ResilientCompletionClient.MIN_TTFB_SAMPLES; i++) {
+            metrics.onLatency(CorrectionMetrics.Phase.TTFB, TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        server.enqueue(completion("Wolna.").setHeadersDelay(5, TimeUnit.SECONDS));
+        server.enqueue(completion("Szybka."));
+        long start = System.nanoTime();
+
+        assertEquals("Szybka.", complete(true));
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 3_000);
+        assertEquals(2, server.getRequestCount());
+        assertEquals(1, metrics.getHedgeCount());
+        assertEquals(1, metrics.getHedgesWonCount());
+    }
+
+    @Test
+    public void doesNotHedgeWithoutEnoughHistory() throws Exception {
+        server.enqueue(completion("Wolna.").setHeadersDelay(500, TimeUnit.MILLISECONDS));
+
+        assertEquals("Wolna.", complete(true));
+
+        assertEquals(1, server.getRequestCount());
+        assertEquals(0, metrics.getHedgeCount());
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.app.core;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.Random;
+import org.junit.Test;
+
+public class RetryPolicyTest {
+
+    private final RetryPolicy policy = new RetryPolicy(4, 100, 2_000, new Random(1));
+
+    @Test
+    public void backoffIsJitteredUnderAGrowingCeiling() {
+        IOException failure = new SocketTimeoutException();
+        long[] ceilings = {100, 200, 400};
+        for (int attempt = 1; attempt <= 3; attempt++) {
+            boolean variesWithinCeiling = false;
+            long first = policy.delayBeforeRetry(attempt, failure);
+            for (int i = 0; i < 50; i++) {
+                long delay = policy.delayBeforeRetry(attempt, failure);
+                assertTrue(delay >= 0 && delay <= ceilings[attempt - 1]);
+                variesWithinCeiling |= delay != first;
+            }
+            assertTrue(variesWithinCeiling);
+        }
+    }
+
+    @Test
+    public void honoursRetryAfterUpToTheMaximumDelay() {
+        assertEquals(1_500, policy.delayBeforeRetry(1, new ChatCompletionClient.ApiException(429, 1_500)));
+        assertEquals(-1, policy.delayBeforeRetry(1, new ChatCompletionClient.ApiException(429, 60_000)));
+    }
+
+    @Test
+    public void givesUpOnPermanentFailuresAndAfterTheLastAttempt() {
+        assertEquals(-1, policy.delayBeforeRetry(1, new ChatCompletionClient.ApiException(401)));
+        assertEquals(-1, policy.delayBeforeRetry(1, new MalformedResponseException("x")));
+        assertEquals(-1, policy.delayBeforeRetry(1, new CircuitOpenException()));
+        assertEquals(-1, policy.delayBeforeRetry(4, new ChatCompletionClient.ApiException(500)));
+        assertTrue(policy.delayBeforeRetry(3, new IOException("connection reset")) >= 0);
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.app.core;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SpellCheckerTest {
+    private SpellChecker checker;
+
+    @Before
+    public void setUp() throws IOException {
+        checker = new SpellChecker(CompactDictionaryTest.dictionary("the", "library", "receive", "tomorrow",
+                "separate", "cat", "car", "bat", "their", "there", "weird"));
+    }
+
+    private String suggest(String word, int maxDistance) {
+        StringBuilder out = new StringBuilder();
+        return checker.suggest(word, 0, word.length(), maxDistance, out) ? out.toString() : null;
+    }
+
+    @Test
+    public void fixesOneEdit() {
+        assertEquals("library", suggest("libary", 1));
+        assertEquals("receive", suggest("receve", 1));
+        assertEquals("tomorrow", suggest("tomorow", 1));
+    }
+
+    @Test
+    public void fixesTranspositionsAsOneEdit() {
+        assertEquals("the", suggest("teh", 1));
+        assertEquals("receive", suggest("recieve", 1));
+        assertEquals("weird", suggest("wierd", 1));
+    }
+
+    @Test
+    public void fixesTwoEditsOnlyWhenAllowed() {
+        assertNull(suggest("seperete", 1));
+        assertEquals("separate", suggest("seperete", 2));
+    }
+
+    @Test
+    public void leavesTiesAndFarWordsAlone() {
+        // cat and car are both one edit from "cax" and equally common; "bax" is one edit from bat only
+        assertNull(suggest("cax", 1));
+        assertEquals("bat", suggest("bax", 1));
+        assertNull(suggest("xylophone", 2));
+        assertNull(suggest("lib4ary", 1));
+        // Known words need no suggestion
+        assertNull(suggest("library", 1));
+    }
+
+    @Test
+    public void keepsTheCaseOfTheOriginal() {
+        assertEquals("Library", suggest("Libary", 1));
+        assertEquals("LIBRARY", suggest("LIBARY", 1));
+    }
+
+    @Test
+    public void lookupsDoNotAllocate() {
+        StringBuilder out = new StringBuilder(64);
+        String text = "the libary is open tomorow";
+        // The first lookup creates this thread's table
+        checker.suggest(text, 4, 10, 2, out);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 10_000; i++) {
+            out.setLength(0);
+            checker.suggest(text, 4, 10, 2, out);
+            checker.suggest(text, 19, 26, 1, out);
+            checker.getDictionary().contains(text, 0, 3);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(allocated + " bytes", allocated < 1024);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.app.core;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class TextChunkerTest {
+
+    @Test
+    public void shortTextIsSingleChunk() {
+        TextChunker.Split split = TextChunker.split("  Ala ma kota.\n", 100);
+
+        assertEquals(Arrays.asList("Ala ma kota."), split.getChunks());
+        assertEquals("  ", split.separatorBefore(0));
+        assertEquals("\n", split.trailingSeparator());
+    }
+
+    @Test
+    public void prefersParagraphBoundaries() {
+        String text = "First sentence. Second sentence.\n\nThird paragraph here. And more.";
+        // 10 tokens reach into "here"; the paragraph break beats the later sentence break
+        TextChunker.Split split = TextChunker.split(text, 10);
+
+        assertEquals("First sentence. Second sentence.", split.getChunks().get(0));
+        assertEquals("\n\n", split.separatorBefore(1));
+    }
+
+    @Test
+    public void fallsBackToSentenceThenWordBoundaries() {
+        TextChunker.Split sentences = TextChunker.split("One two three. Four five six seven.", 4);
+        assertEquals("One two three.", sentences.getChunks().get(0));
+
+        TextChunker.Split words = TextChunker.split("alpha beta gamma delta epsilon", 2);
+        assertEquals(3, words.size());
+        for (String chunk : words.getChunks()) {
+            assertTrue(TokenEstimator.estimate(chunk) <= 2);
+            assertFalse(chunk.startsWith(" ") || chunk.endsWith(" "));
+        }
+    }
+
+    @Test
+    public void cutsOverlongWordsWithoutBreakingSurrogatePairs() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            sb.append("a😀");
+        }
+        String text = sb.toString();
+
+        TextChunker.Split split = TextChunker.split(text, 1);
+
+        assertEquals(text, split.join(split.getChunks()));
+        for (String chunk : split.getChunks()) {
+            assertFalse(Character.isHighSurrogate(chunk.charAt(chunk.length() - 1)));
+        }
+    }
+
+    @Test
+    public void joinRestoresOriginalTextAndRespectsBudget() {
+        Random random = new Random(42);
+        String[] pieces = {"Zdanie", "pierwsze.", "słowo", "kolejne!", "pytanie?", " ", "  ", "\n", "\n\n", "\t", "(cytat.)"};
+        for (int round = 0; round < 200; round++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(200);
+            for (int i = 0; i < length; i++) {
+                sb.append(pieces[random.nextInt(pieces.length)]);
+            }
+            String text = sb.toString();
+            int budget = 1 + random.nextInt(20);
+
+            TextChunker.Split split = TextChunker.split(text, budget);
+
+            assertEquals(text, split.join(split.getChunks()));
+            List<String> chunks = new ArrayList<>(split.getChunks());
+            for (String chunk : chunks) {
+                assertFalse(chunk.isEmpty());
+                assertTrue(chunk, TokenEstimator.estimate(chunk) <= budget);
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.app.core;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class TokenEstimatorTest {
+
+    private static JSONArray fixtures() throws IOException {
+        try (InputStream in = TokenEstimatorTest.class.getResourceAsStream("/token-fixtures.json")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new JSONObject(new String(out.toByteArray(), StandardCharsets.UTF_8)).getJSONArray("cases");
+        }
+    }
+
+    @Test
+    public void estimatesTheFixturesClosely() throws Exception {
+        JSONArray cases = fixtures();
+        long expectedTotal = 0;
+        long errorTotal = 0;
+        for (int i = 0; i < cases.length(); i++) {
+            String text = cases.getJSONObject(i).getString("text");
+            int expected = cases.getJSONObject(i).getInt("tokens");
+            int error = Math.abs(TokenEstimator.estimate(text) - expected);
+
+            assertTrue(text + ": " + TokenEstimator.estimate(text) + " for " + expected,
+                    error <= Math.max(3, expected * 3 / 10));
+            expectedTotal += expected;
+            errorTotal += error;
+        }
+        assertTrue(errorTotal + " off in " + expectedTotal, errorTotal * 10 <= expectedTotal);
+    }
+
+    @Test
+    public void countsDiacriticsAndDigitsAboveTheCharAverage() {
+        // Four chars per token would make these 3 and 2
+        assertTrue(TokenEstimator.estimate("Zażółć gęślą") > 3);
+        assertTrue(TokenEstimator.estimate("1234567") > 2);
+        assertEquals(0, TokenEstimator.estimate(""));
+        assertEquals(TokenEstimator.estimate("Ala ma kota"), TokenEstimator.estimate("xAla ma kotax", 1, 12));
+    }
+
+    @Test
+    public void prefixStaysWithinBudgetAndEndsBetweenPieces() {
+        String text = "Ala ma kota, a kot ma Alę. Nie wiem, czy przyjdę jutro.";
+        for (int budget = 1; budget < 30; budget++) {
+            int end = TokenEstimator.prefixEnd(text, 0, text.length(), budget);
+
+            assertTrue(TokenEstimator.estimate(text, 0, end) <= budget);
+            assertFalse(end < text.length() && Character.isLetter(text.charAt(end - 1))
+                    && Character.isLetter(text.charAt(end)));
+        }
+        assertEquals(text.length(), TokenEstimator.prefixEnd(text, 0, text.length(), 1000));
+    }
+
+    @Test
+    public void prefixCoversAtLeastOneCodePoint() {
+        assertEquals(2, TokenEstimator.prefixEnd("😀😀", 0, 4, 1));
+        assertEquals(1, TokenEstimator.prefixEnd("Donaudampfschifffahrt", 0, 21, 0));
+        int end = TokenEstimator.prefixEnd("Donaudampfschifffahrtsgesellschaft", 0, 34, 2);
+        assertTrue(end > 1 && end < 34);
+        assertTrue(TokenEstimator.estimate("Donaudampfschifffahrtsgesellschaft", 0, end) <= 2);
+    }
+
+    @Test
+    public void estimatingAllocatesNothing() {
+        String text = "Dzień dobry, przesyłam poprawioną wersję umowy (v2.1) — proszę o podpis do 15.10. 👍\n";
+        TokenEstimator.estimate(text);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 10_000; i++) {
+            TokenEstimator.estimate(text);
+            TokenEstimator.prefixEnd(text, 0, text.length(), 10);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(allocated + " bytes", allocated < 1024);
+    }
+}